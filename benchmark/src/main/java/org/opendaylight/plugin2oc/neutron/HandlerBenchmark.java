@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.juniper.contrail.api.types.NetworkIpam;
+import net.juniper.contrail.api.types.Project;
+import net.juniper.contrail.api.types.VirtualNetwork;
+
+import org.opendaylight.controller.networkconfig.neutron.NeutronNetwork;
+import org.opendaylight.controller.networkconfig.neutron.NeutronPort;
+import org.opendaylight.controller.networkconfig.neutron.NeutronSubnet;
+import org.opendaylight.controller.networkconfig.neutron.NeutronSubnet_IPAllocationPool;
+import org.opendaylight.controller.networkconfig.neutron.Neutron_IPs;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmarks of the handler operations against an
+ * {@link InMemoryApiConnector} answering after {@code latencyMicros}.
+ * Besides the throughput, each benchmark reports the API reads and writes
+ * per operation; the allocation rate is reported by the GC profiler, enabled
+ * when run through {@link #main(String[])}:
+ *
+ * <pre>
+ * java -jar benchmark/target/benchmarks.jar [JMH options]
+ * </pre>
+ *
+ * API calls per operation are exact when run with a single benchmark thread,
+ * the default.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandlerBenchmark {
+    static final String TENANT_ID = "019570f2-17b1-4fc3-99ec-1b7f7778a29a";
+    static final String NETWORK_ID = "6b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+    static final String SUBNET_ID = "7b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+
+    /**
+     * In-memory API server shared by the benchmark threads, holding the
+     * project, the default IPAM and a network.
+     */
+    @State(Scope.Benchmark)
+    public static class ApiServer {
+        @Param({ "0", "500" })
+        public long latencyMicros;
+
+        InMemoryApiConnector connector;
+        final AtomicLong sequence = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            connector = new InMemoryApiConnector(latencyMicros);
+            Project project = new Project();
+            project.setName("benchmark");
+            project.setUuid(TENANT_ID);
+            connector.put(project);
+            NetworkIpam ipam = new NetworkIpam();
+            ipam.setName(NetworkIpamResolver.DEFAULT_IPAM_NAME);
+            connector.put(ipam);
+            connector.put(network(NETWORK_ID));
+            Activator.apiConnector = connector;
+        }
+
+        VirtualNetwork network(String uuid) {
+            VirtualNetwork virtualNetwork = new VirtualNetwork();
+            virtualNetwork.setName("network-" + uuid);
+            virtualNetwork.setDisplayName("network-" + uuid);
+            virtualNetwork.setUuid(uuid);
+            return virtualNetwork;
+        }
+
+        /**
+         * Invoked to get a UUID not used yet.
+         */
+        String nextUuid() {
+            return new UUID(0x6b9570f217b14fc3L, sequence.incrementAndGet()).toString();
+        }
+    }
+
+    /**
+     * API calls made by the measured operations, reported per operation.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class ApiCalls {
+        public long apiReads;
+        public long apiWrites;
+
+        private long reads;
+        private long writes;
+
+        void start(ApiServer server) {
+            reads = server.connector.getReadCount();
+            writes = server.connector.getWriteCount();
+        }
+
+        void stop(ApiServer server) {
+            apiReads += server.connector.getReadCount() - reads;
+            apiWrites += server.connector.getWriteCount() - writes;
+        }
+
+        public long apiCalls() {
+            return apiReads + apiWrites;
+        }
+    }
+
+    /**
+     * Handlers and the objects a benchmark thread works on.
+     */
+    @State(Scope.Thread)
+    public static class Handlers {
+        final NetworkHandler networkHandler = new NetworkHandler();
+        final SubnetHandler subnetHandler = new SubnetHandler();
+        final PortHandler portHandler = new PortHandler();
+        String networkId;
+        NeutronPort port;
+        int portUpdates;
+
+        @Setup(Level.Trial)
+        public void setUp(ApiServer server) {
+            port = port(server);
+            portHandler.canCreatePort(port);
+        }
+
+        /**
+         * Invoked before a subnet creation so that each subnet goes to an
+         * empty network.
+         */
+        public void newNetwork(ApiServer server) {
+            networkId = server.nextUuid();
+            server.connector.put(server.network(networkId));
+        }
+    }
+
+    static NeutronPort port(ApiServer server) {
+        NeutronPort port = new NeutronPort();
+        port.setPortUUID(server.nextUuid());
+        port.setNetworkUUID(NETWORK_ID);
+        port.setMacAddress("02:70:72:93:4d:d6");
+        port.setName("port");
+        port.setDeviceID(server.nextUuid());
+        port.setTenantID(TENANT_ID);
+        long n = server.sequence.get();
+        Neutron_IPs ip = new Neutron_IPs();
+        ip.setSubnetUUID(SUBNET_ID);
+        ip.setIpAddress("10." + ((n >> 16) & 0xff) + "." + ((n >> 8) & 0xff) + "." + (n & 0xff));
+        List<Neutron_IPs> ips = new ArrayList<Neutron_IPs>();
+        ips.add(ip);
+        port.setFixedIPs(ips);
+        return port;
+    }
+
+    @Benchmark
+    public int canCreateNetwork(ApiServer server, Handlers handlers, ApiCalls calls) {
+        NeutronNetwork network = new NeutronNetwork();
+        network.setNetworkUUID(server.nextUuid());
+        network.setNetworkName("network");
+        network.setTenantID(TENANT_ID);
+        calls.start(server);
+        int status = handlers.networkHandler.canCreateNetwork(network);
+        calls.stop(server);
+        return status;
+    }
+
+    @Benchmark
+    public int canCreateSubnet(ApiServer server, Handlers handlers, ApiCalls calls) {
+        handlers.newNetwork(server);
+        NeutronSubnet subnet = new NeutronSubnet();
+        subnet.setNetworkUUID(handlers.networkId);
+        subnet.setSubnetUUID(server.nextUuid());
+        subnet.setCidr("10.0.0.0/24");
+        subnet.setGatewayIP("10.0.0.254");
+        NeutronSubnet_IPAllocationPool pool = new NeutronSubnet_IPAllocationPool();
+        pool.setPoolStart("10.0.0.1");
+        pool.setPoolEnd("10.0.0.253");
+        List<NeutronSubnet_IPAllocationPool> pools = new ArrayList<NeutronSubnet_IPAllocationPool>();
+        pools.add(pool);
+        subnet.setAllocationPools(pools);
+        calls.start(server);
+        int status = handlers.subnetHandler.canCreateSubnet(subnet);
+        calls.stop(server);
+        return status;
+    }
+
+    @Benchmark
+    public int canCreatePort(ApiServer server, Handlers handlers, ApiCalls calls) {
+        NeutronPort port = port(server);
+        calls.start(server);
+        int status = handlers.portHandler.canCreatePort(port);
+        calls.stop(server);
+        return status;
+    }
+
+    @Benchmark
+    public int canUpdatePort(ApiServer server, Handlers handlers, ApiCalls calls) {
+        NeutronPort delta = new NeutronPort();
+        delta.setName("port-" + (handlers.portUpdates++ & 1));
+        delta.setDeviceID(handlers.port.getDeviceID());
+        calls.start(server);
+        int status = handlers.portHandler.canUpdatePort(delta, handlers.port);
+        calls.stop(server);
+        return status;
+    }
+
+    @Benchmark
+    public int canDeletePort(ApiServer server, Handlers handlers, ApiCalls calls) {
+        NeutronPort port = port(server);
+        handlers.portHandler.canCreatePort(port);
+        calls.start(server);
+        int status = handlers.portHandler.canDeletePort(port);
+        calls.stop(server);
+        return status;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder().include(HandlerBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+}
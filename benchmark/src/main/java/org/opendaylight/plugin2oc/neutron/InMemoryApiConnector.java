@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.ApiObjectBase;
+import net.juniper.contrail.api.ApiPropertyBase;
+import net.juniper.contrail.api.ObjectReference;
+
+/**
+ * ApiConnector keeping the objects in memory, used in place of the API
+ * server by the benchmarks. Every call waits for the configured latency and
+ * is counted, reads and writes separately. Objects are stored as given, back
+ * references are not maintained.
+ */
+public class InMemoryApiConnector implements ApiConnector {
+    private final ConcurrentMap<Class<?>, ConcurrentMap<String, ApiObjectBase>> objects = new ConcurrentHashMap<Class<?>, ConcurrentMap<String, ApiObjectBase>>();
+    private final long latencyNanos;
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+
+    /**
+     * @param latencyMicros
+     *            time each call takes, in microseconds.
+     */
+    public InMemoryApiConnector(long latencyMicros) {
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+    }
+
+    private ConcurrentMap<String, ApiObjectBase> table(Class<?> cls) {
+        ConcurrentMap<String, ApiObjectBase> table = objects.get(cls);
+        if (table == null) {
+            ConcurrentMap<String, ApiObjectBase> created = new ConcurrentHashMap<String, ApiObjectBase>();
+            table = objects.putIfAbsent(cls, created);
+            if (table == null) {
+                table = created;
+            }
+        }
+        return table;
+    }
+
+    private void read() {
+        reads.incrementAndGet();
+        pause();
+    }
+
+    private void write() {
+        writes.incrementAndGet();
+        pause();
+    }
+
+    private void pause() {
+        if (latencyNanos > 0) {
+            long deadline = System.nanoTime() + latencyNanos;
+            for (long remaining = latencyNanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+    }
+
+    /**
+     * Invoked to store an object without counting a call nor waiting, used
+     * to set up the benchmark state.
+     */
+    public void put(ApiObjectBase object) {
+        if (object.getUuid() == null) {
+            object.setUuid(UUID.randomUUID().toString());
+        }
+        table(object.getClass()).put(object.getUuid(), object);
+    }
+
+    private ApiObjectBase findByName(Class<? extends ApiObjectBase> cls, String name) {
+        for (ApiObjectBase object : table(cls).values()) {
+            if (name != null && name.equals(object.getName())) {
+                return object;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean create(ApiObjectBase obj) throws IOException {
+        write();
+        if (obj.getUuid() == null) {
+            obj.setUuid(UUID.randomUUID().toString());
+        }
+        return table(obj.getClass()).putIfAbsent(obj.getUuid(), obj) == null;
+    }
+
+    @Override
+    public boolean read(ApiObjectBase obj) throws IOException {
+        read();
+        return obj.getUuid() != null && table(obj.getClass()).containsKey(obj.getUuid());
+    }
+
+    @Override
+    public boolean update(ApiObjectBase obj) throws IOException {
+        write();
+        return obj.getUuid() != null && table(obj.getClass()).replace(obj.getUuid(), obj) != null;
+    }
+
+    @Override
+    public void delete(ApiObjectBase obj) throws IOException {
+        write();
+        if (obj.getUuid() != null) {
+            table(obj.getClass()).remove(obj.getUuid());
+        }
+    }
+
+    @Override
+    public void delete(Class<? extends ApiObjectBase> cls, String uuid) throws IOException {
+        write();
+        table(cls).remove(uuid);
+    }
+
+    @Override
+    public ApiObjectBase find(Class<? extends ApiObjectBase> cls, ApiObjectBase parent, String name) throws IOException {
+        read();
+        return findByName(cls, name);
+    }
+
+    @Override
+    public ApiObjectBase findByFQN(Class<? extends ApiObjectBase> cls, String fullName) throws IOException {
+        read();
+        return findByName(cls, fullName.substring(fullName.lastIndexOf(':') + 1));
+    }
+
+    @Override
+    public ApiObjectBase findById(Class<? extends ApiObjectBase> cls, String uuid) throws IOException {
+        read();
+        return uuid == null ? null : table(cls).get(uuid);
+    }
+
+    @Override
+    public String findByName(Class<? extends ApiObjectBase> cls, List<String> nameList) throws IOException {
+        read();
+        ApiObjectBase object = nameList == null || nameList.isEmpty() ? null : findByName(cls, nameList.get(nameList.size() - 1));
+        return object == null ? null : object.getUuid();
+    }
+
+    @Override
+    public String findByName(Class<? extends ApiObjectBase> cls, ApiObjectBase parent, String name) throws IOException {
+        read();
+        ApiObjectBase object = findByName(cls, name);
+        return object == null ? null : object.getUuid();
+    }
+
+    @Override
+    public List<? extends ApiObjectBase> list(Class<? extends ApiObjectBase> cls, List<String> parent) throws IOException {
+        read();
+        return new ArrayList<ApiObjectBase>(table(cls).values());
+    }
+
+    @Override
+    public <T extends ApiPropertyBase> List<? extends ApiObjectBase> getObjects(Class<? extends ApiObjectBase> cls, List<ObjectReference<T>> refList)
+            throws IOException {
+        read();
+        List<ApiObjectBase> result = new ArrayList<ApiObjectBase>();
+        Map<String, ApiObjectBase> table = table(cls);
+        for (ObjectReference<T> ref : refList) {
+            ApiObjectBase object = table.get(ref.getUuid());
+            if (object != null) {
+                result.add(object);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void dispose() {
+        objects.clear();
+    }
+
+    public long getReadCount() {
+        return reads.get();
+    }
+
+    public long getWriteCount() {
+        return writes.get();
+    }
+}
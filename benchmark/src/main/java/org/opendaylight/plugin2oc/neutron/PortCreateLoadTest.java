@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.juniper.contrail.api.types.NetworkIpam;
+import net.juniper.contrail.api.types.Project;
+import net.juniper.contrail.api.types.VirtualNetwork;
+
+import org.opendaylight.controller.networkconfig.neutron.NeutronPort;
+import org.opendaylight.controller.networkconfig.neutron.Neutron_IPs;
+
+/**
+ * Load test creating ports concurrently, one client thread per port, against
+ * an {@link InMemoryApiConnector} answering after a fixed latency, once per
+ * {@link ApiExecutor.Mode}:
+ *
+ * <pre>
+ * java -cp benchmark/target/benchmarks.jar org.opendaylight.plugin2oc.neutron.PortCreateLoadTest [ports] [latencyMicros] [maxInFlight]
+ * </pre>
+ *
+ * The platform pool is sized by plugin2oc.apiserver.threads as in the
+ * bundle; virtual mode needs a Java runtime with virtual threads.
+ */
+public final class PortCreateLoadTest {
+    static final String TENANT_ID = "019570f2-17b1-4fc3-99ec-1b7f7778a29a";
+    static final String NETWORK_ID = "6b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+    static final String SUBNET_ID = "7b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+
+    private PortCreateLoadTest() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int ports = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long latencyMicros = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+        int maxInFlight = args.length > 2 ? Integer.parseInt(args[2]) : ApiExecutor.DEFAULT_MAX_IN_FLIGHT;
+        int threads = Integer.getInteger("plugin2oc.apiserver.threads", ApiExecutor.DEFAULT_THREADS);
+        System.out.println(ports + " concurrent port creations, API latency " + latencyMicros + " us");
+        for (ApiExecutor.Mode mode : ApiExecutor.Mode.values()) {
+            ApiExecutor apiExecutor = new ApiExecutor(mode, threads, ApiExecutor.DEFAULT_QUEUE_SIZE, maxInFlight);
+            try {
+                if (apiExecutor.getMode() == mode) {
+                    run(apiExecutor, ports, latencyMicros);
+                } else {
+                    System.out.println(mode + " : not available on this runtime");
+                }
+            } finally {
+                apiExecutor.shutdown();
+            }
+        }
+    }
+
+    private static void run(ApiExecutor apiExecutor, int ports, long latencyMicros) throws InterruptedException {
+        InMemoryApiConnector connector = new InMemoryApiConnector(latencyMicros);
+        Project project = new Project();
+        project.setName("load-test");
+        project.setUuid(TENANT_ID);
+        connector.put(project);
+        NetworkIpam ipam = new NetworkIpam();
+        ipam.setName(NetworkIpamResolver.DEFAULT_IPAM_NAME);
+        connector.put(ipam);
+        VirtualNetwork virtualNetwork = new VirtualNetwork();
+        virtualNetwork.setName("load-test");
+        virtualNetwork.setUuid(NETWORK_ID);
+        connector.put(virtualNetwork);
+        Activator.apiConnector = connector;
+        Activator.apiExecutor = apiExecutor;
+
+        final PortHandler portHandler = new PortHandler();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(ports);
+        final AtomicInteger created = new AtomicInteger();
+        List<Thread> clients = new ArrayList<Thread>();
+        for (int i = 0; i < ports; i++) {
+            final NeutronPort port = port(i);
+            Thread client = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        if (portHandler.canCreatePort(port) == HttpURLConnection.HTTP_OK) {
+                            created.incrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "load-test-client-" + i);
+            client.setDaemon(true);
+            client.start();
+            clients.add(client);
+        }
+        long calls = connector.getReadCount() + connector.getWriteCount();
+        long startTime = System.nanoTime();
+        start.countDown();
+        int peakInFlight = 0;
+        while (!done.await(1, TimeUnit.MILLISECONDS)) {
+            peakInFlight = Math.max(peakInFlight, apiExecutor.getInFlightCount());
+        }
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        calls = connector.getReadCount() + connector.getWriteCount() - calls;
+        System.out.println(apiExecutor.getMode() + " : " + created.get() + "/" + ports + " ports created in " + elapsedMillis + " ms, "
+                + (created.get() * 1000L / elapsedMillis) + " ports/s, " + (calls * 1000L / elapsedMillis) + " API calls/s"
+                + (apiExecutor.getMode() == ApiExecutor.Mode.VIRTUAL ? ", peak in flight " + peakInFlight : ""));
+        for (Thread client : clients) {
+            client.join();
+        }
+    }
+
+    private static NeutronPort port(int i) {
+        NeutronPort port = new NeutronPort();
+        port.setPortUUID(UUID.randomUUID().toString());
+        port.setNetworkUUID(NETWORK_ID);
+        port.setMacAddress("02:70:72:93:4d:d6");
+        port.setName("port-" + i);
+        port.setDeviceID(UUID.randomUUID().toString());
+        port.setTenantID(TENANT_ID);
+        Neutron_IPs ip = new Neutron_IPs();
+        ip.setSubnetUUID(SUBNET_ID);
+        ip.setIpAddress("10." + ((i >> 16) & 0xff) + "." + ((i >> 8) & 0xff) + "." + (i & 0xff));
+        List<Neutron_IPs> ips = new ArrayList<Neutron_IPs>();
+        ips.add(ip);
+        port.setFixedIPs(ips);
+        return port;
+    }
+}
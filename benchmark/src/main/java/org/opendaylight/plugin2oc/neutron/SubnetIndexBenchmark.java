@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.util.concurrent.TimeUnit;
+
+import net.juniper.contrail.api.ObjectReference;
+import net.juniper.contrail.api.types.NetworkIpam;
+import net.juniper.contrail.api.types.SubnetType;
+import net.juniper.contrail.api.types.VirtualNetwork;
+import net.juniper.contrail.api.types.VnSubnetsType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmarks of the subnet overlap check of {@link SubnetIndex} against a
+ * linear scan over the subnets of a network holding {@code subnets} /24
+ * subnets, each query being a /25 inside one of them:
+ *
+ * <pre>
+ * java -jar benchmark/target/benchmarks.jar SubnetIndexBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubnetIndexBenchmark {
+    /**
+     * Network shared by the benchmark threads, with its index built.
+     */
+    @State(Scope.Benchmark)
+    public static class Subnets {
+        @Param({ "10000" })
+        public int subnets;
+
+        VirtualNetwork virtualNetwork;
+        SubnetIndex index;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            VnSubnetsType vnSubnetsType = new VnSubnetsType();
+            for (int i = 0; i < subnets; i++) {
+                SubnetType subnetType = new SubnetType();
+                subnetType.setIpPrefix(prefix(i));
+                subnetType.setIpPrefixLen(24);
+                VnSubnetsType.IpamSubnetType subnetValue = new VnSubnetsType.IpamSubnetType();
+                subnetValue.setSubnet(subnetType);
+                vnSubnetsType.addIpamSubnets(subnetValue);
+            }
+            NetworkIpam ipam = new NetworkIpam();
+            ipam.setName(NetworkIpamResolver.DEFAULT_IPAM_NAME);
+            virtualNetwork = new VirtualNetwork();
+            virtualNetwork.setName("network");
+            virtualNetwork.setNetworkIpam(ipam, vnSubnetsType);
+            index = SubnetIndex.of(virtualNetwork);
+            index.findOverlapping(cidr(0));
+        }
+    }
+
+    /**
+     * Subnet queried next by a benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Query {
+        int next;
+
+        int next(Subnets subnets) {
+            next = (next + 1) % subnets.subnets;
+            return next;
+        }
+    }
+
+    static String prefix(int i) {
+        return "11." + (i / 256) + "." + (i % 256) + ".0";
+    }
+
+    static String cidr(int i) {
+        return prefix(i) + "/25";
+    }
+
+    static long address(String ipPrefix) {
+        long address = 0;
+        for (String octet : ipPrefix.split("\\.")) {
+            address = (address << 8) | Integer.parseInt(octet);
+        }
+        return address;
+    }
+
+    @Benchmark
+    public VnSubnetsType.IpamSubnetType indexed(Subnets subnets, Query query) {
+        return subnets.index.findOverlapping(cidr(query.next(subnets)));
+    }
+
+    /**
+     * Overlap check as a linear scan, comparing the proposed CIDR with every
+     * subnet of the network.
+     */
+    @Benchmark
+    public VnSubnetsType.IpamSubnetType linearScan(Subnets subnets, Query query) {
+        long first = address(prefix(query.next(subnets)));
+        long last = first + (1L << (32 - 25)) - 1;
+        for (ObjectReference<VnSubnetsType> ref : subnets.virtualNetwork.getNetworkIpam()) {
+            for (VnSubnetsType.IpamSubnetType subnetValue : ref.getAttr().getIpamSubnets()) {
+                long existingFirst = address(subnetValue.getSubnet().getIpPrefix());
+                long existingLast = existingFirst + (1L << (32 - subnetValue.getSubnet().getIpPrefixLen())) - 1;
+                if (existingFirst <= last && first <= existingLast) {
+                    return subnetValue;
+                }
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder().include(SubnetIndexBenchmark.class.getSimpleName()).build();
+        new Runner(options).run();
+    }
+}
@@ -8,6 +8,7 @@
  */
 package org.opendaylight.plugin2oc.neutron;
 
+
 import net.juniper.contrail.api.ApiConnector;
 import net.juniper.contrail.api.ApiConnectorFactory;
 
@@ -25,6 +26,24 @@ import org.slf4j.LoggerFactory;
  */
 public class Activator extends ComponentActivatorAbstractBase {
     static ApiConnector apiConnector = null;
+    static ApiObjectCache objectCache = null;
+    static ProjectResolver projectResolver = null;
+    static NetworkIpamResolver ipamResolver = null;
+    static ApiExecutor apiExecutor = null;
+    static OperationVerifier verifier = null;
+    static IpAllocatorRegistry ipAllocators = null;
+    static ApiObjectLocks objectLocks = null;
+    static SubnetWriter subnetWriter = null;
+    static ApiObjectPreloader preloader = null;
+    static NeutronReconciler reconciler = null;
+    static PluginMetrics metrics = null;
+    static CircuitBreaker breaker = null;
+    static Bulkheads bulkheads = null;
+    static SingleFlight<String, Integer> inFlightOperations = null;
+    static MutationJournal journal = null;
+    static ObjectIndex objectIndex = null;
+    static ProjectedReader projectedReader = null;
+    static ProjectedReader.Transport readTransport = null;
     static final Logger LOGGER = LoggerFactory.getLogger(Activator.class);
 
     /**
@@ -35,6 +54,213 @@ public class Activator extends ComponentActivatorAbstractBase {
     public void init() {
         LOGGER.info("plugin2oc Plugin service Registered");
         apiConnector = getApiConnection();
+        objectCache = new ApiObjectCache(apiConnector);
+        projectResolver = new ProjectResolver(objectCache);
+        ipamResolver = new NetworkIpamResolver(apiConnector);
+        ipamResolver.start();
+        objectIndex = ObjectIndex.open();
+        for (String uuid : objectIndex.getKnownUuids()) {
+            objectCache.markExisting(uuid);
+        }
+        journal = MutationJournal.open();
+        if (!journal.getUnfinished().isEmpty()) {
+            new PortHandler().recover(journal);
+        }
+        if (Boolean.parseBoolean(System.getProperty("plugin2oc.preload", "true"))) {
+            preloader = new ApiObjectPreloader(objectCache, getApiExecutor());
+            preloader.start();
+        }
+        long reconcileInterval = Long.getLong("plugin2oc.reconcile.interval", NeutronReconciler.DEFAULT_INTERVAL_MILLIS);
+        if (reconcileInterval > 0) {
+            reconciler = new NeutronReconciler();
+            reconciler.start(reconcileInterval);
+        }
+    }
+
+    /**
+     * Function called to get the state of the warm-up started by init. Until
+     * it is READY the objects not loaded yet are read from the API server.
+     */
+    static ApiObjectPreloader.State getWarmUpState() {
+        ApiObjectPreloader loader = preloader;
+        return loader == null ? ApiObjectPreloader.State.IDLE : loader.getState();
+    }
+
+    /**
+     * Function called to get the object cache bound to the current
+     * APIConnector. A new cache is created whenever the connector changes so
+     * entries read through one connector are never served for another.
+     */
+    static synchronized ApiObjectCache getObjectCache() {
+        if (objectCache == null || objectCache.getApiConnector() != apiConnector) {
+            objectCache = new ApiObjectCache(apiConnector);
+        }
+        return objectCache;
+    }
+
+    /**
+     * Function called to get the project resolver bound to the current object
+     * cache.
+     */
+    static synchronized ProjectResolver getProjectResolver() {
+        ApiObjectCache cache = getObjectCache();
+        if (projectResolver == null || projectResolver.getObjectCache() != cache) {
+            if (projectResolver != null) {
+                projectResolver.shutdown();
+            }
+            projectResolver = new ProjectResolver(cache);
+        }
+        return projectResolver;
+    }
+
+    /**
+     * Function called to get the default IPAM resolver bound to the current
+     * APIConnector.
+     */
+    static synchronized NetworkIpamResolver getIpamResolver() {
+        if (ipamResolver == null || ipamResolver.getApiConnector() != apiConnector) {
+            if (ipamResolver != null) {
+                ipamResolver.shutdown();
+            }
+            ipamResolver = new NetworkIpamResolver(apiConnector);
+        }
+        return ipamResolver;
+    }
+
+    /**
+     * Function called to get the executor used to run Contrail API calls
+     * concurrently.
+     */
+    static synchronized ApiExecutor getApiExecutor() {
+        if (apiExecutor == null) {
+            apiExecutor = new ApiExecutor();
+        }
+        return apiExecutor;
+    }
+
+    /**
+     * Function called to get the IP address allocators bound to the current
+     * APIConnector.
+     */
+    static synchronized IpAllocatorRegistry getIpAllocators() {
+        if (ipAllocators == null || ipAllocators.getApiConnector() != apiConnector) {
+            ipAllocators = new IpAllocatorRegistry(apiConnector);
+        }
+        return ipAllocators;
+    }
+
+    /**
+     * Function called to get the locks serializing the read-modify-write
+     * sequences on an API object, bound to the current executor.
+     */
+    static synchronized ApiObjectLocks getObjectLocks() {
+        ApiExecutor executor = getApiExecutor();
+        if (objectLocks == null || objectLocks.getApiExecutor() != executor) {
+            objectLocks = new ApiObjectLocks(executor);
+        }
+        return objectLocks;
+    }
+
+    /**
+     * Function called to get the writer combining the subnet changes of a
+     * network, bound to the current locks and object cache.
+     */
+    static synchronized SubnetWriter getSubnetWriter() {
+        ApiObjectLocks locks = getObjectLocks();
+        ApiObjectCache cache = getObjectCache();
+        if (subnetWriter == null || subnetWriter.getObjectLocks() != locks || subnetWriter.getObjectCache() != cache) {
+            if (subnetWriter != null) {
+                subnetWriter.shutdown();
+            }
+            subnetWriter = new SubnetWriter(locks, cache);
+        }
+        return subnetWriter;
+    }
+
+    /**
+     * Function called to get the latency histograms of the operations and API
+     * calls, registered over JMX with the status of the plugin components.
+     */
+    static synchronized PluginMetrics getMetrics() {
+        if (metrics == null) {
+            metrics = new PluginMetrics();
+            metrics.registerStatus();
+        }
+        return metrics;
+    }
+
+    /**
+     * Function called to get the circuit breaker guarding the calls to the API
+     * server.
+     */
+    static synchronized CircuitBreaker getCircuitBreaker() {
+        if (breaker == null) {
+            breaker = new CircuitBreaker();
+        }
+        return breaker;
+    }
+
+    /**
+     * Function called to get the limits on the operations in progress, bound
+     * to the circuit breaker.
+     */
+    static synchronized Bulkheads getBulkheads() {
+        CircuitBreaker circuitBreaker = getCircuitBreaker();
+        if (bulkheads == null || bulkheads.getCircuitBreaker() != circuitBreaker) {
+            bulkheads = new Bulkheads(circuitBreaker);
+        }
+        return bulkheads;
+    }
+
+    /**
+     * Function called to get the table of the creations in flight, shared by
+     * the identical requests arriving meanwhile.
+     */
+    static synchronized SingleFlight<String, Integer> getInFlightOperations() {
+        if (inFlightOperations == null) {
+            inFlightOperations = new SingleFlight<String, Integer>();
+        }
+        return inFlightOperations;
+    }
+
+    /**
+     * Function called to get the journal of the port mutations, a journal
+     * recording nothing until init opened it.
+     */
+    static synchronized MutationJournal getJournal() {
+        return journal == null ? MutationJournal.DISABLED : journal;
+    }
+
+    /**
+     * Function called to get the index of the objects created by the plugin,
+     * an index holding nothing if it is not open.
+     */
+    static synchronized ObjectIndex getObjectIndex() {
+        return objectIndex == null ? ObjectIndex.DISABLED : objectIndex;
+    }
+
+    /**
+     * Function called to get the reader of the fields and fq-names of the
+     * objects bound to the current APIConnector. The reads go over HTTP
+     * connections of their own when the API server address is configured
+     * and fall back to the APIConnector otherwise.
+     */
+    static synchronized ProjectedReader getProjectedReader() {
+        if (projectedReader == null || projectedReader.getApiConnector() != apiConnector) {
+            projectedReader = new ProjectedReader(apiConnector, readTransport, getCircuitBreaker(), getMetrics());
+        }
+        return projectedReader;
+    }
+
+    /**
+     * Function called to get the verifier used by the post-operation
+     * callbacks.
+     */
+    static synchronized OperationVerifier getVerifier() {
+        if (verifier == null) {
+            verifier = new OperationVerifier();
+        }
+        return verifier;
     }
 
     /**
@@ -42,6 +268,12 @@ public class Activator extends ComponentActivatorAbstractBase {
      * opendaylight configuration folder inside config.ini at
      * opendaylight/distribution
      * /opendaylight/src/main/resources/configuration/config.ini
+     * The connections to the API server are pooled, see
+     * {@link PooledApiConnector} for the related properties, the calls are
+     * recorded in the {@link PluginMetrics} and go through the
+     * {@link CircuitBreaker}. The reads of a few fields of an object use
+     * their own connections, see {@link ProjectedReader}, unless the
+     * plugin2oc.projection property is false.
      */
     public ApiConnector getApiConnection() {
         String ipAddress = System.getProperty("plugin2oc.apiserver.ipaddress");
@@ -52,7 +284,19 @@ public class Activator extends ComponentActivatorAbstractBase {
         } catch (Exception ex) {
             LOGGER.error("Missing entry in Config file of Opendaylight", ex);
         }
-        apiConnector = ApiConnectorFactory.build(ipAddress, portNumber);
+        if (ipAddress == null) {
+            LOGGER.error("Missing API server address in Config file of Opendaylight");
+            apiConnector = new GuardedApiConnector(new MeteredApiConnector(ApiConnectorFactory.build(ipAddress, portNumber), getMetrics()),
+                    getCircuitBreaker());
+        } else {
+            apiConnector = new GuardedApiConnector(new MeteredApiConnector(new PooledApiConnector(ipAddress, portNumber), getMetrics()),
+                    getCircuitBreaker());
+            if (Boolean.parseBoolean(System.getProperty("plugin2oc.projection", "true"))) {
+                synchronized (Activator.class) {
+                    readTransport = new ProjectedReader.HttpTransport(ipAddress, portNumber);
+                }
+            }
+        }
         return apiConnector;
     }
 
@@ -63,6 +307,89 @@ public class Activator extends ComponentActivatorAbstractBase {
      */
     @Override
     public void destroy() {
+        if (preloader != null) {
+            preloader.shutdown();
+            preloader = null;
+        }
+        if (reconciler != null) {
+            reconciler.shutdown();
+            LOGGER.info("Reconciliation rounds : " + reconciler.getRoundCount() + "  differing tenants : " + reconciler.getDifferingCount()
+                    + "  repaired : " + reconciler.getRepairedCount() + "  failed : " + reconciler.getFailedCount());
+            reconciler = null;
+        }
+        if (projectResolver != null) {
+            projectResolver.shutdown();
+        }
+        if (ipamResolver != null) {
+            ipamResolver.shutdown();
+        }
+        synchronized (Activator.class) {
+            if (subnetWriter != null) {
+                LOGGER.info("Subnet changes : " + subnetWriter.getChangeCount() + "  network updates : " + subnetWriter.getWriteCount());
+                subnetWriter.shutdown();
+                subnetWriter = null;
+            }
+            if (apiExecutor != null) {
+                apiExecutor.shutdown();
+                apiExecutor = null;
+            }
+            if (objectLocks != null) {
+                LOGGER.info("Locked sequences : " + objectLocks.getLockedCount() + "  contended : " + objectLocks.getContendedCount()
+                        + "  lock wait : " + objectLocks.getWaitMillis() + " ms  max : " + objectLocks.getMaxWaitMillis() + " ms");
+                objectLocks = null;
+            }
+            if (verifier != null) {
+                LOGGER.info("Verified operations : " + verifier.getVerifiedCount() + "  failed : " + verifier.getFailedCount() + "  skipped : "
+                        + verifier.getSkippedCount());
+                verifier.shutdown();
+                verifier = null;
+            }
+        }
+        if (objectCache != null) {
+            LOGGER.info("Object cache hits : " + objectCache.getHitCount() + "  misses : " + objectCache.getMissCount() + "  shared reads : "
+                    + objectCache.getSharedReadCount() + "  skipped lookups : " + objectCache.getSkippedLookupCount());
+        }
+        synchronized (Activator.class) {
+            if (journal != null) {
+                LOGGER.info("Journaled port mutations : " + journal.getWrittenCount() + "  not journaled : " + journal.getUnjournaledCount());
+                journal.close();
+                journal = null;
+            }
+            if (objectIndex != null) {
+                LOGGER.info("Indexed objects : " + objectIndex.getSize() + "  not indexed : " + objectIndex.getUnindexedCount());
+                objectIndex.close();
+                objectIndex = null;
+            }
+        }
+        if (apiConnector != null) {
+            apiConnector.dispose();
+        }
+        synchronized (Activator.class) {
+            if (readTransport != null) {
+                readTransport.close();
+                readTransport = null;
+            }
+            projectedReader = null;
+        }
+        synchronized (Activator.class) {
+            if (breaker != null) {
+                LOGGER.info("Circuit breaker openings : " + breaker.getOpenedCount() + "  rejected calls : " + breaker.getRejectedCount());
+                breaker = null;
+            }
+            if (bulkheads != null) {
+                LOGGER.info("Refused operations, networks : " + bulkheads.getRejectedCount(Bulkheads.Kind.NETWORK) + "  subnets : "
+                        + bulkheads.getRejectedCount(Bulkheads.Kind.SUBNET) + "  ports : " + bulkheads.getRejectedCount(Bulkheads.Kind.PORT));
+                bulkheads = null;
+            }
+            if (inFlightOperations != null) {
+                LOGGER.info("Creations : " + inFlightOperations.getExecutedCount() + "  shared by retries : " + inFlightOperations.getSharedCount());
+                inFlightOperations = null;
+            }
+            if (metrics != null) {
+                metrics.unregister();
+                metrics = null;
+            }
+        }
     }
 
     /**
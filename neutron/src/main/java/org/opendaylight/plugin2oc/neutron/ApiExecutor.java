@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Executor used to run independent Contrail API calls concurrently, in the
+ * mode given by the plugin2oc.apiserver.executor property:
+ * <ul>
+ * <li>platform: a bounded pool, sized by the plugin2oc.apiserver.threads and
+ * plugin2oc.apiserver.queue properties; when the queue is full the calling
+ * thread runs the task itself.</li>
+ * <li>virtual: one virtual thread per call, at most
+ * plugin2oc.apiserver.maxInFlight of them calling the API server at a time.
+ * Needs a Java runtime with virtual threads, the platform pool is used
+ * otherwise. The calls still go through the connections of the
+ * PooledApiConnector, plugin2oc.apiserver.maxConnections should be raised
+ * along.</li>
+ * </ul>
+ */
+public class ApiExecutor {
+    /**
+     * Logger instance.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(ApiExecutor.class);
+    static final int DEFAULT_THREADS = 16;
+    static final int DEFAULT_QUEUE_SIZE = 1024;
+    static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+    /**
+     * Execution modes.
+     */
+    public enum Mode {
+        PLATFORM, VIRTUAL
+    }
+
+    private final ListeningExecutorService executor;
+    private final Mode mode;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+
+    public ApiExecutor() {
+        this(parseMode(System.getProperty("plugin2oc.apiserver.executor")), Integer.getInteger("plugin2oc.apiserver.threads",
+                DEFAULT_THREADS), Integer.getInteger("plugin2oc.apiserver.queue", DEFAULT_QUEUE_SIZE), Integer.getInteger(
+                "plugin2oc.apiserver.maxInFlight", DEFAULT_MAX_IN_FLIGHT));
+    }
+
+    public ApiExecutor(int threads, int queueSize) {
+        this(Mode.PLATFORM, threads, queueSize, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public ApiExecutor(Mode mode, int threads, int queueSize, int maxInFlight) {
+        ExecutorService virtualThreads = mode == Mode.VIRTUAL ? newVirtualThreadExecutor() : null;
+        if (virtualThreads != null) {
+            this.mode = Mode.VIRTUAL;
+            this.executor = MoreExecutors.listeningDecorator(virtualThreads);
+            this.inFlight = new Semaphore(maxInFlight);
+            this.maxInFlight = maxInFlight;
+        } else {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(
+                    queueSize), new ThreadFactoryBuilder().setDaemon(true).setNameFormat("plugin2oc-api-%d").build(),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            pool.allowCoreThreadTimeOut(true);
+            this.mode = Mode.PLATFORM;
+            this.executor = MoreExecutors.listeningDecorator(pool);
+            this.inFlight = null;
+            this.maxInFlight = threads;
+        }
+        LOGGER.info("API calls run on " + this.mode.name().toLowerCase() + " threads, at most " + this.maxInFlight + " at a time");
+    }
+
+    /**
+     * Invoked to get the virtual thread per task executor of the runtime,
+     * looked up reflectively as the bundle is built for Java 7.
+     *
+     * @return the executor, or null if the runtime has no virtual threads.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (Exception e) {
+            LOGGER.warn("Virtual threads are not available, API calls run on the platform pool : " + e);
+            return null;
+        }
+    }
+
+    public <T> ListenableFuture<T> submit(final Callable<T> task) {
+        if (inFlight == null) {
+            return executor.submit(task);
+        }
+        // the permit is taken on the virtual thread, so that submitting never
+        // blocks the caller
+        return executor.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                inFlight.acquire();
+                try {
+                    return task.call();
+                } finally {
+                    inFlight.release();
+                }
+            }
+        });
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Invoked to get the number of calls running against the API server, in
+     * virtual mode.
+     */
+    public int getInFlightCount() {
+        return inFlight == null ? 0 : maxInFlight - inFlight.availablePermits();
+    }
+
+    static Mode parseMode(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Mode.PLATFORM;
+        }
+        try {
+            return Mode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            LOGGER.error("Unknown executor mode " + value + ", using platform");
+            return Mode.PLATFORM;
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Invoked to wait for the result of an API call run on the executor,
+     * rethrowing the IOException it failed with.
+     *
+     * @param future
+     *            future of the API call.
+     * @return the result of the API call.
+     */
+    public static <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the API server");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
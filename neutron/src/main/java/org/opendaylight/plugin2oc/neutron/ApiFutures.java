@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Composes the Contrail API calls of a handler operation into a future of its
+ * HTTP status code. Each stage of an operation is started by the completion
+ * of the calls it depends on and runs on the thread completing them, normally
+ * an {@link ApiExecutor} thread, so no thread sits waiting for a call issued
+ * by another and the operations in flight are not bounded by the threads. The
+ * INeutron*Aware methods only wait for the final status, up to the
+ * plugin2oc.operation.timeout deadline (milliseconds).
+ */
+public final class ApiFutures {
+    /**
+     * Logger instance.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(ApiFutures.class);
+    static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+    static final long TIMEOUT_MILLIS = Long.getLong("plugin2oc.operation.timeout", DEFAULT_TIMEOUT_MILLIS);
+
+    /**
+     * Step of an operation, run once the result it depends on is available.
+     */
+    public interface Stage<I, O> {
+        ListenableFuture<O> apply(I input) throws Exception;
+    }
+
+    private ApiFutures() {
+    }
+
+    /**
+     * Invoked to get an already completed status.
+     */
+    public static ListenableFuture<Integer> status(int status) {
+        return Futures.immediateFuture(status);
+    }
+
+    /**
+     * Invoked to chain a stage to the completion of a future. A failure of
+     * the input or of the stage fails the output. Cancelling the output, e.g.
+     * past the deadline, cancels the stages chained after it; the input is
+     * left alone as it may be shared with other operations.
+     *
+     * @param input
+     *            future the stage depends on.
+     * @param stage
+     *            stage to run with the result of the input.
+     * @return future of the result of the stage.
+     */
+    public static <I, O> ListenableFuture<O> then(final ListenableFuture<I> input, final Stage<? super I, O> stage) {
+        final StageFuture<O> output = new StageFuture<O>();
+        input.addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (output.isDone()) {
+                    return;
+                }
+                try {
+                    forward(stage.apply(input.get()), output);
+                } catch (ExecutionException e) {
+                    output.setException(e.getCause());
+                } catch (CancellationException e) {
+                    output.cancel(false);
+                } catch (Throwable t) {
+                    output.setException(t);
+                }
+            }
+        }, DirectExecutor.INSTANCE);
+        return output;
+    }
+
+    private static <O> void forward(final ListenableFuture<O> result, final StageFuture<O> output) {
+        if (result instanceof StageFuture) {
+            output.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    if (output.isCancelled()) {
+                        result.cancel(false);
+                    }
+                }
+            }, DirectExecutor.INSTANCE);
+        }
+        result.addListener(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    output.set(result.get());
+                } catch (ExecutionException e) {
+                    output.setException(e.getCause());
+                } catch (CancellationException e) {
+                    output.cancel(false);
+                } catch (Throwable t) {
+                    output.setException(t);
+                }
+            }
+        }, DirectExecutor.INSTANCE);
+    }
+
+    /**
+     * Invoked by the INeutron*Aware methods to wait for the status of an
+     * operation. Past the deadline the operation is cancelled at its next
+     * stage and HTTP_GATEWAY_TIMEOUT is returned.
+     *
+     * @param operation
+     *            name of the operation, for the logs.
+     * @param status
+     *            future of the HTTP status code of the operation.
+     * @return the HTTP status code.
+     */
+    public static int await(String operation, ListenableFuture<Integer> status) {
+        return waitFor(operation, status);
+    }
+
+    /**
+     * Invoked by the INeutron*Aware methods to wait for the status of an
+     * operation, as above, and record its latency, by status, in the
+     * {@link PluginMetrics}.
+     *
+     * @param operation
+     *            name of the operation, for the logs and the metrics.
+     * @param startTime
+     *            System.nanoTime() when the operation was started.
+     * @param status
+     *            future of the HTTP status code of the operation.
+     * @return the HTTP status code.
+     */
+    public static int await(String operation, long startTime, ListenableFuture<Integer> status) {
+        int result = waitFor(operation, status);
+        Activator.getMetrics().recordOperation(operation, result, System.nanoTime() - startTime);
+        return result;
+    }
+
+    /**
+     * Invoked by the INeutron*Aware methods when an operation is refused by
+     * the {@link Bulkheads}, to record it like the operations completed.
+     *
+     * @param operation
+     *            name of the operation, for the logs and the metrics.
+     * @param startTime
+     *            System.nanoTime() when the operation was requested.
+     * @return HTTP_UNAVAILABLE.
+     */
+    public static int unavailable(String operation, long startTime) {
+        LOGGER.debug("The " + operation + " was refused, the API server is unavailable or busy");
+        return await(operation, startTime, status(HttpURLConnection.HTTP_UNAVAILABLE));
+    }
+
+    private static int waitFor(String operation, ListenableFuture<Integer> status) {
+        try {
+            return status.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status.cancel(false);
+            LOGGER.error("Interrupted while waiting for the " + operation);
+            return HttpURLConnection.HTTP_INTERNAL_ERROR;
+        } catch (ExecutionException e) {
+            LOGGER.error("Exception :   " + e.getCause());
+            if (e.getCause() instanceof CircuitBreaker.OpenException) {
+                return HttpURLConnection.HTTP_UNAVAILABLE;
+            }
+            return HttpURLConnection.HTTP_INTERNAL_ERROR;
+        } catch (CancellationException e) {
+            // shared with an identical operation given up by its caller
+            LOGGER.error("The " + operation + " was cancelled");
+            return HttpURLConnection.HTTP_GATEWAY_TIMEOUT;
+        } catch (TimeoutException e) {
+            status.cancel(false);
+            LOGGER.error("The " + operation + " did not complete in " + TIMEOUT_MILLIS + " ms");
+            return HttpURLConnection.HTTP_GATEWAY_TIMEOUT;
+        }
+    }
+
+    /**
+     * Future of the result of a stage.
+     */
+    private static final class StageFuture<O> extends AbstractFuture<O> {
+        @Override
+        protected boolean set(O value) {
+            return super.set(value);
+        }
+
+        @Override
+        protected boolean setException(Throwable throwable) {
+            return super.setException(throwable);
+        }
+    }
+
+    /**
+     * Runs the stages on the thread completing their input.
+     */
+    enum DirectExecutor implements Executor {
+        INSTANCE;
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    }
+}
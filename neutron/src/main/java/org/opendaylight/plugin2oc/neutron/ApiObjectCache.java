@@ -0,0 +1,389 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.ApiObjectBase;
+import net.juniper.contrail.api.types.NetworkIpam;
+import net.juniper.contrail.api.types.Project;
+import net.juniper.contrail.api.types.VirtualNetwork;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Bounded read-through cache in front of {@link ApiConnector#findById} for the
+ * Project, VirtualNetwork and NetworkIpam objects the handlers only use as
+ * parents or references; reads of other types are passed through. Objects
+ * read here must not be modified by the caller; read-modify-write sequences
+ * go to the connector directly and write back through
+ * {@link #update(ApiObjectBase)} so the entry is invalidated. An object read
+ * while its entry was invalidated is returned but not cached, nor shared with
+ * the reads made after the invalidation. The UUIDs seen missing or existing
+ * are kept in a {@link NegativeLookupCache}.
+ */
+public class ApiObjectCache {
+    /**
+     * Logger instance.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(ApiObjectCache.class);
+    static final long DEFAULT_TTL_MILLIS = 30000;
+    static final long DEFAULT_MAX_SIZE = 10000;
+    static final int GENERATION_STRIPES = 64;
+    static final Set<Class<? extends ApiObjectBase>> CACHEABLE_TYPES = Collections.unmodifiableSet(new HashSet<Class<? extends ApiObjectBase>>(
+            Arrays.<Class<? extends ApiObjectBase>> asList(Project.class, VirtualNetwork.class, NetworkIpam.class)));
+
+    private final ApiConnector apiConnector;
+    private final Cache<CacheKey, ApiObjectBase> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final SingleFlight<CacheKey, ApiObjectBase> loads = new SingleFlight<CacheKey, ApiObjectBase>();
+    private final NegativeLookupCache negativeLookups;
+    // invalidations by stripe of keys, a load only caches its object if
+    // none happened to its key since it started
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    /**
+     * Creates a cache using the TTL and size limits defined by the
+     * plugin2oc.cache.ttl (milliseconds) and plugin2oc.cache.size properties.
+     *
+     * @param apiConnector
+     *            connector used to load entries that are not cached.
+     */
+    public ApiObjectCache(ApiConnector apiConnector) {
+        this(apiConnector, Long.getLong("plugin2oc.cache.ttl", DEFAULT_TTL_MILLIS), Long.getLong("plugin2oc.cache.size", DEFAULT_MAX_SIZE));
+    }
+
+    public ApiObjectCache(ApiConnector apiConnector, long ttlMillis, long maxSize) {
+        this(apiConnector, ttlMillis, maxSize, new NegativeLookupCache());
+    }
+
+    public ApiObjectCache(ApiConnector apiConnector, long ttlMillis, long maxSize, NegativeLookupCache negativeLookups) {
+        this.apiConnector = apiConnector;
+        this.cache = CacheBuilder.newBuilder().expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS).maximumSize(maxSize).build();
+        this.negativeLookups = negativeLookups;
+    }
+
+    /**
+     * Invoked to find an object by UUID, answering from the cache when the
+     * type is cacheable and a live entry exists. Missing objects are never
+     * cached. Concurrent reads of the same object share one API call.
+     *
+     * @param cls
+     *            Contrail type of the object.
+     * @param uuid
+     *            UUID of the object.
+     * @return the object, or null if the API server does not know it.
+     */
+    public ApiObjectBase findById(final Class<? extends ApiObjectBase> cls, final String uuid) throws IOException {
+        if (uuid == null) {
+            return apiConnector.findById(cls, uuid);
+        }
+        final CacheKey key = new CacheKey(cls, uuid);
+        if (CACHEABLE_TYPES.contains(cls)) {
+            ApiObjectBase object = cache.getIfPresent(key);
+            if (object != null) {
+                hits.incrementAndGet();
+                return object;
+            }
+            misses.incrementAndGet();
+        }
+        return loads.load(key, new SingleFlight.Load<ApiObjectBase>() {
+            @Override
+            public ApiObjectBase load() throws IOException {
+                return read(key);
+            }
+        });
+    }
+
+    /**
+     * Invoked to find an object by UUID as {@link #findById(Class, String)}
+     * does without blocking: the read runs on the API executor and a
+     * concurrent read of the same object is shared without holding a thread
+     * while it runs.
+     *
+     * @param cls
+     *            Contrail type of the object.
+     * @param uuid
+     *            UUID of the object.
+     * @param apiExecutor
+     *            executor running the read.
+     * @return future of the object, or of null if the API server does not
+     *         know it.
+     */
+    public ListenableFuture<ApiObjectBase> findByIdAsync(final Class<? extends ApiObjectBase> cls, final String uuid,
+            final ApiExecutor apiExecutor) {
+        if (uuid == null) {
+            return Futures.immediateFuture(null);
+        }
+        final CacheKey key = new CacheKey(cls, uuid);
+        if (CACHEABLE_TYPES.contains(cls)) {
+            ApiObjectBase object = cache.getIfPresent(key);
+            if (object != null) {
+                hits.incrementAndGet();
+                return Futures.immediateFuture(object);
+            }
+            misses.incrementAndGet();
+        }
+        return loads.submit(key, new Callable<ListenableFuture<ApiObjectBase>>() {
+            @Override
+            public ListenableFuture<ApiObjectBase> call() {
+                return apiExecutor.submit(new Callable<ApiObjectBase>() {
+                    @Override
+                    public ApiObjectBase call() throws IOException {
+                        return read(key);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Invoked to read an object from the API server, caching it if its type
+     * is cacheable.
+     */
+    private ApiObjectBase read(CacheKey key) throws IOException {
+        long generation = generations.get(stripe(key));
+        ApiObjectBase loaded = loaded(key.uuid, apiConnector.findById(key.cls, key.uuid));
+        if (loaded != null && CACHEABLE_TYPES.contains(key.cls)) {
+            put(key, loaded, generation);
+        }
+        return loaded;
+    }
+
+    private ApiObjectBase loaded(String uuid, ApiObjectBase object) {
+        if (object == null) {
+            negativeLookups.missing(uuid);
+        } else {
+            negativeLookups.existing(uuid);
+        }
+        return object;
+    }
+
+    /**
+     * Invoked to get the generation of the entry of an object before reading
+     * it, to be passed to {@link #preload(Class, ApiObjectBase, long)}.
+     */
+    public long getGeneration(Class<? extends ApiObjectBase> cls, String uuid) {
+        return generations.get(stripe(new CacheKey(cls, uuid)));
+    }
+
+    private static int stripe(CacheKey key) {
+        return key.hashCode() & (GENERATION_STRIPES - 1);
+    }
+
+    /**
+     * Invoked to cache a loaded object, unless its entry was invalidated since
+     * the load started. The generation is checked again after the put as an
+     * invalidation may run in between.
+     */
+    private void put(CacheKey key, ApiObjectBase object, long generation) {
+        int stripe = stripe(key);
+        if (generations.get(stripe) != generation) {
+            return;
+        }
+        cache.put(key, object);
+        if (generations.get(stripe) != generation) {
+            cache.asMap().remove(key, object);
+        }
+    }
+
+    /**
+     * Invoked before looking up a UUID expected to be new, e.g. the UUID of
+     * an object about to be created.
+     *
+     * @return true if the object can be taken as missing without a lookup;
+     *         if a create is refused then, the object must be looked up.
+     * @see NegativeLookupCache
+     */
+    public boolean isMissing(String uuid) {
+        return negativeLookups.isMissing(uuid);
+    }
+
+    /**
+     * Invoked to record that an object of a UUID exists, e.g. one listed in
+     * the {@link ObjectIndex}.
+     */
+    public void markExisting(String uuid) {
+        negativeLookups.existing(uuid);
+    }
+
+    /**
+     * Invoked to add an object read in bulk, unless a copy is already cached
+     * or the entry was invalidated since the generation was taken.
+     */
+    public void preload(Class<? extends ApiObjectBase> cls, ApiObjectBase object, long generation) {
+        if (object != null) {
+            negativeLookups.existing(object.getUuid());
+        }
+        if (CACHEABLE_TYPES.contains(cls) && object != null && object.getUuid() != null) {
+            CacheKey key = new CacheKey(cls, object.getUuid());
+            int stripe = stripe(key);
+            if (generations.get(stripe) == generation && cache.asMap().putIfAbsent(key, object) == null
+                    && generations.get(stripe) != generation) {
+                cache.asMap().remove(key, object);
+            }
+        }
+    }
+
+    /**
+     * Invoked to create an object through the connector and drop any cached
+     * copy of it.
+     */
+    public boolean create(ApiObjectBase object) throws IOException {
+        negativeLookups.existing(object.getUuid());
+        try {
+            return apiConnector.create(object);
+        } finally {
+            invalidate(object);
+        }
+    }
+
+    /**
+     * Invoked to update an object through the connector and drop any cached
+     * copy of it.
+     */
+    public boolean update(ApiObjectBase object) throws IOException {
+        try {
+            return apiConnector.update(object);
+        } finally {
+            invalidate(object);
+        }
+    }
+
+    /**
+     * Invoked to delete an object through the connector and drop any cached
+     * copy of it.
+     */
+    public void delete(ApiObjectBase object) throws IOException {
+        try {
+            apiConnector.delete(object);
+            negativeLookups.missing(object.getUuid());
+        } finally {
+            invalidate(object);
+        }
+    }
+
+    /**
+     * Invoked to delete an object not read through the connector and drop
+     * any cached copy of it.
+     */
+    public void delete(Class<? extends ApiObjectBase> cls, String uuid) throws IOException {
+        try {
+            apiConnector.delete(cls, uuid);
+            negativeLookups.missing(uuid);
+        } finally {
+            invalidate(cls, uuid);
+        }
+    }
+
+    /**
+     * Invoked to drop the cached copy of an object.
+     */
+    public void invalidate(ApiObjectBase object) {
+        if (object == null || object.getUuid() == null) {
+            return;
+        }
+        for (Class<? extends ApiObjectBase> cls : CACHEABLE_TYPES) {
+            if (cls.isInstance(object)) {
+                invalidate(cls, object.getUuid());
+            }
+        }
+    }
+
+    public void invalidate(Class<? extends ApiObjectBase> cls, String uuid) {
+        CacheKey key = new CacheKey(cls, uuid);
+        generations.incrementAndGet(stripe(key));
+        // a read started before the write must not answer the reads after it
+        loads.forget(key);
+        cache.invalidate(key);
+    }
+
+    public void invalidateAll() {
+        for (int stripe = 0; stripe < GENERATION_STRIPES; stripe++) {
+            generations.incrementAndGet(stripe);
+        }
+        loads.forgetAll();
+        cache.invalidateAll();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Invoked to get the number of lookups skipped as the object was taken
+     * as missing.
+     */
+    public long getSkippedLookupCount() {
+        return negativeLookups.getSkippedCount();
+    }
+
+    /**
+     * Invoked to get the number of reads answered by the API call of a
+     * concurrent read of the same object.
+     */
+    public long getSharedReadCount() {
+        return loads.getSharedCount();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    ApiConnector getApiConnector() {
+        return apiConnector;
+    }
+
+    /**
+     * Cache key made of the Contrail type and the object UUID.
+     */
+    static final class CacheKey {
+        private final Class<? extends ApiObjectBase> cls;
+        private final String uuid;
+
+        CacheKey(Class<? extends ApiObjectBase> cls, String uuid) {
+            this.cls = cls;
+            this.uuid = uuid;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey key = (CacheKey) other;
+            return cls.equals(key.cls) && uuid.equals(key.uuid);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * cls.hashCode() + uuid.hashCode();
+        }
+    }
+}
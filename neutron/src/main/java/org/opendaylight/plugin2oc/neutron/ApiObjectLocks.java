@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Serializes the read-modify-write sequences made on one API object, e.g. the
+ * subnet changes of a virtual network, while sequences on different objects
+ * run in parallel. Each object UUID has a queue of sequences: a sequence is
+ * submitted to the {@link ApiExecutor} once the previous one completed, so no
+ * thread waits for the lock. The time spent waiting is counted.
+ */
+public class ApiObjectLocks {
+    /**
+     * Logger instance.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(ApiObjectLocks.class);
+    static final long SLOW_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ApiExecutor apiExecutor;
+    private final ConcurrentMap<String, ListenableFuture<Void>> tails = new ConcurrentHashMap<String, ListenableFuture<Void>>();
+    private final AtomicLong locked = new AtomicLong();
+    private final AtomicLong contended = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public ApiObjectLocks(ApiExecutor apiExecutor) {
+        this.apiExecutor = apiExecutor;
+    }
+
+    /**
+     * Invoked to run a sequence of API calls once the sequences submitted
+     * before for the same object completed. The sequence runs as a whole on
+     * one {@link ApiExecutor} thread and should read the object itself, so
+     * that it changes its latest state.
+     *
+     * @param uuid
+     *            UUID of the object, a null UUID is not locked.
+     * @param sequence
+     *            the read-modify-write sequence.
+     * @return future of the result of the sequence.
+     */
+    public <T> ListenableFuture<T> submit(final String uuid, final Callable<T> sequence) {
+        if (uuid == null) {
+            return apiExecutor.submit(sequence);
+        }
+        final SettableFuture<Void> released = SettableFuture.create();
+        ListenableFuture<Void> previous = tails.put(uuid, released);
+        if (previous == null) {
+            previous = Futures.immediateFuture(null);
+        } else {
+            contended.incrementAndGet();
+        }
+        final long enqueued = System.nanoTime();
+        final AtomicBoolean started = new AtomicBoolean();
+        final ListenableFuture<T> result = ApiFutures.then(previous, new ApiFutures.Stage<Void, T>() {
+            @Override
+            public ListenableFuture<T> apply(Void input) {
+                return apiExecutor.submit(new Callable<T>() {
+                    @Override
+                    public T call() throws Exception {
+                        if (!started.compareAndSet(false, true)) {
+                            throw new CancellationException("Sequence on " + uuid + " cancelled");
+                        }
+                        long waited = System.nanoTime() - enqueued;
+                        recordWait(waited);
+                        if (waited >= SLOW_WAIT_NANOS) {
+                            LOGGER.debug("Waited " + TimeUnit.NANOSECONDS.toMillis(waited) + " ms for the lock on " + uuid);
+                        }
+                        try {
+                            return sequence.call();
+                        } finally {
+                            release(uuid, released);
+                        }
+                    }
+                });
+            }
+        });
+        result.addListener(new Runnable() {
+            @Override
+            public void run() {
+                // cancelled or failed before the sequence started
+                if (started.compareAndSet(false, true)) {
+                    release(uuid, released);
+                }
+            }
+        }, ApiFutures.DirectExecutor.INSTANCE);
+        return result;
+    }
+
+    private void release(String uuid, SettableFuture<Void> released) {
+        tails.remove(uuid, released);
+        released.set(null);
+    }
+
+    private void recordWait(long nanos) {
+        locked.incrementAndGet();
+        waitNanos.addAndGet(nanos);
+        long max = maxWaitNanos.get();
+        while (nanos > max && !maxWaitNanos.compareAndSet(max, nanos)) {
+            max = maxWaitNanos.get();
+        }
+    }
+
+    /**
+     * Invoked to get the number of sequences run.
+     */
+    public long getLockedCount() {
+        return locked.get();
+    }
+
+    /**
+     * Invoked to get the number of sequences that had to wait for another
+     * sequence on the same object.
+     */
+    public long getContendedCount() {
+        return contended.get();
+    }
+
+    /**
+     * Invoked to get the total time sequences waited for the lock, including
+     * the wait for an executor thread.
+     */
+    public long getWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.get());
+    }
+
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    /**
+     * Invoked to get the number of objects with sequences running or queued.
+     */
+    public int getLockedObjectCount() {
+        return tails.size();
+    }
+
+    ApiExecutor getApiExecutor() {
+        return apiExecutor;
+    }
+}
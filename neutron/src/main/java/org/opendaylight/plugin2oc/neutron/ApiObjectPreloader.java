@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.juniper.contrail.api.ApiObjectBase;
+import net.juniper.contrail.api.types.NetworkIpam;
+import net.juniper.contrail.api.types.Project;
+import net.juniper.contrail.api.types.VirtualNetwork;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Loads the Project, VirtualNetwork and NetworkIpam objects of the API server
+ * into the {@link ApiObjectCache} when the bundle starts, so the first
+ * requests after a restart do not pay the cold cache latency. The UUIDs of
+ * each type are listed in parallel, then the objects are read in pages of
+ * plugin2oc.preload.pageSize UUIDs by plugin2oc.preload.parallelism loaders
+ * on the {@link ApiExecutor}. Requests arriving during the warm-up are not
+ * delayed: objects not loaded yet are read through the cache as before.
+ */
+public class ApiObjectPreloader {
+    /**
+     * Logger instance.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(ApiObjectPreloader.class);
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int DEFAULT_PARALLELISM = 4;
+    static final List<Class<? extends ApiObjectBase>> PRELOADED_TYPES = new ArrayList<Class<? extends ApiObjectBase>>();
+    static {
+        PRELOADED_TYPES.add(Project.class);
+        PRELOADED_TYPES.add(VirtualNetwork.class);
+        PRELOADED_TYPES.add(NetworkIpam.class);
+    }
+
+    /**
+     * Warm-up state.
+     */
+    public enum State {
+        IDLE, LOADING, READY, FAILED
+    }
+
+    private final ApiObjectCache objectCache;
+    private final ApiExecutor apiExecutor;
+    private final int pageSize;
+    private final int parallelism;
+    private final Queue<Page> pages = new ConcurrentLinkedQueue<Page>();
+    private final Map<Class<? extends ApiObjectBase>, AtomicInteger> loaded = new ConcurrentHashMap<Class<? extends ApiObjectBase>, AtomicInteger>();
+    private final AtomicBoolean stopped = new AtomicBoolean();
+    private final AtomicBoolean failed = new AtomicBoolean();
+    private volatile State state = State.IDLE;
+    private volatile long startNanos;
+    private volatile long warmUpMillis;
+    private ListenableFuture<List<Void>> loading;
+
+    public ApiObjectPreloader(ApiObjectCache objectCache, ApiExecutor apiExecutor) {
+        this(objectCache, apiExecutor, Integer.getInteger("plugin2oc.preload.pageSize", DEFAULT_PAGE_SIZE), Integer.getInteger(
+                "plugin2oc.preload.parallelism", DEFAULT_PARALLELISM));
+    }
+
+    public ApiObjectPreloader(ApiObjectCache objectCache, ApiExecutor apiExecutor, int pageSize, int parallelism) {
+        this.objectCache = objectCache;
+        this.apiExecutor = apiExecutor;
+        this.pageSize = Math.max(1, pageSize);
+        this.parallelism = Math.max(1, parallelism);
+        for (Class<? extends ApiObjectBase> cls : PRELOADED_TYPES) {
+            loaded.put(cls, new AtomicInteger());
+        }
+    }
+
+    /**
+     * Invoked to start the warm-up, without waiting for it.
+     */
+    public synchronized void start() {
+        if (state != State.IDLE) {
+            return;
+        }
+        state = State.LOADING;
+        startNanos = System.nanoTime();
+        List<ListenableFuture<Void>> listings = new ArrayList<ListenableFuture<Void>>();
+        for (final Class<? extends ApiObjectBase> cls : PRELOADED_TYPES) {
+            listings.add(apiExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    try {
+                        list(cls);
+                    } catch (IOException e) {
+                        // the other types are still loaded
+                        LOGGER.error("IOException:     " + e);
+                        failed.set(true);
+                    }
+                    return null;
+                }
+            }));
+        }
+        loading = ApiFutures.then(Futures.allAsList(listings), new ApiFutures.Stage<List<Void>, List<Void>>() {
+            @Override
+            public ListenableFuture<List<Void>> apply(List<Void> listed) {
+                List<ListenableFuture<Void>> loaders = new ArrayList<ListenableFuture<Void>>();
+                for (int i = 0; i < parallelism; i++) {
+                    loaders.add(apiExecutor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws IOException {
+                            load();
+                            return null;
+                        }
+                    }));
+                }
+                return Futures.allAsList(loaders);
+            }
+        });
+        final ListenableFuture<List<Void>> result = loading;
+        result.addListener(new Runnable() {
+            @Override
+            public void run() {
+                finish(result);
+            }
+        }, ApiFutures.DirectExecutor.INSTANCE);
+    }
+
+    private void list(Class<? extends ApiObjectBase> cls) throws IOException {
+        List<? extends ApiObjectBase> objects = objectCache.getApiConnector().list(cls, null);
+        if (objects == null) {
+            return;
+        }
+        Page page = new Page(cls);
+        for (ApiObjectBase object : objects) {
+            if (object.getUuid() == null) {
+                continue;
+            }
+            page.uuids.add(object.getUuid());
+            if (page.uuids.size() == pageSize) {
+                pages.add(page);
+                page = new Page(cls);
+            }
+        }
+        if (!page.uuids.isEmpty()) {
+            pages.add(page);
+        }
+    }
+
+    /**
+     * Invoked by each loader to read pages until none is left.
+     */
+    private void load() throws IOException {
+        Page page;
+        while (!stopped.get() && (page = pages.poll()) != null) {
+            for (String uuid : page.uuids) {
+                if (stopped.get()) {
+                    return;
+                }
+                long generation = objectCache.getGeneration(page.cls, uuid);
+                ApiObjectBase object = objectCache.getApiConnector().findById(page.cls, uuid);
+                // deleted since it was listed
+                if (object != null) {
+                    objectCache.preload(page.cls, object, generation);
+                    loaded.get(page.cls).incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void finish(ListenableFuture<List<Void>> result) {
+        warmUpMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        try {
+            result.get();
+            state = stopped.get() || failed.get() ? State.FAILED : State.READY;
+        } catch (ExecutionException e) {
+            LOGGER.error("Exception :   " + e.getCause());
+            state = State.FAILED;
+        } catch (Exception e) {
+            state = State.FAILED;
+        }
+        pages.clear();
+        LOGGER.info("Warm-up " + state + " in " + warmUpMillis + " ms, projects : " + getLoadedCount(Project.class) + "  networks : "
+                + getLoadedCount(VirtualNetwork.class) + "  IPAMs : " + getLoadedCount(NetworkIpam.class));
+    }
+
+    /**
+     * Invoked to stop a warm-up in progress.
+     */
+    public synchronized void shutdown() {
+        stopped.set(true);
+        if (loading != null) {
+            loading.cancel(false);
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Invoked to get the duration of the warm-up, once completed.
+     */
+    public long getWarmUpMillis() {
+        return warmUpMillis;
+    }
+
+    /**
+     * Invoked to get the number of objects of a type loaded so far.
+     */
+    public int getLoadedCount(Class<? extends ApiObjectBase> cls) {
+        AtomicInteger count = loaded.get(cls);
+        return count == null ? 0 : count.get();
+    }
+
+    ApiObjectCache getObjectCache() {
+        return objectCache;
+    }
+
+    /**
+     * UUIDs of objects of one type read by a loader.
+     */
+    private static final class Page {
+        final Class<? extends ApiObjectBase> cls;
+        final List<String> uuids = new ArrayList<String>();
+
+        Page(Class<? extends ApiObjectBase> cls) {
+            this.cls = cls;
+        }
+    }
+}
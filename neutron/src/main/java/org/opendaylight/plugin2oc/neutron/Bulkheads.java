@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Separate limits on the network, subnet and port operations in progress,
+ * set by the plugin2oc.bulkhead.network, plugin2oc.bulkhead.subnet and
+ * plugin2oc.bulkhead.port properties, so a slow API server cannot hold every
+ * northbound thread with one kind of operation. An operation is refused at
+ * once when its limit is reached or when the {@link CircuitBreaker} is open,
+ * and the handlers answer HTTP_UNAVAILABLE.
+ */
+public class Bulkheads {
+    static final int DEFAULT_LIMIT = 32;
+
+    /**
+     * Kinds of operations limited separately.
+     */
+    public enum Kind {
+        NETWORK, SUBNET, PORT
+    }
+
+    private final CircuitBreaker breaker;
+    private final Map<Kind, Semaphore> permits = new EnumMap<Kind, Semaphore>(Kind.class);
+    private final Map<Kind, AtomicLong> rejected = new EnumMap<Kind, AtomicLong>(Kind.class);
+
+    public Bulkheads(CircuitBreaker breaker) {
+        this(breaker, Integer.getInteger("plugin2oc.bulkhead.network", DEFAULT_LIMIT), Integer.getInteger("plugin2oc.bulkhead.subnet",
+                DEFAULT_LIMIT), Integer.getInteger("plugin2oc.bulkhead.port", DEFAULT_LIMIT));
+    }
+
+    public Bulkheads(CircuitBreaker breaker, int networks, int subnets, int ports) {
+        this.breaker = breaker;
+        permits.put(Kind.NETWORK, new Semaphore(Math.max(1, networks)));
+        permits.put(Kind.SUBNET, new Semaphore(Math.max(1, subnets)));
+        permits.put(Kind.PORT, new Semaphore(Math.max(1, ports)));
+        for (Kind kind : Kind.values()) {
+            rejected.put(kind, new AtomicLong());
+        }
+    }
+
+    /**
+     * Invoked before an operation is started, without waiting.
+     *
+     * @return false if the operation must be refused; otherwise
+     *         {@link #release(Kind)} must be invoked once it completes.
+     */
+    public boolean tryAcquire(Kind kind) {
+        if (!breaker.isOpen() && permits.get(kind).tryAcquire()) {
+            return true;
+        }
+        rejected.get(kind).incrementAndGet();
+        return false;
+    }
+
+    public void release(Kind kind) {
+        permits.get(kind).release();
+    }
+
+    /**
+     * Invoked to get the number of operations of a kind refused.
+     */
+    public long getRejectedCount(Kind kind) {
+        return rejected.get(kind).get();
+    }
+
+    public int getAvailableCount(Kind kind) {
+        return permits.get(kind).availablePermits();
+    }
+
+    CircuitBreaker getCircuitBreaker() {
+        return breaker;
+    }
+}
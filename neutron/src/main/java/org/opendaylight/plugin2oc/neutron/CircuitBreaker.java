@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker for the calls to the API server. After
+ * plugin2oc.breaker.failureThreshold consecutive calls failed, or took more
+ * than plugin2oc.breaker.slowCallMillis, the breaker opens and the calls are
+ * rejected without reaching the API server for plugin2oc.breaker.openMillis.
+ * It then lets plugin2oc.breaker.probes calls through: the breaker closes if
+ * they succeed and opens again otherwise.
+ */
+public class CircuitBreaker {
+    /**
+     * Logger instance.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+    static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    static final long DEFAULT_OPEN_MILLIS = 10000;
+    static final long DEFAULT_SLOW_CALL_MILLIS = 10000;
+    static final int DEFAULT_PROBES = 1;
+
+    /**
+     * Breaker states.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Thrown for the calls rejected while the breaker is open.
+     */
+    public static class OpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public OpenException() {
+            super("API server circuit breaker is open");
+        }
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final long slowCallNanos;
+    private final int maxProbes;
+    private final AtomicLong openedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private volatile State state = State.CLOSED;
+    private volatile int failures;
+    private long openedAt;
+    private int probes;
+
+    public CircuitBreaker() {
+        this(Integer.getInteger("plugin2oc.breaker.failureThreshold", DEFAULT_FAILURE_THRESHOLD), Long.getLong("plugin2oc.breaker.openMillis",
+                DEFAULT_OPEN_MILLIS), Long.getLong("plugin2oc.breaker.slowCallMillis", DEFAULT_SLOW_CALL_MILLIS), Integer.getInteger(
+                "plugin2oc.breaker.probes", DEFAULT_PROBES));
+    }
+
+    public CircuitBreaker(int failureThreshold, long openMillis, long slowCallMillis, int probes) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.maxProbes = Math.max(1, probes);
+    }
+
+    /**
+     * Invoked before a call to the API server.
+     *
+     * @return false if the call must be rejected.
+     */
+    public boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        synchronized (this) {
+            if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+                transition(State.HALF_OPEN);
+                probes = 0;
+            }
+            if (state == State.CLOSED || state == State.HALF_OPEN && probes < maxProbes) {
+                if (state == State.HALF_OPEN) {
+                    probes++;
+                }
+                return true;
+            }
+        }
+        rejectedCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Invoked to check, without taking a probe, whether calls would be
+     * rejected, so an operation can be refused before it starts.
+     */
+    public boolean isOpen() {
+        if (state == State.CLOSED) {
+            return false;
+        }
+        synchronized (this) {
+            if (state == State.OPEN) {
+                return System.nanoTime() - openedAt < openNanos;
+            }
+            return state == State.HALF_OPEN && probes >= maxProbes;
+        }
+    }
+
+    /**
+     * Invoked when a call returned. Slow calls count as failures.
+     *
+     * @param nanos
+     *            latency of the call.
+     */
+    public void onSuccess(long nanos) {
+        if (nanos >= slowCallNanos) {
+            onFailure();
+            return;
+        }
+        if (state == State.CLOSED && failures == 0) {
+            return;
+        }
+        synchronized (this) {
+            failures = 0;
+            if (state == State.HALF_OPEN) {
+                transition(State.CLOSED);
+            }
+        }
+    }
+
+    /**
+     * Invoked when a call failed.
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transition(State.OPEN);
+        } else if (state == State.CLOSED && ++failures >= failureThreshold) {
+            transition(State.OPEN);
+        }
+    }
+
+    private void transition(State next) {
+        if (next == State.OPEN) {
+            openedAt = System.nanoTime();
+            openedCount.incrementAndGet();
+            LOGGER.error("API server circuit breaker opened, calls rejected for " + TimeUnit.NANOSECONDS.toMillis(openNanos) + " ms");
+        } else {
+            LOGGER.info("API server circuit breaker " + next);
+        }
+        failures = 0;
+        state = next;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Invoked to get the number of times the breaker opened.
+     */
+    public long getOpenedCount() {
+        return openedCount.get();
+    }
+
+    /**
+     * Invoked to get the number of calls rejected by the breaker.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+}
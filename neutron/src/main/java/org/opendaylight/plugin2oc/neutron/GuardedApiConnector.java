@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.io.IOException;
+import java.util.List;
+
+import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.ApiObjectBase;
+import net.juniper.contrail.api.ApiPropertyBase;
+import net.juniper.contrail.api.ObjectReference;
+
+/**
+ * ApiConnector passing the calls to another connector through a
+ * {@link CircuitBreaker}: while it is open the calls fail at once with a
+ * {@link CircuitBreaker.OpenException} instead of waiting for the API server.
+ */
+public class GuardedApiConnector implements ApiConnector {
+    private final ApiConnector delegate;
+    private final CircuitBreaker breaker;
+
+    public GuardedApiConnector(ApiConnector delegate, CircuitBreaker breaker) {
+        this.delegate = delegate;
+        this.breaker = breaker;
+    }
+
+    public ApiConnector getDelegate() {
+        return delegate;
+    }
+
+    private long acquire() throws IOException {
+        if (!breaker.tryAcquire()) {
+            throw new CircuitBreaker.OpenException();
+        }
+        return System.nanoTime();
+    }
+
+    @Override
+    public boolean create(ApiObjectBase obj) throws IOException {
+        long startTime = acquire();
+        try {
+            boolean result = delegate.create(obj);
+            breaker.onSuccess(System.nanoTime() - startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean read(ApiObjectBase obj) throws IOException {
+        long startTime = acquire();
+        try {
+            boolean result = delegate.read(obj);
+            breaker.onSuccess(System.nanoTime() - startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean update(ApiObjectBase obj) throws IOException {
+        long startTime = acquire();
+        try {
+            boolean result = delegate.update(obj);
+            breaker.onSuccess(System.nanoTime() - startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+    }
+
+    @Override
+    public void delete(ApiObjectBase obj) throws IOException {
+        long startTime = acquire();
+        try {
+            delegate.delete(obj);
+            breaker.onSuccess(System.nanoTime() - startTime);
+        } catch (IOException | RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+    }
+
+    @Override
+    public void delete(Class<? extends ApiObjectBase> cls, String uuid) throws IOException {
+        long startTime = acquire();
+        try {
+            delegate.delete(cls, uuid);
+            breaker.onSuccess(System.nanoTime() - startTime);
+        } catch (IOException | RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+    }
+
+    @Override
+    public ApiObjectBase find(Class<? extends ApiObjectBase> cls, ApiObjectBase parent, String name) throws IOException {
+        long startTime = acquire();
+        try {
+            ApiObjectBase result = delegate.find(cls, parent, name);
+            breaker.onSuccess(System.nanoTime() - startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+    }
+
+    @Override
+    public ApiObjectBase findByFQN(Class<? extends ApiObjectBase> cls, String fullName) throws IOException {
+        long startTime = acquire();
+        try {
+            ApiObjectBase result = delegate.findByFQN(cls, fullName);
+            breaker.onSuccess(System.nanoTime() - startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+    }
+
+    @Override
+    public ApiObjectBase findById(Class<? extends ApiObjectBase> cls, String uuid) throws IOException {
+        long startTime = acquire();
+        try {
+            ApiObjectBase result = delegate.findById(cls, uuid);
+            breaker.onSuccess(System.nanoTime() - startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+    }
+
+    @Override
+    public String findByName(Class<? extends ApiObjectBase> cls, List<String> nameList) throws IOException {
+        long startTime = acquire();
+        try {
+            String result = delegate.findByName(cls, nameList);
+            breaker.onSuccess(System.nanoTime() - startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+    }
+
+    @Override
+    public String findByName(Class<? extends ApiObjectBase> cls, ApiObjectBase parent, String name) throws IOException {
+        long startTime = acquire();
+        try {
+            String result = delegate.findByName(cls, parent, name);
+            breaker.onSuccess(System.nanoTime() - startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+    }
+
+    @Override
+    public List<? extends ApiObjectBase> list(Class<? extends ApiObjectBase> cls, List<String> parent) throws IOException {
+        long startTime = acquire();
+        try {
+            List<? extends ApiObjectBase> result = delegate.list(cls, parent);
+            breaker.onSuccess(System.nanoTime() - startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+    }
+
+    @Override
+    public <T extends ApiPropertyBase> List<? extends ApiObjectBase> getObjects(Class<? extends ApiObjectBase> cls, List<ObjectReference<T>> refList)
+            throws IOException {
+        long startTime = acquire();
+        try {
+            List<? extends ApiObjectBase> result = delegate.getObjects(cls, refList);
+            breaker.onSuccess(System.nanoTime() - startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+    }
+
+    @Override
+    public void dispose() {
+        delegate.dispose();
+    }
+}
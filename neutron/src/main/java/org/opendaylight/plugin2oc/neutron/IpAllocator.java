@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.opendaylight.controller.networkconfig.neutron.NeutronSubnet_IPAllocationPool;
+
+import com.google.common.net.InetAddresses;
+
+/**
+ * Allocates the IPv4 addresses of one subnet. Each address of the subnet is
+ * a bit of a bitmap which is set while the address is in use; addresses out
+ * of the allocation pools, the network and broadcast addresses and the
+ * gateway are never handed out. Bits are flipped with compare-and-set and the
+ * search for a free address starts where the previous one ended, so
+ * allocation and release take amortized constant time without locking.
+ */
+public class IpAllocator {
+    /**
+     * Smallest prefix length accepted, bounding the bitmap to 2^24 bits.
+     */
+    static final int MIN_PREFIX_LEN = 8;
+
+    private final int network;
+    private final int size;
+    private final AtomicLongArray bitmap;
+    /**
+     * Addresses that may be handed out, never modified after construction.
+     */
+    private final BitSet allocatable;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final AtomicInteger available = new AtomicInteger();
+
+    /**
+     * @param cidr
+     *            CIDR of the subnet.
+     * @param pools
+     *            allocation pools of the subnet, every host address is
+     *            allocatable if there is none.
+     * @param gateway
+     *            gateway IP of the subnet, may be null.
+     * @throws IllegalArgumentException
+     *             if the CIDR is not an IPv4 subnet of prefix length 8 or
+     *             more.
+     */
+    public IpAllocator(String cidr, List<NeutronSubnet_IPAllocationPool> pools, String gateway) {
+        String[] ipPrefix = cidr.split("/");
+        if (ipPrefix.length != 2) {
+            throw new IllegalArgumentException("String " + cidr + " not in correct format..");
+        }
+        int prefixLen = Integer.parseInt(ipPrefix[1].trim());
+        if (prefixLen < MIN_PREFIX_LEN || prefixLen > 32) {
+            throw new IllegalArgumentException("Unsupported prefix length for " + cidr);
+        }
+        this.size = (int) (1L << (32 - prefixLen));
+        this.network = toInt(ipPrefix[0]) & (int) -(1L << (32 - prefixLen));
+        this.bitmap = new AtomicLongArray((size + 63) / 64);
+        this.allocatable = new BitSet(size);
+        for (int i = 0; i < bitmap.length(); i++) {
+            bitmap.set(i, -1L);
+        }
+        if (pools == null || pools.isEmpty()) {
+            int first = size > 2 ? 1 : 0;
+            int last = size > 2 ? size - 2 : size - 1;
+            free(first, last);
+        } else {
+            for (NeutronSubnet_IPAllocationPool pool : pools) {
+                free(Math.max(0, offset(pool.getPoolStart())), Math.min(size - 1, offset(pool.getPoolEnd())));
+            }
+        }
+        if (gateway != null && !gateway.isEmpty()) {
+            int offset = offset(gateway);
+            if (offset >= 0 && allocatable.get(offset)) {
+                reserve(gateway);
+                allocatable.clear(offset);
+            }
+        }
+    }
+
+    private void free(int first, int last) {
+        for (int i = first; i <= last; i++) {
+            if (!allocatable.get(i)) {
+                allocatable.set(i);
+                bitmap.set(i >>> 6, bitmap.get(i >>> 6) & ~(1L << (i & 63)));
+                available.incrementAndGet();
+            }
+        }
+    }
+
+    static int toInt(String address) {
+        InetAddress inetAddress = InetAddresses.forString(address.trim());
+        if (!(inetAddress instanceof Inet4Address)) {
+            throw new IllegalArgumentException(address + " is not an IPv4 address");
+        }
+        return InetAddresses.coerceToInteger(inetAddress);
+    }
+
+    /**
+     * Invoked to get the position of an address in the subnet, or -1 if the
+     * address does not belong to it.
+     */
+    private int offset(String address) {
+        long offset;
+        try {
+            offset = (toInt(address) - network) & 0xffffffffL;
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+        return offset < size ? (int) offset : -1;
+    }
+
+    /**
+     * Invoked to hand out a free address.
+     *
+     * @return the allocated address, or null if the subnet is exhausted.
+     */
+    public String allocate() {
+        int words = bitmap.length();
+        int start = cursor.get();
+        for (int n = 0; n <= words; n++) {
+            int index = (start + n) % words;
+            long word = bitmap.get(index);
+            while (word != -1L) {
+                long bit = Long.lowestOneBit(~word);
+                if (bitmap.compareAndSet(index, word, word | bit)) {
+                    available.decrementAndGet();
+                    cursor.set(index);
+                    return InetAddresses.fromInteger(network + index * 64 + Long.numberOfTrailingZeros(bit)).getHostAddress();
+                }
+                word = bitmap.get(index);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Invoked to mark an address as used, e.g. a fixed IP requested for a
+     * port or an address read back from an existing InstanceIp.
+     *
+     * @return true if the address was free, false if it was in use or may
+     *         not be allocated.
+     */
+    public boolean reserve(String address) {
+        int offset = offset(address);
+        if (offset < 0 || !allocatable.get(offset)) {
+            return false;
+        }
+        long bit = 1L << (offset & 63);
+        while (true) {
+            long word = bitmap.get(offset >>> 6);
+            if ((word & bit) != 0) {
+                return false;
+            }
+            if (bitmap.compareAndSet(offset >>> 6, word, word | bit)) {
+                available.decrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Invoked to give an allocated address back.
+     *
+     * @return true if the address was in use.
+     */
+    public boolean release(String address) {
+        int offset = offset(address);
+        if (offset < 0 || !allocatable.get(offset)) {
+            return false;
+        }
+        long bit = 1L << (offset & 63);
+        while (true) {
+            long word = bitmap.get(offset >>> 6);
+            if ((word & bit) == 0) {
+                return false;
+            }
+            if (bitmap.compareAndSet(offset >>> 6, word, word & ~bit)) {
+                available.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    public boolean contains(String address) {
+        return offset(address) >= 0;
+    }
+
+    public int getAvailableCount() {
+        return available.get();
+    }
+}
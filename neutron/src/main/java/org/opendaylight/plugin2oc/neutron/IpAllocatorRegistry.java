@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.ApiObjectBase;
+import net.juniper.contrail.api.ApiPropertyBase;
+import net.juniper.contrail.api.ObjectReference;
+import net.juniper.contrail.api.types.InstanceIp;
+import net.juniper.contrail.api.types.VirtualNetwork;
+
+import org.opendaylight.controller.networkconfig.neutron.NeutronSubnet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the {@link IpAllocator} of every subnet and the address held by each
+ * InstanceIp created through them. The allocator of a subnet created by this
+ * plugin is registered with the subnet; for a subnet that already existed,
+ * e.g. after a restart, the allocator is built on first use and seeded with
+ * the addresses of the InstanceIps the API server has for the network.
+ */
+public class IpAllocatorRegistry {
+    /**
+     * Logger instance.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(IpAllocatorRegistry.class);
+
+    private final ApiConnector apiConnector;
+    private final ConcurrentMap<String, IpAllocator> allocators = new ConcurrentHashMap<String, IpAllocator>();
+    private final ConcurrentMap<String, Lease> leases = new ConcurrentHashMap<String, Lease>();
+
+    /**
+     * Address held by an InstanceIp.
+     */
+    private static final class Lease {
+        final IpAllocator allocator;
+        final String address;
+
+        Lease(IpAllocator allocator, String address) {
+            this.allocator = allocator;
+            this.address = address;
+        }
+    }
+
+    public IpAllocatorRegistry(ApiConnector apiConnector) {
+        this.apiConnector = apiConnector;
+    }
+
+    /**
+     * Invoked when a subnet is created, it has no address in use yet.
+     */
+    public void register(NeutronSubnet subnet) {
+        IpAllocator allocator = newAllocator(subnet);
+        if (allocator != null) {
+            allocators.put(subnet.getSubnetUUID(), allocator);
+        }
+    }
+
+    /**
+     * Invoked when a subnet is deleted.
+     */
+    public void remove(String subnetUUID) {
+        allocators.remove(subnetUUID);
+    }
+
+    private IpAllocator newAllocator(NeutronSubnet subnet) {
+        try {
+            return new IpAllocator(subnet.getCidr(), subnet.getAllocationPools(), subnet.getGatewayIP());
+        } catch (IllegalArgumentException e) {
+            LOGGER.debug("No local allocator for subnet " + subnet.getCidr() + " : " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Invoked to get the allocator of a subnet, building it from the
+     * InstanceIps of the network, as read from the API server, if the subnet
+     * is not known yet.
+     *
+     * @return the allocator, or null if the subnet can not be allocated from
+     *         locally.
+     */
+    IpAllocator getAllocator(NeutronSubnet subnet, VirtualNetwork virtualNetwork) throws IOException {
+        IpAllocator allocator = allocators.get(subnet.getSubnetUUID());
+        if (allocator != null) {
+            return allocator;
+        }
+        allocator = newAllocator(subnet);
+        if (allocator == null) {
+            return null;
+        }
+        // the network passed in may come from the cache, read the
+        // InstanceIps in use from the API server
+        Map<String, String> inUse = readAddresses(virtualNetwork.getUuid());
+        if (inUse == null) {
+            return null;
+        }
+        Map<String, String> addresses = new HashMap<String, String>();
+        for (Map.Entry<String, String> address : inUse.entrySet()) {
+            if (allocator.contains(address.getValue())) {
+                allocator.reserve(address.getValue());
+                addresses.put(address.getKey(), address.getValue());
+            }
+        }
+        IpAllocator existing = allocators.putIfAbsent(subnet.getSubnetUUID(), allocator);
+        if (existing != null) {
+            // built concurrently by another request
+            return existing;
+        }
+        for (Map.Entry<String, String> address : addresses.entrySet()) {
+            leases.put(address.getKey(), new Lease(allocator, address.getValue()));
+        }
+        LOGGER.info("Address allocator of subnet " + subnet.getCidr() + " rebuilt with " + addresses.size() + " address(es) in use");
+        return allocator;
+    }
+
+    /**
+     * Invoked to read the addresses of the InstanceIps of a network from the
+     * API server.
+     *
+     * @return the addresses by InstanceIp UUID, or null if the network does
+     *         not exist.
+     */
+    private Map<String, String> readAddresses(String networkUUID) throws IOException {
+        VirtualNetwork virtualNetwork = (VirtualNetwork) apiConnector.findById(VirtualNetwork.class, networkUUID);
+        if (virtualNetwork == null) {
+            return null;
+        }
+        Map<String, String> addresses = new HashMap<String, String>();
+        List<ObjectReference<ApiPropertyBase>> instanceIpRefs = virtualNetwork.getInstanceIpBackRefs();
+        if (instanceIpRefs != null && !instanceIpRefs.isEmpty()) {
+            List<? extends ApiObjectBase> instanceIps = apiConnector.getObjects(InstanceIp.class, instanceIpRefs);
+            if (instanceIps != null) {
+                for (ApiObjectBase object : instanceIps) {
+                    InstanceIp instanceIp = (InstanceIp) object;
+                    if (instanceIp.getAddress() != null) {
+                        addresses.put(instanceIp.getUuid(), instanceIp.getAddress());
+                    }
+                }
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * Invoked when the creation of an InstanceIp is refused to tell if its
+     * address is held by another InstanceIp of the network.
+     */
+    public boolean isInUse(String networkUUID, String address) throws IOException {
+        Map<String, String> addresses = readAddresses(networkUUID);
+        return addresses != null && addresses.containsValue(address);
+    }
+
+    /**
+     * Invoked to allocate an address of the subnet for an InstanceIp.
+     *
+     * @return the address, or null if the subnet can not be allocated from
+     *         locally or is exhausted.
+     */
+    public String allocate(NeutronSubnet subnet, VirtualNetwork virtualNetwork, String instanceIpUUID) throws IOException {
+        IpAllocator allocator = getAllocator(subnet, virtualNetwork);
+        if (allocator == null) {
+            return null;
+        }
+        String address = allocator.allocate();
+        if (address != null) {
+            leases.put(instanceIpUUID, new Lease(allocator, address));
+        }
+        return address;
+    }
+
+    /**
+     * Invoked when an InstanceIp is given a fixed address, so that the
+     * allocator of the subnet, if already built, never hands it out.
+     */
+    public void reserve(String subnetUUID, String address, String instanceIpUUID) {
+        IpAllocator allocator = subnetUUID != null ? allocators.get(subnetUUID) : null;
+        // an address reserved already is not ours to give back
+        if (allocator != null && allocator.reserve(address)) {
+            leases.put(instanceIpUUID, new Lease(allocator, address));
+        }
+    }
+
+    /**
+     * Invoked when the creation of an InstanceIp with an allocated address is
+     * refused, the address stays reserved as it may be in use already.
+     */
+    public void abandon(String instanceIpUUID) {
+        Lease lease = leases.remove(instanceIpUUID);
+        if (lease != null) {
+            LOGGER.warn("Address " + lease.address + " kept reserved");
+        }
+    }
+
+    /**
+     * Invoked when an InstanceIp is deleted or readdressed to give its
+     * address back.
+     */
+    public void release(String instanceIpUUID) {
+        Lease lease = leases.remove(instanceIpUUID);
+        if (lease != null) {
+            lease.allocator.release(lease.address);
+        }
+    }
+
+    public int getAllocatorCount() {
+        return allocators.size();
+    }
+
+    ApiConnector getApiConnector() {
+        return apiConnector;
+    }
+}
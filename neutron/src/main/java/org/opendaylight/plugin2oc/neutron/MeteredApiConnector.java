@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.io.IOException;
+import java.util.List;
+
+import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.ApiObjectBase;
+import net.juniper.contrail.api.ApiPropertyBase;
+import net.juniper.contrail.api.ObjectReference;
+
+/**
+ * ApiConnector recording the latency of every call made through another
+ * connector in the {@link PluginMetrics}, by method and result: calls
+ * returning false are recorded as failed, calls throwing as errors.
+ */
+public class MeteredApiConnector implements ApiConnector {
+    private final ApiConnector delegate;
+    private final PluginMetrics metrics;
+
+    public MeteredApiConnector(ApiConnector delegate, PluginMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    public ApiConnector getDelegate() {
+        return delegate;
+    }
+
+    private void record(String call, String result, long startTime) {
+        metrics.recordApiCall(call, result, System.nanoTime() - startTime);
+    }
+
+    private boolean record(String call, boolean result, long startTime) {
+        record(call, result ? PluginMetrics.RESULT_OK : PluginMetrics.RESULT_FAILED, startTime);
+        return result;
+    }
+
+    @Override
+    public boolean create(ApiObjectBase obj) throws IOException {
+        long startTime = System.nanoTime();
+        try {
+            return record("create", delegate.create(obj), startTime);
+        } catch (IOException | RuntimeException e) {
+            record("create", PluginMetrics.RESULT_ERROR, startTime);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean read(ApiObjectBase obj) throws IOException {
+        long startTime = System.nanoTime();
+        try {
+            return record("read", delegate.read(obj), startTime);
+        } catch (IOException | RuntimeException e) {
+            record("read", PluginMetrics.RESULT_ERROR, startTime);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean update(ApiObjectBase obj) throws IOException {
+        long startTime = System.nanoTime();
+        try {
+            return record("update", delegate.update(obj), startTime);
+        } catch (IOException | RuntimeException e) {
+            record("update", PluginMetrics.RESULT_ERROR, startTime);
+            throw e;
+        }
+    }
+
+    @Override
+    public void delete(ApiObjectBase obj) throws IOException {
+        long startTime = System.nanoTime();
+        try {
+            delegate.delete(obj);
+            record("delete", PluginMetrics.RESULT_OK, startTime);
+        } catch (IOException | RuntimeException e) {
+            record("delete", PluginMetrics.RESULT_ERROR, startTime);
+            throw e;
+        }
+    }
+
+    @Override
+    public void delete(Class<? extends ApiObjectBase> cls, String uuid) throws IOException {
+        long startTime = System.nanoTime();
+        try {
+            delegate.delete(cls, uuid);
+            record("delete", PluginMetrics.RESULT_OK, startTime);
+        } catch (IOException | RuntimeException e) {
+            record("delete", PluginMetrics.RESULT_ERROR, startTime);
+            throw e;
+        }
+    }
+
+    @Override
+    public ApiObjectBase find(Class<? extends ApiObjectBase> cls, ApiObjectBase parent, String name) throws IOException {
+        long startTime = System.nanoTime();
+        try {
+            ApiObjectBase result = delegate.find(cls, parent, name);
+            record("find", PluginMetrics.RESULT_OK, startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            record("find", PluginMetrics.RESULT_ERROR, startTime);
+            throw e;
+        }
+    }
+
+    @Override
+    public ApiObjectBase findByFQN(Class<? extends ApiObjectBase> cls, String fullName) throws IOException {
+        long startTime = System.nanoTime();
+        try {
+            ApiObjectBase result = delegate.findByFQN(cls, fullName);
+            record("findByFQN", PluginMetrics.RESULT_OK, startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            record("findByFQN", PluginMetrics.RESULT_ERROR, startTime);
+            throw e;
+        }
+    }
+
+    @Override
+    public ApiObjectBase findById(Class<? extends ApiObjectBase> cls, String uuid) throws IOException {
+        long startTime = System.nanoTime();
+        try {
+            ApiObjectBase result = delegate.findById(cls, uuid);
+            record("findById", PluginMetrics.RESULT_OK, startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            record("findById", PluginMetrics.RESULT_ERROR, startTime);
+            throw e;
+        }
+    }
+
+    @Override
+    public String findByName(Class<? extends ApiObjectBase> cls, List<String> nameList) throws IOException {
+        long startTime = System.nanoTime();
+        try {
+            String result = delegate.findByName(cls, nameList);
+            record("findByName", PluginMetrics.RESULT_OK, startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            record("findByName", PluginMetrics.RESULT_ERROR, startTime);
+            throw e;
+        }
+    }
+
+    @Override
+    public String findByName(Class<? extends ApiObjectBase> cls, ApiObjectBase parent, String name) throws IOException {
+        long startTime = System.nanoTime();
+        try {
+            String result = delegate.findByName(cls, parent, name);
+            record("findByName", PluginMetrics.RESULT_OK, startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            record("findByName", PluginMetrics.RESULT_ERROR, startTime);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<? extends ApiObjectBase> list(Class<? extends ApiObjectBase> cls, List<String> parent) throws IOException {
+        long startTime = System.nanoTime();
+        try {
+            List<? extends ApiObjectBase> result = delegate.list(cls, parent);
+            record("list", PluginMetrics.RESULT_OK, startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            record("list", PluginMetrics.RESULT_ERROR, startTime);
+            throw e;
+        }
+    }
+
+    @Override
+    public <T extends ApiPropertyBase> List<? extends ApiObjectBase> getObjects(Class<? extends ApiObjectBase> cls, List<ObjectReference<T>> refList)
+            throws IOException {
+        long startTime = System.nanoTime();
+        try {
+            List<? extends ApiObjectBase> result = delegate.getObjects(cls, refList);
+            record("getObjects", PluginMetrics.RESULT_OK, startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            record("getObjects", PluginMetrics.RESULT_ERROR, startTime);
+            throw e;
+        }
+    }
+
+    @Override
+    public void dispose() {
+        delegate.dispose();
+    }
+}
@@ -0,0 +1,485 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-ahead journal of the port mutations made of several API calls, kept
+ * in a memory-mapped file so an entry survives the controller process the
+ * moment it is written. Each mutation takes one fixed-size slot of a ring,
+ * written before its first API call and marked complete in place after the
+ * last one; the slots still open when the file is opened again are the
+ * mutations interrupted by a restart. Writing an entry does not allocate.
+ * <p>
+ * The pages are written to disk by the operating system. With
+ * plugin2oc.journal.sync set to true each new entry also waits for the file
+ * to be forced to disk, the entries written meanwhile being forced together.
+ */
+public class MutationJournal {
+    /**
+     * Logger instance.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(MutationJournal.class);
+    static final int DEFAULT_SLOTS = 16384;
+    static final long NO_ENTRY = -1;
+
+    /**
+     * Port creation: the virtual machine, interface and instance IP. Each
+     * object created is marked, an interrupted creation rolls back only the
+     * objects it marked.
+     */
+    public static final int PORT_CREATE = 1;
+    /**
+     * Port deletion: the instance IPs, interface and unused virtual machine.
+     */
+    public static final int PORT_DELETE = 2;
+    /**
+     * Set on a port creation once it created the virtual machine.
+     */
+    public static final int VIRTUAL_MACHINE_CREATED = 1;
+    /**
+     * Set on a port creation once it created the virtual machine interface.
+     */
+    public static final int INTERFACE_CREATED = 2;
+    /**
+     * Set on a port creation once it created the instance IP.
+     */
+    public static final int INSTANCE_IP_CREATED = 4;
+
+    static final int MAGIC = 0x50324f4a;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int SLOT_SIZE = 64;
+    static final int FREE = 0;
+    static final int OPEN = 1;
+    static final int DONE = 2;
+    // slot layout
+    static final int SEQUENCE = 0;
+    static final int STATE = 8;
+    static final int OPERATION = 12;
+    static final int FLAGS = 13;
+    static final int PORT = 16;
+    static final int DEVICE = 32;
+    static final int TIME = 48;
+    static final int CHECKSUM = 56;
+
+    /**
+     * Journal that records nothing, used when the file cannot be opened.
+     */
+    static final MutationJournal DISABLED = new MutationJournal(null, null, 0, false);
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int slots;
+    private final boolean sync;
+    private final AtomicIntegerArray open;
+    private final AtomicLong nextSequence = new AtomicLong(1);
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong unjournaled = new AtomicLong();
+    private final List<Entry> unfinished = new ArrayList<Entry>();
+    private final Object flushLock = new Object();
+    private long flushRequested;
+    private long flushed;
+    private volatile boolean closed;
+    private Thread flusher;
+
+    /**
+     * Mutation left open by a previous run.
+     */
+    public static final class Entry {
+        final long handle;
+        final int operation;
+        final String portUUID;
+        final String deviceUUID;
+        final int flags;
+
+        Entry(long handle, int operation, String portUUID, String deviceUUID, int flags) {
+            this.handle = handle;
+            this.operation = operation;
+            this.portUUID = portUUID;
+            this.deviceUUID = deviceUUID;
+            this.flags = flags;
+        }
+
+        public long getHandle() {
+            return handle;
+        }
+
+        public int getOperation() {
+            return operation;
+        }
+
+        public String getPortUUID() {
+            return portUUID;
+        }
+
+        /**
+         * @return the UUID of the virtual machine, null if none.
+         */
+        public String getDeviceUUID() {
+            return deviceUUID;
+        }
+
+        public boolean isVirtualMachineCreated() {
+            return (flags & VIRTUAL_MACHINE_CREATED) != 0;
+        }
+
+        public boolean isInterfaceCreated() {
+            return (flags & INTERFACE_CREATED) != 0;
+        }
+
+        public boolean isInstanceIpCreated() {
+            return (flags & INSTANCE_IP_CREATED) != 0;
+        }
+    }
+
+    private MutationJournal(RandomAccessFile file, MappedByteBuffer buffer, int slots, boolean sync) {
+        this.file = file;
+        this.buffer = buffer;
+        this.slots = slots;
+        this.sync = sync;
+        this.open = new AtomicIntegerArray(Math.max(1, slots));
+    }
+
+    /**
+     * Invoked to open the journal file given by the plugin2oc.journal.file
+     * property, plugin2oc.journal.slots mutations long. The journal is
+     * disabled if the property is set to an empty value or the file cannot be
+     * opened.
+     */
+    public static MutationJournal open() {
+        String path = System.getProperty("plugin2oc.journal.file", "plugin2oc.journal");
+        if (path.trim().isEmpty()) {
+            return DISABLED;
+        }
+        try {
+            return open(new File(path), Integer.getInteger("plugin2oc.journal.slots", DEFAULT_SLOTS), Boolean.parseBoolean(System.getProperty(
+                    "plugin2oc.journal.sync", "false")));
+        } catch (IOException e) {
+            LOGGER.error("Exception :   " + e);
+            return DISABLED;
+        }
+    }
+
+    /**
+     * Invoked to open or create a journal file, collecting the mutations it
+     * holds that were not completed.
+     *
+     * @param path
+     *            journal file.
+     * @param slots
+     *            number of mutations the file holds, when it is created.
+     * @param sync
+     *            whether new entries wait for the file to be forced to disk.
+     */
+    public static MutationJournal open(File path, int slots, boolean sync) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try {
+            boolean existing = file.length() >= HEADER_SIZE && file.readInt() == MAGIC && file.readInt() == VERSION
+                    && file.readInt() == SLOT_SIZE;
+            if (existing) {
+                slots = file.readInt();
+            } else {
+                slots = Math.max(1, slots);
+                file.setLength(0);
+            }
+            long length = HEADER_SIZE + (long) slots * SLOT_SIZE;
+            file.setLength(length);
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            if (!existing) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, SLOT_SIZE);
+                buffer.putInt(12, slots);
+                buffer.force();
+            }
+            MutationJournal journal = new MutationJournal(file, buffer, slots, sync);
+            journal.scan();
+            if (sync) {
+                journal.startFlusher();
+            }
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Invoked when the file is opened to find the open slots and the next
+     * sequence number.
+     */
+    private void scan() {
+        long lastSequence = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            int offset = offset(slot);
+            long sequence = buffer.getLong(offset + SEQUENCE);
+            int state = buffer.getInt(offset + STATE);
+            if (state == FREE || !isValid(offset)) {
+                continue;
+            }
+            lastSequence = Math.max(lastSequence, sequence);
+            if (state == OPEN) {
+                open.set(slot, 1);
+                unfinished.add(new Entry(sequence, buffer.get(offset + OPERATION), toString(offset + PORT), toString(offset + DEVICE), buffer
+                        .get(offset + FLAGS)));
+            }
+        }
+        nextSequence.set(lastSequence + 1);
+        if (!unfinished.isEmpty()) {
+            LOGGER.info(unfinished.size() + " unfinished mutation(s) found in the journal");
+        }
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private int slot(long handle) {
+        return (int) ((handle - 1) % slots);
+    }
+
+    /**
+     * Invoked before the first API call of a mutation.
+     *
+     * @param operation
+     *            PORT_CREATE or PORT_DELETE.
+     * @param portUUID
+     *            UUID of the port.
+     * @param deviceUUID
+     *            UUID of the virtual machine of the port, null or empty if
+     *            none.
+     * @return handle of the entry, NO_ENTRY if the mutation is not journaled.
+     */
+    public long begin(int operation, String portUUID, String deviceUUID) {
+        if (buffer == null || closed || !Uuids.isUuid(portUUID)) {
+            return NO_ENTRY;
+        }
+        for (int attempt = 0; attempt < slots; attempt++) {
+            long sequence = nextSequence.getAndIncrement();
+            int slot = slot(sequence);
+            // skip the slots of mutations still running since the last lap
+            if (!open.compareAndSet(slot, 0, 1)) {
+                continue;
+            }
+            int offset = offset(slot);
+            buffer.putInt(offset + STATE, FREE);
+            buffer.putLong(offset + SEQUENCE, sequence);
+            buffer.put(offset + OPERATION, (byte) operation);
+            buffer.put(offset + FLAGS, (byte) 0);
+            buffer.putLong(offset + PORT, Uuids.parseHalf(portUUID, 0));
+            buffer.putLong(offset + PORT + 8, Uuids.parseHalf(portUUID, 16));
+            boolean hasDevice = Uuids.isUuid(deviceUUID);
+            buffer.putLong(offset + DEVICE, hasDevice ? Uuids.parseHalf(deviceUUID, 0) : 0);
+            buffer.putLong(offset + DEVICE + 8, hasDevice ? Uuids.parseHalf(deviceUUID, 16) : 0);
+            buffer.putLong(offset + TIME, System.currentTimeMillis());
+            buffer.putLong(offset + CHECKSUM, checksum(offset));
+            buffer.putInt(offset + STATE, OPEN);
+            written.incrementAndGet();
+            if (sync) {
+                awaitFlush();
+            }
+            return sequence;
+        }
+        unjournaled.incrementAndGet();
+        return NO_ENTRY;
+    }
+
+    /**
+     * Invoked when a step of a mutation completed.
+     *
+     * @param handle
+     *            handle returned by begin.
+     * @param flag
+     *            step to record: VIRTUAL_MACHINE_CREATED, INTERFACE_CREATED
+     *            or INSTANCE_IP_CREATED.
+     */
+    public void mark(long handle, int flag) {
+        if (handle == NO_ENTRY || buffer == null) {
+            return;
+        }
+        int offset = offset(slot(handle));
+        if (buffer.getLong(offset + SEQUENCE) == handle) {
+            buffer.put(offset + FLAGS, (byte) (buffer.get(offset + FLAGS) | flag));
+            if (sync) {
+                awaitFlush();
+            }
+        }
+    }
+
+    /**
+     * Invoked after the last API call of a mutation, whatever its result.
+     */
+    public void complete(long handle) {
+        if (handle == NO_ENTRY || buffer == null) {
+            return;
+        }
+        int slot = slot(handle);
+        int offset = offset(slot);
+        if (buffer.getLong(offset + SEQUENCE) == handle) {
+            buffer.putInt(offset + STATE, DONE);
+            open.set(slot, 0);
+            if (sync) {
+                requestFlush();
+            }
+        }
+    }
+
+    /**
+     * Invoked to get the mutations left open by the previous run, found when
+     * the journal was opened. They stay open until completed.
+     */
+    public List<Entry> getUnfinished() {
+        return Collections.unmodifiableList(unfinished);
+    }
+
+    private long checksum(int offset) {
+        long hash = buffer.getLong(offset + SEQUENCE) ^ ((long) buffer.get(offset + OPERATION) << 56);
+        for (int field = PORT; field < CHECKSUM; field += 8) {
+            hash = (hash ^ buffer.getLong(offset + field)) * 0x9e3779b97f4a7c15L;
+            hash ^= hash >>> 29;
+        }
+        return hash;
+    }
+
+    /**
+     * Invoked to check a slot was entirely written before a crash.
+     */
+    private boolean isValid(int offset) {
+        return buffer.getLong(offset + CHECKSUM) == checksum(offset);
+    }
+
+    private String toString(int offset) {
+        long mostSigBits = buffer.getLong(offset);
+        long leastSigBits = buffer.getLong(offset + 8);
+        if (mostSigBits == 0 && leastSigBits == 0) {
+            return null;
+        }
+        return new UUID(mostSigBits, leastSigBits).toString();
+    }
+
+    private void startFlusher() {
+        flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, "plugin2oc-journal");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Invoked by the flusher thread to force the file to disk whenever
+     * entries were written, the entries written during a force being forced
+     * by the next one.
+     */
+    private void flush() {
+        while (true) {
+            long target;
+            synchronized (flushLock) {
+                while (flushRequested == flushed && !closed) {
+                    try {
+                        flushLock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    flushLock.notifyAll();
+                    return;
+                }
+                target = flushRequested;
+            }
+            buffer.force();
+            synchronized (flushLock) {
+                flushed = target;
+                flushLock.notifyAll();
+            }
+        }
+    }
+
+    private long requestFlush() {
+        synchronized (flushLock) {
+            long ticket = ++flushRequested;
+            flushLock.notifyAll();
+            return ticket;
+        }
+    }
+
+    private void awaitFlush() {
+        long ticket = requestFlush();
+        boolean interrupted = false;
+        synchronized (flushLock) {
+            while (flushed < ticket && !closed) {
+                try {
+                    flushLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Invoked to get the number of entries written.
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /**
+     * Invoked to get the number of mutations not journaled because every slot
+     * was open.
+     */
+    public long getUnjournaledCount() {
+        return unjournaled.get();
+    }
+
+    public boolean isEnabled() {
+        return buffer != null;
+    }
+
+    /**
+     * Invoked to force the file to disk and close it. The entries still open
+     * are found again by the next run.
+     */
+    public void close() {
+        if (buffer == null) {
+            return;
+        }
+        synchronized (flushLock) {
+            closed = true;
+            flushLock.notifyAll();
+        }
+        buffer.force();
+        try {
+            file.close();
+        } catch (IOException e) {
+            LOGGER.error("Exception :   " + e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
+
+/**
+ * Knowledge of the UUIDs that do not exist on the API server, so the create
+ * paths can skip the lookup of a UUID expected to be new. A UUID is taken as
+ * missing if the API server did not know it or the plugin deleted it during
+ * the last plugin2oc.negative.ttl milliseconds, or if the plugin never saw
+ * an object of that UUID: a bloom filter sized for plugin2oc.negative.expected
+ * UUIDs holds every UUID found, preloaded or created.
+ * <p>
+ * Objects created by other clients are not seen, so the answer is a guess:
+ * a create made without a lookup must, when the API server refuses it, look
+ * the object up and answer as the lookup would have.
+ */
+public class NegativeLookupCache {
+    static final long DEFAULT_TTL_MILLIS = 5000;
+    static final int DEFAULT_EXPECTED = 100000;
+    static final double FALSE_POSITIVE_RATE = 0.01;
+    static final int MAX_MISSING = 10000;
+
+    /**
+     * Funnel of the two halves of a UUID.
+     */
+    enum UuidFunnel implements Funnel<UUID> {
+        INSTANCE;
+
+        @Override
+        public void funnel(UUID uuid, PrimitiveSink into) {
+            into.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+        }
+    }
+
+    private final Cache<UUID, Boolean> missing;
+    private final BloomFilter<UUID> known;
+    private final AtomicLong skipped = new AtomicLong();
+
+    public NegativeLookupCache() {
+        this(Long.getLong("plugin2oc.negative.ttl", DEFAULT_TTL_MILLIS), Integer.getInteger("plugin2oc.negative.expected", DEFAULT_EXPECTED));
+    }
+
+    /**
+     * @param ttlMillis
+     *            how long a missing UUID is remembered, 0 to forget it at
+     *            once.
+     * @param expected
+     *            number of UUIDs the bloom filter is sized for, 0 to disable
+     *            it so that unknown UUIDs are always looked up.
+     */
+    public NegativeLookupCache(long ttlMillis, int expected) {
+        missing = ttlMillis > 0 ? CacheBuilder.newBuilder().expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS).maximumSize(MAX_MISSING)
+                .<UUID, Boolean> build() : null;
+        known = expected > 0 ? BloomFilter.create(UuidFunnel.INSTANCE, expected, FALSE_POSITIVE_RATE) : null;
+    }
+
+    /**
+     * Invoked when the API server did not know a UUID or the plugin deleted
+     * its object.
+     */
+    public void missing(String uuid) {
+        UUID key = Uuids.parse(uuid);
+        if (key != null && missing != null) {
+            missing.put(key, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Invoked when an object of a UUID was found, or before the plugin
+     * creates it.
+     */
+    public void existing(String uuid) {
+        UUID key = Uuids.parse(uuid);
+        if (key == null) {
+            return;
+        }
+        if (known != null) {
+            synchronized (known) {
+                known.put(key);
+            }
+        }
+        if (missing != null) {
+            missing.invalidate(key);
+        }
+    }
+
+    /**
+     * Invoked before a lookup of a UUID expected to be new.
+     *
+     * @return true if the lookup can be skipped.
+     */
+    public boolean isMissing(String uuid) {
+        UUID key = Uuids.parse(uuid);
+        if (key == null) {
+            return false;
+        }
+        boolean absent = missing != null && missing.getIfPresent(key) != null;
+        if (!absent && known != null) {
+            synchronized (known) {
+                absent = !known.mightContain(key);
+            }
+        }
+        if (absent) {
+            skipped.incrementAndGet();
+        }
+        return absent;
+    }
+
+    /**
+     * Invoked to get the number of lookups skipped.
+     */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+}
@@ -10,10 +10,14 @@ package org.opendaylight.plugin2oc.neutron;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 
 import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.ApiObjectBase;
 import net.juniper.contrail.api.types.Project;
+import net.juniper.contrail.api.types.VirtualMachineInterface;
 import net.juniper.contrail.api.types.VirtualNetwork;
 
 import org.opendaylight.controller.networkconfig.neutron.INeutronNetworkAware;
@@ -21,6 +25,8 @@ import org.opendaylight.controller.networkconfig.neutron.NeutronNetwork;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 /**
  * Handle requests for Neutron Network.
  */
@@ -29,7 +35,9 @@ public class NetworkHandler implements INeutronNetworkAware {
      * Logger instance.
      */
     static final Logger LOGGER = LoggerFactory.getLogger(NetworkHandler.class);
+    static final String PORT_BACK_REFS = ProjectedReader.backRefsOf(VirtualMachineInterface.class);
     static ApiConnector apiConnector;
+    static ApiObjectCache objectCache;
 
     /**
      * Invoked when a network creation is requested to check if the specified
@@ -42,30 +50,56 @@ public class NetworkHandler implements INeutronNetworkAware {
      */
     @Override
     public int canCreateNetwork(NeutronNetwork network) {
+        long startTime = System.nanoTime();
+        Bulkheads bulkheads = Activator.getBulkheads();
+        if (!bulkheads.tryAcquire(Bulkheads.Kind.NETWORK)) {
+            return ApiFutures.unavailable("network creation", startTime);
+        }
+        try {
+            return ApiFutures.await("network creation", startTime, createNetworkAsync(network));
+        } finally {
+            bulkheads.release(Bulkheads.Kind.NETWORK);
+        }
+    }
+
+    /**
+     * Invoked to check if the specified network can be created and then
+     * create it, without waiting for the API server.
+     *
+     * @param network
+     *            An instance of proposed new Neutron Network object.
+     *
+     * @return A future of the HTTP status code to the creation request.
+     */
+    public ListenableFuture<Integer> createNetworkAsync(final NeutronNetwork network) {
         if (network == null) {
             LOGGER.error("Network object can't be null..");
-            return HttpURLConnection.HTTP_BAD_REQUEST;
+            return ApiFutures.status(HttpURLConnection.HTTP_BAD_REQUEST);
         }
         LOGGER.debug("Network object " + network);
         apiConnector = Activator.apiConnector;
+        objectCache = Activator.getObjectCache();
         if (network.getNetworkUUID() == null || network.getNetworkName() == null || network.getNetworkUUID().equals("")
                 || network.getNetworkName().equals("")) {
             LOGGER.error("Network UUID and Network Name can't be null/empty...");
-            return HttpURLConnection.HTTP_BAD_REQUEST;
+            return ApiFutures.status(HttpURLConnection.HTTP_BAD_REQUEST);
         }
         if (network.getTenantID() == null) {
             LOGGER.error("Network tenant Id can not be null");
-            return HttpURLConnection.HTTP_BAD_REQUEST;
-        }
-        try {
-            return createNetwork(network);
-        } catch (IOException ie) {
-            LOGGER.error("IOException :   " + ie);
-            return HttpURLConnection.HTTP_INTERNAL_ERROR;
-        } catch (Exception e) {
-            LOGGER.error("Exception :   " + e);
-            return HttpURLConnection.HTTP_INTERNAL_ERROR;
+            return ApiFutures.status(HttpURLConnection.HTTP_BAD_REQUEST);
         }
+        // a retry sent while the creation is in progress shares its status
+        return Activator.getInFlightOperations().submit("network:" + network.getNetworkUUID(), new Callable<ListenableFuture<Integer>>() {
+            @Override
+            public ListenableFuture<Integer> call() {
+                try {
+                    return createNetwork(network);
+                } catch (Exception e) {
+                    LOGGER.error("Exception :   " + e);
+                    return ApiFutures.status(HttpURLConnection.HTTP_INTERNAL_ERROR);
+                }
+            }
+        });
     }
 
     /**
@@ -75,32 +109,30 @@ public class NetworkHandler implements INeutronNetworkAware {
      *            An instance of new Neutron Network object.
      */
     @Override
-    public void neutronNetworkCreated(NeutronNetwork network) {
-        VirtualNetwork virtualNetwork = null;
-        try {
-            virtualNetwork = (VirtualNetwork) apiConnector.findById(VirtualNetwork.class, network.getNetworkUUID());
-            if (virtualNetwork != null) {
-                LOGGER.info("Network creation verified....");
+    public void neutronNetworkCreated(final NeutronNetwork network) {
+        final ProjectedReader reader = Activator.getProjectedReader();
+        Activator.getVerifier().verify("network.created:" + network.getNetworkUUID(), new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws IOException {
+                return reader.exists(VirtualNetwork.class, network.getNetworkUUID());
             }
-        } catch (Exception e) {
-            LOGGER.error("Exception :     " + e);
-        }
+        });
     }
 
     /**
-     * Invoked to create the specified Neutron Network.
+     * Invoked to create the specified Neutron Network once the lookup of its
+     * project completes. The network is not looked up first, a duplicate is
+     * told by the API server refusing the create.
      *
      * @param network
      *            An instance of new Neutron Network object.
      *
-     * @return A HTTP status code to the creation request.
+     * @return A future of the HTTP status code to the creation request.
      */
-    private int createNetwork(NeutronNetwork network) throws IOException {
-        VirtualNetwork virtualNetwork = null;
-        String networkUUID = null;
+    private ListenableFuture<Integer> createNetwork(final NeutronNetwork network) {
         String projectUUID = null;
         try {
-            networkUUID = UUID.fromString(network.getNetworkUUID()).toString();
+            UUID.fromString(network.getNetworkUUID());
             projectUUID = network.getTenantID().toString();
             if (!(projectUUID.contains("-"))) {
                 projectUUID = uuidFormater(projectUUID);
@@ -109,41 +141,93 @@ public class NetworkHandler implements INeutronNetworkAware {
             LOGGER.info("projectUUID 2  " + projectUUID);
         } catch (Exception ex) {
             LOGGER.error("UUID input incorrect", ex);
-            return HttpURLConnection.HTTP_BAD_REQUEST;
+            return ApiFutures.status(HttpURLConnection.HTTP_BAD_REQUEST);
         }
-        virtualNetwork = (VirtualNetwork) apiConnector.findById(VirtualNetwork.class, networkUUID);
-        Project project = (Project) apiConnector.findById(Project.class, projectUUID);
-        if (project == null) {
-            try {
-                Thread.currentThread();
-                Thread.sleep(3000);
-            } catch (InterruptedException e) {
-                LOGGER.error("InterruptedException :    ", e);
-            }
-            project = (Project) apiConnector.findById(Project.class, projectUUID);
-            if (project == null) {
-                LOGGER.error("Could not find projectUUID...");
-                return HttpURLConnection.HTTP_NOT_FOUND;
+        ListenableFuture<Project> projectLookup = Activator.getProjectResolver().resolveAsync(projectUUID, Activator.getApiExecutor());
+        return ApiFutures.then(projectLookup, new ApiFutures.Stage<Project, Integer>() {
+            @Override
+            public ListenableFuture<Integer> apply(Project project) throws IOException {
+                return ApiFutures.status(createNetwork(network, project));
             }
+        });
+    }
+
+    /**
+     * Invoked to create the specified Neutron Network.
+     *
+     * @param network
+     *            An instance of new Neutron Network object.
+     * @param project
+     *            The project of the network, if found.
+     *
+     * @return A HTTP status code to the creation request.
+     */
+    private int createNetwork(NeutronNetwork network, Project project) throws IOException {
+        if (project == null) {
+            LOGGER.error("Could not find projectUUID...");
+            return HttpURLConnection.HTTP_NOT_FOUND;
         }
-        if (virtualNetwork != null) {
-            LOGGER.warn("Network already exists..");
-            return HttpURLConnection.HTTP_FORBIDDEN;
-        }
-        virtualNetwork = new VirtualNetwork();
+        VirtualNetwork virtualNetwork = new VirtualNetwork();
         // map neutronNetwork to virtualNetwork
         virtualNetwork = mapNetworkProperties(network, virtualNetwork);
         virtualNetwork.setParent(project);
-        boolean networkCreated = apiConnector.create(virtualNetwork);
+        boolean networkCreated = objectCache.create(virtualNetwork);
         LOGGER.debug("networkCreated:   " + networkCreated);
         if (!networkCreated) {
-            LOGGER.warn("Network creation failed..");
-            return HttpURLConnection.HTTP_INTERNAL_ERROR;
+            return createRefused(network, project);
         }
+        Activator.getObjectIndex().putNetwork(virtualNetwork.getUuid(), project.getUuid());
         LOGGER.info("Network : " + virtualNetwork.getName() + "  having UUID : " + virtualNetwork.getUuid() + "  sucessfully created...");
         return HttpURLConnection.HTTP_OK;
     }
 
+    /**
+     * Invoked when the API server refused to create a network, to tell a
+     * duplicate from a failure. A network of the same UUID, name and project
+     * was created by an earlier attempt of the same request, e.g. one whose
+     * answer was lost.
+     *
+     * @param network
+     *            An instance of new Neutron Network object.
+     * @param project
+     *            The project of the network.
+     *
+     * @return HTTP_OK for a retry, HTTP_FORBIDDEN if another network has the
+     *         same UUID or name, else HTTP_INTERNAL_ERROR.
+     */
+    private int createRefused(NeutronNetwork network, Project project) throws IOException {
+        VirtualNetwork existing = (VirtualNetwork) apiConnector.findById(VirtualNetwork.class, network.getNetworkUUID());
+        if (existing != null && existing.getName() != null && existing.getName().equals(network.getNetworkName())
+                && Objects.equals(existing.getParentUuid(), project.getUuid())) {
+            Activator.getObjectIndex().putNetwork(existing.getUuid(), project.getUuid());
+            LOGGER.info("Network : " + existing.getName() + "  having UUID : " + existing.getUuid() + "  already created by the request...");
+            return HttpURLConnection.HTTP_OK;
+        }
+        if (existing != null || apiConnector.findByName(VirtualNetwork.class, project, network.getNetworkName()) != null) {
+            LOGGER.warn("Network already exists..");
+            return HttpURLConnection.HTTP_FORBIDDEN;
+        }
+        LOGGER.warn("Network creation failed..");
+        return HttpURLConnection.HTTP_INTERNAL_ERROR;
+    }
+
+    /**
+     * Invoked to build a lookup of a virtual network that can run on the
+     * {@link ApiExecutor}.
+     *
+     * @param networkUUID
+     *            UUID of the network.
+     */
+    private Callable<ApiObjectBase> lookup(final String networkUUID) {
+        final ApiConnector connector = apiConnector;
+        return new Callable<ApiObjectBase>() {
+            @Override
+            public ApiObjectBase call() throws IOException {
+                return connector.findById(VirtualNetwork.class, networkUUID);
+            }
+        };
+    }
+
     /**
      * Invoked to map the NeutronNetwork object properties to the virtualNetwork
      * object.
@@ -175,36 +259,52 @@ public class NetworkHandler implements INeutronNetworkAware {
      */
     @Override
     public int canUpdateNetwork(NeutronNetwork deltaNetwork, NeutronNetwork originalNetwork) {
-        VirtualNetwork virtualnetwork = new VirtualNetwork();
+        long startTime = System.nanoTime();
+        Bulkheads bulkheads = Activator.getBulkheads();
+        if (!bulkheads.tryAcquire(Bulkheads.Kind.NETWORK)) {
+            return ApiFutures.unavailable("network update", startTime);
+        }
+        try {
+            return ApiFutures.await("network update", startTime, updateNetworkAsync(deltaNetwork, originalNetwork));
+        } finally {
+            bulkheads.release(Bulkheads.Kind.NETWORK);
+        }
+    }
+
+    /**
+     * Invoked to check if the specified network can be changed using the
+     * specified delta and then update it, without waiting for the API server.
+     *
+     * @param delta
+     *            Updates to the network object using patch semantics.
+     * @param original
+     *            An instance of the Neutron Network object to be updated.
+     * @return A future of the HTTP status code to the update request.
+     */
+    public ListenableFuture<Integer> updateNetworkAsync(final NeutronNetwork deltaNetwork, NeutronNetwork originalNetwork) {
         apiConnector = Activator.apiConnector;
+        objectCache = Activator.getObjectCache();
         if (deltaNetwork == null || originalNetwork == null) {
             LOGGER.error("Neutron Networks can't be null..");
-            return HttpURLConnection.HTTP_BAD_REQUEST;
+            return ApiFutures.status(HttpURLConnection.HTTP_BAD_REQUEST);
         }
         if (("").equals(deltaNetwork.getNetworkName())) {
             LOGGER.error("Neutron Networks name to be update can't be empty..");
-            return HttpURLConnection.HTTP_BAD_REQUEST;
+            return ApiFutures.status(HttpURLConnection.HTTP_BAD_REQUEST);
         }
-        try {
-            virtualnetwork = (VirtualNetwork) apiConnector.findById(VirtualNetwork.class, originalNetwork.getNetworkUUID());
-        } catch (IOException e) {
-            LOGGER.error("Exception :     " + e);
-            return HttpURLConnection.HTTP_INTERNAL_ERROR;
-        }
-        if (virtualnetwork == null) {
-            LOGGER.error("No network exists for the specified UUID...");
-            return HttpURLConnection.HTTP_FORBIDDEN;
-        } else {
-            try {
+        // serialized with the subnet changes, which write the network too
+        final Callable<ApiObjectBase> networkLookup = lookup(originalNetwork.getNetworkUUID());
+        return Activator.getObjectLocks().submit(originalNetwork.getNetworkUUID(), new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                VirtualNetwork virtualnetwork = (VirtualNetwork) networkLookup.call();
+                if (virtualnetwork == null) {
+                    LOGGER.error("No network exists for the specified UUID...");
+                    return HttpURLConnection.HTTP_FORBIDDEN;
+                }
                 return updateNetwork(deltaNetwork, virtualnetwork);
-            } catch (IOException ie) {
-                LOGGER.error("IOException:     " + ie);
-                return HttpURLConnection.HTTP_INTERNAL_ERROR;
-            } catch (Exception e) {
-                LOGGER.error("Exception:     " + e);
-                return HttpURLConnection.HTTP_INTERNAL_ERROR;
             }
-        }
+        });
     }
 
     /**
@@ -222,7 +322,7 @@ public class NetworkHandler implements INeutronNetworkAware {
         virtualNetwork.setName(networkName);
         virtualNetwork.setDisplayName(networkName);
         {
-            boolean networkUpdate = apiConnector.update(virtualNetwork);
+            boolean networkUpdate = objectCache.update(virtualNetwork);
             if (!networkUpdate) {
                 LOGGER.warn("Network Updation failed..");
                 return HttpURLConnection.HTTP_INTERNAL_ERROR;
@@ -239,18 +339,15 @@ public class NetworkHandler implements INeutronNetworkAware {
      *            An instance of modified Neutron Network object.
      */
     @Override
-    public void neutronNetworkUpdated(NeutronNetwork network) {
-        try {
-            VirtualNetwork virtualnetwork = new VirtualNetwork();
-            virtualnetwork = (VirtualNetwork) apiConnector.findById(VirtualNetwork.class, network.getNetworkUUID());
-            if (network.getNetworkName().equalsIgnoreCase(virtualnetwork.getDisplayName())) {
-                LOGGER.info("Network updatation verified....");
-            } else {
-                LOGGER.info("Network updatation failed....");
+    public void neutronNetworkUpdated(final NeutronNetwork network) {
+        final ProjectedReader reader = Activator.getProjectedReader();
+        Activator.getVerifier().verify("network.updated:" + network.getNetworkUUID(), new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws IOException {
+                ProjectedReader.Fields virtualnetwork = reader.readFields(VirtualNetwork.class, network.getNetworkUUID(), ProjectedReader.DISPLAY_NAME);
+                return network.getNetworkName().equalsIgnoreCase(virtualnetwork.get(ProjectedReader.DISPLAY_NAME));
             }
-        } catch (Exception e) {
-            LOGGER.error("Exception :" + e);
-        }
+        });
     }
 
     /**
@@ -263,26 +360,81 @@ public class NetworkHandler implements INeutronNetworkAware {
      */
     @Override
     public int canDeleteNetwork(NeutronNetwork network) {
+        long startTime = System.nanoTime();
+        Bulkheads bulkheads = Activator.getBulkheads();
+        if (!bulkheads.tryAcquire(Bulkheads.Kind.NETWORK)) {
+            return ApiFutures.unavailable("network deletion", startTime);
+        }
+        try {
+            return ApiFutures.await("network deletion", startTime, deleteNetworkAsync(network));
+        } finally {
+            bulkheads.release(Bulkheads.Kind.NETWORK);
+        }
+    }
+
+    /**
+     * Invoked to check if the specified network can be deleted and then
+     * delete it, without waiting for the API server.
+     *
+     * @param network
+     *            An instance of the Neutron Network object to be deleted.
+     * @return A future of the HTTP status code to the deletion request.
+     */
+    public ListenableFuture<Integer> deleteNetworkAsync(final NeutronNetwork network) {
         apiConnector = Activator.apiConnector;
-        VirtualNetwork virtualNetwork = null;
+        objectCache = Activator.getObjectCache();
         try {
-            virtualNetwork = (VirtualNetwork) apiConnector.findById(VirtualNetwork.class, network.getNetworkUUID());
-            if (virtualNetwork != null) {
-                if (virtualNetwork.getVirtualMachineInterfaceBackRefs() != null) {
-                    LOGGER.info("Network with UUID :  " + network.getNetworkUUID() + " cannot be deleted as it has port(s) associated with it....");
-                    return HttpURLConnection.HTTP_FORBIDDEN;
-                } else {
-                    apiConnector.delete(virtualNetwork);
-                    LOGGER.info("Network with UUID :  " + network.getNetworkUUID() + "  has been deleted successfully....");
-                    return HttpURLConnection.HTTP_OK;
+            final ProjectedReader reader = Activator.getProjectedReader();
+            return Activator.getObjectLocks().submit(network.getNetworkUUID(), new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    // only the refs of the ports are read, not the network;
+                    // the API server decides, the index may be stale
+                    ProjectedReader.Fields virtualNetwork = reader.readFields(VirtualNetwork.class, network.getNetworkUUID(), PORT_BACK_REFS);
+                    if (virtualNetwork != null && !virtualNetwork.has(PORT_BACK_REFS)) {
+                        ObjectIndex index = Activator.getObjectIndex();
+                        for (String portUUID : index.getPorts(network.getNetworkUUID())) {
+                            LOGGER.warn("Port " + portUUID + " no longer on network " + network.getNetworkUUID() + ", dropped from the index");
+                            index.remove(portUUID);
+                        }
+                    }
+                    return deleteNetwork(network, virtualNetwork);
                 }
-            } else {
-                LOGGER.info("No Network exists with UUID :  " + network.getNetworkUUID());
-                return HttpURLConnection.HTTP_BAD_REQUEST;
-            }
+            });
         } catch (Exception e) {
             LOGGER.error("Exception : " + e);
-            return HttpURLConnection.HTTP_INTERNAL_ERROR;
+            return ApiFutures.status(HttpURLConnection.HTTP_INTERNAL_ERROR);
+        }
+    }
+
+    /**
+     * Invoked to delete the specified Neutron Network.
+     *
+     * @param network
+     *            An instance of the Neutron Network object to be deleted.
+     * @param virtualNetwork
+     *            The port back-refs of the virtual network of the same UUID,
+     *            if any.
+     * @return A HTTP status code to the deletion request.
+     */
+    private int deleteNetwork(NeutronNetwork network, ProjectedReader.Fields virtualNetwork) throws IOException {
+        if (virtualNetwork != null) {
+            if (virtualNetwork.has(PORT_BACK_REFS)) {
+                LOGGER.info("Network with UUID :  " + network.getNetworkUUID() + " cannot be deleted as it has port(s) associated with it....");
+                return HttpURLConnection.HTTP_FORBIDDEN;
+            } else {
+                objectCache.delete(VirtualNetwork.class, virtualNetwork.getUuid());
+                ObjectIndex index = Activator.getObjectIndex();
+                for (String subnetUUID : index.getSubnets(virtualNetwork.getUuid())) {
+                    index.remove(subnetUUID);
+                }
+                index.remove(virtualNetwork.getUuid());
+                LOGGER.info("Network with UUID :  " + network.getNetworkUUID() + "  has been deleted successfully....");
+                return HttpURLConnection.HTTP_OK;
+            }
+        } else {
+            LOGGER.info("No Network exists with UUID :  " + network.getNetworkUUID());
+            return HttpURLConnection.HTTP_BAD_REQUEST;
         }
     }
 
@@ -293,16 +445,14 @@ public class NetworkHandler implements INeutronNetworkAware {
      *            An instance of deleted Neutron Network object.
      */
     @Override
-    public void neutronNetworkDeleted(NeutronNetwork network) {
-        VirtualNetwork virtualNetwork = null;
-        try {
-            virtualNetwork = (VirtualNetwork) apiConnector.findById(VirtualNetwork.class, network.getNetworkUUID());
-            if (virtualNetwork == null) {
-                LOGGER.info("Network deletion verified....");
+    public void neutronNetworkDeleted(final NeutronNetwork network) {
+        final ProjectedReader reader = Activator.getProjectedReader();
+        Activator.getVerifier().verify("network.deleted:" + network.getNetworkUUID(), new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws IOException {
+                return !reader.exists(VirtualNetwork.class, network.getNetworkUUID());
             }
-        } catch (Exception e) {
-            LOGGER.error("Exception :   " + e);
-        }
+        });
     }
 
     /**
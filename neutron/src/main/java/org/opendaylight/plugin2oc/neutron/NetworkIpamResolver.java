@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.types.NetworkIpam;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Holds the default-network-ipam reference used by every subnet. The IPAM is
+ * loaded once, refreshed in the background every plugin2oc.ipam.refresh
+ * milliseconds and resolved again on the next request after
+ * {@link #invalidate()} is called because the API server rejected it.
+ */
+public class NetworkIpamResolver {
+    /**
+     * Logger instance.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(NetworkIpamResolver.class);
+    static final String DEFAULT_IPAM_NAME = "default-network-ipam";
+    static final long DEFAULT_REFRESH_MILLIS = 300000;
+
+    private final ApiConnector apiConnector;
+    private final AtomicReference<NetworkIpam> defaultIpam = new AtomicReference<NetworkIpam>();
+    private ScheduledExecutorService scheduler;
+
+    public NetworkIpamResolver(ApiConnector apiConnector) {
+        this.apiConnector = apiConnector;
+    }
+
+    /**
+     * Invoked to load the default IPAM and schedule its background refresh.
+     */
+    public synchronized void start() {
+        try {
+            reload();
+        } catch (IOException ex) {
+            LOGGER.error("IOException :     " + ex);
+        }
+        if (scheduler == null) {
+            long refreshMillis = Long.getLong("plugin2oc.ipam.refresh", DEFAULT_REFRESH_MILLIS);
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true)
+                    .setNameFormat("plugin2oc-ipam-refresh-%d").build());
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        reload();
+                    } catch (Exception ex) {
+                        LOGGER.error("Exception :      " + ex);
+                    }
+                }
+            }, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Invoked to get the default IPAM, resolving it from the API server only
+     * if it is not known yet.
+     *
+     * @return the default IPAM, or null if the API server does not have one.
+     */
+    public NetworkIpam getDefaultIpam() throws IOException {
+        NetworkIpam ipam = defaultIpam.get();
+        if (ipam == null) {
+            ipam = reload();
+        }
+        return ipam;
+    }
+
+    /**
+     * Invoked to resolve the default IPAM from the API server.
+     */
+    public NetworkIpam reload() throws IOException {
+        NetworkIpam ipam = null;
+        String ipamId = apiConnector.findByName(NetworkIpam.class, null, DEFAULT_IPAM_NAME);
+        if (ipamId != null) {
+            ipam = (NetworkIpam) apiConnector.findById(NetworkIpam.class, ipamId);
+        }
+        defaultIpam.set(ipam);
+        return ipam;
+    }
+
+    /**
+     * Invoked when the API server no longer accepts the cached IPAM so the
+     * next request resolves it again.
+     */
+    public void invalidate() {
+        defaultIpam.set(null);
+    }
+
+    ApiConnector getApiConnector() {
+        return apiConnector;
+    }
+}
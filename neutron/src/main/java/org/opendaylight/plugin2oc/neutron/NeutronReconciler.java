@@ -0,0 +1,463 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.ApiPropertyBase;
+import net.juniper.contrail.api.ObjectReference;
+import net.juniper.contrail.api.types.Project;
+import net.juniper.contrail.api.types.VirtualMachineInterface;
+
+import org.opendaylight.controller.networkconfig.neutron.INeutronNetworkCRUD;
+import org.opendaylight.controller.networkconfig.neutron.INeutronPortCRUD;
+import org.opendaylight.controller.networkconfig.neutron.NeutronCRUDInterfaces;
+import org.opendaylight.controller.networkconfig.neutron.NeutronNetwork;
+import org.opendaylight.controller.networkconfig.neutron.NeutronPort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Repairs the drift between the networks and ports stored by Neutron and the
+ * virtual networks and interfaces of the API server, e.g. the interface left
+ * behind by a port creation that failed at its instance IP. Every
+ * plugin2oc.reconcile.interval milliseconds, each tenant known to Neutron is
+ * compared by a hash of the UUIDs of its networks and ports on both sides,
+ * the API server side costing one read of the project. Only the tenants whose
+ * hashes differ are compared object by object, and a difference is repaired
+ * once it was seen on two rounds in a row so that operations in flight are
+ * left alone. The repairs go through the handlers, in batches of
+ * plugin2oc.reconcile.batchSize at up to plugin2oc.reconcile.rate objects per
+ * second. Interfaces and networks unknown to Neutron are only reported, unless
+ * plugin2oc.reconcile.deleteOrphans is true, in which case those the
+ * {@link ObjectIndex} lists as created by this plugin are deleted.
+ */
+public class NeutronReconciler {
+    /**
+     * Logger instance.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(NeutronReconciler.class);
+    static final long DEFAULT_INTERVAL_MILLIS = 300000;
+    static final double DEFAULT_RATE = 10;
+    static final int DEFAULT_BATCH_SIZE = 20;
+    static final HashFunction MEMBER_HASH = Hashing.murmur3_128();
+
+    private final INeutronNetworkCRUD networkCRUD;
+    private final INeutronPortCRUD portCRUD;
+    private final RateLimiter rateLimiter;
+    private final int batchSize;
+    private final boolean deleteOrphans;
+    private final NetworkHandler networkHandler = new NetworkHandler();
+    private final PortHandler portHandler = new PortHandler();
+    /**
+     * Differences seen on the last round, per tenant.
+     */
+    private volatile Map<String, Set<String>> suspects = new HashMap<String, Set<String>>();
+    private ScheduledExecutorService scheduler;
+    private final AtomicLong rounds = new AtomicLong();
+    private final AtomicLong checked = new AtomicLong();
+    private final AtomicLong differing = new AtomicLong();
+    private final AtomicLong repaired = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public NeutronReconciler() {
+        this(null, null, Double.parseDouble(System.getProperty("plugin2oc.reconcile.rate", String.valueOf(DEFAULT_RATE))), Integer.getInteger(
+                "plugin2oc.reconcile.batchSize", DEFAULT_BATCH_SIZE), Boolean.getBoolean("plugin2oc.reconcile.deleteOrphans"));
+    }
+
+    /**
+     * @param networkCRUD
+     *            Neutron network store, looked up on each round if null.
+     * @param portCRUD
+     *            Neutron port store, looked up on each round if null.
+     */
+    public NeutronReconciler(INeutronNetworkCRUD networkCRUD, INeutronPortCRUD portCRUD, double rate, int batchSize, boolean deleteOrphans) {
+        this.networkCRUD = networkCRUD;
+        this.portCRUD = portCRUD;
+        this.rateLimiter = RateLimiter.create(rate > 0 ? rate : DEFAULT_RATE);
+        this.batchSize = Math.max(1, batchSize);
+        this.deleteOrphans = deleteOrphans;
+    }
+
+    /**
+     * Invoked to run the rounds every intervalMillis.
+     */
+    public synchronized void start(long intervalMillis) {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true)
+                    .setNameFormat("plugin2oc-reconciler-%d").build());
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        reconcile();
+                    } catch (Exception e) {
+                        LOGGER.error("Exception :   " + e);
+                    }
+                }
+            }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Invoked to run one round.
+     *
+     * @return the number of objects repaired.
+     */
+    public int reconcile() throws IOException {
+        INeutronNetworkCRUD networks = networkCRUD != null ? networkCRUD : NeutronCRUDInterfaces.getINeutronNetworkCRUD(this);
+        INeutronPortCRUD ports = portCRUD != null ? portCRUD : NeutronCRUDInterfaces.getINeutronPortCRUD(this);
+        ApiConnector apiConnector = Activator.apiConnector;
+        if (networks == null || ports == null || apiConnector == null) {
+            LOGGER.debug("Neutron stores or API server not available, reconciliation skipped");
+            return 0;
+        }
+        long startTime = System.nanoTime();
+        Map<String, Tenant> tenants = new TreeMap<String, Tenant>();
+        List<NeutronNetwork> allNetworks = networks.getAllNetworks();
+        List<NeutronPort> allPorts = ports.getAllPorts();
+        if (allNetworks == null || allPorts == null) {
+            return 0;
+        }
+        for (NeutronNetwork network : allNetworks) {
+            String tenantUUID = toUuid(network.getTenantID());
+            String networkUUID = toUuid(network.getNetworkUUID());
+            if (tenantUUID != null && networkUUID != null) {
+                tenant(tenants, tenantUUID).networks.put(networkUUID, network);
+            }
+        }
+        for (NeutronPort port : allPorts) {
+            String tenantUUID = toUuid(port.getTenantID());
+            String portUUID = toUuid(port.getPortUUID());
+            if (tenantUUID != null && portUUID != null) {
+                tenant(tenants, tenantUUID).ports.put(portUUID, port);
+            }
+        }
+        Map<String, Set<String>> seen = new HashMap<String, Set<String>>();
+        Repairs repairs = new Repairs();
+        for (Tenant tenant : tenants.values()) {
+            checked.incrementAndGet();
+            Project project = (Project) apiConnector.findById(Project.class, tenant.uuid);
+            if (project == null) {
+                // created by the handlers once it exists
+                continue;
+            }
+            Set<String> virtualNetworks = uuids(project.getVirtualNetworks());
+            Set<String> interfaces = uuids(project.getVirtualMachineInterfaces());
+            if (hash(tenant.networks.keySet(), tenant.ports.keySet()) == hash(virtualNetworks, interfaces)) {
+                continue;
+            }
+            differing.incrementAndGet();
+            Set<String> previous = suspects.get(tenant.uuid);
+            Set<String> differences = new HashSet<String>();
+            for (Map.Entry<String, NeutronNetwork> network : tenant.networks.entrySet()) {
+                if (!virtualNetworks.contains(network.getKey()) && suspect(differences, previous, "network.missing:" + network.getKey())) {
+                    repairs.missingNetworks.add(network.getValue());
+                }
+            }
+            for (Map.Entry<String, NeutronPort> port : tenant.ports.entrySet()) {
+                if (!interfaces.contains(port.getKey()) && suspect(differences, previous, "port.missing:" + port.getKey())) {
+                    repairs.missingPorts.add(port.getValue());
+                }
+            }
+            for (String interfaceUUID : interfaces) {
+                if (!tenant.ports.containsKey(interfaceUUID) && suspect(differences, previous, "port.orphan:" + interfaceUUID)) {
+                    repairs.orphanPorts.add(interfaceUUID);
+                }
+            }
+            for (String networkUUID : virtualNetworks) {
+                if (!tenant.networks.containsKey(networkUUID) && suspect(differences, previous, "network.orphan:" + networkUUID)) {
+                    repairs.orphanNetworks.add(networkUUID);
+                }
+            }
+            seen.put(tenant.uuid, differences);
+        }
+        suspects = seen;
+        int count = repair(repairs, apiConnector);
+        rounds.incrementAndGet();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        if (!seen.isEmpty()) {
+            LOGGER.info("Reconciled " + tenants.size() + " tenant(s) in " + elapsed + " ms, " + seen.size() + " differing, " + count
+                    + " object(s) repaired");
+        } else {
+            LOGGER.debug("Reconciled " + tenants.size() + " tenant(s) in " + elapsed + " ms, no difference");
+        }
+        return count;
+    }
+
+    /**
+     * Invoked to record a difference and tell if it was already seen on the
+     * previous round.
+     */
+    private boolean suspect(Set<String> differences, Set<String> previous, String difference) {
+        differences.add(difference);
+        return previous != null && previous.contains(difference);
+    }
+
+    private int repair(Repairs repairs, ApiConnector apiConnector) throws IOException {
+        int count = 0;
+        // networks before their ports, ports before their networks
+        for (List<NeutronNetwork> batch : batches(repairs.missingNetworks)) {
+            List<ListenableFuture<Integer>> statuses = new ArrayList<ListenableFuture<Integer>>();
+            rateLimiter.acquire(batch.size());
+            for (NeutronNetwork network : batch) {
+                statuses.add(networkHandler.createNetworkAsync(network));
+            }
+            count += await("network creation", statuses);
+        }
+        for (List<NeutronPort> batch : batches(repairs.missingPorts)) {
+            List<ListenableFuture<Integer>> statuses = new ArrayList<ListenableFuture<Integer>>();
+            rateLimiter.acquire(batch.size());
+            for (NeutronPort port : batch) {
+                statuses.add(portHandler.createPortAsync(port));
+            }
+            count += await("port creation", statuses);
+        }
+        List<String> orphanPorts = new ArrayList<String>();
+        List<String> orphanNetworks = new ArrayList<String>();
+        if (deleteOrphans) {
+            orphanPorts = created(repairs.orphanPorts, ObjectIndex.PORT);
+            orphanNetworks = created(repairs.orphanNetworks, ObjectIndex.NETWORK);
+        }
+        if (!repairs.orphanPorts.isEmpty() || !repairs.orphanNetworks.isEmpty()) {
+            LOGGER.warn("Unknown to Neutron, not deleted : " + repairs.orphanPorts.size() + " port(s) " + repairs.orphanPorts + ", "
+                    + repairs.orphanNetworks.size() + " network(s) " + repairs.orphanNetworks);
+        }
+        for (List<String> batch : batches(orphanPorts)) {
+            List<NeutronPort> ports = new ArrayList<NeutronPort>();
+            for (String interfaceUUID : batch) {
+                VirtualMachineInterface virtualMachineInterface = (VirtualMachineInterface) apiConnector.findById(VirtualMachineInterface.class,
+                        interfaceUUID);
+                if (virtualMachineInterface != null) {
+                    NeutronPort port = new NeutronPort();
+                    port.setPortUUID(interfaceUUID);
+                    List<ObjectReference<ApiPropertyBase>> virtualMachines = virtualMachineInterface.getVirtualMachine();
+                    if (virtualMachines != null && !virtualMachines.isEmpty()) {
+                        port.setDeviceID(virtualMachines.get(0).getUuid());
+                    }
+                    ports.add(port);
+                }
+            }
+            if (!ports.isEmpty()) {
+                rateLimiter.acquire(ports.size());
+                if (ApiFutures.await("port deletion", portHandler.deletePortsAsync(ports)) / 100 == 2) {
+                    repaired.addAndGet(ports.size());
+                    count += ports.size();
+                } else {
+                    failed.addAndGet(ports.size());
+                }
+            }
+        }
+        for (List<String> batch : batches(orphanNetworks)) {
+            List<ListenableFuture<Integer>> statuses = new ArrayList<ListenableFuture<Integer>>();
+            rateLimiter.acquire(batch.size());
+            for (String networkUUID : batch) {
+                NeutronNetwork network = new NeutronNetwork();
+                network.setNetworkUUID(networkUUID);
+                statuses.add(networkHandler.deleteNetworkAsync(network));
+            }
+            count += await("network deletion", statuses);
+        }
+        return count;
+    }
+
+    /**
+     * Invoked to move out of the orphans those the object index lists as
+     * created by this plugin, the others being left to their owner.
+     *
+     * @return the orphans created by this plugin.
+     */
+    private static List<String> created(List<String> orphans, int type) {
+        ObjectIndex index = Activator.getObjectIndex();
+        List<String> created = new ArrayList<String>();
+        for (Iterator<String> i = orphans.iterator(); i.hasNext();) {
+            String uuid = i.next();
+            ObjectIndex.Entry entry = index.get(uuid);
+            if (entry != null && entry.getType() == type) {
+                created.add(uuid);
+                i.remove();
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Invoked to wait for the repairs of a batch.
+     *
+     * @return the number of objects repaired.
+     */
+    private int await(String operation, List<ListenableFuture<Integer>> statuses) {
+        int count = 0;
+        for (ListenableFuture<Integer> status : statuses) {
+            count += await(operation, status);
+        }
+        return count;
+    }
+
+    private int await(String operation, ListenableFuture<Integer> status) {
+        if (ApiFutures.await(operation, status) / 100 == 2) {
+            repaired.incrementAndGet();
+            return 1;
+        }
+        failed.incrementAndGet();
+        return 0;
+    }
+
+    private <T> List<List<T>> batches(List<T> objects) {
+        List<List<T>> batches = new ArrayList<List<T>>();
+        for (int i = 0; i < objects.size(); i += batchSize) {
+            batches.add(objects.subList(i, Math.min(objects.size(), i + batchSize)));
+        }
+        return batches;
+    }
+
+    private static Tenant tenant(Map<String, Tenant> tenants, String tenantUUID) {
+        Tenant tenant = tenants.get(tenantUUID);
+        if (tenant == null) {
+            tenant = new Tenant(tenantUUID);
+            tenants.put(tenantUUID, tenant);
+        }
+        return tenant;
+    }
+
+    private static Set<String> uuids(List<ObjectReference<ApiPropertyBase>> refs) {
+        Set<String> uuids = new HashSet<String>();
+        if (refs != null) {
+            for (ObjectReference<ApiPropertyBase> ref : refs) {
+                String uuid = toUuid(ref.getUuid());
+                if (uuid != null) {
+                    uuids.add(uuid);
+                }
+            }
+        }
+        return uuids;
+    }
+
+    /**
+     * Invoked to get a hash of the networks and ports of a tenant, not
+     * depending on their order.
+     */
+    static long hash(Set<String> networkUUIDs, Set<String> portUUIDs) {
+        long hash = 0;
+        for (String uuid : networkUUIDs) {
+            hash += MEMBER_HASH.hashString("network:" + uuid, Charsets.UTF_8).asLong();
+        }
+        for (String uuid : portUUIDs) {
+            hash += MEMBER_HASH.hashString("port:" + uuid, Charsets.UTF_8).asLong();
+        }
+        return hash;
+    }
+
+    /**
+     * Invoked to get the canonical form of a UUID given with or without
+     * dashes.
+     *
+     * @return the UUID, or null if the string is not one.
+     */
+    static String toUuid(String id) {
+        if (id == null) {
+            return null;
+        }
+        try {
+            if (!id.contains("-") && id.length() == 32) {
+                id = id.substring(0, 8) + "-" + id.substring(8, 12) + "-" + id.substring(12, 16) + "-" + id.substring(16, 20) + "-"
+                        + id.substring(20, 32);
+            }
+            return UUID.fromString(id).toString();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public long getRoundCount() {
+        return rounds.get();
+    }
+
+    public long getCheckedCount() {
+        return checked.get();
+    }
+
+    /**
+     * Invoked to get the number of tenants compared object by object.
+     */
+    public long getDifferingCount() {
+        return differing.get();
+    }
+
+    public long getRepairedCount() {
+        return repaired.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Invoked to get the number of differences waiting for the next round to
+     * be repaired.
+     */
+    public int getPendingCount() {
+        int count = 0;
+        for (Set<String> differences : suspects.values()) {
+            count += differences.size();
+        }
+        return count;
+    }
+
+    /**
+     * Networks and ports of a tenant stored by Neutron, by UUID.
+     */
+    private static final class Tenant {
+        final String uuid;
+        final Map<String, NeutronNetwork> networks = new HashMap<String, NeutronNetwork>();
+        final Map<String, NeutronPort> ports = new HashMap<String, NeutronPort>();
+
+        Tenant(String uuid) {
+            this.uuid = uuid;
+        }
+    }
+
+    /**
+     * Differences to repair on a round.
+     */
+    private static final class Repairs {
+        final List<NeutronNetwork> missingNetworks = new ArrayList<NeutronNetwork>();
+        final List<NeutronPort> missingPorts = new ArrayList<NeutronPort>();
+        final List<String> orphanPorts = new ArrayList<String>();
+        final List<String> orphanNetworks = new ArrayList<String>();
+    }
+}
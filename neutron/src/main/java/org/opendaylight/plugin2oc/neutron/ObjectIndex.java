@@ -0,0 +1,588 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the networks, subnets and ports created by the plugin, kept in a
+ * memory-mapped hash table keyed by UUID so it is back as soon as the file
+ * is opened after a restart. A network entry holds its project, a subnet
+ * entry its network and a port entry its project, network, virtual machine
+ * and instance IP.
+ * <p>
+ * The API server stays the reference: the index only answers what the
+ * plugin itself did, objects changed by other clients are not seen, and an
+ * entry written when the process died is dropped. The handlers use it to
+ * skip lookups whose answer it knows and ask the API server otherwise.
+ */
+public class ObjectIndex {
+    /**
+     * Logger instance.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(ObjectIndex.class);
+    static final int DEFAULT_SLOTS = 65536;
+
+    public static final int NETWORK = 1;
+    public static final int SUBNET = 2;
+    public static final int PORT = 3;
+
+    static final int MAGIC = 0x50324f49;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int SLOT_SIZE = 96;
+    static final int FREE = 0;
+    static final int USED = 1;
+    static final int REMOVED = 2;
+    // slot layout
+    static final int KEY = 0;
+    static final int STATE = 16;
+    static final int TYPE = 20;
+    static final int PROJECT = 24;
+    static final int NETWORK_UUID = 40;
+    static final int DEVICE = 56;
+    static final int INSTANCE_IP = 72;
+    static final int CHECKSUM = 88;
+
+    /**
+     * Index that holds nothing, used when the file cannot be opened.
+     */
+    static final ObjectIndex DISABLED = new ObjectIndex(null, null, 0);
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int slots;
+    private final Map<UUID, Integer> networkPorts = new HashMap<UUID, Integer>();
+    private final Map<UUID, Integer> devicePorts = new HashMap<UUID, Integer>();
+    private final Map<UUID, Set<UUID>> networkSubnets = new HashMap<UUID, Set<UUID>>();
+    private int size;
+    private int removed;
+    private long unindexed;
+    private boolean closed;
+
+    /**
+     * Object known to the index.
+     */
+    public static final class Entry {
+        final int type;
+        final String uuid;
+        final String projectUUID;
+        final String networkUUID;
+        final String deviceUUID;
+        final String instanceIpUUID;
+
+        Entry(int type, String uuid, String projectUUID, String networkUUID, String deviceUUID, String instanceIpUUID) {
+            this.type = type;
+            this.uuid = uuid;
+            this.projectUUID = projectUUID;
+            this.networkUUID = networkUUID;
+            this.deviceUUID = deviceUUID;
+            this.instanceIpUUID = instanceIpUUID;
+        }
+
+        /**
+         * @return NETWORK, SUBNET or PORT.
+         */
+        public int getType() {
+            return type;
+        }
+
+        public String getUuid() {
+            return uuid;
+        }
+
+        /**
+         * @return the UUID of the project, null if not known.
+         */
+        public String getProjectUUID() {
+            return projectUUID;
+        }
+
+        /**
+         * @return the UUID of the network of a subnet or port.
+         */
+        public String getNetworkUUID() {
+            return networkUUID;
+        }
+
+        /**
+         * @return the UUID of the virtual machine of a port, null if none.
+         */
+        public String getDeviceUUID() {
+            return deviceUUID;
+        }
+
+        /**
+         * @return the UUID of the instance IP of a port.
+         */
+        public String getInstanceIpUUID() {
+            return instanceIpUUID;
+        }
+    }
+
+    private ObjectIndex(RandomAccessFile file, MappedByteBuffer buffer, int slots) {
+        this.file = file;
+        this.buffer = buffer;
+        this.slots = slots;
+    }
+
+    /**
+     * Invoked to open the index file given by the plugin2oc.index.file
+     * property, of plugin2oc.index.slots entries. The index is disabled if
+     * the property is set to an empty value or the file cannot be opened.
+     */
+    public static ObjectIndex open() {
+        String path = System.getProperty("plugin2oc.index.file", "plugin2oc.index");
+        if (path.trim().isEmpty()) {
+            return DISABLED;
+        }
+        try {
+            return open(new File(path), Integer.getInteger("plugin2oc.index.slots", DEFAULT_SLOTS));
+        } catch (IOException e) {
+            LOGGER.error("Exception :   " + e);
+            return DISABLED;
+        }
+    }
+
+    /**
+     * Invoked to open or create an index file.
+     *
+     * @param path
+     *            index file.
+     * @param slots
+     *            number of entries the file holds when it is created, rounded
+     *            up to a power of two; three quarters of them can be used.
+     */
+    public static ObjectIndex open(File path, int slots) throws IOException {
+        long startTime = System.nanoTime();
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try {
+            boolean existing = file.length() >= HEADER_SIZE && file.readInt() == MAGIC && file.readInt() == VERSION
+                    && file.readInt() == SLOT_SIZE;
+            if (existing) {
+                slots = file.readInt();
+                existing = slots > 0 && Integer.bitCount(slots) == 1;
+            }
+            if (!existing) {
+                slots = Integer.highestOneBit(Math.max(2, slots) * 2 - 1);
+                file.setLength(0);
+            }
+            long length = HEADER_SIZE + (long) slots * SLOT_SIZE;
+            file.setLength(length);
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            if (!existing) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, SLOT_SIZE);
+                buffer.putInt(12, slots);
+                buffer.force();
+            }
+            ObjectIndex index = new ObjectIndex(file, buffer, slots);
+            index.scan();
+            LOGGER.info("Object index of " + index.size + " entries loaded in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)
+                    + " ms");
+            return index;
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Invoked when the file is opened to drop the entries not entirely
+     * written and count the ports and subnets of the networks and virtual
+     * machines.
+     */
+    private void scan() {
+        for (int slot = 0; slot < slots; slot++) {
+            int offset = offset(slot);
+            int state = buffer.getInt(offset + STATE);
+            if (state == USED && !isValid(offset)) {
+                buffer.putInt(offset + STATE, REMOVED);
+                state = REMOVED;
+            }
+            if (state == USED) {
+                size++;
+                count(offset, 1);
+            } else if (state == REMOVED) {
+                removed++;
+            }
+        }
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private int home(long mostSigBits, long leastSigBits) {
+        long hash = (mostSigBits ^ leastSigBits) * 0x9e3779b97f4a7c15L;
+        return (int) (hash >>> 32) & (slots - 1);
+    }
+
+    /**
+     * Invoked to find the slot of a key.
+     *
+     * @return the offset of the slot, -1 if the key is not indexed.
+     */
+    private int find(long mostSigBits, long leastSigBits) {
+        for (int i = 0, slot = home(mostSigBits, leastSigBits); i < slots; i++, slot = (slot + 1) & (slots - 1)) {
+            int offset = offset(slot);
+            int state = buffer.getInt(offset + STATE);
+            if (state == FREE) {
+                return -1;
+            }
+            if (state == USED && buffer.getLong(offset + KEY) == mostSigBits && buffer.getLong(offset + KEY + 8) == leastSigBits) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Invoked to record a network created by the plugin.
+     *
+     * @return false if the network could not be indexed.
+     */
+    public boolean putNetwork(String networkUUID, String projectUUID) {
+        return put(NETWORK, networkUUID, projectUUID, null, null, null);
+    }
+
+    /**
+     * Invoked to record a subnet added to a network by the plugin.
+     *
+     * @return false if the subnet could not be indexed.
+     */
+    public boolean putSubnet(String subnetUUID, String networkUUID, String projectUUID) {
+        return put(SUBNET, subnetUUID, projectUUID, networkUUID, null, null);
+    }
+
+    /**
+     * Invoked to record a port created by the plugin.
+     *
+     * @param deviceUUID
+     *            UUID of the virtual machine of the port, null if none.
+     * @return false if the port could not be indexed.
+     */
+    public boolean putPort(String portUUID, String projectUUID, String networkUUID, String deviceUUID, String instanceIpUUID) {
+        return put(PORT, portUUID, projectUUID, networkUUID, deviceUUID, instanceIpUUID);
+    }
+
+    private synchronized boolean put(int type, String uuid, String projectUUID, String networkUUID, String deviceUUID, String instanceIpUUID) {
+        if (buffer == null || closed || !Uuids.isUuid(uuid)) {
+            return false;
+        }
+        long mostSigBits = Uuids.parseHalf(uuid, 0);
+        long leastSigBits = Uuids.parseHalf(uuid, 16);
+        remove(mostSigBits, leastSigBits);
+        if ((size + removed + 1) * 4L > slots * 3L) {
+            if (size * 2L > slots) {
+                unindexed++;
+                return false;
+            }
+            compact();
+        }
+        int offset = -1;
+        for (int i = 0, slot = home(mostSigBits, leastSigBits); i < slots; i++, slot = (slot + 1) & (slots - 1)) {
+            int state = buffer.getInt(offset(slot) + STATE);
+            if (state != USED) {
+                offset = offset(slot);
+                if (state == REMOVED) {
+                    removed--;
+                }
+                break;
+            }
+        }
+        buffer.putInt(offset + TYPE, type);
+        buffer.putLong(offset + KEY, mostSigBits);
+        buffer.putLong(offset + KEY + 8, leastSigBits);
+        putUuid(offset + PROJECT, projectUUID);
+        putUuid(offset + NETWORK_UUID, networkUUID);
+        putUuid(offset + DEVICE, deviceUUID);
+        putUuid(offset + INSTANCE_IP, instanceIpUUID);
+        buffer.putLong(offset + CHECKSUM, checksum(offset));
+        buffer.putInt(offset + STATE, USED);
+        size++;
+        count(offset, 1);
+        return true;
+    }
+
+    /**
+     * Invoked to forget an object deleted or changed by the plugin.
+     */
+    public synchronized void remove(String uuid) {
+        if (buffer == null || closed || !Uuids.isUuid(uuid)) {
+            return;
+        }
+        remove(Uuids.parseHalf(uuid, 0), Uuids.parseHalf(uuid, 16));
+    }
+
+    private void remove(long mostSigBits, long leastSigBits) {
+        int offset = find(mostSigBits, leastSigBits);
+        if (offset < 0) {
+            return;
+        }
+        count(offset, -1);
+        buffer.putInt(offset + STATE, REMOVED);
+        size--;
+        removed++;
+    }
+
+    /**
+     * Invoked when the removed slots fill the table to insert the entries
+     * again from scratch. The entries are lost if the process dies
+     * meanwhile, which only sends their lookups back to the API server.
+     */
+    private void compact() {
+        List<long[]> entries = new ArrayList<long[]>(size);
+        for (int slot = 0; slot < slots; slot++) {
+            int offset = offset(slot);
+            if (buffer.getInt(offset + STATE) == USED) {
+                long[] entry = new long[SLOT_SIZE / 8];
+                for (int field = 0; field < entry.length; field++) {
+                    entry[field] = buffer.getLong(offset + field * 8);
+                }
+                entries.add(entry);
+            }
+            buffer.putInt(offset + STATE, FREE);
+        }
+        for (long[] entry : entries) {
+            int slot = home(entry[0], entry[1]);
+            while (buffer.getInt(offset(slot) + STATE) != FREE) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            int offset = offset(slot);
+            for (int field = 0; field < entry.length; field++) {
+                buffer.putLong(offset + field * 8, entry[field]);
+            }
+        }
+        removed = 0;
+    }
+
+    /**
+     * Invoked to keep the counts of the ports and subnets of the networks and
+     * virtual machines as an entry is added or removed.
+     */
+    private void count(int offset, int delta) {
+        int type = buffer.getInt(offset + TYPE);
+        UUID network = getUuid(offset + NETWORK_UUID);
+        if (type == PORT) {
+            add(networkPorts, network, delta);
+            add(devicePorts, getUuid(offset + DEVICE), delta);
+        } else if (type == SUBNET && network != null) {
+            Set<UUID> subnets = networkSubnets.get(network);
+            if (delta > 0) {
+                if (subnets == null) {
+                    subnets = new LinkedHashSet<UUID>();
+                    networkSubnets.put(network, subnets);
+                }
+                subnets.add(getUuid(offset + KEY));
+            } else if (subnets != null) {
+                subnets.remove(getUuid(offset + KEY));
+                if (subnets.isEmpty()) {
+                    networkSubnets.remove(network);
+                }
+            }
+        }
+    }
+
+    private static void add(Map<UUID, Integer> counts, UUID key, int delta) {
+        if (key == null) {
+            return;
+        }
+        Integer count = counts.get(key);
+        int value = (count == null ? 0 : count) + delta;
+        if (value > 0) {
+            counts.put(key, value);
+        } else {
+            counts.remove(key);
+        }
+    }
+
+    /**
+     * Invoked to get what the index knows of an object.
+     *
+     * @return the entry of the object, null if it is not indexed.
+     */
+    public synchronized Entry get(String uuid) {
+        if (buffer == null || closed || !Uuids.isUuid(uuid)) {
+            return null;
+        }
+        int offset = find(Uuids.parseHalf(uuid, 0), Uuids.parseHalf(uuid, 16));
+        if (offset < 0) {
+            return null;
+        }
+        return new Entry(buffer.getInt(offset + TYPE), toString(offset + KEY), toString(offset + PROJECT), toString(offset + NETWORK_UUID),
+                toString(offset + DEVICE), toString(offset + INSTANCE_IP));
+    }
+
+    /**
+     * Invoked to get the number of indexed ports of a network.
+     */
+    public synchronized int getNetworkPortCount(String networkUUID) {
+        return count(networkPorts, networkUUID);
+    }
+
+    /**
+     * Invoked to get the number of indexed ports of a virtual machine.
+     */
+    public synchronized int getDevicePortCount(String deviceUUID) {
+        return count(devicePorts, deviceUUID);
+    }
+
+    private static int count(Map<UUID, Integer> counts, String uuid) {
+        if (!Uuids.isUuid(uuid)) {
+            return 0;
+        }
+        Integer count = counts.get(Uuids.parse(uuid));
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Invoked to get the UUIDs of the indexed subnets of a network.
+     */
+    public synchronized List<String> getSubnets(String networkUUID) {
+        List<String> subnets = new ArrayList<String>();
+        if (Uuids.isUuid(networkUUID)) {
+            Set<UUID> indexed = networkSubnets.get(Uuids.parse(networkUUID));
+            if (indexed != null) {
+                for (UUID subnet : indexed) {
+                    subnets.add(subnet.toString());
+                }
+            }
+        }
+        return subnets;
+    }
+
+    /**
+     * Invoked to get the UUIDs of the indexed ports of a network.
+     */
+    public synchronized List<String> getPorts(String networkUUID) {
+        List<String> ports = new ArrayList<String>();
+        int count = count(networkPorts, networkUUID);
+        if (count == 0) {
+            return ports;
+        }
+        UUID network = Uuids.parse(networkUUID);
+        for (int slot = 0; buffer != null && !closed && ports.size() < count && slot < slots; slot++) {
+            int offset = offset(slot);
+            if (buffer.getInt(offset + STATE) == USED && buffer.getInt(offset + TYPE) == PORT && network.equals(getUuid(offset + NETWORK_UUID))) {
+                ports.add(toString(offset + KEY));
+            }
+        }
+        return ports;
+    }
+
+    /**
+     * Invoked to get the UUIDs of the indexed objects and of the networks and
+     * virtual machines they refer to.
+     */
+    public synchronized Set<String> getKnownUuids() {
+        Set<String> uuids = new LinkedHashSet<String>();
+        for (int slot = 0; buffer != null && !closed && slot < slots; slot++) {
+            int offset = offset(slot);
+            if (buffer.getInt(offset + STATE) == USED) {
+                for (int field : new int[] { KEY, NETWORK_UUID, DEVICE }) {
+                    String uuid = toString(offset + field);
+                    if (uuid != null) {
+                        uuids.add(uuid);
+                    }
+                }
+            }
+        }
+        return uuids;
+    }
+
+    private void putUuid(int offset, String uuid) {
+        boolean valid = Uuids.isUuid(uuid);
+        buffer.putLong(offset, valid ? Uuids.parseHalf(uuid, 0) : 0);
+        buffer.putLong(offset + 8, valid ? Uuids.parseHalf(uuid, 16) : 0);
+    }
+
+    private UUID getUuid(int offset) {
+        long mostSigBits = buffer.getLong(offset);
+        long leastSigBits = buffer.getLong(offset + 8);
+        if (mostSigBits == 0 && leastSigBits == 0) {
+            return null;
+        }
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    private String toString(int offset) {
+        UUID uuid = getUuid(offset);
+        return uuid == null ? null : uuid.toString();
+    }
+
+    private long checksum(int offset) {
+        long hash = buffer.getInt(offset + TYPE);
+        for (int field = KEY; field < CHECKSUM; field += 8) {
+            if (field != STATE) {
+                hash = (hash ^ buffer.getLong(offset + field)) * 0x9e3779b97f4a7c15L;
+                hash ^= hash >>> 29;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Invoked to check a slot was entirely written before a crash.
+     */
+    private boolean isValid(int offset) {
+        return buffer.getLong(offset + CHECKSUM) == checksum(offset);
+    }
+
+    /**
+     * Invoked to get the number of objects indexed.
+     */
+    public synchronized int getSize() {
+        return size;
+    }
+
+    /**
+     * Invoked to get the number of objects not indexed because the table was
+     * full.
+     */
+    public synchronized long getUnindexedCount() {
+        return unindexed;
+    }
+
+    public boolean isEnabled() {
+        return buffer != null;
+    }
+
+    /**
+     * Invoked to force the file to disk and close it.
+     */
+    public synchronized void close() {
+        if (buffer == null || closed) {
+            return;
+        }
+        closed = true;
+        buffer.force();
+        try {
+            file.close();
+        } catch (IOException e) {
+            LOGGER.error("Exception :   " + e);
+        }
+    }
+}
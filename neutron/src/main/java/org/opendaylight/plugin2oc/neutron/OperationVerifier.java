@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs the read-back checks of the *Created/*Updated/*Deleted callbacks
+ * according to the plugin2oc.verification.mode property:
+ * <ul>
+ * <li>off: no check is made.</li>
+ * <li>sampled: a fraction (plugin2oc.verification.rate) of the checks run on
+ * the request thread.</li>
+ * <li>async: checks are queued and run later on a background thread; a newer
+ * check for the same object replaces the queued one.</li>
+ * <li>sync: every check runs on the request thread.</li>
+ * </ul>
+ * Results are counted instead of logged.
+ */
+public class OperationVerifier {
+    /**
+     * Logger instance.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(OperationVerifier.class);
+    static final double DEFAULT_SAMPLE_RATE = 0.1;
+    static final long DEFAULT_DELAY_MILLIS = 1000;
+    static final int MAX_PENDING = 10000;
+
+    /**
+     * Verification modes.
+     */
+    public enum Mode {
+        OFF, SAMPLED, ASYNC, SYNC
+    }
+
+    private final Mode mode;
+    private final double sampleRate;
+    private final ConcurrentMap<String, Callable<Boolean>> pending = new ConcurrentHashMap<String, Callable<Boolean>>();
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong verified = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public OperationVerifier() {
+        this(parseMode(System.getProperty("plugin2oc.verification.mode")), parseRate(System.getProperty("plugin2oc.verification.rate")), Long
+                .getLong("plugin2oc.verification.delay", DEFAULT_DELAY_MILLIS));
+    }
+
+    public OperationVerifier(Mode mode, double sampleRate, long delayMillis) {
+        this.mode = mode;
+        this.sampleRate = sampleRate;
+        if (mode == Mode.ASYNC) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true)
+                    .setNameFormat("plugin2oc-verifier-%d").build());
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            }, delayMillis, delayMillis, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Invoked to verify an operation.
+     *
+     * @param key
+     *            operation and object the check is about, checks queued with
+     *            the same key are coalesced.
+     * @param check
+     *            returns true if the API server reflects the operation.
+     */
+    public void verify(String key, Callable<Boolean> check) {
+        switch (mode) {
+        case SYNC:
+            run(key, check);
+            break;
+        case SAMPLED:
+            if (ThreadLocalRandom.current().nextDouble() < sampleRate) {
+                run(key, check);
+            } else {
+                skipped.incrementAndGet();
+            }
+            break;
+        case ASYNC:
+            if (pending.size() >= MAX_PENDING) {
+                skipped.incrementAndGet();
+            } else if (pending.put(key, check) != null) {
+                coalesced.incrementAndGet();
+            }
+            break;
+        default:
+            skipped.incrementAndGet();
+            break;
+        }
+    }
+
+    /**
+     * Invoked to run every queued check.
+     */
+    void drain() {
+        Iterator<Map.Entry<String, Callable<Boolean>>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Callable<Boolean>> entry = iterator.next();
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                run(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void run(String key, Callable<Boolean> check) {
+        try {
+            if (Boolean.TRUE.equals(check.call())) {
+                verified.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+                LOGGER.debug("Verification failed for " + key);
+            }
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            LOGGER.debug("Verification error for " + key + " : " + e);
+        }
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        pending.clear();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getVerifiedCount() {
+        return verified.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    static Mode parseMode(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Mode.ASYNC;
+        }
+        try {
+            return Mode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            LOGGER.error("Unknown verification mode " + value + ", using async");
+            return Mode.ASYNC;
+        }
+    }
+
+    static double parseRate(String value) {
+        if (value == null) {
+            return DEFAULT_SAMPLE_RATE;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException ex) {
+            LOGGER.error("Incorrect verification rate " + value);
+            return DEFAULT_SAMPLE_RATE;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Latency histograms of the handler operations, by HTTP status, and of the
+ * Contrail API calls, by result, registered as MXBeans on the platform MBean
+ * server under the org.opendaylight.plugin2oc domain:
+ * type=Operation,name=&lt;operation&gt;,status=&lt;status&gt; and
+ * type=ApiCall,name=&lt;call&gt;,result=ok|failed|error. The counters of the
+ * other plugin components, the circuit breaker state included, are exposed
+ * by type=Status. Each histogram is
+ * registered when its first latency is recorded; setting plugin2oc.jmx to
+ * false keeps the histograms without registering them.
+ */
+public class PluginMetrics {
+    /**
+     * Logger instance.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(PluginMetrics.class);
+    static final String DOMAIN = "org.opendaylight.plugin2oc";
+    static final String RESULT_OK = "ok";
+    static final String RESULT_FAILED = "failed";
+    static final String RESULT_ERROR = "error";
+
+    private final MBeanServer server;
+    private final ConcurrentMap<String, ConcurrentMap<Integer, LatencyHistogram>> operations = new ConcurrentHashMap<String, ConcurrentMap<Integer, LatencyHistogram>>();
+    private final ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> apiCalls = new ConcurrentHashMap<String, ConcurrentMap<String, LatencyHistogram>>();
+    private final Set<ObjectName> registered = Collections.newSetFromMap(new ConcurrentHashMap<ObjectName, Boolean>());
+    private volatile boolean closed;
+
+    public PluginMetrics() {
+        this(Boolean.parseBoolean(System.getProperty("plugin2oc.jmx", "true")) ? ManagementFactory.getPlatformMBeanServer() : null);
+    }
+
+    /**
+     * @param server
+     *            MBean server to register on, null to not register.
+     */
+    public PluginMetrics(MBeanServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Invoked when an INeutron*Aware operation returns its status.
+     *
+     * @param operation
+     *            name of the operation.
+     * @param status
+     *            HTTP status code returned.
+     * @param nanos
+     *            latency of the operation.
+     */
+    public void recordOperation(String operation, int status, long nanos) {
+        histogram(operations, "Operation", operation, "status", status).record(nanos);
+    }
+
+    /**
+     * Invoked when a Contrail API call returns.
+     *
+     * @param call
+     *            name of the ApiConnector method.
+     * @param result
+     *            RESULT_OK, RESULT_FAILED when the API server refused the
+     *            call, or RESULT_ERROR when it threw.
+     * @param nanos
+     *            latency of the call.
+     */
+    public void recordApiCall(String call, String result, long nanos) {
+        histogram(apiCalls, "ApiCall", call, "result", result).record(nanos);
+    }
+
+    /**
+     * Invoked to get the histogram of an operation, null if it never returned
+     * the status.
+     */
+    public LatencyHistogram getOperationHistogram(String operation, int status) {
+        ConcurrentMap<Integer, LatencyHistogram> byStatus = operations.get(operation);
+        return byStatus == null ? null : byStatus.get(status);
+    }
+
+    /**
+     * Invoked to get the histogram of an API call, null if it never returned
+     * the result.
+     */
+    public LatencyHistogram getApiCallHistogram(String call, String result) {
+        ConcurrentMap<String, LatencyHistogram> byResult = apiCalls.get(call);
+        return byResult == null ? null : byResult.get(result);
+    }
+
+    private <K> LatencyHistogram histogram(ConcurrentMap<String, ConcurrentMap<K, LatencyHistogram>> histograms, String type, String name,
+            String key, K value) {
+        ConcurrentMap<K, LatencyHistogram> byValue = histograms.get(name);
+        if (byValue == null) {
+            ConcurrentMap<K, LatencyHistogram> created = new ConcurrentHashMap<K, LatencyHistogram>();
+            byValue = histograms.putIfAbsent(name, created);
+            if (byValue == null) {
+                byValue = created;
+            }
+        }
+        LatencyHistogram histogram = byValue.get(value);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = byValue.putIfAbsent(value, created);
+            if (histogram == null) {
+                histogram = created;
+                register("type=" + type + ",name=" + name + "," + key + "=" + value, created);
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Invoked to register the MXBean exposing the counters of the plugin
+     * components.
+     */
+    public void registerStatus() {
+        register("type=Status", new Status());
+    }
+
+    private void register(String properties, Object mbean) {
+        if (server == null || closed) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+            if (server.isRegistered(name)) {
+                // left behind by a previous activation of the bundle
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(mbean, name);
+            registered.add(name);
+        } catch (Exception e) {
+            LOGGER.error("Exception :   " + e);
+        }
+    }
+
+    /**
+     * Invoked to unregister every MBean, the histograms are still recorded.
+     */
+    public void unregister() {
+        closed = true;
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (Exception e) {
+                LOGGER.debug("Exception :   " + e);
+            }
+        }
+        registered.clear();
+    }
+
+    int getRegisteredCount() {
+        return registered.size();
+    }
+
+    /**
+     * JMX view of the counters of the plugin components, 0 for the
+     * components not started.
+     */
+    public interface StatusMXBean {
+        long getCacheHitCount();
+
+        long getCacheMissCount();
+
+        long getSharedReadCount();
+
+        long getSharedCreationCount();
+
+        int getApiCallsInFlight();
+
+        long getLockedCount();
+
+        long getContendedCount();
+
+        long getMaxLockWaitMillis();
+
+        long getSubnetChangeCount();
+
+        long getSubnetWriteCount();
+
+        long getVerifiedCount();
+
+        long getVerifyFailedCount();
+
+        String getWarmUpState();
+
+        long getReconciledRoundCount();
+
+        long getRepairedCount();
+
+        String getBreakerState();
+
+        long getBreakerOpenedCount();
+
+        long getBreakerRejectedCount();
+
+        long getNetworkRefusedCount();
+
+        long getSubnetRefusedCount();
+
+        long getPortRefusedCount();
+    }
+
+    /**
+     * Reads the counters from the components held by the Activator.
+     */
+    private static final class Status implements StatusMXBean {
+        @Override
+        public long getCacheHitCount() {
+            ApiObjectCache cache = Activator.objectCache;
+            return cache == null ? 0 : cache.getHitCount();
+        }
+
+        @Override
+        public long getCacheMissCount() {
+            ApiObjectCache cache = Activator.objectCache;
+            return cache == null ? 0 : cache.getMissCount();
+        }
+
+        @Override
+        public long getSharedReadCount() {
+            ApiObjectCache cache = Activator.objectCache;
+            return cache == null ? 0 : cache.getSharedReadCount();
+        }
+
+        @Override
+        public long getSharedCreationCount() {
+            SingleFlight<String, Integer> inFlight = Activator.inFlightOperations;
+            return inFlight == null ? 0 : inFlight.getSharedCount();
+        }
+
+        @Override
+        public int getApiCallsInFlight() {
+            ApiExecutor executor = Activator.apiExecutor;
+            return executor == null ? 0 : executor.getInFlightCount();
+        }
+
+        @Override
+        public long getLockedCount() {
+            ApiObjectLocks locks = Activator.objectLocks;
+            return locks == null ? 0 : locks.getLockedCount();
+        }
+
+        @Override
+        public long getContendedCount() {
+            ApiObjectLocks locks = Activator.objectLocks;
+            return locks == null ? 0 : locks.getContendedCount();
+        }
+
+        @Override
+        public long getMaxLockWaitMillis() {
+            ApiObjectLocks locks = Activator.objectLocks;
+            return locks == null ? 0 : locks.getMaxWaitMillis();
+        }
+
+        @Override
+        public long getSubnetChangeCount() {
+            SubnetWriter writer = Activator.subnetWriter;
+            return writer == null ? 0 : writer.getChangeCount();
+        }
+
+        @Override
+        public long getSubnetWriteCount() {
+            SubnetWriter writer = Activator.subnetWriter;
+            return writer == null ? 0 : writer.getWriteCount();
+        }
+
+        @Override
+        public long getVerifiedCount() {
+            OperationVerifier verifier = Activator.verifier;
+            return verifier == null ? 0 : verifier.getVerifiedCount();
+        }
+
+        @Override
+        public long getVerifyFailedCount() {
+            OperationVerifier verifier = Activator.verifier;
+            return verifier == null ? 0 : verifier.getFailedCount();
+        }
+
+        @Override
+        public String getWarmUpState() {
+            return Activator.getWarmUpState().toString();
+        }
+
+        @Override
+        public long getReconciledRoundCount() {
+            NeutronReconciler reconciler = Activator.reconciler;
+            return reconciler == null ? 0 : reconciler.getRoundCount();
+        }
+
+        @Override
+        public long getRepairedCount() {
+            NeutronReconciler reconciler = Activator.reconciler;
+            return reconciler == null ? 0 : reconciler.getRepairedCount();
+        }
+
+        @Override
+        public String getBreakerState() {
+            CircuitBreaker breaker = Activator.breaker;
+            return breaker == null ? CircuitBreaker.State.CLOSED.toString() : breaker.getState().toString();
+        }
+
+        @Override
+        public long getBreakerOpenedCount() {
+            CircuitBreaker breaker = Activator.breaker;
+            return breaker == null ? 0 : breaker.getOpenedCount();
+        }
+
+        @Override
+        public long getBreakerRejectedCount() {
+            CircuitBreaker breaker = Activator.breaker;
+            return breaker == null ? 0 : breaker.getRejectedCount();
+        }
+
+        @Override
+        public long getNetworkRefusedCount() {
+            return getRefusedCount(Bulkheads.Kind.NETWORK);
+        }
+
+        @Override
+        public long getSubnetRefusedCount() {
+            return getRefusedCount(Bulkheads.Kind.SUBNET);
+        }
+
+        @Override
+        public long getPortRefusedCount() {
+            return getRefusedCount(Bulkheads.Kind.PORT);
+        }
+
+        private long getRefusedCount(Bulkheads.Kind kind) {
+            Bulkheads bulkheads = Activator.bulkheads;
+            return bulkheads == null ? 0 : bulkheads.getRejectedCount(kind);
+        }
+    }
+}
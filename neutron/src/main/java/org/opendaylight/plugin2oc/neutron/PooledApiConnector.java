@@ -0,0 +1,379 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.ApiConnectorFactory;
+import net.juniper.contrail.api.ApiObjectBase;
+import net.juniper.contrail.api.ApiPropertyBase;
+import net.juniper.contrail.api.ObjectReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ApiConnector backed by a pool of persistent connections to the API server.
+ * Each pooled connector keeps its own keep-alive connection and serves one
+ * call at a time, so concurrent handler calls no longer queue behind a single
+ * connection. The pool is sized by the plugin2oc.apiserver.maxConnections and
+ * plugin2oc.apiserver.maxPerRoute properties; plugin2oc.apiserver.ipaddress
+ * may list several comma separated API servers, each one being a route.
+ */
+public class PooledApiConnector implements ApiConnector {
+    /**
+     * Logger instance.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(PooledApiConnector.class);
+    static final int DEFAULT_MAX_CONNECTIONS = 32;
+    static final int DEFAULT_MAX_PER_ROUTE = 16;
+    static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = 5000;
+    static final long DEFAULT_KEEP_ALIVE_MILLIS = 60000;
+
+    /**
+     * Builds the connector holding one connection to an API server.
+     */
+    public interface ConnectionFactory {
+        ApiConnector build(String host, int port);
+    }
+
+    /**
+     * Connection factory based on the Contrail ApiConnectorFactory.
+     */
+    static final ConnectionFactory DEFAULT_FACTORY = new ConnectionFactory() {
+        @Override
+        public ApiConnector build(String host, int port) {
+            return ApiConnectorFactory.build(host, port);
+        }
+    };
+
+    private final ConnectionFactory factory;
+    private final List<Route> routes = new ArrayList<Route>();
+    private final Semaphore totalPermits;
+    private final long connectTimeoutMillis;
+    private final long keepAliveMillis;
+    private final AtomicInteger nextRoute = new AtomicInteger();
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Connections to one API server.
+     */
+    private static final class Route {
+        final String host;
+        final int port;
+        final Semaphore permits;
+        final ConcurrentLinkedDeque<Connection> idle = new ConcurrentLinkedDeque<Connection>();
+
+        Route(String host, int port, int maxPerRoute) {
+            this.host = host;
+            this.port = port;
+            this.permits = new Semaphore(maxPerRoute, true);
+        }
+    }
+
+    /**
+     * Pooled connection and the time it was last returned to the pool.
+     */
+    private static final class Connection {
+        final Route route;
+        final ApiConnector connector;
+        long lastUsed;
+
+        Connection(Route route, ApiConnector connector) {
+            this.route = route;
+            this.connector = connector;
+        }
+    }
+
+    /**
+     * API call made on a leased connection.
+     */
+    private abstract static class Call<T> {
+        abstract T run(ApiConnector connector) throws IOException;
+    }
+
+    public PooledApiConnector(String hosts, int port) {
+        this(DEFAULT_FACTORY, hosts, port, Integer.getInteger("plugin2oc.apiserver.maxConnections", DEFAULT_MAX_CONNECTIONS), Integer.getInteger(
+                "plugin2oc.apiserver.maxPerRoute", DEFAULT_MAX_PER_ROUTE), Long.getLong("plugin2oc.apiserver.connectTimeout",
+                DEFAULT_CONNECT_TIMEOUT_MILLIS), Long.getLong("plugin2oc.apiserver.keepAlive", DEFAULT_KEEP_ALIVE_MILLIS));
+    }
+
+    public PooledApiConnector(ConnectionFactory factory, String hosts, int port, int maxConnections, int maxPerRoute, long connectTimeoutMillis,
+            long keepAliveMillis) {
+        this.factory = factory;
+        for (String host : hosts.split(",")) {
+            if (!host.trim().isEmpty()) {
+                routes.add(new Route(host.trim(), port, maxPerRoute));
+            }
+        }
+        if (routes.isEmpty()) {
+            throw new IllegalArgumentException("No API server address given");
+        }
+        this.totalPermits = new Semaphore(maxConnections, true);
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    /**
+     * Invoked to lease a connection, waiting at most the connect timeout for
+     * one to become available.
+     */
+    private Connection lease() throws IOException {
+        if (closed) {
+            throw new IOException("API server connection pool is closed");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(connectTimeoutMillis);
+        try {
+            if (!totalPermits.tryAcquire(connectTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Timeout waiting for an API server connection");
+            }
+            Route route = acquireRoute(deadline);
+            if (route == null) {
+                totalPermits.release();
+                throw new IOException("Timeout waiting for an API server connection");
+            }
+            return open(route);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an API server connection");
+        }
+    }
+
+    private Route acquireRoute(long deadline) throws InterruptedException {
+        int start = (nextRoute.getAndIncrement() & Integer.MAX_VALUE) % routes.size();
+        for (int i = 0; i < routes.size(); i++) {
+            Route route = routes.get((start + i) % routes.size());
+            if (route.permits.tryAcquire()) {
+                return route;
+            }
+        }
+        Route route = routes.get(start);
+        if (route.permits.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+            return route;
+        }
+        return null;
+    }
+
+    private Connection open(Route route) {
+        long now = System.currentTimeMillis();
+        Connection connection;
+        while ((connection = route.idle.pollFirst()) != null) {
+            if (now - connection.lastUsed <= keepAliveMillis) {
+                reused.incrementAndGet();
+                return connection;
+            }
+            close(connection);
+        }
+        opened.incrementAndGet();
+        return new Connection(route, factory.build(route.host, route.port));
+    }
+
+    /**
+     * Invoked to return a leased connection. Connections that failed are
+     * discarded since their state on the wire is unknown.
+     */
+    private void release(Connection connection, boolean reusable) {
+        try {
+            if (reusable && !closed) {
+                connection.lastUsed = System.currentTimeMillis();
+                connection.route.idle.offerFirst(connection);
+            } else {
+                close(connection);
+            }
+        } finally {
+            connection.route.permits.release();
+            totalPermits.release();
+        }
+    }
+
+    private void close(Connection connection) {
+        try {
+            connection.connector.dispose();
+        } catch (Exception e) {
+            LOGGER.debug("Exception :   " + e);
+        }
+    }
+
+    private <T> T execute(Call<T> call) throws IOException {
+        Connection connection = lease();
+        boolean reusable = false;
+        try {
+            T result = call.run(connection.connector);
+            reusable = true;
+            return result;
+        } finally {
+            release(connection, reusable);
+        }
+    }
+
+    @Override
+    public boolean create(final ApiObjectBase obj) throws IOException {
+        return execute(new Call<Boolean>() {
+            @Override
+            Boolean run(ApiConnector connector) throws IOException {
+                return connector.create(obj);
+            }
+        });
+    }
+
+    @Override
+    public boolean read(final ApiObjectBase obj) throws IOException {
+        return execute(new Call<Boolean>() {
+            @Override
+            Boolean run(ApiConnector connector) throws IOException {
+                return connector.read(obj);
+            }
+        });
+    }
+
+    @Override
+    public boolean update(final ApiObjectBase obj) throws IOException {
+        return execute(new Call<Boolean>() {
+            @Override
+            Boolean run(ApiConnector connector) throws IOException {
+                return connector.update(obj);
+            }
+        });
+    }
+
+    @Override
+    public void delete(final ApiObjectBase obj) throws IOException {
+        execute(new Call<Void>() {
+            @Override
+            Void run(ApiConnector connector) throws IOException {
+                connector.delete(obj);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void delete(final Class<? extends ApiObjectBase> cls, final String uuid) throws IOException {
+        execute(new Call<Void>() {
+            @Override
+            Void run(ApiConnector connector) throws IOException {
+                connector.delete(cls, uuid);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ApiObjectBase find(final Class<? extends ApiObjectBase> cls, final ApiObjectBase parent, final String name) throws IOException {
+        return execute(new Call<ApiObjectBase>() {
+            @Override
+            ApiObjectBase run(ApiConnector connector) throws IOException {
+                return connector.find(cls, parent, name);
+            }
+        });
+    }
+
+    @Override
+    public ApiObjectBase findByFQN(final Class<? extends ApiObjectBase> cls, final String fullName) throws IOException {
+        return execute(new Call<ApiObjectBase>() {
+            @Override
+            ApiObjectBase run(ApiConnector connector) throws IOException {
+                return connector.findByFQN(cls, fullName);
+            }
+        });
+    }
+
+    @Override
+    public ApiObjectBase findById(final Class<? extends ApiObjectBase> cls, final String uuid) throws IOException {
+        return execute(new Call<ApiObjectBase>() {
+            @Override
+            ApiObjectBase run(ApiConnector connector) throws IOException {
+                return connector.findById(cls, uuid);
+            }
+        });
+    }
+
+    @Override
+    public String findByName(final Class<? extends ApiObjectBase> cls, final List<String> nameList) throws IOException {
+        return execute(new Call<String>() {
+            @Override
+            String run(ApiConnector connector) throws IOException {
+                return connector.findByName(cls, nameList);
+            }
+        });
+    }
+
+    @Override
+    public String findByName(final Class<? extends ApiObjectBase> cls, final ApiObjectBase parent, final String name) throws IOException {
+        return execute(new Call<String>() {
+            @Override
+            String run(ApiConnector connector) throws IOException {
+                return connector.findByName(cls, parent, name);
+            }
+        });
+    }
+
+    @Override
+    public List<? extends ApiObjectBase> list(final Class<? extends ApiObjectBase> cls, final List<String> parent) throws IOException {
+        return execute(new Call<List<? extends ApiObjectBase>>() {
+            @Override
+            List<? extends ApiObjectBase> run(ApiConnector connector) throws IOException {
+                return connector.list(cls, parent);
+            }
+        });
+    }
+
+    @Override
+    public <T extends ApiPropertyBase> List<? extends ApiObjectBase> getObjects(final Class<? extends ApiObjectBase> cls,
+            final List<ObjectReference<T>> refList) throws IOException {
+        return execute(new Call<List<? extends ApiObjectBase>>() {
+            @Override
+            List<? extends ApiObjectBase> run(ApiConnector connector) throws IOException {
+                return connector.getObjects(cls, refList);
+            }
+        });
+    }
+
+    /**
+     * Invoked to close every idle connection; connections still leased are
+     * closed when they are returned.
+     */
+    @Override
+    public void dispose() {
+        closed = true;
+        for (Route route : routes) {
+            Connection connection;
+            while ((connection = route.idle.pollFirst()) != null) {
+                close(connection);
+            }
+        }
+    }
+
+    public long getOpenedCount() {
+        return opened.get();
+    }
+
+    public long getReusedCount() {
+        return reused.get();
+    }
+
+    public int getIdleCount() {
+        int idle = 0;
+        for (Route route : routes) {
+            idle += route.idle.size();
+        }
+        return idle;
+    }
+}
@@ -10,10 +10,20 @@ package org.opendaylight.plugin2oc.neutron;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.ApiObjectBase;
 import net.juniper.contrail.api.ApiPropertyBase;
 import net.juniper.contrail.api.ObjectReference;
 import net.juniper.contrail.api.types.InstanceIp;
@@ -33,6 +43,10 @@ import org.opendaylight.controller.networkconfig.neutron.NeutronSubnet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
 /**
  * Handle requests for Neutron Port.
  */
@@ -41,7 +55,11 @@ public class PortHandler implements INeutronPortAware {
      * Logger instance.
      */
     static final Logger LOGGER = LoggerFactory.getLogger(PortHandler.class);
+    static final String PORT_BACK_REFS = ProjectedReader.backRefsOf(VirtualMachineInterface.class);
+    static final String VIRTUAL_MACHINE_REFS = ProjectedReader.refsOf(VirtualMachine.class);
+    static final int ADDRESS_RETRIES = 3;
     static ApiConnector apiConnector;
+    static ApiObjectCache objectCache;
 
     /**
      * Invoked when a port creation is requested to check if the specified Port
@@ -53,53 +71,77 @@ public class PortHandler implements INeutronPortAware {
      */
     @Override
     public int canCreatePort(NeutronPort neutronPort) {
+        long startTime = System.nanoTime();
+        Bulkheads bulkheads = Activator.getBulkheads();
+        if (!bulkheads.tryAcquire(Bulkheads.Kind.PORT)) {
+            return ApiFutures.unavailable("port creation", startTime);
+        }
+        try {
+            return ApiFutures.await("port creation", startTime, createPortAsync(neutronPort));
+        } finally {
+            bulkheads.release(Bulkheads.Kind.PORT);
+        }
+    }
+
+    /**
+     * Invoked to check if the specified Port can be created and then create
+     * it, without waiting for the API server.
+     *
+     * @param NeutronPort
+     *            An instance of proposed new Neutron Port object.
+     * @return A future of the HTTP status code to the creation request.
+     */
+    public ListenableFuture<Integer> createPortAsync(final NeutronPort neutronPort) {
         apiConnector = Activator.apiConnector;
+        objectCache = Activator.getObjectCache();
         if (neutronPort == null) {
             LOGGER.error("NeutronPort object can't be null..");
-            return HttpURLConnection.HTTP_BAD_REQUEST;
+            return ApiFutures.status(HttpURLConnection.HTTP_BAD_REQUEST);
         }
         if (neutronPort.getID().equals("")) {
             LOGGER.error("Port Device Id or Port Uuid can't be empty/null...");
-            return HttpURLConnection.HTTP_BAD_REQUEST;
+            return ApiFutures.status(HttpURLConnection.HTTP_BAD_REQUEST);
         }
         if (neutronPort.getTenantID() == null) {
             LOGGER.error("Tenant ID can't be null...");
-            return HttpURLConnection.HTTP_BAD_REQUEST;
+            return ApiFutures.status(HttpURLConnection.HTTP_BAD_REQUEST);
         }
 
         List<Neutron_IPs> ips = neutronPort.getFixedIPs();
         if (ips == null) {
             LOGGER.warn("Neutron Fixed Ips can't be null..");
-            return HttpURLConnection.HTTP_FORBIDDEN;
-        }
-        try {
-            return createPort(neutronPort);
-        } catch (Exception e) {
-            LOGGER.error("exception :   ", e);
-            return HttpURLConnection.HTTP_INTERNAL_ERROR;
+            return ApiFutures.status(HttpURLConnection.HTTP_FORBIDDEN);
         }
+        // a retry sent while the creation is in progress shares its status
+        return Activator.getInFlightOperations().submit("port:" + neutronPort.getID(), new Callable<ListenableFuture<Integer>>() {
+            @Override
+            public ListenableFuture<Integer> call() {
+                try {
+                    return createPort(neutronPort);
+                } catch (Exception e) {
+                    LOGGER.error("exception :   ", e);
+                    return ApiFutures.status(HttpURLConnection.HTTP_INTERNAL_ERROR);
+                }
+            }
+        });
     }
 
     /**
-     * Invoked to create the specified Neutron port.
+     * Invoked to create the specified Neutron port. The lookups do not depend
+     * on each other and run concurrently, the creates follow once they
+     * complete. The port is not looked up first, a duplicate is told by the
+     * API server refusing the create.
      *
      * @param network
      *            An instance of new Neutron Port object.
      *
-     * @return A HTTP status code to the creation request.
+     * @return A future of the HTTP status code to the creation request.
      */
-    private int createPort(NeutronPort neutronPort) {
+    private ListenableFuture<Integer> createPort(final NeutronPort neutronPort) {
         String networkID = neutronPort.getNetworkUUID();
         String portID = neutronPort.getID();
-        String portDesc = neutronPort.getID();
         String deviceID = neutronPort.getDeviceID();
         String projectID = neutronPort.getTenantID();
-        String portMACAddress = neutronPort.getMacAddress();
-        VirtualMachineInterface virtualMachineInterface = null;
-        VirtualMachine virtualMachine = null;
-        VirtualNetwork virtualNetwork = null;
-        Project project = null;
-        MacAddressesType macAddressesType = new MacAddressesType();
         try {
             networkID = UUID.fromString(neutronPort.getNetworkUUID()).toString();
             portID = UUID.fromString(neutronPort.getID()).toString();
@@ -115,83 +157,150 @@ public class PortHandler implements INeutronPortAware {
             projectID = UUID.fromString(projectID).toString();
         } catch (Exception ex) {
             LOGGER.error("exception :   ", ex);
-            return HttpURLConnection.HTTP_BAD_REQUEST;
+            return ApiFutures.status(HttpURLConnection.HTTP_BAD_REQUEST);
         }
+        final String portUUID = portID;
+        final String deviceUUID = deviceID;
+        final boolean hasDevice = deviceID != null && !(("").equals(deviceID));
+        final long startTime = System.nanoTime();
+        ApiExecutor apiExecutor = Activator.getApiExecutor();
+        // the UUID of a new virtual machine is usually unknown, its lookup is
+        // skipped
+        ListenableFuture<ApiObjectBase> virtualMachineLookup = hasDevice && !objectCache.isMissing(deviceID) ? objectCache.findByIdAsync(
+                VirtualMachine.class, deviceID, apiExecutor) : Futures.<ApiObjectBase> immediateFuture(null);
+        ListenableFuture<Project> projectLookup = Activator.getProjectResolver().resolveAsync(projectID, apiExecutor);
+        ListenableFuture<ApiObjectBase> networkLookup = objectCache.findByIdAsync(VirtualNetwork.class, networkID, apiExecutor);
+        LOGGER.debug("portId:    " + portUUID);
+        return ApiFutures.then(Futures.<Object> allAsList(virtualMachineLookup, projectLookup, networkLookup),
+                new ApiFutures.Stage<List<Object>, Integer>() {
+                    @Override
+                    public ListenableFuture<Integer> apply(List<Object> lookups) {
+                        return ApiFutures.status(createPort(neutronPort, portUUID, hasDevice ? deviceUUID : null, (VirtualMachine) lookups.get(0),
+                                (Project) lookups.get(1), (VirtualNetwork) lookups.get(2), startTime));
+                    }
+                });
+    }
+
+    /**
+     * Invoked to create the objects of the specified Neutron port once the
+     * lookups completed.
+     *
+     * @param neutronPort
+     *            An instance of new Neutron Port object.
+     * @param portID
+     *            UUID of the port.
+     * @param deviceID
+     *            UUID of the virtual machine of the port, null if none.
+     * @param virtualMachine
+     *            The existing virtual machine, if any.
+     * @param project
+     *            The project of the port, if found.
+     * @param virtualNetwork
+     *            The virtual network of the port, if found.
+     * @param startTime
+     *            Time the lookups started at, in nanoseconds.
+     *
+     * @return A HTTP status code to the creation request.
+     */
+    private int createPort(NeutronPort neutronPort, String portID, String deviceID, VirtualMachine virtualMachine, Project project,
+            VirtualNetwork virtualNetwork, long startTime) {
+        String portDesc = neutronPort.getID();
+        String portMACAddress = neutronPort.getMacAddress();
+        VirtualMachineInterface virtualMachineInterface = null;
+        MacAddressesType macAddressesType = new MacAddressesType();
+        boolean hasDevice = deviceID != null;
+        long lookupTime = System.nanoTime();
+        long virtualMachineTime = 0;
+        long portTime = 0;
+        boolean virtualMachineCreated = false;
+        MutationJournal journal = Activator.getJournal();
+        long entry = journal.begin(MutationJournal.PORT_CREATE, portID, deviceID);
         try {
-            LOGGER.debug("portId:    " + portID);
-            virtualMachineInterface = (VirtualMachineInterface) apiConnector.findById(VirtualMachineInterface.class, portID);
-            if (virtualMachineInterface != null) {
-                LOGGER.warn("Port already exist.");
-                return HttpURLConnection.HTTP_FORBIDDEN;
-            } else {
-                if (deviceID != null && !(("").equals(deviceID))) {
-                    virtualMachine = (VirtualMachine) apiConnector.findById(VirtualMachine.class, deviceID);
-                    LOGGER.debug("virtualMachine:   " + virtualMachine);
-                    if (virtualMachine == null) {
-                        virtualMachine = new VirtualMachine();
-                        virtualMachine.setName(deviceID);
-                        virtualMachine.setUuid(deviceID);
-                        boolean virtualMachineCreated = apiConnector.create(virtualMachine);
-                        LOGGER.debug("virtualMachineCreated: " + virtualMachineCreated);
-                        if (!virtualMachineCreated) {
+            if (hasDevice) {
+                LOGGER.debug("virtualMachine:   " + virtualMachine);
+                if (virtualMachine == null) {
+                    virtualMachine = new VirtualMachine();
+                    virtualMachine.setName(deviceID);
+                    virtualMachine.setUuid(deviceID);
+                    virtualMachineCreated = objectCache.create(virtualMachine);
+                    LOGGER.debug("virtualMachineCreated: " + virtualMachineCreated);
+                    if (virtualMachineCreated) {
+                        journal.mark(entry, MutationJournal.VIRTUAL_MACHINE_CREATED);
+                        LOGGER.info("virtualMachine : " + virtualMachine.getName() + "  having UUID : " + virtualMachine.getUuid()
+                                + "  sucessfully created...");
+                    } else {
+                        // refused for the port of a retry, or for a
+                        // virtual machine whose lookup was skipped
+                        Integer refused = createRefused(portID, portDesc, deviceID, project, virtualNetwork);
+                        if (refused != null) {
+                            return refused;
+                        }
+                        virtualMachine = (VirtualMachine) apiConnector.findById(VirtualMachine.class, deviceID);
+                        if (virtualMachine == null) {
                             LOGGER.warn("virtualMachine creation failed..");
                             return HttpURLConnection.HTTP_INTERNAL_ERROR;
                         }
-                        LOGGER.info("virtualMachine : " + virtualMachine.getName() + "  having UUID : " + virtualMachine.getUuid()
-                                + "  sucessfully created...");
                     }
                 }
-                project = (Project) apiConnector.findById(Project.class, projectID);
-                if (project == null) {
-                    try {
-                        Thread.currentThread();
-                        Thread.sleep(3000);
-                    } catch (InterruptedException e) {
-                        LOGGER.error("InterruptedException :      ", e);
-                    }
-                    project = (Project) apiConnector.findById(Project.class, projectID);
-                    if (project == null) {
-                        LOGGER.error("Could not find projectUUID...");
-                        return HttpURLConnection.HTTP_NOT_FOUND;
-                    }
+            }
+            virtualMachineTime = System.nanoTime();
+            if (project == null) {
+                LOGGER.error("Could not find projectUUID...");
+                return HttpURLConnection.HTTP_NOT_FOUND;
+            }
+            LOGGER.info("virtualNetwork: " + virtualNetwork);
+            if (virtualNetwork == null) {
+                LOGGER.warn("virtualNetwork does not exist..");
+                return HttpURLConnection.HTTP_BAD_REQUEST;
+            } else {
+                virtualMachineInterface = new VirtualMachineInterface();
+                virtualMachineInterface.setUuid(portID);
+                virtualMachineInterface.setName(portDesc);
+                virtualMachineInterface.setParent(project);
+                virtualMachineInterface.setVirtualNetwork(virtualNetwork);
+                macAddressesType.addMacAddress(portMACAddress);
+                virtualMachineInterface.setMacAddresses(macAddressesType);
+                if (hasDevice) {
+                    virtualMachineInterface.setVirtualMachine(virtualMachine);
                 }
-                virtualNetwork = (VirtualNetwork) apiConnector.findById(VirtualNetwork.class, networkID);
-                LOGGER.info("virtualNetwork: " + virtualNetwork);
-                if (virtualNetwork == null) {
-                    LOGGER.warn("virtualNetwork does not exist..");
-                    return HttpURLConnection.HTTP_BAD_REQUEST;
-                } else {
-                    virtualMachineInterface = new VirtualMachineInterface();
-                    virtualMachineInterface.setUuid(portID);
-                    virtualMachineInterface.setName(portDesc);
-                    virtualMachineInterface.setParent(project);
-                    virtualMachineInterface.setVirtualNetwork(virtualNetwork);
-                    macAddressesType.addMacAddress(portMACAddress);
-                    virtualMachineInterface.setMacAddresses(macAddressesType);
-                    if (deviceID != null && !(("").equals(deviceID))) {
-                        virtualMachineInterface.setVirtualMachine(virtualMachine);
-                    }
-                    boolean virtualMachineInterfaceCreated = apiConnector.create(virtualMachineInterface);
-                    if (!virtualMachineInterfaceCreated) {
-                        LOGGER.warn("actual virtualMachineInterface creation failed..");
-                        return HttpURLConnection.HTTP_INTERNAL_ERROR;
+                boolean virtualMachineInterfaceCreated = objectCache.create(virtualMachineInterface);
+                if (!virtualMachineInterfaceCreated) {
+                    Integer refused = createRefused(portID, portDesc, deviceID, project, virtualNetwork);
+                    if (refused != null) {
+                        // without the virtual machine just created for it
+                        if (virtualMachineCreated) {
+                            removeUnusedVirtualMachine(Activator.getProjectedReader(), deviceID);
+                        }
+                        return refused;
                     }
-                    LOGGER.info("virtualMachineInterface : " + virtualMachineInterface.getName() + "  having UUID : "
-                            + virtualMachineInterface.getUuid() + "  sucessfully created...");
+                    LOGGER.warn("actual virtualMachineInterface creation failed..");
+                    return HttpURLConnection.HTTP_INTERNAL_ERROR;
                 }
-
+                journal.mark(entry, MutationJournal.INTERFACE_CREATED);
+                LOGGER.info("virtualMachineInterface : " + virtualMachineInterface.getName() + "  having UUID : "
+                        + virtualMachineInterface.getUuid() + "  sucessfully created...");
             }
+            portTime = System.nanoTime();
             INeutronSubnetCRUD systemCRUD = NeutronCRUDInterfaces.getINeutronSubnetCRUD(this);
             NeutronSubnet subnet = null;
             List<Neutron_IPs> ips = neutronPort.getFixedIPs();
             InstanceIp instanceIp = new InstanceIp();
             String instaneIpUuid = UUID.randomUUID().toString();
+            IpAllocatorRegistry ipAllocators = Activator.getIpAllocators();
+            String allocated = null;
+            // the InstanceIp keeps the address of the last fixed IP, give
+            // back the ones overwritten
             for (Neutron_IPs ipValues : ips) {
                 if (ipValues.getIpAddress() == null) {
                     subnet = systemCRUD.getSubnet(ipValues.getSubnetUUID());
-                    instanceIp.setAddress(subnet.getLowAddr());
+                    ipAllocators.release(instaneIpUuid);
+                    allocated = ipAllocators.allocate(subnet, virtualNetwork, instaneIpUuid);
+                    instanceIp.setAddress(allocated != null ? allocated : subnet.getLowAddr());
                 } else {
+                    ipAllocators.release(instaneIpUuid);
+                    ipAllocators.reserve(ipValues.getSubnetUUID(), ipValues.getIpAddress(), instaneIpUuid);
                     instanceIp.setAddress(ipValues.getIpAddress());
+                    allocated = null;
                 }
             }
 
@@ -202,18 +311,115 @@ public class PortHandler implements INeutronPortAware {
             instanceIp.setVirtualNetwork(virtualNetwork);
 
             boolean instanceIpCreated = apiConnector.create(instanceIp);
+            // an allocated address may be held by an InstanceIp the
+            // allocator has not seen, keep it reserved and try the next one
+            for (int retry = 0; !instanceIpCreated && allocated != null && retry < ADDRESS_RETRIES; retry++) {
+                if (!ipAllocators.isInUse(virtualNetwork.getUuid(), allocated)) {
+                    // refused for another reason, the address is given back
+                    break;
+                }
+                LOGGER.warn("instanceIp with address " + allocated + " already in use, retrying with the next free address..");
+                ipAllocators.abandon(instaneIpUuid);
+                allocated = ipAllocators.allocate(subnet, virtualNetwork, instaneIpUuid);
+                if (allocated != null) {
+                    instanceIp.setAddress(allocated);
+                    instanceIpCreated = apiConnector.create(instanceIp);
+                }
+            }
             if (!instanceIpCreated) {
+                ipAllocators.release(instaneIpUuid);
                 LOGGER.warn("instanceIp addition failed..");
                 return HttpURLConnection.HTTP_INTERNAL_ERROR;
             }
+            journal.mark(entry, MutationJournal.INSTANCE_IP_CREATED);
             LOGGER.info("Instance IP added sucessfully...");
+            Activator.getObjectIndex().putPort(portID, project.getUuid(), virtualNetwork.getUuid(), deviceID, instaneIpUuid);
+            long endTime = System.nanoTime();
+            LOGGER.info("Port " + portID + " created in " + TimeUnit.NANOSECONDS.toMillis(endTime - startTime) + " ms (lookups : "
+                    + TimeUnit.NANOSECONDS.toMillis(lookupTime - startTime) + " ms, virtualMachine : "
+                    + TimeUnit.NANOSECONDS.toMillis(virtualMachineTime - lookupTime) + " ms, virtualMachineInterface : "
+                    + TimeUnit.NANOSECONDS.toMillis(portTime - virtualMachineTime) + " ms, instanceIp : "
+                    + TimeUnit.NANOSECONDS.toMillis(endTime - portTime) + " ms)");
             return HttpURLConnection.HTTP_OK;
         } catch (IOException ie) {
             LOGGER.error("IOException :    ", ie);
             return HttpURLConnection.HTTP_INTERNAL_ERROR;
+        } finally {
+            journal.complete(entry);
         }
     }
 
+    /**
+     * Invoked when the API server refused to create an object of a port, to
+     * tell a duplicate port from a failure. A port of the same UUID, project,
+     * network and virtual machine having its instance IP was created by an
+     * earlier attempt of the same request, e.g. one whose answer was lost.
+     *
+     * @param portID
+     *            UUID of the port.
+     * @param portName
+     *            name of the port.
+     * @param deviceID
+     *            UUID of the virtual machine of the port, null if none.
+     * @param project
+     *            The project of the port, if found.
+     * @param virtualNetwork
+     *            The virtual network of the port, if found.
+     *
+     * @return HTTP_OK for a retry, HTTP_FORBIDDEN if another port has the same
+     *         UUID or name, null if there is no such port.
+     */
+    private Integer createRefused(String portID, String portName, String deviceID, Project project, VirtualNetwork virtualNetwork)
+            throws IOException {
+        VirtualMachineInterface existing = (VirtualMachineInterface) apiConnector.findById(VirtualMachineInterface.class, portID);
+        if (existing == null) {
+            if (project != null && apiConnector.findByName(VirtualMachineInterface.class, project, portName) != null) {
+                LOGGER.warn("Port already exist.");
+                return HttpURLConnection.HTTP_FORBIDDEN;
+            }
+            return null;
+        }
+        List<ObjectReference<ApiPropertyBase>> instanceIPs = existing.getInstanceIpBackRefs();
+        if (instanceIPs != null && !instanceIPs.isEmpty() && project != null && Objects.equals(existing.getParentUuid(), project.getUuid())
+                && virtualNetwork != null && refersTo(existing.getVirtualNetwork(), virtualNetwork.getUuid())
+                && (deviceID == null ? existing.getVirtualMachine() == null : refersTo(existing.getVirtualMachine(), deviceID))) {
+            Activator.getObjectIndex().putPort(portID, project.getUuid(), virtualNetwork.getUuid(), deviceID, instanceIPs.get(0).getUuid());
+            LOGGER.info("Port " + portID + " already created by the request...");
+            return HttpURLConnection.HTTP_OK;
+        }
+        LOGGER.warn("Port already exist.");
+        return HttpURLConnection.HTTP_FORBIDDEN;
+    }
+
+    private static boolean refersTo(List<ObjectReference<ApiPropertyBase>> refs, String uuid) {
+        if (refs != null) {
+            for (ObjectReference<ApiPropertyBase> ref : refs) {
+                if (uuid != null && uuid.equals(ref.getUuid())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Invoked to build an API lookup that can run on the {@link ApiExecutor}.
+     *
+     * @param cls
+     *            Contrail type of the object.
+     * @param uuid
+     *            UUID of the object.
+     */
+    private Callable<ApiObjectBase> lookup(final Class<? extends ApiObjectBase> cls, final String uuid) {
+        final ApiConnector connector = apiConnector;
+        return new Callable<ApiObjectBase>() {
+            @Override
+            public ApiObjectBase call() throws IOException {
+                return connector.findById(cls, uuid);
+            }
+        };
+    }
+
     /**
      * Invoked to take action after a port has been created.
      *
@@ -221,16 +427,14 @@ public class PortHandler implements INeutronPortAware {
      *            An instance of new Neutron port object.
      */
     @Override
-    public void neutronPortCreated(NeutronPort neutronPort) {
-        VirtualMachineInterface virtualMachineInterface = null;
-        try {
-            virtualMachineInterface = (VirtualMachineInterface) apiConnector.findById(VirtualMachineInterface.class, neutronPort.getPortUUID());
-            if (virtualMachineInterface != null) {
-                LOGGER.info("Port creation verified....");
+    public void neutronPortCreated(final NeutronPort neutronPort) {
+        final ProjectedReader reader = Activator.getProjectedReader();
+        Activator.getVerifier().verify("port.created:" + neutronPort.getPortUUID(), new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws IOException {
+                return reader.exists(VirtualMachineInterface.class, neutronPort.getPortUUID());
             }
-        } catch (Exception e) {
-            LOGGER.error("Exception :    " + e);
-        }
+        });
     }
 
     /**
@@ -247,63 +451,345 @@ public class PortHandler implements INeutronPortAware {
             LOGGER.info("Port object can't be null...");
             return HttpURLConnection.HTTP_BAD_REQUEST;
         }
+        return canDeletePorts(Collections.singletonList(neutronPort));
+    }
+
+    /**
+     * Invoked when the ports of an instance are torn down together to delete
+     * all of them in one batch.
+     *
+     * @param neutronPorts
+     *            The Neutron Port objects to be deleted.
+     * @return A HTTP status code to the deletion request, HTTP_OK only if
+     *         every port was deleted.
+     */
+    public int canDeletePorts(List<NeutronPort> neutronPorts) {
+        long startTime = System.nanoTime();
+        Bulkheads bulkheads = Activator.getBulkheads();
+        if (!bulkheads.tryAcquire(Bulkheads.Kind.PORT)) {
+            return ApiFutures.unavailable("port deletion", startTime);
+        }
+        try {
+            return ApiFutures.await("port deletion", startTime, deletePortsAsync(neutronPorts));
+        } finally {
+            bulkheads.release(Bulkheads.Kind.PORT);
+        }
+    }
+
+    /**
+     * Invoked to delete Neutron ports in batch without waiting for the API
+     * server.
+     *
+     * @param neutronPorts
+     *            The Neutron Port objects to be deleted.
+     * @return A future of the HTTP status code to the deletion request,
+     *         HTTP_OK only if every port was deleted.
+     */
+    public ListenableFuture<Integer> deletePortsAsync(List<NeutronPort> neutronPorts) {
+        if (neutronPorts == null || neutronPorts.contains(null)) {
+            LOGGER.info("Port object can't be null...");
+            return ApiFutures.status(HttpURLConnection.HTTP_BAD_REQUEST);
+        }
         apiConnector = Activator.apiConnector;
+        objectCache = Activator.getObjectCache();
         try {
-            return deletePort(neutronPort);
+            return deletePorts(neutronPorts);
         } catch (Exception e) {
             LOGGER.error("exception :   ", e);
-            return HttpURLConnection.HTTP_INTERNAL_ERROR;
+            return ApiFutures.status(HttpURLConnection.HTTP_INTERNAL_ERROR);
         }
     }
 
     /**
-     * Invoked to delete the specified Neutron port.
+     * Invoked to delete Neutron ports in batch. Every stage runs its API calls
+     * concurrently and starts when the previous one completes: the VMI
+     * lookups, then the InstanceIp deletes straight from the back-refs
+     * without fetching them first, then the VMI deletes and finally one
+     * back-ref check per distinct virtual machine. The ports found in the
+     * {@link ObjectIndex} are not looked up, their InstanceIp being indexed,
+     * and a virtual machine still holding indexed ports is not checked. A
+     * delete failing on an object already gone, e.g. after a stale index
+     * entry, is not an error.
      *
-     * @param network
-     *            An instance of new Neutron Port object.
+     * @param neutronPorts
+     *            The Neutron Port objects to be deleted.
      *
-     * @return A HTTP status code to the deletion request.
+     * @return A future of the HTTP status code to the deletion request.
      */
-    private int deletePort(NeutronPort neutronPort) {
-        String portID = neutronPort.getID();
-        String deviceID = neutronPort.getDeviceID();
-        VirtualMachineInterface virtualMachineInterface = null;
-        VirtualMachine virtualMachine = null;
-        InstanceIp instanceIP = null;
-        List<ObjectReference<ApiPropertyBase>> virtualMachineInterfaceBackRefs = null;
-        try {
-            virtualMachineInterface = (VirtualMachineInterface) apiConnector.findById(VirtualMachineInterface.class, portID);
-            if (virtualMachineInterface == null) {
-                LOGGER.info("Specified port does not exist...");
-                return HttpURLConnection.HTTP_BAD_REQUEST;
+    private ListenableFuture<Integer> deletePorts(final List<NeutronPort> neutronPorts) {
+        final ApiExecutor apiExecutor = Activator.getApiExecutor();
+        final ObjectIndex index = Activator.getObjectIndex();
+        final ObjectIndex.Entry[] indexed = new ObjectIndex.Entry[neutronPorts.size()];
+        List<ListenableFuture<ApiObjectBase>> portLookups = new ArrayList<ListenableFuture<ApiObjectBase>>();
+        for (int i = 0; i < neutronPorts.size(); i++) {
+            indexed[i] = index.get(neutronPorts.get(i).getID());
+            if (indexed[i] != null && indexed[i].getType() == ObjectIndex.PORT) {
+                VirtualMachineInterface virtualMachineInterface = new VirtualMachineInterface();
+                virtualMachineInterface.setUuid(indexed[i].getUuid());
+                portLookups.add(Futures.<ApiObjectBase> immediateFuture(virtualMachineInterface));
             } else {
+                indexed[i] = null;
+                portLookups.add(apiExecutor.submit(lookup(VirtualMachineInterface.class, neutronPorts.get(i).getID())));
+            }
+        }
+        return ApiFutures.then(Futures.allAsList(portLookups), new ApiFutures.Stage<List<ApiObjectBase>, Integer>() {
+            @Override
+            public ListenableFuture<Integer> apply(List<ApiObjectBase> ports) {
+                int status = HttpURLConnection.HTTP_OK;
+                final List<VirtualMachineInterface> virtualMachineInterfaces = new ArrayList<VirtualMachineInterface>();
+                final Set<String> deviceIDs = new LinkedHashSet<String>();
+                List<ListenableFuture<Void>> instanceIpDeletes = new ArrayList<ListenableFuture<Void>>();
+                final List<String> instanceIpUUIDs = new ArrayList<String>();
+                final MutationJournal journal = Activator.getJournal();
+                final long[] entries = new long[neutronPorts.size()];
+                Arrays.fill(entries, MutationJournal.NO_ENTRY);
+                for (int i = 0; i < neutronPorts.size(); i++) {
+                    VirtualMachineInterface virtualMachineInterface = (VirtualMachineInterface) ports.get(i);
+                    String deviceID = neutronPorts.get(i).getDeviceID();
+                    // checked even without the interface, a deletion
+                    // interrupted after it leaves the virtual machine behind
+                    if (deviceID != null && !(("").equals(deviceID))) {
+                        deviceIDs.add(deviceID);
+                    }
+                    if (virtualMachineInterface == null) {
+                        LOGGER.info("Specified port does not exist...");
+                        status = HttpURLConnection.HTTP_BAD_REQUEST;
+                        continue;
+                    }
+                    virtualMachineInterfaces.add(virtualMachineInterface);
+                    entries[i] = journal.begin(MutationJournal.PORT_DELETE, neutronPorts.get(i).getID(), deviceID);
+                    if (indexed[i] != null) {
+                        InstanceIp instanceIP = new InstanceIp();
+                        instanceIP.setUuid(indexed[i].getInstanceIpUUID());
+                        instanceIpUUIDs.add(instanceIP.getUuid());
+                        instanceIpDeletes.add(apiExecutor.submit(remove(instanceIP)));
+                        continue;
+                    }
+                    List<ObjectReference<ApiPropertyBase>> instanceIPs = virtualMachineInterface.getInstanceIpBackRefs();
+                    if (instanceIPs != null) {
+                        for (ObjectReference<ApiPropertyBase> ref : instanceIPs) {
+                            String instanceIPUUID = ref.getUuid();
+                            if (instanceIPUUID != null) {
+                                InstanceIp instanceIP = new InstanceIp();
+                                instanceIP.setUuid(instanceIPUUID);
+                                instanceIpUUIDs.add(instanceIPUUID);
+                                instanceIpDeletes.add(apiExecutor.submit(remove(instanceIP)));
+                            }
+                        }
+                    }
+                }
+                final int portsStatus = status;
+                final ListenableFuture<Integer> deleted = ApiFutures.then(Futures.allAsList(instanceIpDeletes),
+                        new ApiFutures.Stage<List<Void>, Integer>() {
+                    @Override
+                    public ListenableFuture<Integer> apply(List<Void> instanceIpsDeleted) {
+                        IpAllocatorRegistry ipAllocators = Activator.getIpAllocators();
+                        for (String instanceIPUUID : instanceIpUUIDs) {
+                            ipAllocators.release(instanceIPUUID);
+                        }
+                        List<ListenableFuture<Void>> portDeletes = new ArrayList<ListenableFuture<Void>>();
+                        for (VirtualMachineInterface virtualMachineInterface : virtualMachineInterfaces) {
+                            portDeletes.add(apiExecutor.submit(remove(virtualMachineInterface)));
+                        }
+                        return ApiFutures.then(Futures.allAsList(portDeletes), new ApiFutures.Stage<List<Void>, Integer>() {
+                            @Override
+                            public ListenableFuture<Integer> apply(List<Void> portsDeleted) {
+                                for (VirtualMachineInterface virtualMachineInterface : virtualMachineInterfaces) {
+                                    index.remove(virtualMachineInterface.getUuid());
+                                }
+                                List<ListenableFuture<Void>> virtualMachineDeletes = new ArrayList<ListenableFuture<Void>>();
+                                for (String deviceID : deviceIDs) {
+                                    if (index.getDevicePortCount(deviceID) == 0) {
+                                        virtualMachineDeletes.add(apiExecutor.submit(removeUnusedVirtualMachine(deviceID)));
+                                    }
+                                }
+                                return ApiFutures.then(Futures.allAsList(virtualMachineDeletes), new ApiFutures.Stage<List<Void>, Integer>() {
+                                    @Override
+                                    public ListenableFuture<Integer> apply(List<Void> virtualMachinesDeleted) {
+                                        if (!virtualMachineInterfaces.isEmpty()) {
+                                            LOGGER.info(virtualMachineInterfaces.size() + " specified port(s) deleted sucessfully...");
+                                        }
+                                        return ApiFutures.status(portsStatus);
+                                    }
+                                });
+                            }
+                        });
+                    }
+                });
+                deleted.addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (long entry : entries) {
+                            journal.complete(entry);
+                        }
+                    }
+                }, ApiFutures.DirectExecutor.INSTANCE);
+                return deleted;
+            }
+        });
+    }
+
+    /**
+     * Invoked at startup to finish the port mutations interrupted by the
+     * previous run: creations are rolled back since their request was never
+     * answered, deletions are run again. Entries failing again stay open for
+     * the next run. The entries are recovered one after the other without
+     * holding a thread of the {@link ApiExecutor} while a deletion runs.
+     *
+     * @param journal
+     *            The journal holding the unfinished mutations.
+     * @return A future of the number of mutations finished.
+     */
+    public ListenableFuture<Integer> recover(MutationJournal journal) {
+        apiConnector = Activator.apiConnector;
+        objectCache = Activator.getObjectCache();
+        return recover(journal, journal.getUnfinished().iterator(), 0);
+    }
+
+    private ListenableFuture<Integer> recover(final MutationJournal journal, final Iterator<MutationJournal.Entry> entries, final int recovered) {
+        if (!entries.hasNext()) {
+            return Futures.immediateFuture(recovered);
+        }
+        final MutationJournal.Entry entry = entries.next();
+        final SettableFuture<Integer> status = SettableFuture.create();
+        final ListenableFuture<Integer> step = recover(entry);
+        step.addListener(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    status.set(step.get());
+                } catch (Exception e) {
+                    LOGGER.error("Exception :   " + e);
+                    status.set(HttpURLConnection.HTTP_INTERNAL_ERROR);
+                }
+            }
+        }, ApiFutures.DirectExecutor.INSTANCE);
+        return ApiFutures.then(status, new ApiFutures.Stage<Integer, Integer>() {
+            @Override
+            public ListenableFuture<Integer> apply(Integer result) {
+                if (result != HttpURLConnection.HTTP_OK && result != HttpURLConnection.HTTP_BAD_REQUEST) {
+                    return recover(journal, entries, recovered);
+                }
+                journal.complete(entry.getHandle());
+                LOGGER.info("Unfinished port " + (entry.getOperation() == MutationJournal.PORT_CREATE ? "creation" : "deletion") + " of "
+                        + entry.getPortUUID() + " recovered");
+                return recover(journal, entries, recovered + 1);
+            }
+        });
+    }
+
+    /**
+     * Invoked to start the recovery of an unfinished mutation.
+     *
+     * @return A future of the HTTP status code of the recovery.
+     */
+    private ListenableFuture<Integer> recover(final MutationJournal.Entry entry) {
+        if (entry.getOperation() == MutationJournal.PORT_CREATE) {
+            final ApiConnector connector = apiConnector;
+            return Activator.getApiExecutor().submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws IOException {
+                    rollBackPortCreation(connector, entry);
+                    return HttpURLConnection.HTTP_OK;
+                }
+            });
+        } else if (entry.getOperation() == MutationJournal.PORT_DELETE) {
+            NeutronPort neutronPort = new NeutronPort();
+            neutronPort.setPortUUID(entry.getPortUUID());
+            neutronPort.setDeviceID(entry.getDeviceUUID());
+            return deletePortsAsync(Collections.singletonList(neutronPort));
+        }
+        return ApiFutures.status(HttpURLConnection.HTTP_OK);
+    }
+
+    /**
+     * Invoked to delete the objects created by an interrupted port creation.
+     * Only the objects the creation marked in the journal are deleted: an
+     * interface it did not create, e.g. one whose create was refused as a
+     * duplicate, belongs to another request. The instance IPs of an interface
+     * it created are its own, including one created just before the crash
+     * without being marked.
+     *
+     * @param connector
+     *            The connector to the API server.
+     * @param entry
+     *            The unfinished port creation.
+     */
+    private static void rollBackPortCreation(ApiConnector connector, MutationJournal.Entry entry) throws IOException {
+        String portUUID = entry.getPortUUID();
+        if (entry.isInterfaceCreated()) {
+            VirtualMachineInterface virtualMachineInterface = (VirtualMachineInterface) connector.findById(VirtualMachineInterface.class,
+                    portUUID);
+            if (virtualMachineInterface != null) {
                 List<ObjectReference<ApiPropertyBase>> instanceIPs = virtualMachineInterface.getInstanceIpBackRefs();
                 if (instanceIPs != null) {
+                    IpAllocatorRegistry ipAllocators = Activator.getIpAllocators();
                     for (ObjectReference<ApiPropertyBase> ref : instanceIPs) {
-                        String instanceIPUUID = ref.getUuid();
-                        if (instanceIPUUID != null) {
-                            instanceIP = (InstanceIp) apiConnector.findById(InstanceIp.class, instanceIPUUID);
-                            apiConnector.delete(instanceIP);
+                        if (ref.getUuid() != null) {
+                            InstanceIp instanceIP = new InstanceIp();
+                            instanceIP.setUuid(ref.getUuid());
+                            connector.delete(instanceIP);
+                            ipAllocators.release(ref.getUuid());
                         }
                     }
                 }
-                apiConnector.delete(virtualMachineInterface);
-                virtualMachine = (VirtualMachine) apiConnector.findById(VirtualMachine.class, deviceID);
-                if (virtualMachine != null) {
-                    virtualMachineInterfaceBackRefs = virtualMachine.getVirtualMachineInterfaceBackRefs();
-                    if (virtualMachineInterfaceBackRefs == null) {
-                        apiConnector.delete(virtualMachine);
+                connector.delete(virtualMachineInterface);
+            }
+            Activator.getObjectIndex().remove(portUUID);
+        }
+        if (entry.isVirtualMachineCreated() && entry.getDeviceUUID() != null) {
+            removeUnusedVirtualMachine(Activator.getProjectedReader(), entry.getDeviceUUID());
+        }
+        LOGGER.debug("Port creation of " + portUUID + " rolled back, interface created : " + entry.isInterfaceCreated() + "  instance IP created : "
+                + entry.isInstanceIpCreated() + "  virtual machine created : " + entry.isVirtualMachineCreated());
+    }
+
+    /**
+     * Invoked to build an API delete that can run on the {@link ApiExecutor}.
+     */
+    private Callable<Void> remove(final ApiObjectBase object) {
+        final ApiConnector connector = apiConnector;
+        final ProjectedReader reader = Activator.getProjectedReader();
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                try {
+                    connector.delete(object);
+                } catch (IOException e) {
+                    // the object may be known from a stale index entry only
+                    if (reader.exists(object.getClass(), object.getUuid())) {
+                        throw e;
                     }
+                    LOGGER.info(object.getClass().getSimpleName() + " " + object.getUuid() + " already deleted");
                 }
-                LOGGER.info("Specified port deleted sucessfully...");
-                return HttpURLConnection.HTTP_OK;
+                return null;
             }
-        } catch (IOException io) {
-            LOGGER.error("Exception  :   " + io);
-            return HttpURLConnection.HTTP_INTERNAL_ERROR;
-        } catch (Exception e) {
-            LOGGER.error("Exception  :   " + e);
-            return HttpURLConnection.HTTP_INTERNAL_ERROR;
+        };
+    }
+
+    /**
+     * Invoked to build a task deleting a virtual machine once no interface
+     * refers to it any more.
+     */
+    private Callable<Void> removeUnusedVirtualMachine(final String deviceID) {
+        final ProjectedReader reader = Activator.getProjectedReader();
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                removeUnusedVirtualMachine(reader, deviceID);
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Invoked to delete a virtual machine if no interface refers to it. Only
+     * the interface back-refs of the virtual machine are read.
+     */
+    private static void removeUnusedVirtualMachine(ProjectedReader reader, String deviceID) throws IOException {
+        ProjectedReader.Fields virtualMachine = reader.readFields(VirtualMachine.class, deviceID, PORT_BACK_REFS);
+        if (virtualMachine != null && !virtualMachine.has(PORT_BACK_REFS)) {
+            reader.getApiConnector().delete(VirtualMachine.class, deviceID);
         }
     }
 
@@ -314,16 +800,14 @@ public class PortHandler implements INeutronPortAware {
      *            An instance of new Neutron port object.
      */
     @Override
-    public void neutronPortDeleted(NeutronPort neutronPort) {
-        VirtualMachineInterface virtualMachineInterface = new VirtualMachineInterface();
-        try {
-            virtualMachineInterface = (VirtualMachineInterface) apiConnector.findById(VirtualMachineInterface.class, neutronPort.getPortUUID());
-            if (virtualMachineInterface == null) {
-                LOGGER.info("Port deletion verified....");
+    public void neutronPortDeleted(final NeutronPort neutronPort) {
+        final ProjectedReader reader = Activator.getProjectedReader();
+        Activator.getVerifier().verify("port.deleted:" + neutronPort.getPortUUID(), new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws IOException {
+                return !reader.exists(VirtualMachineInterface.class, neutronPort.getPortUUID());
             }
-        } catch (Exception e) {
-            LOGGER.error("Exception :    " + e);
-        }
+        });
     }
 
     /**
@@ -339,26 +823,58 @@ public class PortHandler implements INeutronPortAware {
      */
     @Override
     public int canUpdatePort(NeutronPort deltaPort, NeutronPort originalPort) {
+        long startTime = System.nanoTime();
+        Bulkheads bulkheads = Activator.getBulkheads();
+        if (!bulkheads.tryAcquire(Bulkheads.Kind.PORT)) {
+            return ApiFutures.unavailable("port update", startTime);
+        }
+        try {
+            return ApiFutures.await("port update", startTime, updatePortAsync(deltaPort, originalPort));
+        } finally {
+            bulkheads.release(Bulkheads.Kind.PORT);
+        }
+    }
+
+    /**
+     * Invoked to check if the specified port can be updated using the
+     * specified delta and then update it, without waiting for the API server.
+     *
+     * @param delta
+     *            Updates to the port object using patch semantics.
+     * @param original
+     *            An instance of the Neutron Port object to be updated.
+     *
+     * @return A future of the HTTP status code to the update request.
+     */
+    public ListenableFuture<Integer> updatePortAsync(final NeutronPort deltaPort, final NeutronPort originalPort) {
         apiConnector = Activator.apiConnector;
-        VirtualMachineInterface virtualMachineInterface = null;
+        objectCache = Activator.getObjectCache();
         if (deltaPort == null || originalPort == null) {
             LOGGER.error("Neutron Port objects can't be null..");
-            return HttpURLConnection.HTTP_BAD_REQUEST;
+            return ApiFutures.status(HttpURLConnection.HTTP_BAD_REQUEST);
         }
         if (deltaPort.getMacAddress() != null) {
             LOGGER.error("MAC Address for the port can't be updated..");
-            return HttpURLConnection.HTTP_BAD_REQUEST;
-        }
-        try {
-            virtualMachineInterface = (VirtualMachineInterface) apiConnector.findById(VirtualMachineInterface.class, originalPort.getPortUUID());
-            return updatePort(deltaPort, virtualMachineInterface, originalPort);
-        } catch (IOException ie) {
-            LOGGER.error("IOException:     " + ie);
-            return HttpURLConnection.HTTP_INTERNAL_ERROR;
-        } catch (Exception e) {
-            LOGGER.error("Exception:     " + e);
-            return HttpURLConnection.HTTP_INTERNAL_ERROR;
+            return ApiFutures.status(HttpURLConnection.HTTP_BAD_REQUEST);
         }
+        // concurrent updates of the port would overwrite each other
+        final Callable<ApiObjectBase> portLookup = lookup(VirtualMachineInterface.class, originalPort.getPortUUID());
+        return Activator.getObjectLocks().submit(originalPort.getPortUUID(), new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                // the update may change what is indexed of the port
+                Activator.getObjectIndex().remove(originalPort.getPortUUID());
+                try {
+                    return updatePort(deltaPort, (VirtualMachineInterface) portLookup.call(), originalPort);
+                } catch (IOException ie) {
+                    LOGGER.error("IOException:     " + ie);
+                    return HttpURLConnection.HTTP_INTERNAL_ERROR;
+                } catch (Exception e) {
+                    LOGGER.error("Exception:     " + e);
+                    return HttpURLConnection.HTTP_INTERNAL_ERROR;
+                }
+            }
+        });
     }
 
     /**
@@ -386,43 +902,37 @@ public class PortHandler implements INeutronPortAware {
                 }
             }
             boolean subnetExist = false;
-            virtualnetwork = (VirtualNetwork) apiConnector.findById(VirtualNetwork.class, networkUUID);
+            virtualnetwork = (VirtualNetwork) objectCache.findById(VirtualNetwork.class, networkUUID);
             if (virtualnetwork == null) {
                 LOGGER.error(" Virtual network does not exist");
                 return HttpURLConnection.HTTP_FORBIDDEN;
             }
             if (virtualnetwork != null && virtualnetwork.getNetworkIpam() != null) {
+                SubnetIndex subnetIndex = SubnetIndex.of(virtualnetwork);
                 for (Neutron_IPs fixedIp : fixedIPs) {
-                    for (ObjectReference<VnSubnetsType> ref : virtualnetwork.getNetworkIpam()) {
-                        VnSubnetsType vnSubnetsType = ref.getAttr();
-                        if (vnSubnetsType != null) {
-                            List<VnSubnetsType.IpamSubnetType> subnets = vnSubnetsType.getIpamSubnets();
-                            if (subnets != null) {
-                                for (VnSubnetsType.IpamSubnetType subnetValue : subnets) {
-                                    Boolean doesSubnetExist = subnetValue.getSubnetUuid().matches(fixedIp.getSubnetUUID());
-                                    if (doesSubnetExist) {
-                                        subnetExist = true;
-                                        for (ObjectReference<ApiPropertyBase> instanceIp : virtualMachineInterface.getInstanceIpBackRefs()) {
-                                            InstanceIp instanceIpLocal = (InstanceIp) apiConnector.findById(InstanceIp.class, instanceIp.getUuid());
-                                            instanceIpLocal.setVirtualNetwork(virtualnetwork);
-                                            INeutronSubnetCRUD systemCRUD = NeutronCRUDInterfaces.getINeutronSubnetCRUD(this);
-                                            NeutronSubnet subnet = null;
-                                            for (Neutron_IPs ip : originalPort.getFixedIPs()) {
-                                                subnet = systemCRUD.getSubnet(ip.getSubnetUUID());
-                                                subnet.releaseIP(ip.getIpAddress());
-                                            }
-                                            if (fixedIp.getIpAddress() == null) {
-                                                subnet = systemCRUD.getSubnet(fixedIp.getSubnetUUID());
-                                                instanceIpLocal.setAddress(subnet.getLowAddr());
-                                            } else {
-                                                instanceIpLocal.setAddress(fixedIp.getIpAddress());
-                                            }
-                                            instanceIpUpdate = apiConnector.update(instanceIpLocal);
-                                            virtualMachineInterface.setVirtualNetwork(virtualnetwork);
-                                        }
-                                    }
-                                }
+                    if (subnetIndex.getByUuid(fixedIp.getSubnetUUID()) != null) {
+                        subnetExist = true;
+                        for (ObjectReference<ApiPropertyBase> instanceIp : virtualMachineInterface.getInstanceIpBackRefs()) {
+                            InstanceIp instanceIpLocal = (InstanceIp) apiConnector.findById(InstanceIp.class, instanceIp.getUuid());
+                            instanceIpLocal.setVirtualNetwork(virtualnetwork);
+                            INeutronSubnetCRUD systemCRUD = NeutronCRUDInterfaces.getINeutronSubnetCRUD(this);
+                            NeutronSubnet subnet = null;
+                            for (Neutron_IPs ip : originalPort.getFixedIPs()) {
+                                subnet = systemCRUD.getSubnet(ip.getSubnetUUID());
+                                subnet.releaseIP(ip.getIpAddress());
+                            }
+                            IpAllocatorRegistry ipAllocators = Activator.getIpAllocators();
+                            ipAllocators.release(instanceIpLocal.getUuid());
+                            if (fixedIp.getIpAddress() == null) {
+                                subnet = systemCRUD.getSubnet(fixedIp.getSubnetUUID());
+                                String address = ipAllocators.allocate(subnet, virtualnetwork, instanceIpLocal.getUuid());
+                                instanceIpLocal.setAddress(address != null ? address : subnet.getLowAddr());
+                            } else {
+                                ipAllocators.reserve(fixedIp.getSubnetUUID(), fixedIp.getIpAddress(), instanceIpLocal.getUuid());
+                                instanceIpLocal.setAddress(fixedIp.getIpAddress());
                             }
+                            instanceIpUpdate = apiConnector.update(instanceIpLocal);
+                            virtualMachineInterface.setVirtualNetwork(virtualnetwork);
                         }
                     }
                 }
@@ -488,23 +998,21 @@ public class PortHandler implements INeutronPortAware {
      *            An instance of modified Neutron Port object.
      */
     @Override
-    public void neutronPortUpdated(NeutronPort neutronPort) {
-        try {
-            VirtualMachineInterface virtualMachineInterface;
-            virtualMachineInterface = (VirtualMachineInterface) apiConnector.findById(VirtualMachineInterface.class, neutronPort.getPortUUID());
-            if (("").equals(neutronPort.getDeviceID())) { // TODO : Fix Port Update (Dependent on VM Refs issue)
-                if (neutronPort.getName().matches(virtualMachineInterface.getDisplayName()) && virtualMachineInterface.getVirtualMachine() == null) {
-                    LOGGER.info("Port updatation verified....");
+    public void neutronPortUpdated(final NeutronPort neutronPort) {
+        final ProjectedReader reader = Activator.getProjectedReader();
+        Activator.getVerifier().verify("port.updated:" + neutronPort.getPortUUID(), new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws IOException {
+                ProjectedReader.Fields virtualMachineInterface = reader.readFields(VirtualMachineInterface.class, neutronPort.getPortUUID(),
+                        ProjectedReader.DISPLAY_NAME, VIRTUAL_MACHINE_REFS);
+                List<String> virtualMachines = virtualMachineInterface.getReferences(VIRTUAL_MACHINE_REFS);
+                if (("").equals(neutronPort.getDeviceID())) { // TODO : Fix Port Update (Dependent on VM Refs issue)
+                    return neutronPort.getName().matches(virtualMachineInterface.get(ProjectedReader.DISPLAY_NAME)) && virtualMachines.isEmpty();
                 }
-            } else if (neutronPort.getName().matches(virtualMachineInterface.getDisplayName())
-                    && neutronPort.getDeviceID().matches(virtualMachineInterface.getVirtualMachine().get(0).getUuid())) {
-                LOGGER.info("Port updatation verified....");
-            } else {
-                LOGGER.info("Port updatation failed....");
+                return neutronPort.getName().matches(virtualMachineInterface.get(ProjectedReader.DISPLAY_NAME)) && !virtualMachines.isEmpty()
+                        && neutronPort.getDeviceID().matches(virtualMachines.get(0));
             }
-        } catch (Exception e) {
-            LOGGER.error("Exception :" + e);
-        }
+        });
     }
 
     /**
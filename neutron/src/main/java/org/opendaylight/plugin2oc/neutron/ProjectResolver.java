@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.juniper.contrail.api.ApiObjectBase;
+import net.juniper.contrail.api.types.Project;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Resolves projects that may not have been synced from Keystone yet. Each
+ * missing project UUID is polled by a single background task with
+ * exponential backoff and jitter, however many requests are waiting on it,
+ * and all waiters are released together when the project appears. Each
+ * waiter is otherwise released at its own deadline (plugin2oc.project.timeout,
+ * milliseconds) and the polling stops at the deadline of the last one.
+ */
+public class ProjectResolver {
+    /**
+     * Logger instance.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(ProjectResolver.class);
+    static final long DEFAULT_TIMEOUT_MILLIS = 3000;
+    static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 100;
+    static final long DEFAULT_MAX_BACKOFF_MILLIS = 1000;
+
+    private final ApiObjectCache objectCache;
+    private final long timeoutMillis;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ConcurrentMap<String, PendingProject> pending = new ConcurrentHashMap<String, PendingProject>();
+
+    public ProjectResolver(ApiObjectCache objectCache) {
+        this(objectCache, Long.getLong("plugin2oc.project.timeout", DEFAULT_TIMEOUT_MILLIS), DEFAULT_INITIAL_BACKOFF_MILLIS,
+                DEFAULT_MAX_BACKOFF_MILLIS);
+    }
+
+    public ProjectResolver(ApiObjectCache objectCache, long timeoutMillis, long initialBackoffMillis, long maxBackoffMillis) {
+        this.objectCache = objectCache;
+        this.timeoutMillis = timeoutMillis;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder().setDaemon(true)
+                .setNameFormat("plugin2oc-project-resolver-%d").build());
+        // the deadlines of the waiters released early do not pile up
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Invoked to get a project, waiting up to the configured deadline for it
+     * to appear on the API server.
+     *
+     * @param projectUUID
+     *            UUID of the project.
+     * @return the project, or null if it did not appear before the deadline.
+     */
+    public Project resolve(String projectUUID) throws IOException {
+        if (!pending.containsKey(projectUUID)) {
+            Project project = (Project) objectCache.findById(Project.class, projectUUID);
+            if (project != null) {
+                return project;
+            }
+        }
+        try {
+            return await(projectUUID).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("InterruptedException :    ", e);
+            return null;
+        } catch (ExecutionException e) {
+            LOGGER.error("ExecutionException :    ", e);
+            return null;
+        } catch (TimeoutException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Invoked to get a project without blocking: the lookup runs on the API
+     * executor and a missing project is then awaited as by
+     * {@link #resolve(String)}.
+     *
+     * @param projectUUID
+     *            UUID of the project.
+     * @param apiExecutor
+     *            executor running the lookup.
+     * @return future of the project, completed with null if it did not
+     *         appear before the deadline.
+     */
+    public ListenableFuture<Project> resolveAsync(final String projectUUID, ApiExecutor apiExecutor) {
+        if (pending.containsKey(projectUUID)) {
+            return await(projectUUID);
+        }
+        ListenableFuture<ApiObjectBase> lookup = objectCache.findByIdAsync(Project.class, projectUUID, apiExecutor);
+        return ApiFutures.then(lookup, new ApiFutures.Stage<ApiObjectBase, Project>() {
+            @Override
+            public ListenableFuture<Project> apply(ApiObjectBase project) {
+                return project != null ? Futures.immediateFuture((Project) project) : await(projectUUID);
+            }
+        });
+    }
+
+    /**
+     * Invoked to get a future completed with the project once it appears, or
+     * with null once the deadline of this caller passes. Concurrent callers
+     * for the same UUID share one polling task, which runs until the latest
+     * of their deadlines.
+     *
+     * @param projectUUID
+     *            UUID of the project.
+     */
+    public ListenableFuture<Project> await(String projectUUID) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            PendingProject entry = pending.get(projectUUID);
+            if (entry == null) {
+                PendingProject created = new PendingProject(projectUUID, deadline);
+                entry = pending.putIfAbsent(projectUUID, created);
+                if (entry == null) {
+                    schedule(created);
+                    return waiter(created, deadline);
+                }
+            }
+            if (entry.join(deadline)) {
+                return waiter(entry, deadline);
+            }
+            // the polling of this entry gave up before this caller joined
+            pending.remove(projectUUID, entry);
+        }
+    }
+
+    /**
+     * Invoked to give a caller its own future of the shared result, completed
+     * with null at the deadline of the caller.
+     */
+    private ListenableFuture<Project> waiter(PendingProject entry, long deadline) {
+        final SettableFuture<Project> waiter = SettableFuture.create();
+        final ListenableFuture<Project> shared = entry.future;
+        shared.addListener(new Runnable() {
+            @Override
+            public void run() {
+                waiter.set(Futures.getUnchecked(shared));
+            }
+        }, ApiFutures.DirectExecutor.INSTANCE);
+        if (!waiter.isDone()) {
+            final ScheduledFuture<?> timeout = scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    waiter.set(null);
+                }
+            }, Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            waiter.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    timeout.cancel(false);
+                }
+            }, ApiFutures.DirectExecutor.INSTANCE);
+        }
+        return waiter;
+    }
+
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    ApiObjectCache getObjectCache() {
+        return objectCache;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        for (PendingProject entry : pending.values()) {
+            entry.future.set(null);
+        }
+        pending.clear();
+    }
+
+    private void schedule(final PendingProject entry) {
+        long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(entry.attempts, 20));
+        long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        delay = Math.max(0, Math.min(delay, entry.getDeadline() - System.currentTimeMillis()));
+        entry.attempts++;
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                poll(entry);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll(PendingProject entry) {
+        Project project = null;
+        try {
+            project = (Project) objectCache.findById(Project.class, entry.projectUUID);
+        } catch (Exception e) {
+            LOGGER.error("Exception :    " + e);
+        }
+        if (project != null) {
+            LOGGER.debug("Project " + entry.projectUUID + " resolved after " + entry.attempts + " attempt(s)");
+            pending.remove(entry.projectUUID, entry);
+            entry.future.set(project);
+        } else if (entry.expire(System.currentTimeMillis())) {
+            LOGGER.warn("Project " + entry.projectUUID + " not found after " + entry.attempts + " attempt(s)");
+            pending.remove(entry.projectUUID, entry);
+            entry.future.set(null);
+        } else {
+            schedule(entry);
+        }
+    }
+
+    /**
+     * Polling state shared by every waiter on one project UUID.
+     */
+    static final class PendingProject {
+        final String projectUUID;
+        final SettableFuture<Project> future = SettableFuture.create();
+        int attempts;
+        private long deadline;
+        private boolean expired;
+
+        PendingProject(String projectUUID, long deadline) {
+            this.projectUUID = projectUUID;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Invoked to have the polling run until the deadline of a new
+         * waiter.
+         *
+         * @return false if the polling already gave up.
+         */
+        synchronized boolean join(long waiterDeadline) {
+            if (expired) {
+                return false;
+            }
+            deadline = Math.max(deadline, waiterDeadline);
+            return true;
+        }
+
+        synchronized long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * Invoked by the polling to give up once the deadline of every waiter
+         * passed.
+         */
+        synchronized boolean expire(long now) {
+            if (now >= deadline) {
+                expired = true;
+            }
+            return expired;
+        }
+    }
+}
@@ -0,0 +1,552 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.ApiObjectBase;
+import net.juniper.contrail.api.ApiPropertyBase;
+import net.juniper.contrail.api.ObjectReference;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Reads of the API server returning only what a check needs instead of the
+ * whole object: the named fields or refs of an object, asked with the fields
+ * parameter of the REST API, or the type and fq-name of a UUID, asked through
+ * id-to-fqname. The response is parsed as a stream so the values not asked
+ * for are skipped without being built.
+ * <p>
+ * The Contrail ApiConnector has no such calls, so they are made over a
+ * separate pool of HTTP connections to the API servers given by
+ * plugin2oc.apiserver.ipaddress. Without it, the reads fall back to
+ * {@link ApiConnector#findById} and the getters of the object read.
+ */
+public class ProjectedReader {
+    /**
+     * Logger instance.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(ProjectedReader.class);
+    static final String CALL_READ_FIELDS = "readFields";
+    static final String CALL_ID_TO_FQNAME = "idToFqName";
+    static final String DISPLAY_NAME = "display_name";
+    // the Contrail types are named after the fields of the API server
+    static final Gson GSON = new Gson();
+
+    /**
+     * Parses the body of a response.
+     */
+    public interface Parser<T> {
+        T parse(JsonReader json) throws IOException;
+    }
+
+    /**
+     * Sends the requests to the API server.
+     */
+    public interface Transport {
+        /**
+         * @return the parsed body, or null if the API server answered 404.
+         */
+        <T> T get(String path, Parser<T> parser) throws IOException;
+
+        /**
+         * @return the parsed body, or null if the API server answered 404.
+         */
+        <T> T post(String path, String body, Parser<T> parser) throws IOException;
+
+        void close();
+    }
+
+    /**
+     * Fields read from an object. A field the object does not have, or has
+     * no value for, is not held.
+     */
+    public static class Fields {
+        private final String uuid;
+        private final Map<String, String> values = new HashMap<String, String>();
+        private final Map<String, List<String>> references = new HashMap<String, List<String>>();
+        // attr of each reference, as read or as parsed JSON
+        private final Map<String, List<Object>> attributes = new HashMap<String, List<Object>>();
+
+        Fields(String uuid) {
+            this.uuid = uuid;
+        }
+
+        public String getUuid() {
+            return uuid;
+        }
+
+        public boolean has(String field) {
+            return values.containsKey(field) || references.containsKey(field);
+        }
+
+        /**
+         * @return the value of a property field, null if it has none.
+         */
+        public String get(String field) {
+            return values.get(field);
+        }
+
+        /**
+         * @return the UUIDs of a ref or back-ref field, empty if it has none.
+         */
+        public List<String> getReferences(String field) {
+            List<String> uuids = references.get(field);
+            return uuids == null ? Collections.<String> emptyList() : uuids;
+        }
+
+        /**
+         * @return the attr of each reference of a ref field, in the order of
+         *         {@link #getReferences(String)}, null for a reference
+         *         without one.
+         */
+        public <T extends ApiPropertyBase> List<T> getAttributes(String field, Class<T> type) {
+            List<T> attrs = new ArrayList<T>();
+            List<Object> values = attributes.get(field);
+            if (values != null) {
+                for (Object value : values) {
+                    attrs.add(value instanceof JsonElement ? GSON.fromJson((JsonElement) value, type) : type.cast(value));
+                }
+            }
+            return attrs;
+        }
+    }
+
+    private final ApiConnector apiConnector;
+    private final Transport transport;
+    private final CircuitBreaker breaker;
+    private final PluginMetrics metrics;
+
+    /**
+     * Reader falling back to the connector for every read.
+     */
+    public ProjectedReader(ApiConnector apiConnector) {
+        this(apiConnector, null, null, null);
+    }
+
+    public ProjectedReader(ApiConnector apiConnector, Transport transport, CircuitBreaker breaker, PluginMetrics metrics) {
+        this.apiConnector = apiConnector;
+        this.transport = transport;
+        this.breaker = breaker;
+        this.metrics = metrics;
+    }
+
+    public ApiConnector getApiConnector() {
+        return apiConnector;
+    }
+
+    /**
+     * Invoked to get the name of the field holding the back-refs of the
+     * objects of a type, e.g. virtual_machine_interface_back_refs.
+     */
+    public static String backRefsOf(Class<? extends ApiObjectBase> cls) {
+        return typeName(cls, '_') + "_back_refs";
+    }
+
+    /**
+     * Invoked to get the name of the field holding the refs of an object to
+     * the objects of a type, e.g. virtual_machine_refs.
+     */
+    public static String refsOf(Class<? extends ApiObjectBase> cls) {
+        return typeName(cls, '_') + "_refs";
+    }
+
+    /**
+     * Invoked to get the name of a type in the REST API, e.g.
+     * virtual-network.
+     */
+    static String typeName(Class<?> cls, char separator) {
+        String name = cls.getSimpleName();
+        StringBuilder typeName = new StringBuilder(name.length() + 4);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c)) {
+                if (i > 0) {
+                    typeName.append(separator);
+                }
+                typeName.append(Character.toLowerCase(c));
+            } else {
+                typeName.append(c);
+            }
+        }
+        return typeName.toString();
+    }
+
+    /**
+     * Invoked to read the named fields of an object.
+     *
+     * @return the fields read, or null if no object of that type has the
+     *         UUID.
+     */
+    public Fields readFields(Class<? extends ApiObjectBase> cls, final String uuid, String... fields) throws IOException {
+        final List<String> names = Arrays.asList(fields);
+        if (transport == null) {
+            return fromObject(apiConnector.findById(cls, uuid), names);
+        }
+        final String type = typeName(cls, '-');
+        StringBuilder path = new StringBuilder("/").append(type).append('/').append(uuid).append("?fields=");
+        for (int i = 0; i < fields.length; i++) {
+            path.append(i == 0 ? "" : ",").append(fields[i]);
+        }
+        long startTime = acquire();
+        try {
+            Fields result = transport.get(path.toString(), new Parser<Fields>() {
+                @Override
+                public Fields parse(JsonReader json) throws IOException {
+                    return parseFields(json, type, uuid, names);
+                }
+            });
+            release(CALL_READ_FIELDS, result != null, startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            fail(CALL_READ_FIELDS, startTime);
+            throw e;
+        }
+    }
+
+    /**
+     * Invoked to get the fq-name of an object without reading it.
+     *
+     * @return the fq-name, or null if no object of that type has the UUID.
+     */
+    public List<String> getFqName(Class<? extends ApiObjectBase> cls, String uuid) throws IOException {
+        if (transport == null) {
+            ApiObjectBase object = apiConnector.findById(cls, uuid);
+            return object == null ? null : object.getQualifiedName();
+        }
+        final String type = typeName(cls, '-');
+        StringWriter body = new StringWriter();
+        JsonWriter writer = new JsonWriter(body);
+        writer.beginObject().name("uuid").value(uuid).endObject().close();
+        long startTime = acquire();
+        try {
+            List<String> result = transport.post("/id-to-fqname", body.toString(), new Parser<List<String>>() {
+                @Override
+                public List<String> parse(JsonReader json) throws IOException {
+                    return parseFqName(json, type);
+                }
+            });
+            release(CALL_ID_TO_FQNAME, result != null, startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            fail(CALL_ID_TO_FQNAME, startTime);
+            throw e;
+        }
+    }
+
+    /**
+     * Invoked to check if an object exists without reading it.
+     */
+    public boolean exists(Class<? extends ApiObjectBase> cls, String uuid) throws IOException {
+        if (transport == null) {
+            return apiConnector.findById(cls, uuid) != null;
+        }
+        return getFqName(cls, uuid) != null;
+    }
+
+    private long acquire() throws IOException {
+        if (breaker != null && !breaker.tryAcquire()) {
+            throw new CircuitBreaker.OpenException();
+        }
+        return System.nanoTime();
+    }
+
+    private void release(String call, boolean found, long startTime) {
+        long nanos = System.nanoTime() - startTime;
+        if (breaker != null) {
+            breaker.onSuccess(nanos);
+        }
+        if (metrics != null) {
+            metrics.recordApiCall(call, found ? PluginMetrics.RESULT_OK : PluginMetrics.RESULT_FAILED, nanos);
+        }
+    }
+
+    private void fail(String call, long startTime) {
+        if (breaker != null) {
+            breaker.onFailure();
+        }
+        if (metrics != null) {
+            metrics.recordApiCall(call, PluginMetrics.RESULT_ERROR, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Invoked to parse {"virtual-network": {"uuid": ..., "field": ...}},
+     * skipping every field not asked for.
+     */
+    static Fields parseFields(JsonReader json, String type, String uuid, List<String> names) throws IOException {
+        Fields fields = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            if (!json.nextName().equals(type) || json.peek() != JsonToken.BEGIN_OBJECT) {
+                json.skipValue();
+                continue;
+            }
+            fields = new Fields(uuid);
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if (!names.contains(name)) {
+                    json.skipValue();
+                } else if (json.peek() == JsonToken.BEGIN_ARRAY) {
+                    List<String> uuids = new ArrayList<String>();
+                    List<Object> attrs = new ArrayList<Object>();
+                    parseReferences(json, uuids, attrs);
+                    fields.references.put(name, uuids);
+                    fields.attributes.put(name, attrs);
+                } else if (json.peek() == JsonToken.BOOLEAN) {
+                    fields.values.put(name, String.valueOf(json.nextBoolean()));
+                } else if (json.peek() == JsonToken.STRING || json.peek() == JsonToken.NUMBER) {
+                    fields.values.put(name, json.nextString());
+                } else {
+                    // null or a structured property, only its presence is kept
+                    if (json.peek() != JsonToken.NULL) {
+                        fields.values.put(name, null);
+                    }
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+        }
+        json.endObject();
+        return fields;
+    }
+
+    private static void parseReferences(JsonReader json, List<String> uuids, List<Object> attrs) throws IOException {
+        json.beginArray();
+        while (json.hasNext()) {
+            if (json.peek() != JsonToken.BEGIN_OBJECT) {
+                json.skipValue();
+                continue;
+            }
+            String uuid = null;
+            JsonElement attr = null;
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if (name.equals("uuid") && json.peek() == JsonToken.STRING) {
+                    uuid = json.nextString();
+                } else if (name.equals("attr") && json.peek() == JsonToken.BEGIN_OBJECT) {
+                    attr = new JsonParser().parse(json);
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+            if (uuid != null) {
+                uuids.add(uuid);
+                attrs.add(attr);
+            }
+        }
+        json.endArray();
+    }
+
+    /**
+     * Invoked to parse {"type": "virtual-network", "fq_name": [...]}. A UUID
+     * of an object of another type is taken as missing.
+     */
+    static List<String> parseFqName(JsonReader json, String type) throws IOException {
+        String foundType = null;
+        List<String> fqName = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (name.equals("type") && json.peek() == JsonToken.STRING) {
+                foundType = json.nextString();
+            } else if (name.equals("fq_name") && json.peek() == JsonToken.BEGIN_ARRAY) {
+                fqName = new ArrayList<String>();
+                json.beginArray();
+                while (json.hasNext()) {
+                    fqName.add(json.nextString());
+                }
+                json.endArray();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        return type.equals(foundType) ? fqName : null;
+    }
+
+    /**
+     * Invoked to take the named fields from an object read whole, through
+     * its getters: virtual_machine_interface_back_refs is read by
+     * getVirtualMachineInterfaceBackRefs, virtual_machine_refs by
+     * getVirtualMachine.
+     */
+    static Fields fromObject(ApiObjectBase object, List<String> names) throws IOException {
+        if (object == null) {
+            return null;
+        }
+        Fields fields = new Fields(object.getUuid());
+        for (String name : names) {
+            Object value = getField(object, name);
+            if (value instanceof List) {
+                List<String> uuids = new ArrayList<String>();
+                List<Object> attrs = new ArrayList<Object>();
+                for (Object ref : (List<?>) value) {
+                    if (ref instanceof ObjectReference) {
+                        uuids.add(((ObjectReference<?>) ref).getUuid());
+                        attrs.add(((ObjectReference<?>) ref).getAttr());
+                    }
+                }
+                fields.references.put(name, uuids);
+                fields.attributes.put(name, attrs);
+            } else if (value != null) {
+                fields.values.put(name, value instanceof String || value instanceof Number || value instanceof Boolean ? value.toString() : null);
+            }
+        }
+        return fields;
+    }
+
+    private static Object getField(ApiObjectBase object, String name) throws IOException {
+        StringBuilder getter = new StringBuilder("get");
+        String property = name.endsWith("_refs") && !name.endsWith("_back_refs") ? name.substring(0, name.length() - 5) : name;
+        for (String part : property.split("_")) {
+            if (!part.isEmpty()) {
+                getter.append(Character.toUpperCase(part.charAt(0))).append(part.substring(1));
+            }
+        }
+        try {
+            Method method = object.getClass().getMethod(getter.toString());
+            return method.invoke(object);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("No field " + name + " in " + object.getClass().getSimpleName());
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("No field " + name + " in " + object.getClass().getSimpleName());
+        } catch (InvocationTargetException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Invoked to close the HTTP connections, if any.
+     */
+    public void close() {
+        if (transport != null) {
+            transport.close();
+        }
+    }
+
+    /**
+     * Transport over a pool of HTTP connections to the API servers, used in
+     * turn. The pool is sized like the one of {@link PooledApiConnector}.
+     */
+    static class HttpTransport implements Transport {
+        private static final Charset UTF_8 = Charset.forName("UTF-8");
+        private final List<HttpHost> hosts = new ArrayList<HttpHost>();
+        private final AtomicInteger nextHost = new AtomicInteger();
+        private final PoolingHttpClientConnectionManager connectionManager;
+        private final CloseableHttpClient client;
+
+        HttpTransport(String hosts, int port) {
+            this(hosts, port, Integer.getInteger("plugin2oc.apiserver.maxConnections", PooledApiConnector.DEFAULT_MAX_CONNECTIONS), Integer.getInteger(
+                    "plugin2oc.apiserver.maxPerRoute", PooledApiConnector.DEFAULT_MAX_PER_ROUTE), Long.getLong("plugin2oc.apiserver.connectTimeout",
+                    PooledApiConnector.DEFAULT_CONNECT_TIMEOUT_MILLIS));
+        }
+
+        HttpTransport(String hosts, int port, int maxConnections, int maxPerRoute, long connectTimeoutMillis) {
+            for (String host : hosts.split(",")) {
+                if (!host.trim().isEmpty()) {
+                    this.hosts.add(new HttpHost(host.trim(), port));
+                }
+            }
+            if (this.hosts.isEmpty()) {
+                throw new IllegalArgumentException("No API server address given");
+            }
+            connectionManager = new PoolingHttpClientConnectionManager();
+            connectionManager.setMaxTotal(maxConnections);
+            connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+            RequestConfig config = RequestConfig.custom().setConnectTimeout((int) connectTimeoutMillis)
+                    .setConnectionRequestTimeout((int) connectTimeoutMillis).build();
+            client = HttpClients.custom().setConnectionManager(connectionManager).setDefaultRequestConfig(config).build();
+        }
+
+        @Override
+        public <T> T get(String path, Parser<T> parser) throws IOException {
+            return execute(new HttpGet(path), parser);
+        }
+
+        @Override
+        public <T> T post(String path, String body, Parser<T> parser) throws IOException {
+            HttpPost post = new HttpPost(path);
+            post.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+            return execute(post, parser);
+        }
+
+        private <T> T execute(HttpRequest request, Parser<T> parser) throws IOException {
+            HttpHost host = hosts.get((nextHost.getAndIncrement() & Integer.MAX_VALUE) % hosts.size());
+            CloseableHttpResponse response = client.execute(host, request);
+            try {
+                int status = response.getStatusLine().getStatusCode();
+                HttpEntity entity = response.getEntity();
+                if (status == HttpStatus.SC_NOT_FOUND) {
+                    EntityUtils.consume(entity);
+                    return null;
+                }
+                if (status != HttpStatus.SC_OK || entity == null) {
+                    EntityUtils.consume(entity);
+                    throw new IOException("API server answered " + status + " to " + request.getRequestLine());
+                }
+                JsonReader json = new JsonReader(new InputStreamReader(entity.getContent(), UTF_8));
+                try {
+                    return parser.parse(json);
+                } finally {
+                    json.close();
+                }
+            } finally {
+                response.close();
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                client.close();
+            } catch (IOException e) {
+                LOGGER.debug("Exception :   " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Table of the calls in flight by key: a call made while an identical one is
+ * running does not run again but shares the result of the running one. Only
+ * concurrent calls are combined, nothing is kept once a call completed.
+ */
+public class SingleFlight<K, V> {
+    /**
+     * Synchronous call reading from the API server.
+     */
+    public interface Load<V> {
+        V load() throws IOException;
+    }
+
+    private final ConcurrentMap<K, ListenableFuture<V>> inFlight = new ConcurrentHashMap<K, ListenableFuture<V>>();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+
+    /**
+     * Invoked to start an asynchronous call unless an identical one is in
+     * flight. The caller starting the call gets its future; cancelling it
+     * cancels the call for every caller. The callers sharing it get a view
+     * which they may cancel alone.
+     *
+     * @param key
+     *            key of the call, a null key is never shared.
+     * @param call
+     *            starts the call.
+     * @return future of the result of the call.
+     */
+    public ListenableFuture<V> submit(final K key, Callable<ListenableFuture<V>> call) {
+        if (key == null) {
+            return start(call);
+        }
+        final SettableFuture<V> promise = SettableFuture.create();
+        ListenableFuture<V> running = inFlight.putIfAbsent(key, promise);
+        if (running != null) {
+            shared.incrementAndGet();
+            return ApiFutures.then(running, new ApiFutures.Stage<V, V>() {
+                @Override
+                public ListenableFuture<V> apply(V result) {
+                    return Futures.immediateFuture(result);
+                }
+            });
+        }
+        executed.incrementAndGet();
+        final ListenableFuture<V> result = start(call);
+        result.addListener(new Runnable() {
+            @Override
+            public void run() {
+                inFlight.remove(key, promise);
+                try {
+                    promise.set(Uninterruptibles.getUninterruptibly(result));
+                } catch (ExecutionException e) {
+                    promise.setException(e.getCause());
+                } catch (CancellationException e) {
+                    promise.cancel(false);
+                }
+            }
+        }, ApiFutures.DirectExecutor.INSTANCE);
+        return result;
+    }
+
+    private ListenableFuture<V> start(Callable<ListenableFuture<V>> call) {
+        try {
+            return call.call();
+        } catch (Exception e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    /**
+     * Invoked to make a synchronous call unless an identical one is in
+     * flight, in which case its result is waited for. Only for callers that
+     * block anyway; a task of the {@link ApiExecutor} uses
+     * {@link #submit(Object, Callable)} instead of parking its thread.
+     *
+     * @param key
+     *            key of the call, a null key is never shared.
+     * @param load
+     *            the call.
+     * @return the result of the call.
+     */
+    public V load(K key, Load<V> load) throws IOException {
+        if (key == null) {
+            return load.load();
+        }
+        SettableFuture<V> promise = SettableFuture.create();
+        ListenableFuture<V> running = inFlight.putIfAbsent(key, promise);
+        if (running != null) {
+            shared.incrementAndGet();
+            try {
+                return Uninterruptibles.getUninterruptibly(running);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+        executed.incrementAndGet();
+        try {
+            V result = load.load();
+            promise.set(result);
+            return result;
+        } catch (IOException | RuntimeException | Error e) {
+            promise.setException(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, promise);
+        }
+    }
+
+    /**
+     * Invoked when the result of the call in flight for a key is known to be
+     * stale, e.g. after a write: the callers already sharing it keep it, the
+     * next caller starts a new call.
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    public void forgetAll() {
+        inFlight.clear();
+    }
+
+    /**
+     * Invoked to get the number of calls run.
+     */
+    public long getExecutedCount() {
+        return executed.get();
+    }
+
+    /**
+     * Invoked to get the number of calls which shared the result of another.
+     */
+    public long getSharedCount() {
+        return shared.get();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -10,8 +10,10 @@ package org.opendaylight.plugin2oc.neutron;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import net.juniper.contrail.api.ApiConnector;
 import net.juniper.contrail.api.ObjectReference;
@@ -28,6 +30,8 @@ import org.opendaylight.controller.networkconfig.neutron.NeutronSubnet_IPAllocat
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 /**
  * Handle requests for Neutron Subnet.
  */
@@ -36,7 +40,9 @@ public class SubnetHandler implements INeutronSubnetAware {
      * Logger instance.
      */
     static final Logger LOGGER = LoggerFactory.getLogger(SubnetHandler.class);
+    static final String NETWORK_IPAM_REFS = ProjectedReader.refsOf(NetworkIpam.class);
     static ApiConnector apiConnector = Activator.apiConnector;
+    static ApiObjectCache objectCache;
 
     /**
      * Invoked when a subnet creation is requested to check if the specified
@@ -49,87 +55,128 @@ public class SubnetHandler implements INeutronSubnetAware {
      **/
     @Override
     public int canCreateSubnet(NeutronSubnet subnet) {
-        VirtualNetwork virtualnetwork = new VirtualNetwork();
+        long startTime = System.nanoTime();
+        Bulkheads bulkheads = Activator.getBulkheads();
+        if (!bulkheads.tryAcquire(Bulkheads.Kind.SUBNET)) {
+            return ApiFutures.unavailable("subnet creation", startTime);
+        }
+        try {
+            return ApiFutures.await("subnet creation", startTime, createSubnetAsync(subnet));
+        } finally {
+            bulkheads.release(Bulkheads.Kind.SUBNET);
+        }
+    }
+
+    /**
+     * Invoked to check if the specified subnet can be created and then create
+     * it, without waiting for the API server.
+     *
+     * @param subnet
+     *            An instance of proposed new Neutron Subnet object.
+     *
+     * @return A future of the HTTP status code to the creation request.
+     */
+    public ListenableFuture<Integer> createSubnetAsync(final NeutronSubnet subnet) {
         apiConnector = Activator.apiConnector;
+        objectCache = Activator.getObjectCache();
         if (subnet == null) {
             LOGGER.error("Neutron Subnet can't be null..");
-            return HttpURLConnection.HTTP_BAD_REQUEST;
+            return ApiFutures.status(HttpURLConnection.HTTP_BAD_REQUEST);
         }
         if (subnet.getCidr() == null || ("").equals(subnet.getCidr())) {
             LOGGER.info("Subnet Cidr can not be empty or null...");
-            return HttpURLConnection.HTTP_BAD_REQUEST;
+            return ApiFutures.status(HttpURLConnection.HTTP_BAD_REQUEST);
         }
         boolean isvalidGateway = validGatewayIP(subnet, subnet.getGatewayIP());
         if (!isvalidGateway) {
             LOGGER.error("Incorrect gateway IP....");
-            return HttpURLConnection.HTTP_BAD_REQUEST;
+            return ApiFutures.status(HttpURLConnection.HTTP_BAD_REQUEST);
         }
-        try {
-            virtualnetwork = (VirtualNetwork) apiConnector.findById(VirtualNetwork.class, subnet.getNetworkUUID());
-        } catch (IOException e) {
-            LOGGER.error("Exception : " + e);
-            return HttpURLConnection.HTTP_INTERNAL_ERROR;
-        }
-        if (virtualnetwork == null) {
-            LOGGER.error("No network exists for the specified UUID...");
-            return HttpURLConnection.HTTP_FORBIDDEN;
-        } else {
-            try {
-                boolean ifSubnetExist = subnetExists(virtualnetwork.getNetworkIpam(), subnet);
-                if (ifSubnetExist) {
-                    LOGGER.error("The subnet already exists..");
-                    return HttpURLConnection.HTTP_FORBIDDEN;
-                }
-                return createSubnet(subnet, virtualnetwork);
-            } catch (IOException ie) {
-                LOGGER.error("IOException:     " + ie);
-                return HttpURLConnection.HTTP_INTERNAL_ERROR;
-            } catch (Exception e) {
-                LOGGER.error("Exception:  " + e);
-                return HttpURLConnection.HTTP_INTERNAL_ERROR;
+        return Activator.getSubnetWriter().submit(subnet.getNetworkUUID(), new SubnetWriter.Change() {
+            @Override
+            int apply(VirtualNetwork virtualnetwork) {
+                return createSubnetInNetwork(subnet, virtualnetwork);
             }
-        }
-    }
 
-    private boolean subnetExists(List<ObjectReference<VnSubnetsType>> ipamRefs, NeutronSubnet subnet) {
-        if (ipamRefs != null) {
-            for (ObjectReference<VnSubnetsType> ref : ipamRefs) {
-                VnSubnetsType vnSubnetsType = ref.getAttr();
-                if (vnSubnetsType != null) {
-                    List<VnSubnetsType.IpamSubnetType> subnets = vnSubnetsType.getIpamSubnets();
-                    if (subnets != null) {
-                        for (VnSubnetsType.IpamSubnetType subnetValue : subnets) {
-                            String[] ipPrefix = getIpPrefix(subnet);
-                            Boolean doesSubnetExist = subnetValue.getSubnet().getIpPrefix().matches(ipPrefix[0]);
-                            if (doesSubnetExist) {
-                                return doesSubnetExist;
-                            }
-                        }
-                    }
-                }
+            @Override
+            void written(VirtualNetwork virtualnetwork) {
+                Activator.getIpAllocators().register(subnet);
+                Activator.getObjectIndex().putSubnet(subnet.getSubnetUUID(), virtualnetwork.getUuid(), subnet.getTenantID());
+                LOGGER.info("Subnet " + subnet.getCidr() + "sucessfully added to the network having UUID : " + virtualnetwork.getUuid());
             }
-        }
-        return false;
+
+            @Override
+            void failed(VirtualNetwork virtualnetwork) {
+                // the cached default-network-ipam may be gone, resolve it
+                // again on the next request
+                Activator.getIpamResolver().invalidate();
+                LOGGER.warn("Subnet creation failed..");
+            }
+        });
     }
 
     /**
-     * Invoked to create the subnet
+     * Invoked to check that the subnet is new to the network and does not
+     * overlap its subnets and then add it to the network, written by the
+     * {@link SubnetWriter}.
      *
      * @param subnet
-     *            An instance of new Subnet Type object.
+     *            An instance of proposed new Neutron Subnet object.
+     * @param virtualnetwork
+     *            The virtual network of the subnet, if found.
+     *
+     * @return HTTP_OK if the subnet was added, else a HTTP status code to the
+     *         creation request.
      */
-    @Override
-    public void neutronSubnetCreated(NeutronSubnet subnet) {
-        VirtualNetwork virtualNetwork = null;
+    private int createSubnetInNetwork(NeutronSubnet subnet, VirtualNetwork virtualnetwork) {
+        if (virtualnetwork == null) {
+            LOGGER.error("No network exists for the specified UUID...");
+            return HttpURLConnection.HTTP_FORBIDDEN;
+        }
         try {
-            virtualNetwork = (VirtualNetwork) apiConnector.findById(VirtualNetwork.class, subnet.getNetworkUUID());
-            boolean ifSubnetExists = subnetExists(virtualNetwork.getNetworkIpam(), subnet);
-            if (ifSubnetExists) {
-                LOGGER.info("Subnet creation verified...");
+            boolean ifSubnetExist = subnetExists(virtualnetwork, subnet);
+            if (ifSubnetExist) {
+                LOGGER.error("The subnet already exists..");
+                return HttpURLConnection.HTTP_FORBIDDEN;
+            }
+            VnSubnetsType.IpamSubnetType overlapping = SubnetIndex.of(virtualnetwork).findOverlapping(subnet.getCidr());
+            if (overlapping != null) {
+                LOGGER.error("The subnet " + subnet.getCidr() + " overlaps with the subnet " + overlapping.getSubnet().getIpPrefix() + "/"
+                        + overlapping.getSubnet().getIpPrefixLen() + "..");
+                return HttpURLConnection.HTTP_FORBIDDEN;
             }
+            mapSubnetProperties(subnet, virtualnetwork);
+            return HttpURLConnection.HTTP_OK;
         } catch (Exception e) {
-            LOGGER.error("Exception :    " + e);
+            LOGGER.error("Exception:  " + e);
+            return HttpURLConnection.HTTP_INTERNAL_ERROR;
+        }
+    }
+
+    private boolean subnetExists(VirtualNetwork virtualNetwork, NeutronSubnet subnet) {
+        String[] ipPrefix = getIpPrefix(subnet);
+        return SubnetIndex.of(virtualNetwork).getByPrefix(ipPrefix[0]) != null;
+    }
+
+    /**
+     * Invoked to index the subnets of a network reading only its IPAM refs.
+     *
+     * @return the index, or null if the network does not exist.
+     */
+    private static SubnetIndex readSubnets(ProjectedReader reader, String networkUUID) throws IOException {
+        ProjectedReader.Fields virtualNetwork = reader.readFields(VirtualNetwork.class, networkUUID, NETWORK_IPAM_REFS);
+        if (virtualNetwork == null) {
+            return null;
         }
+        List<String> ipamUUIDs = virtualNetwork.getReferences(NETWORK_IPAM_REFS);
+        List<VnSubnetsType> attrs = virtualNetwork.getAttributes(NETWORK_IPAM_REFS, VnSubnetsType.class);
+        List<ObjectReference<VnSubnetsType>> ipamRefs = new ArrayList<ObjectReference<VnSubnetsType>>();
+        for (int i = 0; i < ipamUUIDs.size(); i++) {
+            ObjectReference<VnSubnetsType> ref = new ObjectReference<VnSubnetsType>();
+            ref.setReference(null, attrs.get(i), null, ipamUUIDs.get(i));
+            ipamRefs.add(ref);
+        }
+        return new SubnetIndex(ipamRefs);
     }
 
     /**
@@ -137,26 +184,23 @@ public class SubnetHandler implements INeutronSubnetAware {
      *
      * @param subnet
      *            An instance of new Subnet Type object.
-     * @param virtualNetwork
-     *            An instance of new virtualNetwork object.
-     *
-     * @return A HTTP status code to the creation request.
      */
-    private int createSubnet(NeutronSubnet subnet, VirtualNetwork virtualNetwork) throws IOException {
-        // add subnet properties to the virtual-network object
-        VirtualNetwork virtualnetwork = mapSubnetProperties(subnet, virtualNetwork);
-        boolean subnetCreate = apiConnector.update(virtualnetwork);
-        if (!subnetCreate) {
-            LOGGER.warn("Subnet creation failed..");
-            return HttpURLConnection.HTTP_INTERNAL_ERROR;
-        } else {
-            LOGGER.info("Subnet " + subnet.getCidr() + "sucessfully added to the network having UUID : " + virtualnetwork.getUuid());
-            return HttpURLConnection.HTTP_OK;
-        }
+    @Override
+    public void neutronSubnetCreated(final NeutronSubnet subnet) {
+        final ProjectedReader reader = Activator.getProjectedReader();
+        Activator.getVerifier().verify("subnet.created:" + subnet.getSubnetUUID(), new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws IOException {
+                SubnetIndex subnets = readSubnets(reader, subnet.getNetworkUUID());
+                return subnets != null && subnets.getByPrefix(getIpPrefix(subnet)[0]) != null;
+            }
+        });
     }
 
     /**
      * Invoked to add the NeutronSubnet properties to the virtualNetwork object.
+     * The network ipam is resolved and the subnets of the network copied
+     * before the network is changed, so a failure leaves it unchanged.
      *
      * @param subnet
      *            An instance of new Neutron Subnet object.
@@ -164,38 +208,33 @@ public class SubnetHandler implements INeutronSubnetAware {
      *            An instance of new virtualNetwork object.
      *
      * @return {@link VirtualNetwork}
+     * @throws IOException
+     *             if the default-network-ipam can't be resolved.
      */
-    private VirtualNetwork mapSubnetProperties(NeutronSubnet subnet, VirtualNetwork vn) {
-        String[] ipPrefix = null;
-        NetworkIpam ipam = null;
-        VnSubnetsType vnSubnetsType = new VnSubnetsType();
+    private VirtualNetwork mapSubnetProperties(NeutronSubnet subnet, VirtualNetwork vn) throws IOException {
+        String[] ipPrefix = getIpPrefix(subnet);
+        // Find default-network-ipam
+        NetworkIpam ipam = Activator.getIpamResolver().getDefaultIpam();
+        if (ipam == null) {
+            throw new IOException("default-network-ipam not found");
+        }
         SubnetType subnetType = new SubnetType();
-        try {
-            if (subnet.getCidr().contains("/")) {
-                ipPrefix = subnet.getCidr().split("/");
-            } else {
-                throw new IllegalArgumentException("String " + subnet.getCidr() + " not in correct format..");
+        subnetType.setIpPrefix(ipPrefix[0]);
+        subnetType.setIpPrefixLen(Integer.valueOf(ipPrefix[1]));
+        VnSubnetsType existing = null;
+        if (vn.getNetworkIpam() != null) {
+            for (ObjectReference<VnSubnetsType> ref : vn.getNetworkIpam()) {
+                existing = ref.getAttr();
             }
-            // Find default-network-ipam
-            String ipamId = apiConnector.findByName(NetworkIpam.class, null, "default-network-ipam");
-            ipam = (NetworkIpam) apiConnector.findById(NetworkIpam.class, ipamId);
-        } catch (IOException ex) {
-            LOGGER.error("IOException :     " + ex);
-        } catch (Exception ex) {
-            LOGGER.error("Exception :      " + ex);
         }
-        if (ipPrefix != null) {
-            subnetType.setIpPrefix(ipPrefix[0]);
-            subnetType.setIpPrefixLen(Integer.valueOf(ipPrefix[1]));
-            if (vn.getNetworkIpam() != null) {
-                for (ObjectReference<VnSubnetsType> ref : vn.getNetworkIpam()) {
-                    vnSubnetsType = ref.getAttr();
-                }
-            } else {
-                vnSubnetsType.addIpamSubnets(subnetType, subnet.getGatewayIP(), subnet.getSubnetUUID());
+        VnSubnetsType vnSubnetsType = new VnSubnetsType();
+        if (existing != null && existing.getIpamSubnets() != null) {
+            for (VnSubnetsType.IpamSubnetType ipamSubnet : existing.getIpamSubnets()) {
+                vnSubnetsType.addIpamSubnets(ipamSubnet);
             }
-            vn.setNetworkIpam(ipam, vnSubnetsType);
         }
+        vnSubnetsType.addIpamSubnets(subnetType, subnet.getGatewayIP(), subnet.getSubnetUUID());
+        vn.setNetworkIpam(ipam, vnSubnetsType);
         return vn;
     }
 
@@ -231,54 +270,84 @@ public class SubnetHandler implements INeutronSubnetAware {
      */
     @Override
     public int canUpdateSubnet(NeutronSubnet deltaSubnet, NeutronSubnet originalSubnet) {
+        long startTime = System.nanoTime();
+        Bulkheads bulkheads = Activator.getBulkheads();
+        if (!bulkheads.tryAcquire(Bulkheads.Kind.SUBNET)) {
+            return ApiFutures.unavailable("subnet update", startTime);
+        }
+        try {
+            return ApiFutures.await("subnet update", startTime, updateSubnetAsync(deltaSubnet, originalSubnet));
+        } finally {
+            bulkheads.release(Bulkheads.Kind.SUBNET);
+        }
+    }
+
+    /**
+     * Invoked to check if the specified subnet can be changed using the
+     * specified delta and then update it, without waiting for the API server.
+     *
+     * @param delta
+     *            Updates to the subnet object using patch semantics.
+     * @param original
+     *            An instance of the Neutron Subnet object to be updated.
+     * @return A future of the HTTP status code to the update request.
+     */
+    public ListenableFuture<Integer> updateSubnetAsync(final NeutronSubnet deltaSubnet, final NeutronSubnet originalSubnet) {
         if (deltaSubnet == null || originalSubnet == null) {
             LOGGER.error("Neutron Subnets can't be null..");
-            return HttpURLConnection.HTTP_BAD_REQUEST;
+            return ApiFutures.status(HttpURLConnection.HTTP_BAD_REQUEST);
         }
         if (deltaSubnet.getGatewayIP() == null || ("").equals(deltaSubnet.getGatewayIP().toString())) {
             LOGGER.error("Gateway IP can't be empty/null`..");
-            return HttpURLConnection.HTTP_BAD_REQUEST;
+            return ApiFutures.status(HttpURLConnection.HTTP_BAD_REQUEST);
         }
         boolean isvalidGateway = validGatewayIP(originalSubnet, deltaSubnet.getGatewayIP());
         if (!isvalidGateway) {
             LOGGER.error("Incorrect gateway IP....");
-            return HttpURLConnection.HTTP_BAD_REQUEST;
+            return ApiFutures.status(HttpURLConnection.HTTP_BAD_REQUEST);
         }
         apiConnector = Activator.apiConnector;
-        try {
-            boolean ifSubnetExist = false;
-            VirtualNetwork virtualnetwork = (VirtualNetwork) apiConnector.findById(VirtualNetwork.class, originalSubnet.getNetworkUUID());
-            List<ObjectReference<VnSubnetsType>> ipamRefs = virtualnetwork.getNetworkIpam();
-            if (ipamRefs != null) {
-                for (ObjectReference<VnSubnetsType> ref : ipamRefs) {
-                    VnSubnetsType vnSubnetsType = ref.getAttr();
-                    if (vnSubnetsType != null) {
-                        List<VnSubnetsType.IpamSubnetType> subnets = vnSubnetsType.getIpamSubnets();
-                        for (VnSubnetsType.IpamSubnetType subnetValue : subnets) {
-                            boolean doesSubnetExist = subnetValue.getSubnetUuid().matches(originalSubnet.getSubnetUUID());
-                            if (doesSubnetExist) {
-                                subnetValue.setDefaultGateway(deltaSubnet.getGatewayIP());
-                                ifSubnetExist = true;
-                            }
-                        }
-                    }
-                }
+        objectCache = Activator.getObjectCache();
+        return Activator.getSubnetWriter().submit(originalSubnet.getNetworkUUID(), new SubnetWriter.Change() {
+            @Override
+            int apply(VirtualNetwork virtualnetwork) {
+                return updateSubnet(deltaSubnet, originalSubnet, virtualnetwork);
             }
-            if (ifSubnetExist) {
-                boolean subnetUpdate = apiConnector.update(virtualnetwork);
-                if (!subnetUpdate) {
-                    LOGGER.warn("Subnet upadtion failed..");
-                    return HttpURLConnection.HTTP_INTERNAL_ERROR;
-                } else {
-                    LOGGER.info(" Subnet " + originalSubnet.getCidr() + " sucessfully updated with gateway IP : " + deltaSubnet.getGatewayIP());
-                    return HttpURLConnection.HTTP_OK;
-                }
-            } else {
+
+            @Override
+            void written(VirtualNetwork virtualnetwork) {
+                // rebuilt with the new gateway on next allocation
+                Activator.getIpAllocators().remove(originalSubnet.getSubnetUUID());
+                LOGGER.info(" Subnet " + originalSubnet.getCidr() + " sucessfully updated with gateway IP : " + deltaSubnet.getGatewayIP());
+            }
+
+            @Override
+            void failed(VirtualNetwork virtualnetwork) {
                 LOGGER.warn("Subnet upadtion failed..");
-                return HttpURLConnection.HTTP_INTERNAL_ERROR;
             }
-        } catch (IOException e) {
-            LOGGER.error("Exception :     " + e);
+        });
+    }
+
+    /**
+     * Invoked to change the gateway of the subnet in its virtual network,
+     * written by the {@link SubnetWriter}.
+     *
+     * @param delta
+     *            Updates to the subnet object using patch semantics.
+     * @param original
+     *            An instance of the Neutron Subnet object to be updated.
+     * @param virtualnetwork
+     *            The virtual network of the subnet.
+     * @return HTTP_OK if the gateway was changed, else a HTTP status code to
+     *         the update request.
+     */
+    private int updateSubnet(NeutronSubnet deltaSubnet, NeutronSubnet originalSubnet, VirtualNetwork virtualnetwork) {
+        VnSubnetsType.IpamSubnetType subnetValue = SubnetIndex.of(virtualnetwork).getByUuid(originalSubnet.getSubnetUUID());
+        if (subnetValue != null) {
+            subnetValue.setDefaultGateway(deltaSubnet.getGatewayIP());
+            return HttpURLConnection.HTTP_OK;
+        } else {
+            LOGGER.warn("Subnet upadtion failed..");
             return HttpURLConnection.HTTP_INTERNAL_ERROR;
         }
     }
@@ -290,33 +359,16 @@ public class SubnetHandler implements INeutronSubnetAware {
      *            An instance of modified Neutron Subnet object.
      */
     @Override
-    public void neutronSubnetUpdated(NeutronSubnet subnet) {
-        try {
-            boolean ifSubnetExist = false;
-            VirtualNetwork virtualnetwork = (VirtualNetwork) apiConnector.findById(VirtualNetwork.class, subnet.getNetworkUUID());
-            List<ObjectReference<VnSubnetsType>> ipamRefs = virtualnetwork.getNetworkIpam();
-            if (ipamRefs != null) {
-                for (ObjectReference<VnSubnetsType> ref : ipamRefs) {
-                    VnSubnetsType vnSubnetsType = ref.getAttr();
-                    if (vnSubnetsType != null) {
-                        List<VnSubnetsType.IpamSubnetType> subnets = vnSubnetsType.getIpamSubnets();
-                        for (VnSubnetsType.IpamSubnetType subnetValue : subnets) {
-                            boolean doesSubnetExist = subnetValue.getDefaultGateway().matches(subnet.getGatewayIP());
-                            if (doesSubnetExist) {
-                                ifSubnetExist = true;
-                            }
-                        }
-                    }
-                }
+    public void neutronSubnetUpdated(final NeutronSubnet subnet) {
+        final ProjectedReader reader = Activator.getProjectedReader();
+        Activator.getVerifier().verify("subnet.updated:" + subnet.getSubnetUUID(), new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws IOException {
+                SubnetIndex subnets = readSubnets(reader, subnet.getNetworkUUID());
+                VnSubnetsType.IpamSubnetType subnetValue = subnets != null ? subnets.getByUuid(subnet.getSubnetUUID()) : null;
+                return subnetValue != null && subnet.getGatewayIP() != null && subnet.getGatewayIP().equals(subnetValue.getDefaultGateway());
             }
-            if (ifSubnetExist) {
-                LOGGER.info("Subnet upadtion verified..");
-            } else {
-                LOGGER.warn("Subnet upadtion failed..");
-            }
-        } catch (Exception ex) {
-            LOGGER.error("Exception :     " + ex);
-        }
+        });
     }
 
     /**
@@ -330,21 +382,57 @@ public class SubnetHandler implements INeutronSubnetAware {
      */
     @Override
     public int canDeleteSubnet(NeutronSubnet subnet) {
+        long startTime = System.nanoTime();
+        Bulkheads bulkheads = Activator.getBulkheads();
+        if (!bulkheads.tryAcquire(Bulkheads.Kind.SUBNET)) {
+            return ApiFutures.unavailable("subnet deletion", startTime);
+        }
+        try {
+            return ApiFutures.await("subnet deletion", startTime, deleteSubnetAsync(subnet));
+        } finally {
+            bulkheads.release(Bulkheads.Kind.SUBNET);
+        }
+    }
+
+    /**
+     * Invoked to delete the specified subnet without waiting for the API
+     * server.
+     *
+     * @param subnet
+     *            An instance of the Neutron Subnet object to be deleted.
+     *
+     * @return A future of the HTTP status code to the deletion request.
+     */
+    public ListenableFuture<Integer> deleteSubnetAsync(final NeutronSubnet subnet) {
         apiConnector = Activator.apiConnector;
-        VirtualNetwork virtualNetwork = null;
+        objectCache = Activator.getObjectCache();
         try {
-            virtualNetwork = (VirtualNetwork) apiConnector.findById(VirtualNetwork.class, subnet.getNetworkUUID());
-            boolean subnetDelete = deleteSubnet(subnet, virtualNetwork);
-            if (!subnetDelete) {
-                LOGGER.error("Subnet deletion failed..");
-                return HttpURLConnection.HTTP_INTERNAL_ERROR;
-            } else {
-                LOGGER.info("Subnet " + subnet.getCidr() + " sucessfully deleted from network  : " + virtualNetwork.getUuid());
-                return HttpURLConnection.HTTP_NO_CONTENT;
-            }
+            return Activator.getSubnetWriter().submit(subnet.getNetworkUUID(), new SubnetWriter.Change() {
+                @Override
+                int apply(VirtualNetwork virtualNetwork) {
+                    if (!deleteSubnet(subnet, virtualNetwork)) {
+                        LOGGER.error("Subnet deletion failed..");
+                        return HttpURLConnection.HTTP_INTERNAL_ERROR;
+                    }
+                    return HttpURLConnection.HTTP_NO_CONTENT;
+                }
+
+                @Override
+                void written(VirtualNetwork virtualNetwork) {
+                    Activator.getIpAllocators().remove(subnet.getSubnetUUID());
+                    Activator.getObjectIndex().remove(subnet.getSubnetUUID());
+                    LOGGER.info("Subnet " + subnet.getCidr() + " sucessfully deleted from network  : " + virtualNetwork.getUuid());
+                }
+
+                @Override
+                void failed(VirtualNetwork virtualNetwork) {
+                    Activator.getIpamResolver().invalidate();
+                    LOGGER.error("Subnet deletion failed..");
+                }
+            });
         } catch (Exception e) {
             LOGGER.error("Exception :     ", e.getMessage());
-            return HttpURLConnection.HTTP_INTERNAL_ERROR;
+            return ApiFutures.status(HttpURLConnection.HTTP_INTERNAL_ERROR);
         }
     }
 
@@ -374,7 +462,8 @@ public class SubnetHandler implements INeutronSubnetAware {
     }
 
     /**
-     * Invoked to delete a specified subnet.
+     * Invoked to remove a specified subnet from its virtual network, written
+     * by the {@link SubnetWriter}.
      *
      * @param subnet
      *            An instance of the Neutron Subnet object to be deleted.
@@ -382,43 +471,38 @@ public class SubnetHandler implements INeutronSubnetAware {
      * @param virtualNetwork
      *            An instance of the Virtual network object.
      *
-     * @return A HTTP status code to the deletion request.
+     * @return true if the subnet was removed.
      */
     private boolean deleteSubnet(NeutronSubnet subnet, VirtualNetwork virtualNetwork) {
         try {
-            VnSubnetsType.IpamSubnetType subnetVmType = null;
-            VnSubnetsType vnSubnetsType = null;
-            List<VnSubnetsType.IpamSubnetType> subnets = null;
             List<ObjectReference<VnSubnetsType>> ipamRefs = virtualNetwork.getNetworkIpam();
             if (ipamRefs != null) {
-                for (ObjectReference<VnSubnetsType> ref : ipamRefs) {
-                    vnSubnetsType = ref.getAttr();
-                    if (vnSubnetsType != null) {
-                        subnets = vnSubnetsType.getIpamSubnets();
-                        for (VnSubnetsType.IpamSubnetType subnetValue : subnets) {
-                            String[] ipPrefix = getIpPrefix(subnet);
-                            boolean doesSubnetExist = subnetValue.getSubnet().getIpPrefix().matches(ipPrefix[0]);
-                            if (doesSubnetExist) {
-                                subnetVmType = subnetValue;
-                            }
-                        }
-                    }
+                String[] ipPrefix = getIpPrefix(subnet);
+                VnSubnetsType.IpamSubnetType subnetVmType = SubnetIndex.of(virtualNetwork).getByPrefix(ipPrefix[0]);
+                if (subnetVmType == null) {
+                    LOGGER.error("Subnet " + subnet.getCidr() + " does not exist in the network..");
+                    return false;
+                }
+                VnSubnetsType vnSubnetsType = SubnetIndex.of(virtualNetwork).getOwner(subnetVmType);
+                // resolved before the network is changed, which must stay
+                // unchanged if the subnet can not be removed
+                NetworkIpam ipam = Activator.getIpamResolver().getDefaultIpam();
+                if (ipam == null) {
+                    LOGGER.error("default-network-ipam not found..");
+                    return false;
                 }
-                vnSubnetsType.clearIpamSubnets();
-                for (VnSubnetsType.IpamSubnetType subnetVal : subnets) {
-                    if (!subnetVal.getSubnet().getIpPrefix().matches(subnetVmType.getSubnet().getIpPrefix())) {
-                        vnSubnetsType.addIpamSubnets(subnetVal);
+                VnSubnetsType remaining = new VnSubnetsType();
+                for (VnSubnetsType.IpamSubnetType subnetVal : vnSubnetsType.getIpamSubnets()) {
+                    if (subnetVal != subnetVmType) {
+                        remaining.addIpamSubnets(subnetVal);
                     }
                 }
-                if (vnSubnetsType.getIpamSubnets() != null) {
-                    virtualNetwork.clearNetworkIpam();
-                    String ipamId = apiConnector.findByName(NetworkIpam.class, null, "default-network-ipam");
-                    NetworkIpam ipam = (NetworkIpam) apiConnector.findById(NetworkIpam.class, ipamId);
-                    virtualNetwork.addNetworkIpam(ipam, vnSubnetsType);
+                if (remaining.getIpamSubnets() != null) {
+                    virtualNetwork.setNetworkIpam(ipam, remaining);
                 } else {
                     virtualNetwork.clearNetworkIpam();
                 }
-                return apiConnector.update(virtualNetwork);
+                return true;
             } else {
                 LOGGER.error("Subnet deletion failed...");
                 return false;
@@ -439,17 +523,14 @@ public class SubnetHandler implements INeutronSubnetAware {
      *            An instance of deleted Neutron Subnet object.
      */
     @Override
-    public void neutronSubnetDeleted(NeutronSubnet subnet) {
-        try {
-            VirtualNetwork virtualNetwork = (VirtualNetwork) apiConnector.findById(VirtualNetwork.class, subnet.getNetworkUUID());
-            boolean ifSubnetExist = subnetExists(virtualNetwork.getNetworkIpam(), subnet);
-            if (!ifSubnetExist) {
-                LOGGER.info("Subnet deletion verified..");
-            } else {
-                LOGGER.warn("Subnet deletion failed..");
+    public void neutronSubnetDeleted(final NeutronSubnet subnet) {
+        final ProjectedReader reader = Activator.getProjectedReader();
+        Activator.getVerifier().verify("subnet.deleted:" + subnet.getSubnetUUID(), new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws IOException {
+                SubnetIndex subnets = readSubnets(reader, subnet.getNetworkUUID());
+                return subnets == null || subnets.getByPrefix(getIpPrefix(subnet)[0]) == null;
             }
-        } catch (Exception ex) {
-            LOGGER.error("Exception :    " + ex);
-        }
+        });
     }
 }
\ No newline at end of file
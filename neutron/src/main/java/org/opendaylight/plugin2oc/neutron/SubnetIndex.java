@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import net.juniper.contrail.api.ObjectReference;
+import net.juniper.contrail.api.types.VirtualNetwork;
+import net.juniper.contrail.api.types.VnSubnetsType;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.net.InetAddresses;
+
+/**
+ * Index of the subnets attached to a virtual network, keyed by subnet UUID
+ * and by normalized IP prefix, plus the address ranges they cover for
+ * overlap queries. An index is built once per fetched VirtualNetwork object
+ * and reused until the IPAM references of that object change.
+ */
+public final class SubnetIndex {
+    /**
+     * Indexes of the VirtualNetwork objects still referenced, compared by
+     * identity.
+     */
+    private static final Cache<VirtualNetwork, SubnetIndex> INDEXES = CacheBuilder.newBuilder().weakKeys().build();
+
+    private final List<ObjectReference<VnSubnetsType>> ipamRefs;
+    private final int subnetCount;
+    private final Map<String, VnSubnetsType.IpamSubnetType> byUuid = new HashMap<String, VnSubnetsType.IpamSubnetType>();
+    private final Map<String, VnSubnetsType.IpamSubnetType> byPrefix = new HashMap<String, VnSubnetsType.IpamSubnetType>();
+    private final Map<VnSubnetsType.IpamSubnetType, VnSubnetsType> owners = new HashMap<VnSubnetsType.IpamSubnetType, VnSubnetsType>();
+    /**
+     * Outermost ranges of the subnets, keyed by first address, one map per
+     * address family; built on the first overlap query.
+     */
+    private NavigableMap<BigInteger, Range> ipv4Ranges;
+    private NavigableMap<BigInteger, Range> ipv6Ranges;
+
+    /**
+     * Address range covered by a subnet.
+     */
+    private static final class Range {
+        final BigInteger first;
+        final BigInteger last;
+        final boolean ipv6;
+        final VnSubnetsType.IpamSubnetType subnet;
+
+        Range(BigInteger first, BigInteger last, boolean ipv6, VnSubnetsType.IpamSubnetType subnet) {
+            this.first = first;
+            this.last = last;
+            this.ipv6 = ipv6;
+            this.subnet = subnet;
+        }
+    }
+
+    SubnetIndex(List<ObjectReference<VnSubnetsType>> ipamRefs) {
+        this.ipamRefs = ipamRefs;
+        int count = 0;
+        if (ipamRefs != null) {
+            for (ObjectReference<VnSubnetsType> ref : ipamRefs) {
+                VnSubnetsType vnSubnetsType = ref.getAttr();
+                if (vnSubnetsType != null && vnSubnetsType.getIpamSubnets() != null) {
+                    for (VnSubnetsType.IpamSubnetType subnetValue : vnSubnetsType.getIpamSubnets()) {
+                        count++;
+                        owners.put(subnetValue, vnSubnetsType);
+                        if (subnetValue.getSubnetUuid() != null) {
+                            byUuid.put(normalizeUuid(subnetValue.getSubnetUuid()), subnetValue);
+                        }
+                        if (subnetValue.getSubnet() != null && subnetValue.getSubnet().getIpPrefix() != null) {
+                            byPrefix.put(normalizePrefix(subnetValue.getSubnet().getIpPrefix()), subnetValue);
+                        }
+                    }
+                }
+            }
+        }
+        this.subnetCount = count;
+    }
+
+    /**
+     * Invoked to get the index of a virtual network, building it if the
+     * object was not indexed yet or its IPAM references changed since.
+     *
+     * @param virtualNetwork
+     *            virtual network fetched from the API server.
+     * @return index of the subnets of the virtual network.
+     */
+    public static SubnetIndex of(VirtualNetwork virtualNetwork) {
+        List<ObjectReference<VnSubnetsType>> ipamRefs = virtualNetwork.getNetworkIpam();
+        SubnetIndex index = INDEXES.getIfPresent(virtualNetwork);
+        if (index == null || !index.isCurrent(ipamRefs)) {
+            index = new SubnetIndex(ipamRefs);
+            INDEXES.put(virtualNetwork, index);
+        }
+        return index;
+    }
+
+    private boolean isCurrent(List<ObjectReference<VnSubnetsType>> refs) {
+        if (refs != ipamRefs) {
+            return false;
+        }
+        int count = 0;
+        if (refs != null) {
+            for (ObjectReference<VnSubnetsType> ref : refs) {
+                VnSubnetsType vnSubnetsType = ref.getAttr();
+                if (vnSubnetsType != null && vnSubnetsType.getIpamSubnets() != null) {
+                    count += vnSubnetsType.getIpamSubnets().size();
+                }
+            }
+        }
+        return count == subnetCount;
+    }
+
+    public VnSubnetsType.IpamSubnetType getByUuid(String subnetUuid) {
+        if (subnetUuid == null) {
+            return null;
+        }
+        return byUuid.get(normalizeUuid(subnetUuid));
+    }
+
+    public VnSubnetsType.IpamSubnetType getByPrefix(String ipPrefix) {
+        if (ipPrefix == null) {
+            return null;
+        }
+        return byPrefix.get(normalizePrefix(ipPrefix));
+    }
+
+    /**
+     * Invoked to get the IPAM attribute holding a subnet.
+     */
+    public VnSubnetsType getOwner(VnSubnetsType.IpamSubnetType subnetValue) {
+        return owners.get(subnetValue);
+    }
+
+    /**
+     * Invoked to find an existing subnet whose addresses overlap the given
+     * CIDR. Only the outermost subnets are kept in the range maps, as CIDR
+     * blocks are either disjoint or nested, so a single floor lookup answers
+     * the query.
+     *
+     * @param cidr
+     *            CIDR of the proposed subnet, e.g. 10.0.1.0/24.
+     * @return an overlapping subnet, or null if there is none.
+     */
+    public synchronized VnSubnetsType.IpamSubnetType findOverlapping(String cidr) {
+        Range range = parseCidr(cidr, null);
+        if (ipv4Ranges == null) {
+            buildRanges();
+        }
+        NavigableMap<BigInteger, Range> ranges = range.ipv6 ? ipv6Ranges : ipv4Ranges;
+        Map.Entry<BigInteger, Range> floor = ranges.floorEntry(range.last);
+        if (floor != null && floor.getValue().last.compareTo(range.first) >= 0) {
+            return floor.getValue().subnet;
+        }
+        return null;
+    }
+
+    private void buildRanges() {
+        List<Range> ranges = new ArrayList<Range>(subnetCount);
+        for (VnSubnetsType.IpamSubnetType subnetValue : owners.keySet()) {
+            if (subnetValue.getSubnet() != null && subnetValue.getSubnet().getIpPrefix() != null
+                    && subnetValue.getSubnet().getIpPrefixLen() != null) {
+                try {
+                    ranges.add(parseCidr(subnetValue.getSubnet().getIpPrefix() + "/" + subnetValue.getSubnet().getIpPrefixLen(), subnetValue));
+                } catch (IllegalArgumentException e) {
+                    // not an IP subnet, it can not overlap with one
+                }
+            }
+        }
+        // widest block first among blocks sharing a first address, so that
+        // nested blocks follow the block holding them
+        Collections.sort(ranges, new Comparator<Range>() {
+            @Override
+            public int compare(Range r1, Range r2) {
+                int result = r1.first.compareTo(r2.first);
+                return result != 0 ? result : r2.last.compareTo(r1.last);
+            }
+        });
+        ipv4Ranges = new TreeMap<BigInteger, Range>();
+        ipv6Ranges = new TreeMap<BigInteger, Range>();
+        Range lastV4 = null;
+        Range lastV6 = null;
+        for (Range range : ranges) {
+            Range last = range.ipv6 ? lastV6 : lastV4;
+            if (last != null && range.last.compareTo(last.last) <= 0) {
+                continue;
+            }
+            if (range.ipv6) {
+                ipv6Ranges.put(range.first, range);
+                lastV6 = range;
+            } else {
+                ipv4Ranges.put(range.first, range);
+                lastV4 = range;
+            }
+        }
+    }
+
+    /**
+     * Invoked to get the address range of a CIDR.
+     *
+     * @throws IllegalArgumentException
+     *             if the CIDR is not in the address/length format.
+     */
+    private static Range parseCidr(String cidr, VnSubnetsType.IpamSubnetType subnet) {
+        int slash = cidr.indexOf('/');
+        if (slash < 0) {
+            throw new IllegalArgumentException("String " + cidr + " not in correct format..");
+        }
+        InetAddress address = InetAddresses.forString(stripLeadingZeros(cidr.substring(0, slash).trim()));
+        int bits = address.getAddress().length * 8;
+        int prefixLen;
+        try {
+            prefixLen = Integer.parseInt(cidr.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("String " + cidr + " not in correct format..");
+        }
+        if (prefixLen < 0 || prefixLen > bits) {
+            throw new IllegalArgumentException("Prefix length of " + cidr + " out of range..");
+        }
+        BigInteger hostMask = BigInteger.ONE.shiftLeft(bits - prefixLen).subtract(BigInteger.ONE);
+        BigInteger first = new BigInteger(1, address.getAddress()).andNot(hostMask);
+        return new Range(first, first.or(hostMask), bits == 128, subnet);
+    }
+
+    public int size() {
+        return subnetCount;
+    }
+
+    static String normalizeUuid(String uuid) {
+        return uuid.trim().toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Invoked to get the canonical text form of an IP prefix, so that
+     * "10.0.0.0", "010.0.0.0" or an IPv6 prefix written in another notation
+     * map to the same key.
+     */
+    static String normalizePrefix(String ipPrefix) {
+        String prefix = ipPrefix.trim();
+        try {
+            return InetAddresses.toAddrString(InetAddresses.forString(stripLeadingZeros(prefix)));
+        } catch (IllegalArgumentException e) {
+            return prefix.toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    private static String stripLeadingZeros(String prefix) {
+        if (prefix.indexOf(':') >= 0) {
+            return prefix;
+        }
+        String[] octets = prefix.split("\\.", -1);
+        StringBuilder builder = new StringBuilder(prefix.length());
+        for (int i = 0; i < octets.length; i++) {
+            if (i > 0) {
+                builder.append('.');
+            }
+            String octet = octets[i];
+            int start = 0;
+            while (start < octet.length() - 1 && octet.charAt(start) == '0') {
+                start++;
+            }
+            builder.append(octet, start, octet.length());
+        }
+        return builder.toString();
+    }
+}
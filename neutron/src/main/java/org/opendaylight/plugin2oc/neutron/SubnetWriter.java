@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.juniper.contrail.api.types.VirtualNetwork;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Combines the subnet changes made concurrently on one virtual network into a
+ * single update of the network. The changes submitted for a network are
+ * queued until the batch starts, plugin2oc.subnet.coalesceWindow milliseconds
+ * later and once the sequences running on the network under the
+ * {@link ApiObjectLocks} completed; the batch then reads the network, applies
+ * the changes in order and writes it once. Each change gets its own status. A
+ * change throwing fails alone, the others are applied again to a fresh read
+ * of the network.
+ */
+public class SubnetWriter {
+    /**
+     * Logger instance.
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(SubnetWriter.class);
+    static final long DEFAULT_WINDOW_MILLIS = 2;
+
+    /**
+     * Subnet change applied to the virtual network read by a batch.
+     */
+    public abstract static class Change {
+        /**
+         * Invoked to apply the change to the virtual network, without writing
+         * it. A change that can't be made must leave the network unchanged.
+         *
+         * @param virtualNetwork
+         *            the virtual network, null if it does not exist.
+         * @return a 2xx HTTP status code if the network was changed, else the
+         *         HTTP status code of the change.
+         */
+        abstract int apply(VirtualNetwork virtualNetwork) throws Exception;
+
+        /**
+         * Invoked once the network with the change was written.
+         */
+        void written(VirtualNetwork virtualNetwork) {
+        }
+
+        /**
+         * Invoked when the network with the change could not be written.
+         */
+        void failed(VirtualNetwork virtualNetwork) {
+        }
+    }
+
+    private final ApiObjectLocks objectLocks;
+    private final ApiObjectCache objectCache;
+    private final long windowMillis;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<String, Batch> batches = new ConcurrentHashMap<String, Batch>();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong changes = new AtomicLong();
+
+    public SubnetWriter(ApiObjectLocks objectLocks, ApiObjectCache objectCache) {
+        this(objectLocks, objectCache, Long.getLong("plugin2oc.subnet.coalesceWindow", DEFAULT_WINDOW_MILLIS));
+    }
+
+    public SubnetWriter(ApiObjectLocks objectLocks, ApiObjectCache objectCache, long windowMillis) {
+        this.objectLocks = objectLocks;
+        this.objectCache = objectCache;
+        this.windowMillis = windowMillis;
+        if (windowMillis > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true)
+                    .setNameFormat("plugin2oc-subnet-writer-%d").build());
+        } else {
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Invoked to queue a change of the subnets of a virtual network.
+     *
+     * @param networkUUID
+     *            UUID of the virtual network.
+     * @param change
+     *            the subnet change.
+     * @return future of the HTTP status code of the change.
+     */
+    public ListenableFuture<Integer> submit(String networkUUID, Change change) {
+        PendingChange pendingChange = new PendingChange(change);
+        while (true) {
+            Batch batch = batches.get(networkUUID);
+            if (batch != null && batch.add(pendingChange)) {
+                return pendingChange.status;
+            }
+            Batch created = new Batch(networkUUID);
+            created.add(pendingChange);
+            boolean registered = batch == null ? batches.putIfAbsent(networkUUID, created) == null : batches.replace(networkUUID, batch,
+                    created);
+            if (registered) {
+                schedule(created);
+                return pendingChange.status;
+            }
+        }
+    }
+
+    private void schedule(final Batch batch) {
+        if (scheduler == null) {
+            start(batch);
+            return;
+        }
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    start(batch);
+                }
+            }, windowMillis, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            // shut down, no window
+            start(batch);
+        }
+    }
+
+    private void start(final Batch batch) {
+        final ListenableFuture<Void> run;
+        try {
+            run = objectLocks.submit(batch.networkUUID, batch);
+        } catch (RuntimeException e) {
+            batch.fail(e);
+            return;
+        }
+        run.addListener(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    run.get();
+                } catch (ExecutionException e) {
+                    batch.fail(e.getCause());
+                } catch (Throwable t) {
+                    batch.fail(t);
+                }
+            }
+        }, ApiFutures.DirectExecutor.INSTANCE);
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * Invoked to get the number of network updates made.
+     */
+    public long getWriteCount() {
+        return writes.get();
+    }
+
+    /**
+     * Invoked to get the number of changes written, greater than the number
+     * of writes when changes were combined.
+     */
+    public long getChangeCount() {
+        return changes.get();
+    }
+
+    ApiObjectLocks getObjectLocks() {
+        return objectLocks;
+    }
+
+    ApiObjectCache getObjectCache() {
+        return objectCache;
+    }
+
+    /**
+     * Change waiting for its batch.
+     */
+    private static final class PendingChange {
+        final Change change;
+        final SettableFuture<Integer> status = SettableFuture.create();
+
+        PendingChange(Change change) {
+            this.change = change;
+        }
+    }
+
+    /**
+     * Changes queued for one virtual network, run under its lock.
+     */
+    private final class Batch implements Callable<Void> {
+        final String networkUUID;
+        private final List<PendingChange> pendingChanges = new ArrayList<PendingChange>();
+        private boolean closed;
+
+        Batch(String networkUUID) {
+            this.networkUUID = networkUUID;
+        }
+
+        synchronized boolean add(PendingChange pendingChange) {
+            if (closed) {
+                return false;
+            }
+            pendingChanges.add(pendingChange);
+            return true;
+        }
+
+        /**
+         * Invoked when the batch starts, the changes submitted afterwards go
+         * to a new batch.
+         */
+        synchronized List<PendingChange> close() {
+            closed = true;
+            batches.remove(networkUUID, this);
+            return pendingChanges;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            List<PendingChange> pending = new ArrayList<PendingChange>(close());
+            List<PendingChange> applied = new ArrayList<PendingChange>();
+            List<Integer> appliedStatus = new ArrayList<Integer>();
+            VirtualNetwork virtualNetwork = null;
+            boolean reapply = true;
+            while (reapply) {
+                reapply = false;
+                // a change throwing may have left the network half changed,
+                // the network is then read again and the other changes
+                // applied to the fresh copy
+                virtualNetwork = (VirtualNetwork) objectCache.getApiConnector().findById(VirtualNetwork.class, networkUUID);
+                applied.clear();
+                appliedStatus.clear();
+                for (Iterator<PendingChange> i = pending.iterator(); i.hasNext();) {
+                    PendingChange pendingChange = i.next();
+                    if (pendingChange.status.isDone()) {
+                        // cancelled past its deadline
+                        i.remove();
+                        continue;
+                    }
+                    int status;
+                    try {
+                        status = pendingChange.change.apply(virtualNetwork);
+                    } catch (Exception e) {
+                        LOGGER.error("Exception :   " + e);
+                        i.remove();
+                        pendingChange.status.set(HttpURLConnection.HTTP_INTERNAL_ERROR);
+                        reapply = true;
+                        break;
+                    }
+                    if (status / 100 == 2) {
+                        applied.add(pendingChange);
+                        appliedStatus.add(status);
+                    } else {
+                        i.remove();
+                        pendingChange.status.set(status);
+                    }
+                }
+            }
+            if (applied.isEmpty()) {
+                return null;
+            }
+            boolean written = false;
+            try {
+                written = objectCache.update(virtualNetwork);
+            } catch (IOException e) {
+                LOGGER.error("IOException:     " + e);
+            }
+            if (written) {
+                writes.incrementAndGet();
+                changes.addAndGet(applied.size());
+                if (applied.size() > 1) {
+                    LOGGER.debug(applied.size() + " subnet changes written in one update of network : " + networkUUID);
+                }
+            }
+            for (int i = 0; i < applied.size(); i++) {
+                PendingChange pendingChange = applied.get(i);
+                if (written) {
+                    pendingChange.change.written(virtualNetwork);
+                    pendingChange.status.set(appliedStatus.get(i));
+                } else {
+                    pendingChange.change.failed(virtualNetwork);
+                    pendingChange.status.set(HttpURLConnection.HTTP_INTERNAL_ERROR);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Invoked when the batch failed or was not run, to fail the changes
+         * not completed yet.
+         */
+        void fail(Throwable cause) {
+            for (PendingChange pendingChange : close()) {
+                pendingChange.status.setException(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import java.util.UUID;
+
+/**
+ * Parses the UUIDs Neutron passes, with or without dashes, without building
+ * intermediate strings.
+ */
+final class Uuids {
+    private Uuids() {
+    }
+
+    /**
+     * Invoked to check a string holds 32 hexadecimal digits, dashes aside.
+     */
+    static boolean isUuid(String uuid) {
+        if (uuid == null) {
+            return false;
+        }
+        int digits = 0;
+        for (int i = 0; i < uuid.length(); i++) {
+            char c = uuid.charAt(i);
+            if (Character.digit(c, 16) >= 0) {
+                digits++;
+            } else if (c != '-') {
+                return false;
+            }
+        }
+        return digits == 32;
+    }
+
+    /**
+     * Invoked to parse 16 hexadecimal digits of a UUID, dashes aside.
+     *
+     * @param first
+     *            0 for the most significant bits, 16 for the least.
+     */
+    static long parseHalf(String uuid, int first) {
+        long value = 0;
+        int digit = 0;
+        for (int i = 0; i < uuid.length() && digit < first + 16; i++) {
+            int nibble = Character.digit(uuid.charAt(i), 16);
+            if (nibble < 0) {
+                continue;
+            }
+            if (digit >= first) {
+                value = value << 4 | nibble;
+            }
+            digit++;
+        }
+        return value;
+    }
+
+    /**
+     * Invoked to parse a UUID.
+     *
+     * @return the UUID, or null if the string does not hold one.
+     */
+    static UUID parse(String uuid) {
+        if (!isUuid(uuid)) {
+            return null;
+        }
+        return new UUID(parseHalf(uuid, 0), parseHalf(uuid, 16));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Test Class for the composition of the handler operations.
+ */
+public class ApiFuturesTest {
+    ApiExecutor apiExecutor;
+
+    @Before
+    public void beforeTest() {
+        apiExecutor = new ApiExecutor(2, 16);
+    }
+
+    @After
+    public void afterTest() {
+        apiExecutor.shutdown();
+    }
+
+    /* Test method to check a stage runs with the result of the API call it depends on */
+    @Test
+    public void testThen() {
+        ListenableFuture<String> lookup = apiExecutor.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return "network";
+            }
+        });
+        ListenableFuture<Integer> status = ApiFutures.then(lookup, new ApiFutures.Stage<String, Integer>() {
+            @Override
+            public ListenableFuture<Integer> apply(String network) {
+                return ApiFutures.status("network".equals(network) ? HttpURLConnection.HTTP_OK : HttpURLConnection.HTTP_BAD_REQUEST);
+            }
+        });
+        assertEquals(HttpURLConnection.HTTP_OK, ApiFutures.await("test", status));
+    }
+
+    /* Test method to check a failed API call ends the operation with Internal Server Error */
+    @Test
+    public void testThenFailure() {
+        final AtomicBoolean stageRun = new AtomicBoolean();
+        ListenableFuture<String> lookup = apiExecutor.submit(new Callable<String>() {
+            @Override
+            public String call() throws IOException {
+                throw new IOException("API server unreachable");
+            }
+        });
+        ListenableFuture<Integer> status = ApiFutures.then(lookup, new ApiFutures.Stage<String, Integer>() {
+            @Override
+            public ListenableFuture<Integer> apply(String network) {
+                stageRun.set(true);
+                return ApiFutures.status(HttpURLConnection.HTTP_OK);
+            }
+        });
+        assertEquals(HttpURLConnection.HTTP_INTERNAL_ERROR, ApiFutures.await("test", status));
+        assertFalse(stageRun.get());
+    }
+
+    /* Test method to check the stages chained after a cancelled operation are not run */
+    @Test
+    public void testCancel() {
+        final AtomicBoolean stageRun = new AtomicBoolean();
+        final SettableFuture<String> lookup = SettableFuture.create();
+        ListenableFuture<Integer> status = ApiFutures.then(ApiFutures.status(HttpURLConnection.HTTP_OK),
+                new ApiFutures.Stage<Integer, Integer>() {
+                    @Override
+                    public ListenableFuture<Integer> apply(Integer created) {
+                        return ApiFutures.then(lookup, new ApiFutures.Stage<String, Integer>() {
+                            @Override
+                            public ListenableFuture<Integer> apply(String network) {
+                                stageRun.set(true);
+                                return ApiFutures.status(HttpURLConnection.HTTP_OK);
+                            }
+                        });
+                    }
+                });
+        assertTrue(status.cancel(false));
+        lookup.set("network");
+        assertFalse(stageRun.get());
+        assertFalse(lookup.isCancelled());
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.ApiObjectBase;
+import net.juniper.contrail.api.types.Project;
+import net.juniper.contrail.api.types.VirtualMachineInterface;
+import net.juniper.contrail.api.types.VirtualNetwork;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Test Class for the ApiConnector object cache.
+ */
+public class ApiObjectCacheTest {
+    static final String NETWORK_UUID = "6b9570f2-17b1-4fc3-99ec-1b7f7778a29a";
+    static final String PROJECT_UUID = "019570f2-17b1-4fc3-99ec-1b7f7778a29a";
+    ApiConnector mockedApiConnector;
+    ApiObjectCache objectCache;
+
+    @Before
+    public void beforeTest() {
+        mockedApiConnector = mock(ApiConnector.class);
+        objectCache = new ApiObjectCache(mockedApiConnector, 60000, 100);
+    }
+
+    /* dummy Virtual Network */
+    public VirtualNetwork defaultVirtualNetwork() {
+        VirtualNetwork virtualNetwork = new VirtualNetwork();
+        virtualNetwork.setUuid(NETWORK_UUID);
+        virtualNetwork.setName("Virtual-Network");
+        return virtualNetwork;
+    }
+
+    /* Test method to check repeated lookups are answered from the cache */
+    @Test
+    public void testFindByIdHit() throws IOException {
+        VirtualNetwork virtualNetwork = defaultVirtualNetwork();
+        when(mockedApiConnector.findById(VirtualNetwork.class, NETWORK_UUID)).thenReturn(virtualNetwork);
+        assertSame(virtualNetwork, objectCache.findById(VirtualNetwork.class, NETWORK_UUID));
+        assertSame(virtualNetwork, objectCache.findById(VirtualNetwork.class, NETWORK_UUID));
+        verify(mockedApiConnector, times(1)).findById(VirtualNetwork.class, NETWORK_UUID);
+        assertEquals(1, objectCache.getHitCount());
+        assertEquals(1, objectCache.getMissCount());
+    }
+
+    /* Test method to check missing objects are not cached */
+    @Test
+    public void testFindByIdMissingNotCached() throws IOException {
+        when(mockedApiConnector.findById(Project.class, PROJECT_UUID)).thenReturn(null);
+        assertNull(objectCache.findById(Project.class, PROJECT_UUID));
+        assertNull(objectCache.findById(Project.class, PROJECT_UUID));
+        verify(mockedApiConnector, times(2)).findById(Project.class, PROJECT_UUID);
+        assertEquals(0, objectCache.getHitCount());
+    }
+
+    /* Test method to check types outside the cacheable set go to the connector */
+    @Test
+    public void testFindByIdNotCacheable() throws IOException {
+        VirtualMachineInterface virtualMachineInterface = new VirtualMachineInterface();
+        when(mockedApiConnector.findById(VirtualMachineInterface.class, NETWORK_UUID)).thenReturn(virtualMachineInterface);
+        objectCache.findById(VirtualMachineInterface.class, NETWORK_UUID);
+        objectCache.findById(VirtualMachineInterface.class, NETWORK_UUID);
+        verify(mockedApiConnector, times(2)).findById(VirtualMachineInterface.class, NETWORK_UUID);
+        assertEquals(0, objectCache.getMissCount());
+    }
+
+    /* Test method to check a UUID is missing until found or created */
+    @Test
+    public void testIsMissing() throws IOException {
+        VirtualNetwork virtualNetwork = defaultVirtualNetwork();
+        assertTrue(objectCache.isMissing(NETWORK_UUID));
+        when(mockedApiConnector.findById(VirtualNetwork.class, NETWORK_UUID)).thenReturn(virtualNetwork);
+        objectCache.findById(VirtualNetwork.class, NETWORK_UUID);
+        assertFalse(objectCache.isMissing(NETWORK_UUID));
+        objectCache.delete(virtualNetwork);
+        assertTrue(objectCache.isMissing(NETWORK_UUID));
+        objectCache.create(virtualNetwork);
+        assertFalse(objectCache.isMissing(NETWORK_UUID));
+        assertEquals(2, objectCache.getSkippedLookupCount());
+    }
+
+    /* Test method to check an update invalidates the cached object */
+    @Test
+    public void testUpdateInvalidates() throws IOException {
+        VirtualNetwork virtualNetwork = defaultVirtualNetwork();
+        when(mockedApiConnector.findById(VirtualNetwork.class, NETWORK_UUID)).thenReturn(virtualNetwork);
+        when(mockedApiConnector.update(virtualNetwork)).thenReturn(true);
+        objectCache.findById(VirtualNetwork.class, NETWORK_UUID);
+        objectCache.update(virtualNetwork);
+        objectCache.findById(VirtualNetwork.class, NETWORK_UUID);
+        verify(mockedApiConnector, times(2)).findById(VirtualNetwork.class, NETWORK_UUID);
+    }
+
+    /* Test method to check a delete invalidates the cached object */
+    @Test
+    public void testDeleteInvalidates() throws IOException {
+        VirtualNetwork virtualNetwork = defaultVirtualNetwork();
+        when(mockedApiConnector.findById(VirtualNetwork.class, NETWORK_UUID)).thenReturn(virtualNetwork);
+        objectCache.findById(VirtualNetwork.class, NETWORK_UUID);
+        objectCache.delete(virtualNetwork);
+        assertEquals(0, objectCache.size());
+    }
+
+    /* Test method to check an object read during an update is not cached */
+    @Test
+    public void testUpdateDuringLoad() throws Exception {
+        final VirtualNetwork staleVirtualNetwork = defaultVirtualNetwork();
+        VirtualNetwork virtualNetwork = defaultVirtualNetwork();
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch updated = new CountDownLatch(1);
+        when(mockedApiConnector.findById(VirtualNetwork.class, NETWORK_UUID)).thenAnswer(new Answer<VirtualNetwork>() {
+            @Override
+            public VirtualNetwork answer(InvocationOnMock invocation) throws InterruptedException {
+                reading.countDown();
+                updated.await();
+                return staleVirtualNetwork;
+            }
+        });
+        when(mockedApiConnector.update(virtualNetwork)).thenReturn(true);
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    objectCache.findById(VirtualNetwork.class, NETWORK_UUID);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        reader.start();
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+        objectCache.update(virtualNetwork);
+        updated.countDown();
+        reader.join(10000);
+        assertEquals(0, objectCache.size());
+    }
+
+    /* Test method to check a read made after an update does not share a load started before it */
+    @Test
+    public void testReadAfterUpdateDuringLoad() throws Exception {
+        final VirtualNetwork staleVirtualNetwork = defaultVirtualNetwork();
+        final VirtualNetwork virtualNetwork = defaultVirtualNetwork();
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch updated = new CountDownLatch(1);
+        when(mockedApiConnector.findById(VirtualNetwork.class, NETWORK_UUID)).thenAnswer(new Answer<VirtualNetwork>() {
+            @Override
+            public VirtualNetwork answer(InvocationOnMock invocation) throws InterruptedException {
+                if (reading.getCount() == 0) {
+                    return virtualNetwork;
+                }
+                reading.countDown();
+                updated.await();
+                return staleVirtualNetwork;
+            }
+        });
+        when(mockedApiConnector.update(virtualNetwork)).thenReturn(true);
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    objectCache.findById(VirtualNetwork.class, NETWORK_UUID);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        reader.start();
+        ApiExecutor apiExecutor = new ApiExecutor(2, 16);
+        try {
+            assertTrue(reading.await(10, TimeUnit.SECONDS));
+            objectCache.update(virtualNetwork);
+            ListenableFuture<ApiObjectBase> read = objectCache.findByIdAsync(VirtualNetwork.class, NETWORK_UUID, apiExecutor);
+            assertSame(virtualNetwork, read.get(10, TimeUnit.SECONDS));
+        } finally {
+            updated.countDown();
+            apiExecutor.shutdown();
+        }
+        reader.join(10000);
+        verify(mockedApiConnector, times(2)).findById(VirtualNetwork.class, NETWORK_UUID);
+    }
+
+    /* Test method to check an object preloaded after an update is not cached */
+    @Test
+    public void testUpdateDuringPreload() throws IOException {
+        VirtualNetwork virtualNetwork = defaultVirtualNetwork();
+        long generation = objectCache.getGeneration(VirtualNetwork.class, NETWORK_UUID);
+        objectCache.update(virtualNetwork);
+        objectCache.preload(VirtualNetwork.class, defaultVirtualNetwork(), generation);
+        assertEquals(0, objectCache.size());
+        objectCache.preload(VirtualNetwork.class, virtualNetwork, objectCache.getGeneration(VirtualNetwork.class, NETWORK_UUID));
+        assertEquals(1, objectCache.size());
+    }
+
+    /* Test method to check concurrent asynchronous reads share one call without a thread each */
+    @Test
+    public void testFindByIdAsyncShared() throws Exception {
+        final VirtualNetwork virtualNetwork = defaultVirtualNetwork();
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch answered = new CountDownLatch(1);
+        when(mockedApiConnector.findById(VirtualNetwork.class, NETWORK_UUID)).thenAnswer(new Answer<VirtualNetwork>() {
+            @Override
+            public VirtualNetwork answer(InvocationOnMock invocation) throws InterruptedException {
+                reading.countDown();
+                answered.await();
+                return virtualNetwork;
+            }
+        });
+        ApiExecutor apiExecutor = new ApiExecutor(2, 16);
+        try {
+            List<ListenableFuture<ApiObjectBase>> reads = new ArrayList<ListenableFuture<ApiObjectBase>>();
+            reads.add(objectCache.findByIdAsync(VirtualNetwork.class, NETWORK_UUID, apiExecutor));
+            assertTrue(reading.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 5; i++) {
+                reads.add(objectCache.findByIdAsync(VirtualNetwork.class, NETWORK_UUID, apiExecutor));
+            }
+            // the other thread is still free
+            assertEquals("free", apiExecutor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return "free";
+                }
+            }).get(10, TimeUnit.SECONDS));
+            answered.countDown();
+            for (ListenableFuture<ApiObjectBase> read : reads) {
+                assertSame(virtualNetwork, read.get(10, TimeUnit.SECONDS));
+            }
+            verify(mockedApiConnector, times(1)).findById(VirtualNetwork.class, NETWORK_UUID);
+            assertEquals(5, objectCache.getSharedReadCount());
+            assertSame(virtualNetwork, objectCache.findByIdAsync(VirtualNetwork.class, NETWORK_UUID, apiExecutor).get());
+        } finally {
+            answered.countDown();
+            apiExecutor.shutdown();
+        }
+    }
+
+    /* Test method to check the size bound evicts entries */
+    @Test
+    public void testSizeBound() throws IOException {
+        objectCache = new ApiObjectCache(mockedApiConnector, 60000, 1);
+        VirtualNetwork virtualNetwork = defaultVirtualNetwork();
+        Project project = new Project();
+        project.setUuid(PROJECT_UUID);
+        when(mockedApiConnector.findById(VirtualNetwork.class, NETWORK_UUID)).thenReturn(virtualNetwork);
+        when(mockedApiConnector.findById(Project.class, PROJECT_UUID)).thenReturn(project);
+        objectCache.findById(VirtualNetwork.class, NETWORK_UUID);
+        objectCache.findById(Project.class, PROJECT_UUID);
+        assertEquals(1, objectCache.size());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Test Class for the per object locks.
+ */
+public class ApiObjectLocksTest {
+    ApiExecutor apiExecutor;
+    ApiObjectLocks objectLocks;
+
+    @Before
+    public void beforeTest() {
+        apiExecutor = new ApiExecutor(4, 64);
+        objectLocks = new ApiObjectLocks(apiExecutor);
+    }
+
+    @After
+    public void afterTest() {
+        apiExecutor.shutdown();
+    }
+
+    /* Test method to check the sequences on one object do not overlap */
+    @Test
+    public void testSameObject() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicBoolean overlapped = new AtomicBoolean();
+        List<ListenableFuture<Integer>> sequences = new ArrayList<ListenableFuture<Integer>>();
+        for (int i = 0; i < 20; i++) {
+            sequences.add(objectLocks.submit("network", new Callable<Integer>() {
+                @Override
+                public Integer call() throws InterruptedException {
+                    if (running.incrementAndGet() > 1) {
+                        overlapped.set(true);
+                    }
+                    Thread.sleep(2);
+                    running.decrementAndGet();
+                    return 200;
+                }
+            }));
+        }
+        Futures.allAsList(sequences).get(10, TimeUnit.SECONDS);
+        assertFalse(overlapped.get());
+        assertEquals(20, objectLocks.getLockedCount());
+        assertTrue(objectLocks.getContendedCount() > 0);
+        assertEquals(0, objectLocks.getLockedObjectCount());
+    }
+
+    /* Test method to check the sequences on different objects run in parallel */
+    @Test
+    public void testDifferentObjects() throws Exception {
+        final CountDownLatch bothRunning = new CountDownLatch(2);
+        List<ListenableFuture<Boolean>> sequences = new ArrayList<ListenableFuture<Boolean>>();
+        for (String uuid : new String[] { "network-1", "network-2" }) {
+            sequences.add(objectLocks.submit(uuid, new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws InterruptedException {
+                    bothRunning.countDown();
+                    return bothRunning.await(5, TimeUnit.SECONDS);
+                }
+            }));
+        }
+        assertEquals(2, Futures.allAsList(sequences).get(10, TimeUnit.SECONDS).size());
+        assertTrue(sequences.get(0).get());
+        assertTrue(sequences.get(1).get());
+        assertEquals(0, objectLocks.getContendedCount());
+    }
+
+    /* Test method to check a failed or cancelled sequence releases the lock */
+    @Test
+    public void testRelease() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        ListenableFuture<Integer> first = objectLocks.submit("network", new Callable<Integer>() {
+            @Override
+            public Integer call() throws InterruptedException {
+                blocked.await(5, TimeUnit.SECONDS);
+                throw new IllegalStateException("API server unreachable");
+            }
+        });
+        final AtomicBoolean cancelledRun = new AtomicBoolean();
+        ListenableFuture<Integer> cancelled = objectLocks.submit("network", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                cancelledRun.set(true);
+                return 200;
+            }
+        });
+        ListenableFuture<Integer> last = objectLocks.submit("network", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return 204;
+            }
+        });
+        assertTrue(cancelled.cancel(false));
+        blocked.countDown();
+        assertEquals(Integer.valueOf(204), last.get(10, TimeUnit.SECONDS));
+        // the lock is released before the failure reaches the future
+        try {
+            first.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertFalse(cancelledRun.get());
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.types.NetworkIpam;
+import net.juniper.contrail.api.types.Project;
+import net.juniper.contrail.api.types.VirtualNetwork;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test Class for the warm-up of the object cache.
+ */
+public class ApiObjectPreloaderTest {
+    ApiConnector mockedApiConnector;
+    ApiObjectCache objectCache;
+    ApiExecutor apiExecutor;
+    ApiObjectPreloader preloader;
+
+    @Before
+    public void beforeTest() {
+        mockedApiConnector = mock(ApiConnector.class);
+        objectCache = new ApiObjectCache(mockedApiConnector, 60000, 100);
+        apiExecutor = new ApiExecutor(4, 64);
+        preloader = new ApiObjectPreloader(objectCache, apiExecutor, 2, 2);
+    }
+
+    @After
+    public void afterTest() {
+        preloader.shutdown();
+        apiExecutor.shutdown();
+    }
+
+    /* dummy Virtual Networks */
+    public List<VirtualNetwork> defaultVirtualNetworks() throws IOException {
+        List<VirtualNetwork> virtualNetworks = new ArrayList<VirtualNetwork>();
+        for (int i = 0; i < 5; i++) {
+            VirtualNetwork virtualNetwork = new VirtualNetwork();
+            virtualNetwork.setUuid("6b9570f2-17b1-4fc3-99ec-1b7f7778a29" + i);
+            virtualNetwork.setName("Virtual-Network-" + i);
+            virtualNetworks.add(virtualNetwork);
+            when(mockedApiConnector.findById(VirtualNetwork.class, virtualNetwork.getUuid())).thenReturn(virtualNetwork);
+        }
+        return virtualNetworks;
+    }
+
+    /* wait for the end of the warm-up */
+    public void awaitWarmUp() throws InterruptedException {
+        for (int i = 0; i < 500 && preloader.getState() == ApiObjectPreloader.State.LOADING; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    /* Test method to check the listed objects are loaded in pages and then served from the cache */
+    @Test
+    public void testWarmUp() throws Exception {
+        List<VirtualNetwork> virtualNetworks = defaultVirtualNetworks();
+        doReturn(virtualNetworks).when(mockedApiConnector).list(VirtualNetwork.class, null);
+        doReturn(Collections.emptyList()).when(mockedApiConnector).list(Project.class, null);
+        doReturn(Collections.emptyList()).when(mockedApiConnector).list(NetworkIpam.class, null);
+        preloader.start();
+        awaitWarmUp();
+        assertEquals(ApiObjectPreloader.State.READY, preloader.getState());
+        assertEquals(5, preloader.getLoadedCount(VirtualNetwork.class));
+        assertEquals(0, preloader.getLoadedCount(Project.class));
+        for (VirtualNetwork virtualNetwork : virtualNetworks) {
+            assertSame(virtualNetwork, objectCache.findById(VirtualNetwork.class, virtualNetwork.getUuid()));
+            verify(mockedApiConnector, times(1)).findById(VirtualNetwork.class, virtualNetwork.getUuid());
+        }
+        assertEquals(5, objectCache.getHitCount());
+    }
+
+    /* Test method to check a failed warm-up leaves the lookups to the API server */
+    @Test
+    public void testWarmUpFailed() throws Exception {
+        List<VirtualNetwork> virtualNetworks = defaultVirtualNetworks();
+        when(mockedApiConnector.list(Project.class, null)).thenThrow(new IOException("API server unreachable"));
+        preloader.start();
+        awaitWarmUp();
+        assertEquals(ApiObjectPreloader.State.FAILED, preloader.getState());
+        VirtualNetwork virtualNetwork = virtualNetworks.get(0);
+        assertSame(virtualNetwork, objectCache.findById(VirtualNetwork.class, virtualNetwork.getUuid()));
+        assertEquals(1, objectCache.getMissCount());
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.HttpURLConnection;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test Class for the limits on the operations in progress.
+ */
+public class BulkheadsTest {
+    CircuitBreaker breaker = new CircuitBreaker(1, 60000, 60000, 1);
+    Bulkheads bulkheads = new Bulkheads(breaker, 1, 1, 2);
+
+    @After
+    public void afterTest() {
+        Activator.breaker = null;
+        Activator.bulkheads = null;
+    }
+
+    /* Test method to check each kind of operation has its own limit */
+    @Test
+    public void testLimits() {
+        assertTrue(bulkheads.tryAcquire(Bulkheads.Kind.NETWORK));
+        assertFalse(bulkheads.tryAcquire(Bulkheads.Kind.NETWORK));
+        assertTrue(bulkheads.tryAcquire(Bulkheads.Kind.PORT));
+        assertTrue(bulkheads.tryAcquire(Bulkheads.Kind.PORT));
+        assertFalse(bulkheads.tryAcquire(Bulkheads.Kind.PORT));
+        assertTrue(bulkheads.tryAcquire(Bulkheads.Kind.SUBNET));
+        bulkheads.release(Bulkheads.Kind.NETWORK);
+        assertTrue(bulkheads.tryAcquire(Bulkheads.Kind.NETWORK));
+        assertEquals(1, bulkheads.getRejectedCount(Bulkheads.Kind.NETWORK));
+        assertEquals(1, bulkheads.getRejectedCount(Bulkheads.Kind.PORT));
+        assertEquals(0, bulkheads.getRejectedCount(Bulkheads.Kind.SUBNET));
+    }
+
+    /* Test method to check the operations are refused while the breaker is open */
+    @Test
+    public void testBreakerOpen() {
+        breaker.onFailure();
+        assertFalse(bulkheads.tryAcquire(Bulkheads.Kind.SUBNET));
+        assertEquals(1, bulkheads.getAvailableCount(Bulkheads.Kind.SUBNET));
+    }
+
+    /* Test method to check the handlers answer HTTP_UNAVAILABLE while the breaker is open */
+    @Test
+    public void testHandlerRefused() {
+        Activator.breaker = breaker;
+        breaker.onFailure();
+        NetworkHandler networkHandler = new NetworkHandler();
+        assertEquals(HttpURLConnection.HTTP_UNAVAILABLE, networkHandler.canCreateNetwork(null));
+        assertEquals(1, Activator.getBulkheads().getRejectedCount(Bulkheads.Kind.NETWORK));
+    }
+}
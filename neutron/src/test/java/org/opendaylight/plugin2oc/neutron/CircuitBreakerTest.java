@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Test Class for the API server circuit breaker.
+ */
+public class CircuitBreakerTest {
+    static final long OPEN_MILLIS = 50;
+    CircuitBreaker breaker = new CircuitBreaker(3, OPEN_MILLIS, 1000, 1);
+
+    /* Test method to check the breaker opens after consecutive failures only */
+    @Test
+    public void testOpen() {
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess(0);
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1, breaker.getOpenedCount());
+        assertEquals(1, breaker.getRejectedCount());
+    }
+
+    /* Test method to check slow calls count as failures */
+    @Test
+    public void testSlowCalls() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onSuccess(TimeUnit.SECONDS.toNanos(2));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    /* Test method to check a successful probe closes the breaker */
+    @Test
+    public void testProbeSuccess() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 10);
+        assertFalse(breaker.isOpen());
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // only one probe at a time
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.tryAcquire());
+        breaker.onSuccess(0);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    /* Test method to check a failed probe opens the breaker again */
+    @Test
+    public void testProbeFailure() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 10);
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(2, breaker.getOpenedCount());
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+    }
+}
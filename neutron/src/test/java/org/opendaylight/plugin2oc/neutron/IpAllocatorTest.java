@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.ApiObjectBase;
+import net.juniper.contrail.api.ApiPropertyBase;
+import net.juniper.contrail.api.ObjectReference;
+import net.juniper.contrail.api.types.InstanceIp;
+import net.juniper.contrail.api.types.VirtualNetwork;
+
+import org.junit.Test;
+import org.opendaylight.controller.networkconfig.neutron.NeutronSubnet;
+import org.opendaylight.controller.networkconfig.neutron.NeutronSubnet_IPAllocationPool;
+
+/**
+ * Test Class for the subnet address allocator.
+ */
+public class IpAllocatorTest {
+
+    private List<NeutronSubnet_IPAllocationPool> pools(String start, String end) {
+        NeutronSubnet_IPAllocationPool pool = new NeutronSubnet_IPAllocationPool();
+        pool.setPoolStart(start);
+        pool.setPoolEnd(end);
+        List<NeutronSubnet_IPAllocationPool> pools = new ArrayList<NeutronSubnet_IPAllocationPool>();
+        pools.add(pool);
+        return pools;
+    }
+
+    /* Test method to check allocation stays in the pool and skips the gateway */
+    @Test
+    public void testAllocateFromPool() {
+        IpAllocator allocator = new IpAllocator("10.0.0.0/24", pools("10.0.0.10", "10.0.0.13"), "10.0.0.11");
+        assertEquals(3, allocator.getAvailableCount());
+        assertEquals("10.0.0.10", allocator.allocate());
+        assertEquals("10.0.0.12", allocator.allocate());
+        assertEquals("10.0.0.13", allocator.allocate());
+        assertNull(allocator.allocate());
+        assertFalse(allocator.release("10.0.0.11"));
+        assertTrue(allocator.release("10.0.0.12"));
+        assertEquals("10.0.0.12", allocator.allocate());
+    }
+
+    /* Test method to check the network and broadcast addresses are not handed out */
+    @Test
+    public void testAllocateWithoutPool() {
+        IpAllocator allocator = new IpAllocator("192.168.1.0/30", null, null);
+        assertEquals("192.168.1.1", allocator.allocate());
+        assertEquals("192.168.1.2", allocator.allocate());
+        assertNull(allocator.allocate());
+    }
+
+    /* Test method to check a reserved address is not allocated */
+    @Test
+    public void testReserve() {
+        IpAllocator allocator = new IpAllocator("10.0.0.0/29", null, "10.0.0.1");
+        assertTrue(allocator.reserve("10.0.0.2"));
+        assertFalse(allocator.reserve("10.0.0.2"));
+        assertFalse(allocator.reserve("10.0.1.2"));
+        assertEquals("10.0.0.3", allocator.allocate());
+    }
+
+    /* Test method to check concurrent allocations never hand out the same address */
+    @Test
+    public void testAllocateConcurrently() throws Exception {
+        final IpAllocator allocator = new IpAllocator("10.0.0.0/20", null, "10.0.0.1");
+        final Set<String> allocated = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int j = 0; j < 500; j++) {
+                            assertTrue(allocated.add(allocator.allocate()));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(4000, allocated.size());
+        assertEquals(4093 - 4000, allocator.getAvailableCount());
+    }
+
+    /* Test method to check the allocator is rebuilt from the existing InstanceIps */
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void testRegistryRebuild() throws IOException {
+        ApiConnector mockedApiConnector = mock(ApiConnector.class);
+        // the cached network does not know of the InstanceIp yet
+        VirtualNetwork mockedVirtualNetwork = mock(VirtualNetwork.class);
+        when(mockedVirtualNetwork.getUuid()).thenReturn("5b9570f2-17b1-4fc3-99ec-1b7f7778a29b");
+        VirtualNetwork currentVirtualNetwork = mock(VirtualNetwork.class);
+        when(mockedApiConnector.findById(VirtualNetwork.class, "5b9570f2-17b1-4fc3-99ec-1b7f7778a29b")).thenReturn(currentVirtualNetwork);
+        List<ObjectReference<ApiPropertyBase>> instanceIpRefs = new ArrayList<ObjectReference<ApiPropertyBase>>();
+        instanceIpRefs.add(new ObjectReference<ApiPropertyBase>());
+        when(currentVirtualNetwork.getInstanceIpBackRefs()).thenReturn(instanceIpRefs);
+        InstanceIp mockedInstanceIp = mock(InstanceIp.class);
+        when(mockedInstanceIp.getUuid()).thenReturn("9b9570f2-17b1-4fc3-99ec-1b7f7778a29b");
+        when(mockedInstanceIp.getAddress()).thenReturn("10.0.0.2");
+        List<ApiObjectBase> instanceIps = new ArrayList<ApiObjectBase>();
+        instanceIps.add(mockedInstanceIp);
+        when(mockedApiConnector.getObjects(InstanceIp.class, instanceIpRefs)).thenReturn((List) instanceIps);
+        NeutronSubnet subnet = new NeutronSubnet();
+        subnet.setSubnetUUID("7b9570f2-17b1-4fc3-99ec-1b7f7778a29b");
+        subnet.setCidr("10.0.0.0/24");
+        subnet.setGatewayIP("10.0.0.1");
+
+        IpAllocatorRegistry registry = new IpAllocatorRegistry(mockedApiConnector);
+        assertEquals("10.0.0.3", registry.allocate(subnet, mockedVirtualNetwork, "8b9570f2-17b1-4fc3-99ec-1b7f7778a29b"));
+        registry.release("9b9570f2-17b1-4fc3-99ec-1b7f7778a29b");
+        assertEquals("10.0.0.2", registry.allocate(subnet, mockedVirtualNetwork, "6b9570f2-17b1-4fc3-99ec-1b7f7778a29b"));
+        assertEquals(1, registry.getAllocatorCount());
+    }
+
+    /* Test method to check an abandoned address is not handed out again */
+    @Test
+    public void testRegistryAbandon() throws IOException {
+        ApiConnector mockedApiConnector = mock(ApiConnector.class);
+        VirtualNetwork mockedVirtualNetwork = mock(VirtualNetwork.class);
+        NeutronSubnet subnet = new NeutronSubnet();
+        subnet.setSubnetUUID("7b9570f2-17b1-4fc3-99ec-1b7f7778a29b");
+        subnet.setCidr("10.0.0.0/24");
+        subnet.setGatewayIP("10.0.0.1");
+        IpAllocatorRegistry registry = new IpAllocatorRegistry(mockedApiConnector);
+        registry.register(subnet);
+
+        assertEquals("10.0.0.2", registry.allocate(subnet, mockedVirtualNetwork, "8b9570f2-17b1-4fc3-99ec-1b7f7778a29b"));
+        registry.abandon("8b9570f2-17b1-4fc3-99ec-1b7f7778a29b");
+        assertEquals("10.0.0.3", registry.allocate(subnet, mockedVirtualNetwork, "8b9570f2-17b1-4fc3-99ec-1b7f7778a29b"));
+        registry.release("8b9570f2-17b1-4fc3-99ec-1b7f7778a29b");
+        assertEquals("10.0.0.3", registry.allocate(subnet, mockedVirtualNetwork, "6b9570f2-17b1-4fc3-99ec-1b7f7778a29b"));
+    }
+
+    /* Test method to check a fixed address reserved twice is only given back by its first holder */
+    @Test
+    public void testRegistryReserveTwice() throws IOException {
+        ApiConnector mockedApiConnector = mock(ApiConnector.class);
+        VirtualNetwork mockedVirtualNetwork = mock(VirtualNetwork.class);
+        NeutronSubnet subnet = new NeutronSubnet();
+        subnet.setSubnetUUID("7b9570f2-17b1-4fc3-99ec-1b7f7778a29b");
+        subnet.setCidr("10.0.0.0/24");
+        subnet.setGatewayIP("10.0.0.1");
+        IpAllocatorRegistry registry = new IpAllocatorRegistry(mockedApiConnector);
+        registry.register(subnet);
+
+        registry.reserve(subnet.getSubnetUUID(), "10.0.0.2", "8b9570f2-17b1-4fc3-99ec-1b7f7778a29b");
+        registry.reserve(subnet.getSubnetUUID(), "10.0.0.2", "6b9570f2-17b1-4fc3-99ec-1b7f7778a29b");
+        registry.release("6b9570f2-17b1-4fc3-99ec-1b7f7778a29b");
+        assertEquals("10.0.0.3", registry.allocate(subnet, mockedVirtualNetwork, "9b9570f2-17b1-4fc3-99ec-1b7f7778a29b"));
+        registry.release("8b9570f2-17b1-4fc3-99ec-1b7f7778a29b");
+        assertEquals("10.0.0.2", registry.allocate(subnet, mockedVirtualNetwork, "5b9570f2-17b1-4fc3-99ec-1b7f7778a29b"));
+    }
+
+    /* Test method to check an address is in use when an InstanceIp of the network holds it */
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void testRegistryInUse() throws IOException {
+        ApiConnector mockedApiConnector = mock(ApiConnector.class);
+        VirtualNetwork mockedVirtualNetwork = mock(VirtualNetwork.class);
+        when(mockedApiConnector.findById(VirtualNetwork.class, "5b9570f2-17b1-4fc3-99ec-1b7f7778a29b")).thenReturn(mockedVirtualNetwork);
+        List<ObjectReference<ApiPropertyBase>> instanceIpRefs = new ArrayList<ObjectReference<ApiPropertyBase>>();
+        instanceIpRefs.add(new ObjectReference<ApiPropertyBase>());
+        when(mockedVirtualNetwork.getInstanceIpBackRefs()).thenReturn(instanceIpRefs);
+        InstanceIp mockedInstanceIp = mock(InstanceIp.class);
+        when(mockedInstanceIp.getUuid()).thenReturn("9b9570f2-17b1-4fc3-99ec-1b7f7778a29b");
+        when(mockedInstanceIp.getAddress()).thenReturn("10.0.0.2");
+        List<ApiObjectBase> instanceIps = new ArrayList<ApiObjectBase>();
+        instanceIps.add(mockedInstanceIp);
+        when(mockedApiConnector.getObjects(InstanceIp.class, instanceIpRefs)).thenReturn((List) instanceIps);
+        IpAllocatorRegistry registry = new IpAllocatorRegistry(mockedApiConnector);
+
+        assertTrue(registry.isInUse("5b9570f2-17b1-4fc3-99ec-1b7f7778a29b", "10.0.0.2"));
+        assertFalse(registry.isInUse("5b9570f2-17b1-4fc3-99ec-1b7f7778a29b", "10.0.0.3"));
+        assertFalse(registry.isInUse("6b9570f2-17b1-4fc3-99ec-1b7f7778a29b", "10.0.0.2"));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Test Class for the latency histogram.
+ */
+public class LatencyHistogramTest {
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    /* Test method to check the percentiles of an empty histogram */
+    @Test
+    public void testEmpty() {
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMeanMicros());
+        assertEquals(0, histogram.getP99Micros());
+    }
+
+    /* Test method to check the percentiles stay within the bucket precision */
+    @Test
+    public void testPercentiles() {
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000, histogram.getMaxMicros());
+        assertEquals(5000, histogram.getMeanMicros());
+        assertClose(5000, histogram.getP50Micros());
+        assertClose(9000, histogram.getP90Micros());
+        assertClose(9900, histogram.getP99Micros());
+        assertClose(9990, histogram.getP999Micros());
+    }
+
+    /* Test method to check small latencies are recorded exactly */
+    @Test
+    public void testSmallValues() {
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(3));
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(40));
+        assertEquals(3, histogram.getPercentileMicros(50));
+        assertEquals(40, histogram.getPercentileMicros(100));
+    }
+
+    /* Test method to check every value falls in a bucket covering it */
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 1000000; value += 7) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(value <= LatencyHistogram.highestValue(index));
+            assertTrue(index == 0 || value > LatencyHistogram.highestValue(index - 1));
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.index(LatencyHistogram.MAX_VALUE));
+    }
+
+    /* Test method to check the reset clears the recorded latencies */
+    @Test
+    public void testReset() {
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMicros());
+    }
+
+    private static void assertClose(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 32 + 1);
+    }
+}
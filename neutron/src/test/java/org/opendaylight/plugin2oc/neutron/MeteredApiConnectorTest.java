@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+
+import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.types.VirtualNetwork;
+
+import org.junit.Test;
+
+/**
+ * Test Class for the metering of the API calls.
+ */
+public class MeteredApiConnectorTest {
+    static final String NETWORK_UUID = "6b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+    ApiConnector mockedApiConnector = mock(ApiConnector.class);
+    VirtualNetwork mockedVirtualNetwork = mock(VirtualNetwork.class);
+    PluginMetrics metrics = new PluginMetrics(null);
+    MeteredApiConnector connector = new MeteredApiConnector(mockedApiConnector, metrics);
+
+    /* Test method to check a call refused by the API server is recorded as failed */
+    @Test
+    public void testFailedCall() throws IOException {
+        when(mockedApiConnector.create(mockedVirtualNetwork)).thenReturn(false);
+        assertFalse(connector.create(mockedVirtualNetwork));
+        assertEquals(1, metrics.getApiCallHistogram("create", PluginMetrics.RESULT_FAILED).getCount());
+    }
+
+    /* Test method to check a call throwing is recorded as an error and rethrown */
+    @Test
+    public void testErrorCall() throws IOException {
+        when(mockedApiConnector.findById(VirtualNetwork.class, NETWORK_UUID)).thenThrow(new IOException());
+        try {
+            connector.findById(VirtualNetwork.class, NETWORK_UUID);
+            fail();
+        } catch (IOException e) {
+            assertEquals(1, metrics.getApiCallHistogram("findById", PluginMetrics.RESULT_ERROR).getCount());
+        }
+    }
+}
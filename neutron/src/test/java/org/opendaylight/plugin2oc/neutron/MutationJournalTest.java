@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test Class for the journal of the port mutations.
+ */
+public class MutationJournalTest {
+    static final String PORT_UUID = "7b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+    static final String OTHER_PORT_UUID = "8b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+    static final String DEVICE_UUID = "019570f2-17b1-4fc3-99ec-1b7f7778a29a";
+    File file;
+    MutationJournal journal;
+
+    @Before
+    public void beforeTest() throws IOException {
+        file = File.createTempFile("plugin2oc", ".journal");
+        file.delete();
+        journal = MutationJournal.open(file, 4, false);
+    }
+
+    @After
+    public void afterTest() {
+        journal.close();
+        file.delete();
+    }
+
+    /* Test method to check the mutations not completed are found by the next run */
+    @Test
+    public void testUnfinished() throws IOException {
+        assertTrue(journal.getUnfinished().isEmpty());
+        long creation = journal.begin(MutationJournal.PORT_CREATE, PORT_UUID, DEVICE_UUID);
+        journal.mark(creation, MutationJournal.VIRTUAL_MACHINE_CREATED);
+        long deletion = journal.begin(MutationJournal.PORT_DELETE, OTHER_PORT_UUID, "");
+        long completed = journal.begin(MutationJournal.PORT_CREATE, OTHER_PORT_UUID, null);
+        journal.complete(completed);
+        reopen();
+        List<MutationJournal.Entry> unfinished = journal.getUnfinished();
+        assertEquals(2, unfinished.size());
+        MutationJournal.Entry entry = unfinished.get(0);
+        assertEquals(creation, entry.getHandle());
+        assertEquals(MutationJournal.PORT_CREATE, entry.getOperation());
+        assertEquals(PORT_UUID, entry.getPortUUID());
+        assertEquals(DEVICE_UUID, entry.getDeviceUUID());
+        assertTrue(entry.isVirtualMachineCreated());
+        entry = unfinished.get(1);
+        assertEquals(deletion, entry.getHandle());
+        assertEquals(MutationJournal.PORT_DELETE, entry.getOperation());
+        assertNull(entry.getDeviceUUID());
+        assertFalse(entry.isVirtualMachineCreated());
+        assertFalse(entry.isInterfaceCreated());
+        // recovered entries are completed like the others
+        journal.complete(creation);
+        journal.complete(deletion);
+        reopen();
+        assertTrue(journal.getUnfinished().isEmpty());
+    }
+
+    /* Test method to check only the steps marked are found by the next run */
+    @Test
+    public void testMarkedSteps() throws IOException {
+        long created = journal.begin(MutationJournal.PORT_CREATE, PORT_UUID, DEVICE_UUID);
+        journal.mark(created, MutationJournal.INTERFACE_CREATED);
+        journal.mark(created, MutationJournal.INSTANCE_IP_CREATED);
+        // a creation refused as a duplicate created nothing
+        long refused = journal.begin(MutationJournal.PORT_CREATE, OTHER_PORT_UUID, DEVICE_UUID);
+        reopen();
+        MutationJournal.Entry entry = journal.getUnfinished().get(0);
+        assertEquals(created, entry.getHandle());
+        assertFalse(entry.isVirtualMachineCreated());
+        assertTrue(entry.isInterfaceCreated());
+        assertTrue(entry.isInstanceIpCreated());
+        entry = journal.getUnfinished().get(1);
+        assertEquals(refused, entry.getHandle());
+        assertFalse(entry.isVirtualMachineCreated());
+        assertFalse(entry.isInterfaceCreated());
+        assertFalse(entry.isInstanceIpCreated());
+    }
+
+    /* Test method to check the slots of running mutations are not reused */
+    @Test
+    public void testRing() throws IOException {
+        long running = journal.begin(MutationJournal.PORT_DELETE, PORT_UUID, null);
+        for (int i = 0; i < 10; i++) {
+            journal.complete(journal.begin(MutationJournal.PORT_CREATE, OTHER_PORT_UUID, null));
+        }
+        long[] entries = new long[3];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = journal.begin(MutationJournal.PORT_CREATE, OTHER_PORT_UUID, null);
+        }
+        assertEquals(MutationJournal.NO_ENTRY, journal.begin(MutationJournal.PORT_CREATE, OTHER_PORT_UUID, null));
+        assertEquals(1, journal.getUnjournaledCount());
+        reopen();
+        assertEquals(4, journal.getUnfinished().size());
+        assertEquals(running, journal.getUnfinished().get(0).getHandle());
+        // numbering goes on after the entries found
+        assertTrue(journal.begin(MutationJournal.PORT_CREATE, OTHER_PORT_UUID, null) == MutationJournal.NO_ENTRY);
+        journal.complete(running);
+        assertTrue(journal.begin(MutationJournal.PORT_CREATE, OTHER_PORT_UUID, null) > entries[2]);
+    }
+
+    /* Test method to check the entries are forced to disk in sync mode */
+    @Test
+    public void testSync() throws IOException {
+        journal.close();
+        file.delete();
+        journal = MutationJournal.open(file, 16, true);
+        long entry = journal.begin(MutationJournal.PORT_CREATE, PORT_UUID, null);
+        assertTrue(entry != MutationJournal.NO_ENTRY);
+        journal.complete(entry);
+        assertEquals(1, journal.getWrittenCount());
+    }
+
+    /* Test method to check a port without a UUID is not journaled */
+    @Test
+    public void testNotUuid() {
+        assertEquals(MutationJournal.NO_ENTRY, journal.begin(MutationJournal.PORT_CREATE, "port", null));
+    }
+
+    private void reopen() throws IOException {
+        journal.close();
+        journal = MutationJournal.open(file, 4, false);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+/**
+ * Test Class for the knowledge of the missing UUIDs.
+ */
+public class NegativeLookupCacheTest {
+    static final String PORT_UUID = "7b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+
+    /* Test method to check the UUIDs never seen are missing until created */
+    @Test
+    public void testUnknown() {
+        NegativeLookupCache negativeLookups = new NegativeLookupCache(0, 1000);
+        assertTrue(negativeLookups.isMissing(PORT_UUID));
+        negativeLookups.existing(PORT_UUID.replace("-", "").toUpperCase());
+        assertFalse(negativeLookups.isMissing(PORT_UUID));
+        // a deleted object stays known once its missing entry expired
+        negativeLookups.missing(PORT_UUID);
+        assertFalse(negativeLookups.isMissing(PORT_UUID));
+        assertFalse(negativeLookups.isMissing("not-a-uuid"));
+        assertEquals(1, negativeLookups.getSkippedCount());
+    }
+
+    /* Test method to check the UUIDs found missing are missing until created */
+    @Test
+    public void testMissing() {
+        NegativeLookupCache negativeLookups = new NegativeLookupCache(60000, 1000);
+        negativeLookups.existing(PORT_UUID);
+        assertFalse(negativeLookups.isMissing(PORT_UUID));
+        negativeLookups.missing(PORT_UUID);
+        assertTrue(negativeLookups.isMissing(PORT_UUID));
+        negativeLookups.existing(PORT_UUID);
+        assertFalse(negativeLookups.isMissing(PORT_UUID));
+    }
+
+    /* Test method to check every lookup is made without the bloom filter */
+    @Test
+    public void testDisabled() {
+        NegativeLookupCache negativeLookups = new NegativeLookupCache(0, 0);
+        assertFalse(negativeLookups.isMissing(UUID.randomUUID().toString()));
+        negativeLookups.missing(PORT_UUID);
+        assertFalse(negativeLookups.isMissing(PORT_UUID));
+        assertEquals(0, negativeLookups.getSkippedCount());
+    }
+}
@@ -14,6 +14,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.easymock.PowerMock.expectNew;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
@@ -170,6 +171,23 @@ public class NetworkHandlerTest {
         assertEquals(HttpURLConnection.HTTP_OK, networkHandler.canCreateNetwork(neutronNetwork));
     }
 
+    /* Test method to check a network created by an earlier attempt of the same request */
+    @Test
+    public void testCanCreateNetworkRetry() throws Exception {
+        VirtualNetwork mockInstance = PowerMock.createNiceMock(VirtualNetwork.class);
+        Activator.apiConnector = mockedApiConnector;
+        NeutronNetwork neutronNetwork = defaultNeutronObject();
+        expectNew(VirtualNetwork.class).andReturn(mockInstance);
+        when(mockedApiConnector.findById(Project.class, neutronNetwork.getTenantID())).thenReturn(mockProject);
+        when(mockedApiConnector.create(mockInstance)).thenReturn(false);
+        when(mockedApiConnector.findById(VirtualNetwork.class, neutronNetwork.getNetworkUUID())).thenReturn(mockedVirtualNetwork);
+        when(mockedVirtualNetwork.getName()).thenReturn(neutronNetwork.getNetworkName());
+        when(mockedVirtualNetwork.getParentUuid()).thenReturn(neutronNetwork.getTenantID());
+        when(mockProject.getUuid()).thenReturn(neutronNetwork.getTenantID());
+        PowerMock.replay(mockInstance, VirtualNetwork.class);
+        assertEquals(HttpURLConnection.HTTP_OK, networkHandler.canCreateNetwork(neutronNetwork));
+    }
+
     /* Test method to check neutron network with virtual network Existence */
     @Test
     public void testcanCreateNetworkProjectNull() throws IOException {
@@ -200,6 +218,29 @@ public class NetworkHandlerTest {
         assertEquals(HttpURLConnection.HTTP_FORBIDDEN, networkHandler.canDeleteNetwork(neutronNetwork));
     }
 
+    /* Test method to check ports left in the index do not refuse the deletion */
+    @Test
+    public void testcanDeleteNetworkStaleIndex() throws IOException {
+        Activator.apiConnector = mockedApiConnector;
+        File file = File.createTempFile("plugin2oc", ".index");
+        file.delete();
+        Activator.objectIndex = ObjectIndex.open(file, 16);
+        try {
+            NeutronNetwork neutronNetwork = defaultNeutronObject();
+            Activator.objectIndex.putPort("7b9570f2-17b1-4fc3-99ec-1b7f7778a29b", neutronNetwork.getTenantID(), neutronNetwork.getNetworkUUID(), null,
+                    "029570f2-17b1-4fc3-99ec-1b7f7778a29a");
+            when(mockedApiConnector.findById(VirtualNetwork.class, neutronNetwork.getNetworkUUID())).thenReturn(mockedVirtualNetwork);
+            when(mockedVirtualNetwork.getUuid()).thenReturn(neutronNetwork.getNetworkUUID());
+            when(mockedVirtualNetwork.getVirtualMachineInterfaceBackRefs()).thenReturn(null);
+            assertEquals(HttpURLConnection.HTTP_OK, networkHandler.canDeleteNetwork(neutronNetwork));
+            assertEquals(0, Activator.objectIndex.getNetworkPortCount(neutronNetwork.getNetworkUUID()));
+        } finally {
+            Activator.objectIndex.close();
+            Activator.objectIndex = null;
+            file.delete();
+        }
+    }
+
     /* Test method to check if neutron network is null */
     @Test
     public void testCanUpdateNetworkNull() {
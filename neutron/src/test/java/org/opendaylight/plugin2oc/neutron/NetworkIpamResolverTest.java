@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+
+import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.types.NetworkIpam;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test Class for the default IPAM resolver.
+ */
+public class NetworkIpamResolverTest {
+    static final String IPAM_UUID = "8b9570f2-17b1-4fc3-99ec-1b7f7778a29a";
+    ApiConnector mockedApiConnector;
+    NetworkIpamResolver ipamResolver;
+    NetworkIpam ipam = new NetworkIpam();
+
+    @Before
+    public void beforeTest() throws IOException {
+        mockedApiConnector = mock(ApiConnector.class);
+        ipamResolver = new NetworkIpamResolver(mockedApiConnector);
+        when(mockedApiConnector.findByName(NetworkIpam.class, null, NetworkIpamResolver.DEFAULT_IPAM_NAME)).thenReturn(IPAM_UUID);
+        when(mockedApiConnector.findById(NetworkIpam.class, IPAM_UUID)).thenReturn(ipam);
+    }
+
+    /* Test method to check the IPAM is resolved only once */
+    @Test
+    public void testGetDefaultIpamMemoized() throws IOException {
+        assertSame(ipam, ipamResolver.getDefaultIpam());
+        assertSame(ipam, ipamResolver.getDefaultIpam());
+        verify(mockedApiConnector, times(1)).findByName(NetworkIpam.class, null, NetworkIpamResolver.DEFAULT_IPAM_NAME);
+        verify(mockedApiConnector, times(1)).findById(NetworkIpam.class, IPAM_UUID);
+    }
+
+    /* Test method to check the IPAM is resolved again after invalidation */
+    @Test
+    public void testInvalidate() throws IOException {
+        ipamResolver.getDefaultIpam();
+        ipamResolver.invalidate();
+        ipamResolver.getDefaultIpam();
+        verify(mockedApiConnector, times(2)).findByName(NetworkIpam.class, null, NetworkIpamResolver.DEFAULT_IPAM_NAME);
+    }
+
+    /* Test method to check a missing IPAM is not memoized */
+    @Test
+    public void testGetDefaultIpamMissing() throws IOException {
+        when(mockedApiConnector.findByName(NetworkIpam.class, null, NetworkIpamResolver.DEFAULT_IPAM_NAME)).thenReturn(null);
+        assertNull(ipamResolver.getDefaultIpam());
+        assertNull(ipamResolver.getDefaultIpam());
+        verify(mockedApiConnector, times(2)).findByName(NetworkIpam.class, null, NetworkIpamResolver.DEFAULT_IPAM_NAME);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.ApiObjectBase;
+import net.juniper.contrail.api.ApiPropertyBase;
+import net.juniper.contrail.api.ObjectReference;
+import net.juniper.contrail.api.types.Project;
+import net.juniper.contrail.api.types.VirtualMachineInterface;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opendaylight.controller.networkconfig.neutron.INeutronNetworkCRUD;
+import org.opendaylight.controller.networkconfig.neutron.INeutronPortCRUD;
+import org.opendaylight.controller.networkconfig.neutron.NeutronNetwork;
+import org.opendaylight.controller.networkconfig.neutron.NeutronPort;
+
+/**
+ * Test Class for the Neutron to Contrail reconciliation.
+ */
+public class NeutronReconcilerTest {
+    static final String TENANT_ID = "019570f217b14fc399ec1b7f7778a29a";
+    static final String PROJECT_UUID = "019570f2-17b1-4fc3-99ec-1b7f7778a29a";
+    static final String NETWORK_UUID = "6b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+    static final String PORT_UUID = "7b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+    static final String ORPHAN_PORT_UUID = "8b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+    ApiConnector mockedApiConnector = mock(ApiConnector.class);
+    INeutronNetworkCRUD mockedNetworkCRUD = mock(INeutronNetworkCRUD.class);
+    INeutronPortCRUD mockedPortCRUD = mock(INeutronPortCRUD.class);
+    Project mockedProject = mock(Project.class);
+    NeutronReconciler reconciler;
+
+    @Before
+    public void beforeTest() throws IOException {
+        Activator.apiConnector = mockedApiConnector;
+        NeutronNetwork network = new NeutronNetwork();
+        network.setNetworkUUID(NETWORK_UUID);
+        network.setTenantID(TENANT_ID);
+        NeutronPort port = new NeutronPort();
+        port.setPortUUID(PORT_UUID);
+        port.setTenantID(TENANT_ID);
+        when(mockedNetworkCRUD.getAllNetworks()).thenReturn(Collections.singletonList(network));
+        when(mockedPortCRUD.getAllPorts()).thenReturn(Collections.singletonList(port));
+        when(mockedApiConnector.findById(Project.class, PROJECT_UUID)).thenReturn((ApiObjectBase) mockedProject);
+        when(mockedProject.getVirtualNetworks()).thenReturn(refs(NETWORK_UUID));
+        reconciler = new NeutronReconciler(mockedNetworkCRUD, mockedPortCRUD, 100, 10, false);
+    }
+
+    @After
+    public void afterTest() {
+        Activator.apiConnector = null;
+    }
+
+    /* dummy references to the children of the project */
+    public List<ObjectReference<ApiPropertyBase>> refs(String... uuids) {
+        List<ObjectReference<ApiPropertyBase>> refs = new ArrayList<ObjectReference<ApiPropertyBase>>();
+        for (String uuid : uuids) {
+            ObjectReference<ApiPropertyBase> ref = new ObjectReference<ApiPropertyBase>();
+            ref.setReference(null, null, null, uuid);
+            refs.add(ref);
+        }
+        return refs;
+    }
+
+    /* Test method to check a tenant with the same hash on both sides is not compared further */
+    @Test
+    public void testInSync() throws IOException {
+        when(mockedProject.getVirtualMachineInterfaces()).thenReturn(refs(PORT_UUID));
+        assertEquals(0, reconciler.reconcile());
+        assertEquals(1, reconciler.getCheckedCount());
+        assertEquals(0, reconciler.getDifferingCount());
+        assertEquals(0, reconciler.getPendingCount());
+    }
+
+    /* Test method to check a difference is kept for the next round before being repaired */
+    @Test
+    public void testOrphanPort() throws IOException {
+        when(mockedProject.getVirtualMachineInterfaces()).thenReturn(refs(PORT_UUID, ORPHAN_PORT_UUID));
+        assertEquals(0, reconciler.reconcile());
+        assertEquals(1, reconciler.getDifferingCount());
+        assertEquals(1, reconciler.getPendingCount());
+        // orphans are only reported when they must not be deleted
+        assertEquals(0, reconciler.reconcile());
+        verify(mockedApiConnector, never()).findById(VirtualMachineInterface.class, ORPHAN_PORT_UUID);
+    }
+
+    /* Test method to check only the orphans indexed as created by the plugin are deleted */
+    @Test
+    public void testOrphanPortNotCreated() throws IOException {
+        String foreignPortUUID = "9b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+        when(mockedProject.getVirtualMachineInterfaces()).thenReturn(refs(PORT_UUID, ORPHAN_PORT_UUID, foreignPortUUID));
+        File file = File.createTempFile("plugin2oc", ".index");
+        file.delete();
+        Activator.objectIndex = ObjectIndex.open(file, 16);
+        try {
+            Activator.objectIndex.putPort(ORPHAN_PORT_UUID, PROJECT_UUID, NETWORK_UUID, null, null);
+            reconciler = new NeutronReconciler(mockedNetworkCRUD, mockedPortCRUD, 100, 10, true);
+            assertEquals(0, reconciler.reconcile());
+            assertEquals(0, reconciler.reconcile());
+            verify(mockedApiConnector).findById(VirtualMachineInterface.class, ORPHAN_PORT_UUID);
+            verify(mockedApiConnector, never()).findById(VirtualMachineInterface.class, foreignPortUUID);
+        } finally {
+            Activator.objectIndex.close();
+            Activator.objectIndex = null;
+            file.delete();
+        }
+    }
+
+    /* Test method to check a difference gone by the next round is forgotten */
+    @Test
+    public void testTransientDifference() throws IOException {
+        when(mockedProject.getVirtualMachineInterfaces()).thenReturn(refs());
+        assertEquals(0, reconciler.reconcile());
+        assertEquals(1, reconciler.getPendingCount());
+        when(mockedProject.getVirtualMachineInterfaces()).thenReturn(refs(PORT_UUID));
+        assertEquals(0, reconciler.reconcile());
+        assertEquals(0, reconciler.getPendingCount());
+    }
+
+    /* Test method to check the tenant hash does not depend on the order of the objects */
+    @Test
+    public void testHash() {
+        long hash = NeutronReconciler.hash(new HashSet<String>(Arrays.asList(NETWORK_UUID)), new HashSet<String>(Arrays.asList(PORT_UUID,
+                ORPHAN_PORT_UUID)));
+        assertEquals(hash, NeutronReconciler.hash(new HashSet<String>(Arrays.asList(NETWORK_UUID)), new HashSet<String>(Arrays.asList(
+                ORPHAN_PORT_UUID, PORT_UUID))));
+        assertTrue(hash != NeutronReconciler.hash(new HashSet<String>(Arrays.asList(PORT_UUID)), new HashSet<String>(Arrays.asList(NETWORK_UUID,
+                ORPHAN_PORT_UUID))));
+    }
+
+    /* Test method to check the tenant IDs given without dashes are formatted */
+    @Test
+    public void testToUuid() {
+        assertEquals(PROJECT_UUID, NeutronReconciler.toUuid(TENANT_ID));
+        assertEquals(PROJECT_UUID, NeutronReconciler.toUuid(PROJECT_UUID));
+        assertNull(NeutronReconciler.toUuid("tenant"));
+    }
+}
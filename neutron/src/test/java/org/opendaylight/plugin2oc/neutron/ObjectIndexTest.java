@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test Class for the index of the objects created by the plugin.
+ */
+public class ObjectIndexTest {
+    static final String NETWORK_UUID = "6b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+    static final String SUBNET_UUID = "5b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+    static final String PORT_UUID = "7b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+    static final String OTHER_PORT_UUID = "8b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+    static final String PROJECT_UUID = "019570f2-17b1-4fc3-99ec-1b7f7778a29b";
+    static final String DEVICE_UUID = "019570f2-17b1-4fc3-99ec-1b7f7778a29a";
+    static final String INSTANCE_IP_UUID = "029570f2-17b1-4fc3-99ec-1b7f7778a29a";
+    File file;
+    ObjectIndex index;
+
+    @Before
+    public void beforeTest() throws IOException {
+        file = File.createTempFile("plugin2oc", ".index");
+        file.delete();
+        index = ObjectIndex.open(file, 16);
+    }
+
+    @After
+    public void afterTest() {
+        index.close();
+        file.delete();
+    }
+
+    /* Test method to check the entries are found again by the next run */
+    @Test
+    public void testReopen() throws IOException {
+        assertTrue(index.putNetwork(NETWORK_UUID, PROJECT_UUID));
+        assertTrue(index.putSubnet(SUBNET_UUID, NETWORK_UUID, PROJECT_UUID.replace("-", "")));
+        assertTrue(index.putPort(PORT_UUID, PROJECT_UUID, NETWORK_UUID, DEVICE_UUID, INSTANCE_IP_UUID));
+        assertTrue(index.putPort(OTHER_PORT_UUID, PROJECT_UUID, NETWORK_UUID, null, INSTANCE_IP_UUID));
+        reopen();
+        assertEquals(4, index.getSize());
+        ObjectIndex.Entry port = index.get(PORT_UUID);
+        assertEquals(ObjectIndex.PORT, port.getType());
+        assertEquals(PORT_UUID, port.getUuid());
+        assertEquals(PROJECT_UUID, port.getProjectUUID());
+        assertEquals(NETWORK_UUID, port.getNetworkUUID());
+        assertEquals(DEVICE_UUID, port.getDeviceUUID());
+        assertEquals(INSTANCE_IP_UUID, port.getInstanceIpUUID());
+        assertNull(index.get(OTHER_PORT_UUID).getDeviceUUID());
+        ObjectIndex.Entry subnet = index.get(SUBNET_UUID);
+        assertEquals(ObjectIndex.SUBNET, subnet.getType());
+        assertEquals(PROJECT_UUID, subnet.getProjectUUID());
+        assertEquals(ObjectIndex.NETWORK, index.get(NETWORK_UUID).getType());
+        assertEquals(Collections.singletonList(SUBNET_UUID), index.getSubnets(NETWORK_UUID));
+        assertEquals(2, index.getNetworkPortCount(NETWORK_UUID));
+        assertEquals(1, index.getDevicePortCount(DEVICE_UUID.replace("-", "")));
+        assertNull(index.get(UUID.randomUUID().toString()));
+        assertNull(index.get("not-a-uuid"));
+    }
+
+    /* Test method to check removed entries and their counts are forgotten */
+    @Test
+    public void testRemove() throws IOException {
+        index.putSubnet(SUBNET_UUID, NETWORK_UUID, PROJECT_UUID);
+        index.putPort(PORT_UUID, PROJECT_UUID, NETWORK_UUID, DEVICE_UUID, INSTANCE_IP_UUID);
+        index.remove(PORT_UUID);
+        index.remove(SUBNET_UUID);
+        assertNull(index.get(PORT_UUID));
+        assertEquals(0, index.getNetworkPortCount(NETWORK_UUID));
+        assertEquals(0, index.getDevicePortCount(DEVICE_UUID));
+        assertTrue(index.getSubnets(NETWORK_UUID).isEmpty());
+        reopen();
+        assertEquals(0, index.getSize());
+        assertNull(index.get(PORT_UUID));
+    }
+
+    /* Test method to check the ports of a network are listed */
+    @Test
+    public void testPorts() {
+        index.putPort(PORT_UUID, PROJECT_UUID, NETWORK_UUID, DEVICE_UUID, INSTANCE_IP_UUID);
+        index.putPort(OTHER_PORT_UUID, PROJECT_UUID, SUBNET_UUID, null, INSTANCE_IP_UUID);
+        assertEquals(Collections.singletonList(PORT_UUID), index.getPorts(NETWORK_UUID.replace("-", "")));
+        assertEquals(Collections.singletonList(OTHER_PORT_UUID), index.getPorts(SUBNET_UUID));
+        assertTrue(index.getPorts(DEVICE_UUID).isEmpty());
+    }
+
+    /* Test method to check a port indexed again replaces its entry */
+    @Test
+    public void testReplace() {
+        index.putPort(PORT_UUID, PROJECT_UUID, NETWORK_UUID, DEVICE_UUID, INSTANCE_IP_UUID);
+        index.putPort(PORT_UUID, PROJECT_UUID, NETWORK_UUID, null, INSTANCE_IP_UUID);
+        assertEquals(1, index.getSize());
+        assertEquals(1, index.getNetworkPortCount(NETWORK_UUID));
+        assertEquals(0, index.getDevicePortCount(DEVICE_UUID));
+    }
+
+    /* Test method to check the table is compacted and refuses entries when full */
+    @Test
+    public void testFull() {
+        // 12 of the 16 slots can be used
+        for (int i = 0; i < 100; i++) {
+            String uuid = UUID.randomUUID().toString();
+            assertTrue(index.putPort(uuid, PROJECT_UUID, NETWORK_UUID, null, INSTANCE_IP_UUID));
+            index.remove(uuid);
+        }
+        assertEquals(0, index.getSize());
+        for (int i = 0; i < 8; i++) {
+            assertTrue(index.putPort(UUID.randomUUID().toString(), PROJECT_UUID, NETWORK_UUID, null, INSTANCE_IP_UUID));
+        }
+        assertEquals(8, index.getNetworkPortCount(NETWORK_UUID));
+        boolean refused = false;
+        for (int i = 0; i < 8; i++) {
+            refused |= !index.putPort(UUID.randomUUID().toString(), PROJECT_UUID, NETWORK_UUID, null, INSTANCE_IP_UUID);
+        }
+        assertTrue(refused);
+        assertEquals(index.getSize(), index.getNetworkPortCount(NETWORK_UUID));
+        assertTrue(index.getUnindexedCount() > 0);
+    }
+
+    /* Test method to check an entry partially written before a crash is dropped */
+    @Test
+    public void testTornEntry() throws IOException {
+        index.putPort(PORT_UUID, PROJECT_UUID, NETWORK_UUID, DEVICE_UUID, INSTANCE_IP_UUID);
+        index.close();
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        try {
+            byte[] slots = new byte[16 * ObjectIndex.SLOT_SIZE];
+            raw.seek(ObjectIndex.HEADER_SIZE);
+            raw.readFully(slots);
+            for (int offset = 0; offset < slots.length; offset += ObjectIndex.SLOT_SIZE) {
+                if (slots[offset + ObjectIndex.STATE + 3] == ObjectIndex.USED) {
+                    Arrays.fill(slots, offset + ObjectIndex.INSTANCE_IP, offset + ObjectIndex.INSTANCE_IP + 8, (byte) 0);
+                }
+            }
+            raw.seek(ObjectIndex.HEADER_SIZE);
+            raw.write(slots);
+        } finally {
+            raw.close();
+        }
+        index = ObjectIndex.open(file, 16);
+        assertNull(index.get(PORT_UUID));
+        assertEquals(0, index.getNetworkPortCount(NETWORK_UUID));
+    }
+
+    /* Test method to check the disabled index holds nothing */
+    @Test
+    public void testDisabled() {
+        assertFalse(ObjectIndex.DISABLED.isEnabled());
+        assertFalse(ObjectIndex.DISABLED.putNetwork(NETWORK_UUID, PROJECT_UUID));
+        assertNull(ObjectIndex.DISABLED.get(NETWORK_UUID));
+        assertTrue(ObjectIndex.DISABLED.getSubnets(NETWORK_UUID).isEmpty());
+    }
+
+    private void reopen() throws IOException {
+        index.close();
+        index = ObjectIndex.open(file, 16);
+    }
+}
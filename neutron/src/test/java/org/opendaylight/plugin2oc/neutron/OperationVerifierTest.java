@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test Class for the post-operation verifier.
+ */
+public class OperationVerifierTest {
+    final AtomicInteger calls = new AtomicInteger();
+
+    private Callable<Boolean> check(final Boolean result) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws IOException {
+                calls.incrementAndGet();
+                if (result == null) {
+                    throw new IOException("API server unreachable");
+                }
+                return result;
+            }
+        };
+    }
+
+    /* Test method to check results are counted in sync mode */
+    @Test
+    public void testVerifySync() {
+        OperationVerifier verifier = new OperationVerifier(OperationVerifier.Mode.SYNC, 0, 0);
+        verifier.verify("network.created:1", check(true));
+        verifier.verify("network.created:2", check(false));
+        verifier.verify("network.created:3", check(null));
+        assertEquals(3, calls.get());
+        assertEquals(1, verifier.getVerifiedCount());
+        assertEquals(1, verifier.getFailedCount());
+        assertEquals(1, verifier.getErrorCount());
+    }
+
+    /* Test method to check no check is made when verification is off */
+    @Test
+    public void testVerifyOff() {
+        OperationVerifier verifier = new OperationVerifier(OperationVerifier.Mode.OFF, 0, 0);
+        verifier.verify("network.created:1", check(true));
+        assertEquals(0, calls.get());
+        assertEquals(1, verifier.getSkippedCount());
+    }
+
+    /* Test method to check queued checks for the same object are coalesced */
+    @Test
+    public void testVerifyAsyncCoalesced() {
+        OperationVerifier verifier = new OperationVerifier(OperationVerifier.Mode.ASYNC, 0, 60000);
+        try {
+            for (int i = 0; i < 10; i++) {
+                verifier.verify("port.updated:1", check(true));
+            }
+            verifier.verify("port.updated:2", check(true));
+            assertEquals(0, calls.get());
+            assertEquals(2, verifier.getPendingCount());
+            assertEquals(9, verifier.getCoalescedCount());
+            verifier.drain();
+            assertEquals(2, calls.get());
+            assertEquals(2, verifier.getVerifiedCount());
+            assertEquals(0, verifier.getPendingCount());
+        } finally {
+            verifier.shutdown();
+        }
+    }
+
+    /* Test method to check the verification mode property is parsed */
+    @Test
+    public void testParseMode() {
+        assertEquals(OperationVerifier.Mode.ASYNC, OperationVerifier.parseMode(null));
+        assertEquals(OperationVerifier.Mode.OFF, OperationVerifier.parseMode("off"));
+        assertEquals(OperationVerifier.Mode.SAMPLED, OperationVerifier.parseMode(" Sampled "));
+        assertEquals(OperationVerifier.Mode.ASYNC, OperationVerifier.parseMode("unknown"));
+    }
+}
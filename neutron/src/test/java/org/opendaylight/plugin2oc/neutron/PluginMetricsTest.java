@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.HttpURLConnection;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test Class for the operation and API call metrics.
+ */
+public class PluginMetricsTest {
+    MBeanServer server = MBeanServerFactory.newMBeanServer();
+    PluginMetrics metrics = new PluginMetrics(server);
+
+    @After
+    public void afterTest() {
+        metrics.unregister();
+    }
+
+    /* Test method to check the latencies are recorded by operation and status */
+    @Test
+    public void testRecordOperation() throws Exception {
+        metrics.recordOperation("network creation", HttpURLConnection.HTTP_OK, 2000000);
+        metrics.recordOperation("network creation", HttpURLConnection.HTTP_OK, 4000000);
+        metrics.recordOperation("network creation", HttpURLConnection.HTTP_FORBIDDEN, 1000000);
+        assertEquals(2, metrics.getOperationHistogram("network creation", HttpURLConnection.HTTP_OK).getCount());
+        assertEquals(1, metrics.getOperationHistogram("network creation", HttpURLConnection.HTTP_FORBIDDEN).getCount());
+        assertNull(metrics.getOperationHistogram("port creation", HttpURLConnection.HTTP_OK));
+        ObjectName name = new ObjectName(PluginMetrics.DOMAIN + ":type=Operation,name=network creation,status=200");
+        assertEquals(2L, server.getAttribute(name, "Count"));
+        assertEquals(4000L, server.getAttribute(name, "MaxMicros"));
+    }
+
+    /* Test method to check the API calls are recorded by result */
+    @Test
+    public void testRecordApiCall() throws Exception {
+        metrics.recordApiCall("findById", PluginMetrics.RESULT_OK, 1000);
+        metrics.recordApiCall("findById", PluginMetrics.RESULT_ERROR, 1000);
+        assertEquals(1, metrics.getApiCallHistogram("findById", PluginMetrics.RESULT_OK).getCount());
+        assertEquals(1, metrics.getApiCallHistogram("findById", PluginMetrics.RESULT_ERROR).getCount());
+        assertTrue(server.isRegistered(new ObjectName(PluginMetrics.DOMAIN + ":type=ApiCall,name=findById,result=error")));
+    }
+
+    /* Test method to check the status and histograms are unregistered */
+    @Test
+    public void testUnregister() throws Exception {
+        metrics.registerStatus();
+        metrics.recordApiCall("create", PluginMetrics.RESULT_OK, 1000);
+        ObjectName status = new ObjectName(PluginMetrics.DOMAIN + ":type=Status");
+        assertEquals("IDLE", server.getAttribute(status, "WarmUpState"));
+        assertEquals(2, metrics.getRegisteredCount());
+        metrics.unregister();
+        assertFalse(server.isRegistered(status));
+        // still recorded once unregistered
+        metrics.recordApiCall("update", PluginMetrics.RESULT_OK, 1000);
+        assertEquals(0, metrics.getRegisteredCount());
+        assertEquals(1, metrics.getApiCallHistogram("update", PluginMetrics.RESULT_OK).getCount());
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.types.VirtualNetwork;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Test Class for the pooled API server connector.
+ */
+public class PooledApiConnectorTest {
+    static final String NETWORK_UUID = "6b9570f2-17b1-4fc3-99ec-1b7f7778a29a";
+    static final long LATENCY_MILLIS = 20;
+    final VirtualNetwork virtualNetwork = new VirtualNetwork();
+    final AtomicInteger built = new AtomicInteger();
+
+    /**
+     * Stub API server connection: like the Contrail connector it serves one
+     * request at a time over its connection, each taking LATENCY_MILLIS.
+     */
+    private final PooledApiConnector.ConnectionFactory stubServer = new PooledApiConnector.ConnectionFactory() {
+        @Override
+        public ApiConnector build(String host, int port) {
+            built.incrementAndGet();
+            final ApiConnector connection = mock(ApiConnector.class);
+            try {
+                when(connection.findById(eq(VirtualNetwork.class), anyString())).thenAnswer(new Answer<Object>() {
+                    @Override
+                    public Object answer(InvocationOnMock invocation) throws InterruptedException {
+                        synchronized (connection) {
+                            Thread.sleep(LATENCY_MILLIS);
+                        }
+                        return virtualNetwork;
+                    }
+                });
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return connection;
+        }
+    };
+
+    private long runConcurrently(final ApiConnector connector, int threads, final int callsPerThread) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        for (int j = 0; j < callsPerThread; j++) {
+                            assertSame(virtualNetwork, connector.findById(VirtualNetwork.class, NETWORK_UUID));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+            return System.nanoTime() - begin;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /* Test method to check concurrent calls are faster with a pool of connections */
+    @Test
+    public void testThroughputGain() throws Exception {
+        ApiConnector single = new PooledApiConnector(stubServer, "127.0.0.1", 8082, 1, 1, 60000, 60000);
+        ApiConnector pooled = new PooledApiConnector(stubServer, "127.0.0.1", 8082, 8, 8, 60000, 60000);
+        long singleNanos = runConcurrently(single, 8, 5);
+        long pooledNanos = runConcurrently(pooled, 8, 5);
+        assertTrue("pooled " + pooledNanos + "ns, single " + singleNanos + "ns", pooledNanos * 3 < singleNanos);
+    }
+
+    /* Test method to check connections are kept alive and reused */
+    @Test
+    public void testConnectionReused() throws IOException {
+        PooledApiConnector pooled = new PooledApiConnector(stubServer, "127.0.0.1", 8082, 4, 4, 1000, 60000);
+        for (int i = 0; i < 10; i++) {
+            pooled.findById(VirtualNetwork.class, NETWORK_UUID);
+        }
+        assertEquals(1, built.get());
+        assertEquals(9, pooled.getReusedCount());
+        assertEquals(1, pooled.getIdleCount());
+    }
+
+    /* Test method to check a connection that failed is not reused */
+    @Test
+    public void testFailedConnectionDiscarded() throws IOException {
+        final ApiConnector broken = mock(ApiConnector.class);
+        when(broken.findById(VirtualNetwork.class, NETWORK_UUID)).thenThrow(new IOException("Connection reset"));
+        PooledApiConnector pooled = new PooledApiConnector(new PooledApiConnector.ConnectionFactory() {
+            @Override
+            public ApiConnector build(String host, int port) {
+                return broken;
+            }
+        }, "127.0.0.1", 8082, 4, 4, 1000, 60000);
+        try {
+            pooled.findById(VirtualNetwork.class, NETWORK_UUID);
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertEquals(0, pooled.getIdleCount());
+            verify(broken).dispose();
+        }
+    }
+
+    /* Test method to check the caller gives up when no connection is available in time */
+    @Test
+    public void testConnectTimeout() throws Exception {
+        final CountDownLatch leased = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ApiConnector blocking = mock(ApiConnector.class);
+        when(blocking.findById(VirtualNetwork.class, NETWORK_UUID)).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws InterruptedException {
+                leased.countDown();
+                release.await();
+                return null;
+            }
+        });
+        final PooledApiConnector pooled = new PooledApiConnector(new PooledApiConnector.ConnectionFactory() {
+            @Override
+            public ApiConnector build(String host, int port) {
+                return blocking;
+            }
+        }, "127.0.0.1", 8082, 1, 1, 100, 60000);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            pool.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws IOException {
+                    return pooled.findById(VirtualNetwork.class, NETWORK_UUID);
+                }
+            });
+            leased.await();
+            pooled.findById(VirtualNetwork.class, NETWORK_UUID);
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Timeout"));
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+}
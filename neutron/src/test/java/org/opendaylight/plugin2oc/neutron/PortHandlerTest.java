@@ -8,12 +8,17 @@ d * Copyright (C) 2014 Juniper Networks, Inc.
  */
 package org.opendaylight.plugin2oc.neutron;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.ApiObjectBase;
+import net.juniper.contrail.api.ApiPropertyBase;
+import net.juniper.contrail.api.ObjectReference;
 import net.juniper.contrail.api.types.InstanceIp;
 import net.juniper.contrail.api.types.Project;
 import net.juniper.contrail.api.types.VirtualMachine;
@@ -25,7 +30,13 @@ import org.opendaylight.controller.networkconfig.neutron.Neutron_IPs;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.easymock.PowerMock.expectNew;
 
@@ -263,6 +274,134 @@ public class PortHandlerTest {
         assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, porthandler.canDeletePort(neutronPort));
     }
 
+    /* Test method to check if neutron port list is null for batch delete */
+    @Test
+    public void testcanDeletePortsNull() {
+        Activator.apiConnector = mockedApiConnector;
+        assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, porthandler.canDeletePorts(null));
+    }
+
+    /* Test method to check instance IPs are deleted without being fetched */
+    @Test
+    public void testcanDeletePortInstanceIpNotFetched() throws IOException {
+        Activator.apiConnector = mockedApiConnector;
+        NeutronPort neutronPort = defaultNeutronPortObject();
+        String instanceIpUuid = "74a271fe-0216-46bc-a3e6-1ff582fbd324";
+        ObjectReference<ApiPropertyBase> ref = new ObjectReference<ApiPropertyBase>();
+        ref.setReference(new ArrayList<String>(), null, "", instanceIpUuid);
+        List<ObjectReference<ApiPropertyBase>> instanceIps = new ArrayList<ObjectReference<ApiPropertyBase>>();
+        instanceIps.add(ref);
+        when(mockedApiConnector.findById(VirtualMachineInterface.class, neutronPort.getID())).thenReturn(mockedVirtualMachineInterface);
+        when(mockedVirtualMachineInterface.getInstanceIpBackRefs()).thenReturn(instanceIps);
+        when(mockedApiConnector.findById(VirtualMachine.class, neutronPort.getDeviceID())).thenReturn(mockedvirtualMachine);
+        assertEquals(HttpURLConnection.HTTP_OK, porthandler.canDeletePort(neutronPort));
+        verify(mockedApiConnector, never()).findById(InstanceIp.class, instanceIpUuid);
+        verify(mockedApiConnector).delete(mockedVirtualMachineInterface);
+    }
+
+    /* Test method to check batch delete of ports sharing one virtual machine */
+    @Test
+    public void testcanDeletePortsSharedVirtualMachine() throws IOException {
+        Activator.apiConnector = mockedApiConnector;
+        NeutronPort neutronPort = defaultNeutronPortObject();
+        NeutronPort secondPort = defaultNeutronPortObject();
+        secondPort.setPortUUID("65a271fe-0216-46bc-a3e6-1ff582fbd324");
+        VirtualMachineInterface secondInterface = mock(VirtualMachineInterface.class);
+        List<NeutronPort> neutronPorts = new ArrayList<NeutronPort>();
+        neutronPorts.add(neutronPort);
+        neutronPorts.add(secondPort);
+        when(mockedApiConnector.findById(VirtualMachineInterface.class, neutronPort.getID())).thenReturn(mockedVirtualMachineInterface);
+        when(mockedApiConnector.findById(VirtualMachineInterface.class, secondPort.getID())).thenReturn(secondInterface);
+        when(mockedApiConnector.findById(VirtualMachine.class, neutronPort.getDeviceID())).thenReturn(mockedvirtualMachine);
+        when(mockedvirtualMachine.getVirtualMachineInterfaceBackRefs()).thenReturn(null);
+        assertEquals(HttpURLConnection.HTTP_OK, porthandler.canDeletePorts(neutronPorts));
+        verify(mockedApiConnector).delete(mockedVirtualMachineInterface);
+        verify(mockedApiConnector).delete(secondInterface);
+        verify(mockedApiConnector, times(1)).findById(VirtualMachine.class, neutronPort.getDeviceID());
+        verify(mockedApiConnector).delete(VirtualMachine.class, neutronPort.getDeviceID());
+    }
+
+    /* Test method to check a creation interrupted after its create was refused does not delete the existing port */
+    @Test
+    public void testRecoverRefusedCreation() throws Exception {
+        Activator.apiConnector = mockedApiConnector;
+        NeutronPort neutronPort = defaultNeutronPortObject();
+        File file = File.createTempFile("plugin2oc", ".journal");
+        file.delete();
+        MutationJournal journal = MutationJournal.open(file, 4, false);
+        try {
+            // the create of the port was refused as a duplicate, nothing was
+            // marked before the crash
+            journal.begin(MutationJournal.PORT_CREATE, neutronPort.getPortUUID(), neutronPort.getDeviceID());
+            journal.close();
+            journal = MutationJournal.open(file, 4, false);
+            assertEquals(Integer.valueOf(1), porthandler.recover(journal).get(5, TimeUnit.SECONDS));
+            verify(mockedApiConnector, never()).findById(VirtualMachineInterface.class, neutronPort.getPortUUID());
+            verify(mockedApiConnector, never()).delete(any(ApiObjectBase.class));
+            verify(mockedApiConnector, never()).delete(VirtualMachine.class, neutronPort.getDeviceID());
+            journal.close();
+            journal = MutationJournal.open(file, 4, false);
+            assertTrue(journal.getUnfinished().isEmpty());
+        } finally {
+            journal.close();
+            file.delete();
+        }
+    }
+
+    /* Test method to check a deletion interrupted after its interface was deleted still deletes the virtual machine */
+    @Test
+    public void testRecoverDeletionWithoutInterface() throws Exception {
+        Activator.apiConnector = mockedApiConnector;
+        NeutronPort neutronPort = defaultNeutronPortObject();
+        when(mockedApiConnector.findById(VirtualMachineInterface.class, neutronPort.getPortUUID())).thenReturn(null);
+        when(mockedApiConnector.findById(VirtualMachine.class, neutronPort.getDeviceID())).thenReturn(mockedvirtualMachine);
+        when(mockedvirtualMachine.getUuid()).thenReturn(neutronPort.getDeviceID());
+        when(mockedvirtualMachine.getVirtualMachineInterfaceBackRefs()).thenReturn(null);
+        File file = File.createTempFile("plugin2oc", ".journal");
+        file.delete();
+        MutationJournal journal = MutationJournal.open(file, 4, false);
+        try {
+            journal.begin(MutationJournal.PORT_DELETE, neutronPort.getPortUUID(), neutronPort.getDeviceID());
+            journal.close();
+            journal = MutationJournal.open(file, 4, false);
+            assertEquals(Integer.valueOf(1), porthandler.recover(journal).get(5, TimeUnit.SECONDS));
+            verify(mockedApiConnector).delete(VirtualMachine.class, neutronPort.getDeviceID());
+            journal.close();
+            journal = MutationJournal.open(file, 4, false);
+            assertTrue(journal.getUnfinished().isEmpty());
+        } finally {
+            journal.close();
+            file.delete();
+        }
+    }
+
+    /* Test method to check a deletion whose virtual machine could not be deleted stays to be recovered */
+    @Test
+    public void testRecoverDeletionVirtualMachineFails() throws Exception {
+        Activator.apiConnector = mockedApiConnector;
+        NeutronPort neutronPort = defaultNeutronPortObject();
+        when(mockedApiConnector.findById(VirtualMachineInterface.class, neutronPort.getPortUUID())).thenReturn(null);
+        when(mockedApiConnector.findById(VirtualMachine.class, neutronPort.getDeviceID())).thenReturn(mockedvirtualMachine);
+        when(mockedvirtualMachine.getUuid()).thenReturn(neutronPort.getDeviceID());
+        when(mockedvirtualMachine.getVirtualMachineInterfaceBackRefs()).thenReturn(null);
+        doThrow(new IOException("unavailable")).when(mockedApiConnector).delete(VirtualMachine.class, neutronPort.getDeviceID());
+        File file = File.createTempFile("plugin2oc", ".journal");
+        file.delete();
+        MutationJournal journal = MutationJournal.open(file, 4, false);
+        try {
+            journal.begin(MutationJournal.PORT_DELETE, neutronPort.getPortUUID(), neutronPort.getDeviceID());
+            journal.close();
+            journal = MutationJournal.open(file, 4, false);
+            assertEquals(Integer.valueOf(0), porthandler.recover(journal).get(5, TimeUnit.SECONDS));
+            journal.close();
+            journal = MutationJournal.open(file, 4, false);
+            assertEquals(1, journal.getUnfinished().size());
+        } finally {
+            journal.close();
+            file.delete();
+        }
+    }
+
     /* Test method to update port with null neutron port and delta port */
     @Test
     public void testcanUpdatePortNull() throws IOException {
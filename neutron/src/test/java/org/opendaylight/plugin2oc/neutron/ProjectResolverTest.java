@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.types.Project;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Test Class for the project resolver.
+ */
+public class ProjectResolverTest {
+    static final String PROJECT_UUID = "019570f2-17b1-4fc3-99ec-1b7f7778a29a";
+    ApiConnector mockedApiConnector;
+    ProjectResolver projectResolver;
+
+    @Before
+    public void beforeTest() {
+        mockedApiConnector = mock(ApiConnector.class);
+        projectResolver = new ProjectResolver(new ApiObjectCache(mockedApiConnector), 500, 10, 50);
+    }
+
+    @After
+    public void afterTest() {
+        projectResolver.shutdown();
+    }
+
+    /* Test method to check an existing project is returned without waiting */
+    @Test
+    public void testResolveExisting() throws IOException {
+        Project project = new Project();
+        when(mockedApiConnector.findById(Project.class, PROJECT_UUID)).thenReturn(project);
+        assertSame(project, projectResolver.resolve(PROJECT_UUID));
+        assertEquals(0, projectResolver.getPendingCount());
+    }
+
+    /* Test method to check a project that appears later releases the waiter */
+    @Test
+    public void testResolveAfterRetry() throws IOException {
+        Project project = new Project();
+        when(mockedApiConnector.findById(Project.class, PROJECT_UUID)).thenReturn(null, null, project);
+        assertSame(project, projectResolver.resolve(PROJECT_UUID));
+        assertEquals(0, projectResolver.getPendingCount());
+    }
+
+    /* Test method to check concurrent waiters share one polling task */
+    @Test
+    public void testAwaitShared() throws Exception {
+        Project project = new Project();
+        when(mockedApiConnector.findById(Project.class, PROJECT_UUID)).thenReturn(null, null, project);
+        List<ListenableFuture<Project>> waiters = new ArrayList<ListenableFuture<Project>>();
+        for (int i = 0; i < 20; i++) {
+            waiters.add(projectResolver.await(PROJECT_UUID));
+        }
+        assertEquals(1, projectResolver.getPendingCount());
+        for (ListenableFuture<Project> waiter : waiters) {
+            assertSame(project, waiter.get(2, TimeUnit.SECONDS));
+        }
+    }
+
+    /* Test method to check a later waiter does not delay an earlier one */
+    @Test
+    public void testAwaitOwnDeadline() throws Exception {
+        when(mockedApiConnector.findById(Project.class, PROJECT_UUID)).thenReturn(null);
+        ListenableFuture<Project> first = projectResolver.await(PROJECT_UUID);
+        Thread.sleep(300);
+        ListenableFuture<Project> second = projectResolver.await(PROJECT_UUID);
+        assertNull(first.get(2, TimeUnit.SECONDS));
+        assertFalse(second.isDone());
+        assertNull(second.get(2, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(0, projectResolver.getPendingCount());
+    }
+
+    /* Test method to check a waiter is not added to a polling that gave up */
+    @Test
+    public void testJoinExpired() {
+        long now = System.currentTimeMillis();
+        ProjectResolver.PendingProject entry = new ProjectResolver.PendingProject(PROJECT_UUID, now + 1000);
+        assertFalse(entry.expire(now));
+        assertTrue(entry.join(now + 2000));
+        assertFalse(entry.expire(now + 1000));
+        assertTrue(entry.expire(now + 2000));
+        assertFalse(entry.join(now + 3000));
+    }
+
+    /* Test method to check waiters are released when the deadline passes */
+    @Test
+    public void testResolveDeadline() throws IOException {
+        when(mockedApiConnector.findById(Project.class, PROJECT_UUID)).thenReturn(null);
+        long start = System.currentTimeMillis();
+        assertNull(projectResolver.resolve(PROJECT_UUID));
+        assertTrue(System.currentTimeMillis() - start < 2000);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.juniper.contrail.api.types.NetworkIpam;
+import net.juniper.contrail.api.types.VirtualMachine;
+import net.juniper.contrail.api.types.VirtualMachineInterface;
+import net.juniper.contrail.api.types.VirtualNetwork;
+import net.juniper.contrail.api.types.VnSubnetsType;
+
+import org.junit.Test;
+
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Test Class for the reads of a few fields of an object.
+ */
+public class ProjectedReaderTest {
+    static final String NETWORK_UUID = "6b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+    static final String PORT_UUID = "7b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+    static final String DEVICE_UUID = "019570f2-17b1-4fc3-99ec-1b7f7778a29a";
+
+    /**
+     * Transport answering the paths it knows with canned bodies and the
+     * others with 404.
+     */
+    static class CannedTransport implements ProjectedReader.Transport {
+        final Map<String, String> bodies = new HashMap<String, String>();
+        String lastPath;
+
+        @Override
+        public <T> T get(String path, ProjectedReader.Parser<T> parser) throws IOException {
+            lastPath = path;
+            String body = bodies.get(path);
+            return body == null ? null : parser.parse(new JsonReader(new StringReader(body)));
+        }
+
+        @Override
+        public <T> T post(String path, String body, ProjectedReader.Parser<T> parser) throws IOException {
+            return get(path + " " + body, parser);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /* Test method to check the field names are built from the types */
+    @Test
+    public void testNames() {
+        assertEquals("virtual_machine_interface_back_refs", ProjectedReader.backRefsOf(VirtualMachineInterface.class));
+        assertEquals("virtual_machine_refs", ProjectedReader.refsOf(VirtualMachine.class));
+        assertEquals("virtual-network", ProjectedReader.typeName(VirtualNetwork.class, '-'));
+    }
+
+    /* Test method to check only the fields asked for are read */
+    @Test
+    public void testReadFields() throws IOException {
+        CannedTransport transport = new CannedTransport();
+        String backRefs = ProjectedReader.backRefsOf(VirtualMachineInterface.class);
+        transport.bodies.put("/virtual-network/" + NETWORK_UUID + "?fields=" + backRefs + ",display_name", "{\"virtual-network\": {\"uuid\": \""
+                + NETWORK_UUID + "\", \"fq_name\": [\"default-domain\", \"demo\", \"net\"], \"display_name\": \"net\", \"" + backRefs
+                + "\": [{\"to\": [\"default-domain\", \"demo\", \"port\"], \"attr\": null, \"uuid\": \"" + PORT_UUID + "\"}]}}");
+        ProjectedReader reader = new ProjectedReader(null, transport, null, null);
+        ProjectedReader.Fields fields = reader.readFields(VirtualNetwork.class, NETWORK_UUID, backRefs, ProjectedReader.DISPLAY_NAME);
+        assertTrue(fields.has(backRefs));
+        assertEquals(Arrays.asList(PORT_UUID), fields.getReferences(backRefs));
+        assertEquals("net", fields.get(ProjectedReader.DISPLAY_NAME));
+        assertFalse(fields.has("fq_name"));
+        assertNull(reader.readFields(VirtualNetwork.class, PORT_UUID, backRefs));
+    }
+
+    /* Test method to check the attr of each reference is read */
+    @Test
+    public void testReadAttributes() throws IOException {
+        CannedTransport transport = new CannedTransport();
+        String ipamRefs = ProjectedReader.refsOf(NetworkIpam.class);
+        transport.bodies.put("/virtual-network/" + NETWORK_UUID + "?fields=" + ipamRefs, "{\"virtual-network\": {\"uuid\": \"" + NETWORK_UUID
+                + "\", \"" + ipamRefs + "\": [{\"to\": [\"default-domain\", \"default-project\", \"default-network-ipam\"], \"attr\": "
+                + "{\"ipam_subnets\": [{\"subnet\": {\"ip_prefix\": \"10.0.0.0\", \"ip_prefix_len\": 24}, \"default_gateway\": \"10.0.0.1\", "
+                + "\"subnet_uuid\": \"" + PORT_UUID + "\"}]}, \"uuid\": \"" + DEVICE_UUID + "\"}, {\"to\": [\"default-domain\", \"demo\", "
+                + "\"ipam\"], \"attr\": null, \"uuid\": \"" + PORT_UUID + "\"}]}}");
+        ProjectedReader.Fields fields = new ProjectedReader(null, transport, null, null).readFields(VirtualNetwork.class, NETWORK_UUID, ipamRefs);
+        assertEquals(Arrays.asList(DEVICE_UUID, PORT_UUID), fields.getReferences(ipamRefs));
+        List<VnSubnetsType> attrs = fields.getAttributes(ipamRefs, VnSubnetsType.class);
+        assertEquals(2, attrs.size());
+        VnSubnetsType.IpamSubnetType subnet = attrs.get(0).getIpamSubnets().get(0);
+        assertEquals("10.0.0.0", subnet.getSubnet().getIpPrefix());
+        assertEquals(Integer.valueOf(24), subnet.getSubnet().getIpPrefixLen());
+        assertEquals("10.0.0.1", subnet.getDefaultGateway());
+        assertEquals(PORT_UUID, subnet.getSubnetUuid());
+        assertNull(attrs.get(1));
+    }
+
+    /* Test method to check a missing ref field is told from an object missing */
+    @Test
+    public void testReadFieldsNoReferences() throws IOException {
+        CannedTransport transport = new CannedTransport();
+        String backRefs = ProjectedReader.backRefsOf(VirtualMachineInterface.class);
+        transport.bodies.put("/virtual-machine/" + DEVICE_UUID + "?fields=" + backRefs, "{\"virtual-machine\": {\"uuid\": \"" + DEVICE_UUID
+                + "\", \"name\": \"" + DEVICE_UUID + "\"}}");
+        ProjectedReader.Fields fields = new ProjectedReader(null, transport, null, null).readFields(VirtualMachine.class, DEVICE_UUID, backRefs);
+        assertEquals(DEVICE_UUID, fields.getUuid());
+        assertFalse(fields.has(backRefs));
+        assertTrue(fields.getReferences(backRefs).isEmpty());
+    }
+
+    /* Test method to check the existence of an object is asked through its fq-name */
+    @Test
+    public void testExists() throws IOException {
+        CannedTransport transport = new CannedTransport();
+        transport.bodies.put("/id-to-fqname {\"uuid\":\"" + PORT_UUID + "\"}",
+                "{\"type\": \"virtual-machine-interface\", \"fq_name\": [\"default-domain\", \"demo\", \"port\"]}");
+        ProjectedReader reader = new ProjectedReader(null, transport, null, null);
+        assertTrue(reader.exists(VirtualMachineInterface.class, PORT_UUID));
+        assertEquals(Arrays.asList("default-domain", "demo", "port"), reader.getFqName(VirtualMachineInterface.class, PORT_UUID));
+        // a UUID of another type is not an object of the type asked for
+        assertFalse(reader.exists(VirtualNetwork.class, PORT_UUID));
+        assertFalse(reader.exists(VirtualNetwork.class, NETWORK_UUID));
+    }
+}
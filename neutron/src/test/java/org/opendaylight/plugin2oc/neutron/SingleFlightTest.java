@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Test Class for the sharing of identical calls in flight.
+ */
+public class SingleFlightTest {
+    SingleFlight<String, Integer> singleFlight = new SingleFlight<String, Integer>();
+
+    /* dummy call returning a given future */
+    public Callable<ListenableFuture<Integer>> call(final ListenableFuture<Integer> result, final AtomicInteger started) {
+        return new Callable<ListenableFuture<Integer>>() {
+            @Override
+            public ListenableFuture<Integer> call() {
+                started.incrementAndGet();
+                return result;
+            }
+        };
+    }
+
+    /* Test method to check concurrent identical calls run once and share the result */
+    @Test
+    public void testSubmit() throws Exception {
+        AtomicInteger started = new AtomicInteger();
+        SettableFuture<Integer> result = SettableFuture.create();
+        ListenableFuture<Integer> first = singleFlight.submit("port:1", call(result, started));
+        ListenableFuture<Integer> retry = singleFlight.submit("port:1", call(result, started));
+        ListenableFuture<Integer> other = singleFlight.submit("port:2", call(SettableFuture.<Integer> create(), started));
+        assertEquals(2, started.get());
+        result.set(200);
+        assertEquals(Integer.valueOf(200), first.get());
+        assertEquals(Integer.valueOf(200), retry.get(1, TimeUnit.SECONDS));
+        assertFalse(other.isDone());
+        assertEquals(1, singleFlight.getSharedCount());
+        assertEquals(1, singleFlight.getInFlightCount());
+    }
+
+    /* Test method to check a completed call is not shared with later calls */
+    @Test
+    public void testCompleted() throws Exception {
+        AtomicInteger started = new AtomicInteger();
+        SettableFuture<Integer> result = SettableFuture.create();
+        result.set(201);
+        singleFlight.submit("network:1", call(result, started)).get();
+        singleFlight.submit("network:1", call(result, started)).get();
+        assertEquals(2, started.get());
+        assertEquals(0, singleFlight.getSharedCount());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    /* Test method to check a caller sharing a call may give up without cancelling it */
+    @Test
+    public void testCancelShared() {
+        AtomicInteger started = new AtomicInteger();
+        SettableFuture<Integer> result = SettableFuture.create();
+        ListenableFuture<Integer> first = singleFlight.submit("port:1", call(result, started));
+        ListenableFuture<Integer> retry = singleFlight.submit("port:1", call(result, started));
+        assertTrue(retry.cancel(false));
+        assertFalse(first.isCancelled());
+        assertFalse(result.isCancelled());
+    }
+
+    /* Test method to check concurrent loads of one object make one call */
+    @Test
+    public void testLoad() throws Exception {
+        final SingleFlight<String, String> loads = new SingleFlight<String, String>();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final SingleFlight.Load<String> load = new SingleFlight.Load<String>() {
+            @Override
+            public String load() throws IOException {
+                calls.incrementAndGet();
+                loading.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return "network";
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    return loads.load("network:1", load);
+                }
+            });
+            loading.await(5, TimeUnit.SECONDS);
+            Future<String> second = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    return loads.load("network:1", load);
+                }
+            });
+            while (loads.getSharedCount() == 0) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            assertEquals("network", first.get(5, TimeUnit.SECONDS));
+            assertEquals("network", second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /* Test method to check the failure of a load is thrown to the callers sharing it */
+    @Test
+    public void testLoadFailure() throws Exception {
+        final SingleFlight<String, String> loads = new SingleFlight<String, String>();
+        final SettableFuture<String> shared = SettableFuture.create();
+        final CountDownLatch loading = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> first = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    return loads.load("network:1", new SingleFlight.Load<String>() {
+                        @Override
+                        public String load() throws IOException {
+                            loading.countDown();
+                            try {
+                                return shared.get();
+                            } catch (Exception e) {
+                                throw new IOException("API server unreachable");
+                            }
+                        }
+                    });
+                }
+            });
+            loading.await(5, TimeUnit.SECONDS);
+            shared.setException(new IllegalStateException());
+            try {
+                first.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+            assertEquals(0, loads.getInFlightCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
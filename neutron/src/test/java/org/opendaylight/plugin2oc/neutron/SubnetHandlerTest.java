@@ -3,16 +3,22 @@ package org.opendaylight.plugin2oc.neutron;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import net.juniper.contrail.api.ApiConnector;
 import net.juniper.contrail.api.ObjectReference;
+import net.juniper.contrail.api.types.NetworkIpam;
 import net.juniper.contrail.api.types.SubnetType;
 import net.juniper.contrail.api.types.VirtualNetwork;
 import net.juniper.contrail.api.types.VnSubnetsType;
@@ -23,6 +29,8 @@ import org.junit.Test;
 import org.opendaylight.controller.networkconfig.neutron.NeutronSubnet;
 import org.opendaylight.controller.networkconfig.neutron.NeutronSubnet_IPAllocationPool;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 /**
  * Test Class for Subnet.
  */
@@ -31,6 +39,7 @@ public class SubnetHandlerTest {
     VirtualNetwork mockedVirtualNetwork = mock(VirtualNetwork.class);
     SubnetHandler mockedSubnetHandler = mock(SubnetHandler.class);
     ApiConnector mockedApiConnector = mock(ApiConnector.class);
+    NetworkIpam mockedNetworkIpam = mock(NetworkIpam.class);
 
     @Before
     public void beforeTest() {
@@ -72,6 +81,13 @@ public class SubnetHandlerTest {
         return subnet;
     }
 
+    /* dummy default-network-ipam resolved through the connector */
+    public void stubDefaultIpam() throws IOException {
+        String ipamUUID = "8b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+        when(mockedApiConnector.findByName(NetworkIpam.class, null, NetworkIpamResolver.DEFAULT_IPAM_NAME)).thenReturn(ipamUUID);
+        when(mockedApiConnector.findById(NetworkIpam.class, ipamUUID)).thenReturn(mockedNetworkIpam);
+    }
+
     /* Test method to check if neutron subnet is null */
     @Test
     public void testCanCreateSubnetNull() {
@@ -115,9 +131,22 @@ public class SubnetHandlerTest {
         when(mockedApiConnector.findById(VirtualNetwork.class, neutronSubnet.getNetworkUUID())).thenReturn(mockedVirtualNetwork);
         when(mockedVirtualNetwork.getNetworkIpam()).thenReturn(null);
         when(mockedApiConnector.update(mockedVirtualNetwork)).thenReturn(true);
+        stubDefaultIpam();
         assertEquals(HttpURLConnection.HTTP_OK, subnetHandler.canCreateSubnet(neutronSubnet));
     }
 
+    /* Test method to check the network is left unchanged when the default-network-ipam is not found */
+    @Test
+    public void testCanCreateSubnetIpamNotFound() throws IOException {
+        Activator.apiConnector = mockedApiConnector;
+        NeutronSubnet neutronSubnet = defaultSubnetObject();
+        when(mockedApiConnector.findById(VirtualNetwork.class, neutronSubnet.getNetworkUUID())).thenReturn(mockedVirtualNetwork);
+        when(mockedVirtualNetwork.getNetworkIpam()).thenReturn(null);
+        assertEquals(HttpURLConnection.HTTP_INTERNAL_ERROR, subnetHandler.canCreateSubnet(neutronSubnet));
+        verify(mockedVirtualNetwork, never()).setNetworkIpam(any(NetworkIpam.class), any(VnSubnetsType.class));
+        verify(mockedApiConnector, never()).update(mockedVirtualNetwork);
+    }
+
     /* Test method to check if subnet creation returns Internal Server Error */
     @Test
     public void testCanCreateSubnetException() throws IOException {
@@ -126,6 +155,7 @@ public class SubnetHandlerTest {
         when(mockedApiConnector.findById(VirtualNetwork.class, neutronSubnet.getNetworkUUID())).thenReturn(mockedVirtualNetwork);
         when(mockedVirtualNetwork.getNetworkIpam()).thenReturn(null);
         when(mockedApiConnector.update(mockedVirtualNetwork)).thenReturn(false);
+        stubDefaultIpam();
         assertEquals(HttpURLConnection.HTTP_INTERNAL_ERROR, subnetHandler.canCreateSubnet(neutronSubnet));
     }
 
@@ -155,6 +185,30 @@ public class SubnetHandlerTest {
         assertEquals(HttpURLConnection.HTTP_FORBIDDEN, subnetHandler.canCreateSubnet(neutronSubnet));
     }
 
+    /* Test method to check if subnet overlapping an existing one is rejected */
+    @Test
+    public void testCanCreateSubnetOverlaps() throws IOException {
+        Activator.apiConnector = mockedApiConnector;
+        NeutronSubnet neutronSubnet = defaultSubnetObject();
+        when(mockedApiConnector.findById(VirtualNetwork.class, neutronSubnet.getNetworkUUID())).thenReturn(mockedVirtualNetwork);
+        VnSubnetsType vnSubnetType = new VnSubnetsType();
+        ObjectReference<VnSubnetsType> ref = new ObjectReference<>();
+        List<ObjectReference<VnSubnetsType>> ipamRefs = new ArrayList<ObjectReference<VnSubnetsType>>();
+        VnSubnetsType.IpamSubnetType subnetType = new VnSubnetsType.IpamSubnetType();
+        SubnetType type = new SubnetType();
+        List<String> temp = new ArrayList<String>();
+        subnetType.setSubnet(type);
+        subnetType.getSubnet().setIpPrefix("10.0.0.0");
+        subnetType.getSubnet().setIpPrefixLen(16);
+        vnSubnetType.addIpamSubnets(subnetType);
+        ref.setReference(temp, vnSubnetType, "", "");
+        ipamRefs.add(ref);
+        when(mockedVirtualNetwork.getNetworkIpam()).thenReturn(ipamRefs);
+        neutronSubnet.setCidr("10.0.1.0/24");
+        neutronSubnet.setGatewayIP("10.0.1.254");
+        assertEquals(HttpURLConnection.HTTP_FORBIDDEN, subnetHandler.canCreateSubnet(neutronSubnet));
+    }
+
     /* Test method to check ipPrefix */
     @Test
     public void testGetIpPrefix() {
@@ -324,6 +378,7 @@ public class SubnetHandlerTest {
         }
         when(mockedVirtualNetwork.getNetworkIpam()).thenReturn(ipamRefs);
         when(mockedApiConnector.update(mockedVirtualNetwork)).thenReturn(true);
+        stubDefaultIpam();
         assertEquals(HttpURLConnection.HTTP_NO_CONTENT, subnetHandler.canDeleteSubnet(neutronSubnet));
     }
 
@@ -354,6 +409,50 @@ public class SubnetHandlerTest {
         }
         when(mockedVirtualNetwork.getNetworkIpam()).thenReturn(ipamRefs);
         when(mockedApiConnector.update(mockedVirtualNetwork)).thenReturn(true);
+        stubDefaultIpam();
         assertEquals(HttpURLConnection.HTTP_NO_CONTENT, subnetHandler.canDeleteSubnet(neutronSubnet));
     }
-}
\ No newline at end of file
+
+    /*
+     * Test method to check a subnet deletion failing for want of the
+     * default-network-ipam leaves the network written for a subnet creation
+     * of the same batch unchanged
+     */
+    @Test
+    public void testDeleteSubnetFailedInBatch() throws Exception {
+        Activator.apiConnector = mockedApiConnector;
+        NeutronSubnet deletedSubnet = defaultSubnetObject();
+        NeutronSubnet createdSubnet = defaultSubnetObject();
+        createdSubnet.setSubnetUUID("9b9570f2-17b1-4fc3-99ec-1b7f7778a29b");
+        createdSubnet.setCidr("10.0.1.0/24");
+        createdSubnet.setGatewayIP("10.0.1.254");
+        VirtualNetwork virtualNetwork = new VirtualNetwork();
+        virtualNetwork.setUuid(deletedSubnet.getNetworkUUID());
+        VnSubnetsType vnSubnetType = new VnSubnetsType();
+        SubnetType type = new SubnetType();
+        type.setIpPrefix("10.0.0.0");
+        type.setIpPrefixLen(24);
+        vnSubnetType.addIpamSubnets(type, deletedSubnet.getGatewayIP(), deletedSubnet.getSubnetUUID());
+        virtualNetwork.setNetworkIpam(mockedNetworkIpam, vnSubnetType);
+        when(mockedApiConnector.findById(VirtualNetwork.class, deletedSubnet.getNetworkUUID())).thenReturn(virtualNetwork);
+        when(mockedApiConnector.update(virtualNetwork)).thenReturn(true);
+        String ipamUUID = "8b9570f2-17b1-4fc3-99ec-1b7f7778a29b";
+        when(mockedApiConnector.findByName(NetworkIpam.class, null, NetworkIpamResolver.DEFAULT_IPAM_NAME)).thenReturn(null, ipamUUID);
+        when(mockedApiConnector.findById(NetworkIpam.class, ipamUUID)).thenReturn(mockedNetworkIpam);
+        // a wide window so both changes are applied to the same read
+        Activator.subnetWriter = new SubnetWriter(Activator.getObjectLocks(), Activator.getObjectCache(), 500);
+        try {
+            ListenableFuture<Integer> deleted = subnetHandler.deleteSubnetAsync(deletedSubnet);
+            ListenableFuture<Integer> created = subnetHandler.createSubnetAsync(createdSubnet);
+            assertEquals(Integer.valueOf(HttpURLConnection.HTTP_INTERNAL_ERROR), deleted.get(5, TimeUnit.SECONDS));
+            assertEquals(Integer.valueOf(HttpURLConnection.HTTP_OK), created.get(5, TimeUnit.SECONDS));
+        } finally {
+            Activator.subnetWriter.shutdown();
+            Activator.subnetWriter = null;
+        }
+        verify(mockedApiConnector, times(1)).update(virtualNetwork);
+        SubnetIndex subnets = SubnetIndex.of(virtualNetwork);
+        assertNotNull(subnets.getByPrefix("10.0.0.0"));
+        assertNotNull(subnets.getByPrefix("10.0.1.0"));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.juniper.contrail.api.ObjectReference;
+import net.juniper.contrail.api.types.SubnetType;
+import net.juniper.contrail.api.types.VirtualNetwork;
+import net.juniper.contrail.api.types.VnSubnetsType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test Class for the per network subnet index.
+ */
+public class SubnetIndexTest {
+    VirtualNetwork virtualNetwork;
+    VnSubnetsType vnSubnetsType;
+
+    @Before
+    public void beforeTest() {
+        virtualNetwork = mock(VirtualNetwork.class);
+        vnSubnetsType = new VnSubnetsType();
+        addSubnet("7b9570f2-17b1-4fc3-99ec-1b7f7778a29b", "10.0.0.0");
+        addSubnet("8b9570f2-17b1-4fc3-99ec-1b7f7778a29b", "2001:db8::");
+        ObjectReference<VnSubnetsType> ref = new ObjectReference<VnSubnetsType>();
+        ref.setReference(new ArrayList<String>(), vnSubnetsType, "", "");
+        List<ObjectReference<VnSubnetsType>> ipamRefs = new ArrayList<ObjectReference<VnSubnetsType>>();
+        ipamRefs.add(ref);
+        when(virtualNetwork.getNetworkIpam()).thenReturn(ipamRefs);
+    }
+
+    private VnSubnetsType.IpamSubnetType addSubnet(String uuid, String prefix) {
+        VnSubnetsType.IpamSubnetType subnetValue = new VnSubnetsType.IpamSubnetType();
+        SubnetType subnetType = new SubnetType();
+        subnetType.setIpPrefix(prefix);
+        subnetType.setIpPrefixLen(24);
+        subnetValue.setSubnet(subnetType);
+        subnetValue.setSubnetUuid(uuid);
+        vnSubnetsType.addIpamSubnets(subnetValue);
+        return subnetValue;
+    }
+
+    /* Test method to check subnets are found by UUID and by prefix */
+    @Test
+    public void testLookup() {
+        SubnetIndex index = SubnetIndex.of(virtualNetwork);
+        assertEquals(2, index.size());
+        assertSame(index.getByUuid("7B9570F2-17B1-4FC3-99EC-1B7F7778A29B"), index.getByPrefix("10.0.0.0"));
+        assertSame(vnSubnetsType, index.getOwner(index.getByPrefix("10.0.0.0")));
+        assertSame(index.getByUuid("8b9570f2-17b1-4fc3-99ec-1b7f7778a29b"), index.getByPrefix("2001:0db8:0:0::0"));
+        assertNull(index.getByUuid("9b9570f2-17b1-4fc3-99ec-1b7f7778a29b"));
+    }
+
+    /* Test method to check dots in a prefix are not treated as wildcards */
+    @Test
+    public void testPrefixNotRegex() {
+        SubnetIndex index = SubnetIndex.of(virtualNetwork);
+        assertNull(index.getByPrefix("10a0b0c0"));
+        assertNull(index.getByPrefix("10.0.0.*"));
+        assertSame(index.getByPrefix("10.0.0.0"), index.getByPrefix("010.000.0.00"));
+    }
+
+    /* Test method to check the index is reused until the subnets change */
+    @Test
+    public void testIndexReused() {
+        SubnetIndex index = SubnetIndex.of(virtualNetwork);
+        assertSame(index, SubnetIndex.of(virtualNetwork));
+        addSubnet("9b9570f2-17b1-4fc3-99ec-1b7f7778a29b", "10.0.1.0");
+        SubnetIndex rebuilt = SubnetIndex.of(virtualNetwork);
+        assertNotSame(index, rebuilt);
+        assertEquals(3, rebuilt.size());
+    }
+
+    /* Test method to check overlapping CIDRs are detected */
+    @Test
+    public void testFindOverlapping() {
+        VnSubnetsType.IpamSubnetType wide = addSubnet("9b9570f2-17b1-4fc3-99ec-1b7f7778a29b", "172.16.0.0");
+        wide.getSubnet().setIpPrefixLen(16);
+        SubnetIndex index = SubnetIndex.of(virtualNetwork);
+        assertSame(index.getByPrefix("10.0.0.0"), index.findOverlapping("10.0.0.128/25"));
+        assertSame(index.getByPrefix("10.0.0.0"), index.findOverlapping("10.0.0.0/8"));
+        assertSame(wide, index.findOverlapping("172.16.200.0/24"));
+        assertSame(index.getByPrefix("2001:db8::"), index.findOverlapping("2001:db8::/32"));
+        assertNull(index.findOverlapping("10.0.1.0/24"));
+        assertNull(index.findOverlapping("172.17.0.0/24"));
+        assertNull(index.findOverlapping("2001:db9::/64"));
+    }
+
+    /* Test method to check nested subnets do not hide the subnet holding them */
+    @Test
+    public void testFindOverlappingNested() {
+        addSubnet("9b9570f2-17b1-4fc3-99ec-1b7f7778a29b", "10.0.0.0").getSubnet().setIpPrefixLen(8);
+        SubnetIndex index = SubnetIndex.of(virtualNetwork);
+        assertSame(index.getByUuid("9b9570f2-17b1-4fc3-99ec-1b7f7778a29b"), index.findOverlapping("10.200.0.0/24"));
+    }
+
+    /* Test method to check overlap queries on a network with 10k subnets */
+    @Test
+    public void testFindOverlappingLargeNetwork() {
+        for (int i = 0; i < 10000; i++) {
+            addSubnet(null, "11." + (i / 256) + "." + (i % 256) + ".0");
+        }
+        SubnetIndex index = SubnetIndex.of(virtualNetwork);
+        for (int i = 0; i < 10000; i++) {
+            assertNotNull(index.findOverlapping("11." + (i / 256) + "." + (i % 256) + ".128/25"));
+        }
+        assertNull(index.findOverlapping("11.255.0.0/24"));
+    }
+}
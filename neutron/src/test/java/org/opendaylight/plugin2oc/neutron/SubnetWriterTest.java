@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.juniper.contrail.api.ApiConnector;
+import net.juniper.contrail.api.types.VirtualNetwork;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Test Class for the writer combining the subnet changes of a network.
+ */
+public class SubnetWriterTest {
+    static final String NETWORK_UUID = "6b9570f2-17b1-4fc3-99ec-1b7f7778a29a";
+    ApiConnector mockedApiConnector;
+    VirtualNetwork virtualNetwork;
+    ApiExecutor apiExecutor;
+    SubnetWriter subnetWriter;
+
+    @Before
+    public void beforeTest() throws Exception {
+        mockedApiConnector = mock(ApiConnector.class);
+        virtualNetwork = new VirtualNetwork();
+        virtualNetwork.setUuid(NETWORK_UUID);
+        when(mockedApiConnector.findById(VirtualNetwork.class, NETWORK_UUID)).thenReturn(virtualNetwork);
+        apiExecutor = new ApiExecutor(2, 16);
+        subnetWriter = new SubnetWriter(new ApiObjectLocks(apiExecutor), new ApiObjectCache(mockedApiConnector), 100);
+    }
+
+    @After
+    public void afterTest() {
+        subnetWriter.shutdown();
+        apiExecutor.shutdown();
+    }
+
+    /* dummy change answering the specified status */
+    public SubnetWriter.Change change(final int status, final AtomicBoolean failed) {
+        return new SubnetWriter.Change() {
+            @Override
+            int apply(VirtualNetwork network) {
+                return status;
+            }
+
+            @Override
+            void failed(VirtualNetwork network) {
+                failed.set(true);
+            }
+        };
+    }
+
+    /* Test method to check changes submitted together are written in one update */
+    @Test
+    public void testCombined() throws Exception {
+        when(mockedApiConnector.update(virtualNetwork)).thenReturn(true);
+        AtomicBoolean failed = new AtomicBoolean();
+        ListenableFuture<Integer> created = subnetWriter.submit(NETWORK_UUID, change(HttpURLConnection.HTTP_OK, failed));
+        ListenableFuture<Integer> updated = subnetWriter.submit(NETWORK_UUID, change(HttpURLConnection.HTTP_OK, failed));
+        ListenableFuture<Integer> deleted = subnetWriter.submit(NETWORK_UUID, change(HttpURLConnection.HTTP_NO_CONTENT, failed));
+        assertEquals(Integer.valueOf(HttpURLConnection.HTTP_OK), created.get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(HttpURLConnection.HTTP_OK), updated.get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(HttpURLConnection.HTTP_NO_CONTENT), deleted.get(5, TimeUnit.SECONDS));
+        verify(mockedApiConnector, times(1)).findById(VirtualNetwork.class, NETWORK_UUID);
+        verify(mockedApiConnector, times(1)).update(virtualNetwork);
+        assertEquals(1, subnetWriter.getWriteCount());
+        assertEquals(3, subnetWriter.getChangeCount());
+    }
+
+    /* Test method to check a rejected change gets its own status without failing the others */
+    @Test
+    public void testOwnStatus() throws Exception {
+        when(mockedApiConnector.update(virtualNetwork)).thenReturn(true);
+        AtomicBoolean failed = new AtomicBoolean();
+        ListenableFuture<Integer> rejected = subnetWriter.submit(NETWORK_UUID, change(HttpURLConnection.HTTP_FORBIDDEN, failed));
+        ListenableFuture<Integer> created = subnetWriter.submit(NETWORK_UUID, change(HttpURLConnection.HTTP_OK, failed));
+        assertEquals(Integer.valueOf(HttpURLConnection.HTTP_FORBIDDEN), rejected.get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(HttpURLConnection.HTTP_OK), created.get(5, TimeUnit.SECONDS));
+        verify(mockedApiConnector, times(1)).update(virtualNetwork);
+        assertEquals(1, subnetWriter.getChangeCount());
+    }
+
+    /* Test method to check the changes of a failed update return Internal Server Error */
+    @Test
+    public void testWriteFailed() throws Exception {
+        when(mockedApiConnector.update(virtualNetwork)).thenReturn(false);
+        AtomicBoolean failed = new AtomicBoolean();
+        ListenableFuture<Integer> created = subnetWriter.submit(NETWORK_UUID, change(HttpURLConnection.HTTP_OK, failed));
+        assertEquals(Integer.valueOf(HttpURLConnection.HTTP_INTERNAL_ERROR), created.get(5, TimeUnit.SECONDS));
+        assertTrue(failed.get());
+        assertEquals(0, subnetWriter.getWriteCount());
+    }
+
+    /* Test method to check a change throwing half way does not alter the network written for the others */
+    @Test
+    public void testChangeThrows() throws Exception {
+        VirtualNetwork freshNetwork = new VirtualNetwork();
+        freshNetwork.setUuid(NETWORK_UUID);
+        when(mockedApiConnector.findById(VirtualNetwork.class, NETWORK_UUID)).thenReturn(virtualNetwork, freshNetwork);
+        when(mockedApiConnector.update(freshNetwork)).thenReturn(true);
+        AtomicBoolean failed = new AtomicBoolean();
+        ListenableFuture<Integer> created = subnetWriter.submit(NETWORK_UUID, change(HttpURLConnection.HTTP_OK, failed));
+        ListenableFuture<Integer> broken = subnetWriter.submit(NETWORK_UUID, new SubnetWriter.Change() {
+            @Override
+            int apply(VirtualNetwork network) {
+                network.setDisplayName("half changed");
+                throw new NullPointerException();
+            }
+        });
+        assertEquals(Integer.valueOf(HttpURLConnection.HTTP_INTERNAL_ERROR), broken.get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(HttpURLConnection.HTTP_OK), created.get(5, TimeUnit.SECONDS));
+        verify(mockedApiConnector, never()).update(virtualNetwork);
+        verify(mockedApiConnector, times(1)).update(freshNetwork);
+        assertNull(freshNetwork.getDisplayName());
+        assertEquals(1, subnetWriter.getChangeCount());
+    }
+
+    /* Test method to check the network is not written when no change was applied */
+    @Test
+    public void testNothingApplied() throws Exception {
+        AtomicBoolean failed = new AtomicBoolean();
+        ListenableFuture<Integer> rejected = subnetWriter.submit(NETWORK_UUID, change(HttpURLConnection.HTTP_FORBIDDEN, failed));
+        assertEquals(Integer.valueOf(HttpURLConnection.HTTP_FORBIDDEN), rejected.get(5, TimeUnit.SECONDS));
+        verify(mockedApiConnector, never()).update(virtualNetwork);
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2014 Juniper Networks, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ */
+package org.opendaylight.plugin2oc.neutron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+/**
+ * Test Class for the parsing of UUIDs.
+ */
+public class UuidsTest {
+    static final String DEVICE_UUID = "019570f2-17b1-4fc3-99ec-1b7f7778a29a";
+
+    /* Test method to check the UUIDs are parsed with or without dashes */
+    @Test
+    public void testParse() {
+        assertTrue(Uuids.isUuid(DEVICE_UUID));
+        assertTrue(Uuids.isUuid("019570f217b14fc399ec1b7f7778a29a"));
+        assertFalse(Uuids.isUuid("instance"));
+        assertFalse(Uuids.isUuid(null));
+        assertEquals(0x019570f217b14fc3L, Uuids.parseHalf(DEVICE_UUID, 0));
+        assertEquals(0x99ec1b7f7778a29aL, Uuids.parseHalf("019570f217b14fc399ec1b7f7778a29a", 16));
+        assertEquals(UUID.fromString(DEVICE_UUID), Uuids.parse("019570f217b14fc399ec1b7f7778a29a"));
+        assertNull(Uuids.parse("instance"));
+    }
+}